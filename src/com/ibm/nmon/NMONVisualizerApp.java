@@ -3,18 +3,24 @@ package com.ibm.nmon;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 
+import java.util.List;
 import java.util.Set;
 import java.util.Map;
 import java.util.TimeZone;
 
 import java.util.Properties;
 
+import java.io.IOException;
+
 import org.slf4j.Logger;
 
 import com.ibm.nmon.data.DataSetListener;
 import com.ibm.nmon.data.DataSet;
 import com.ibm.nmon.data.SystemDataSet;
 
+import com.ibm.nmon.data.derived.DerivedMetric;
+import com.ibm.nmon.data.derived.DerivedMetricManager;
+
 import com.ibm.nmon.data.transform.name.HostRenamer;
 
 import com.ibm.nmon.parser.*;
@@ -22,6 +28,7 @@ import com.ibm.nmon.parser.gc.VerboseGCParser;
 import com.ibm.nmon.interval.*;
 
 import com.ibm.nmon.analysis.AnalysisRecord;
+import com.ibm.nmon.analysis.IntervalIndex;
 
 import com.ibm.nmon.util.ParserLog;
 import com.ibm.nmon.util.TimeFormatCache;
@@ -55,6 +62,7 @@ public abstract class NMONVisualizerApp implements IntervalListener {
     private final Set<DataSetListener> listeners;
 
     private final IntervalManager intervalManager = new IntervalManager();
+    private final DerivedMetricManager derivedMetricManager = new DerivedMetricManager();
 
     private TimeZone displayTimeZone;
 
@@ -99,7 +107,8 @@ public abstract class NMONVisualizerApp implements IntervalListener {
 
         TimeFormatCache.setTimeZone(displayTimeZone);
 
-        listeners = new java.util.HashSet<DataSetListener>();
+        // copy on write so listeners can add or remove listeners, including themselves, when handling events
+        listeners = new java.util.concurrent.CopyOnWriteArraySet<DataSetListener>();
         propertyChangeSupport = new PropertyChangeSupport(this);
 
         intervalManager.addListener(this);
@@ -108,6 +117,17 @@ public abstract class NMONVisualizerApp implements IntervalListener {
         hostRenamer = HostRenamer.BY_HOST;
 
         setProperty("scaleProcessesByCPUs", "true");
+        setProperty("fioLatencyPercentiles", "false");
+        setProperty("indexIntervals", "false");
+
+        propertyChangeSupport.addPropertyChangeListener("indexIntervals", new PropertyChangeListener() {
+            @Override
+            public void propertyChange(java.beans.PropertyChangeEvent evt) {
+                for (AnalysisRecord record : analysisRecords.values()) {
+                    setIndex(record);
+                }
+            }
+        });
     }
 
     /**
@@ -223,7 +243,7 @@ public abstract class NMONVisualizerApp implements IntervalListener {
             data = topasoutParser.parse(fileToParse, timeZone, getBooleanProperty("scaleProcessesByCPUs"));
         }
         else if (filter.getFIOFileFilter().accept(fileToParse)) {
-            data = fioParser.parse(fileToParse, timeZone);
+            data = fioParser.parse(fileToParse, timeZone, getBooleanProperty("fioLatencyPercentiles"));
         }
         else {
             throw new IllegalArgumentException("cannot parse " + fileToParse + ": unknown file type");
@@ -252,6 +272,7 @@ public abstract class NMONVisualizerApp implements IntervalListener {
 
             AnalysisRecord record = new AnalysisRecord(systemData);
             record.setInterval(intervalManager.getCurrentInterval());
+            setIndex(record);
 
             analysisRecords.put(systemData, record);
         }
@@ -259,6 +280,9 @@ public abstract class NMONVisualizerApp implements IntervalListener {
         // add the parsed data to the system data set
         systemData.addData(fileToParse, data);
 
+        // recalculate over the merged data so metrics cover all the files for the system
+        derivedMetricManager.apply(systemData);
+
         recalculateMinAndMaxSystemTime();
 
         fireDataAdded(systemData);
@@ -329,6 +353,27 @@ public abstract class NMONVisualizerApp implements IntervalListener {
         }
     }
 
+    /**
+     * Add a data set that was not parsed from a file, for example one that is calculated from the other data sets.
+     */
+    public final void addDataSet(SystemDataSet data) {
+        if (analysisRecords.containsKey(data)) {
+            throw new IllegalArgumentException("data set for " + data.getHostname() + " already exists");
+        }
+
+        derivedMetricManager.apply(data);
+
+        AnalysisRecord record = new AnalysisRecord(data);
+        record.setInterval(intervalManager.getCurrentInterval());
+        setIndex(record);
+
+        analysisRecords.put(data, record);
+
+        recalculateMinAndMaxSystemTime();
+
+        fireDataAdded(data);
+    }
+
     public final void removeDataSet(DataSet data) {
         if (analysisRecords.remove(data) != null) {
             recalculateMinAndMaxSystemTime();
@@ -348,8 +393,11 @@ public abstract class NMONVisualizerApp implements IntervalListener {
 
     public final void updateDataSet(SystemDataSet data) {
         if (analysisRecords.remove(data) != null) {
+            derivedMetricManager.apply(data);
+
             AnalysisRecord record = new AnalysisRecord(data);
             record.setInterval(intervalManager.getCurrentInterval());
+            setIndex(record);
 
             analysisRecords.put(data, record);
 
@@ -402,6 +450,28 @@ public abstract class NMONVisualizerApp implements IntervalListener {
         return intervalManager;
     }
 
+    public final DerivedMetricManager getDerivedMetricManager() {
+        return derivedMetricManager;
+    }
+
+    /**
+     * Load derived metrics from the given file and apply them to all the current data sets.
+     *
+     * @return the metrics defined in the file
+     */
+    public final List<DerivedMetric> loadDerivedMetrics(String filename) throws IOException {
+        List<DerivedMetric> metrics = derivedMetricManager.loadFromFile(filename);
+
+        // updateDataSet modifies analysisRecords
+        for (SystemDataSet data : new java.util.ArrayList<SystemDataSet>(analysisRecords.keySet())) {
+            if (derivedMetricManager.apply(data)) {
+                updateDataSet(data);
+            }
+        }
+
+        return metrics;
+    }
+
     public final AnalysisRecord getAnalysis(DataSet data) {
         return analysisRecords.get(data);
     }
@@ -448,6 +518,18 @@ public abstract class NMONVisualizerApp implements IntervalListener {
         propertyChangeSupport.firePropertyChange(name, old, value);
     }
 
+    // index the data when intervals change often enough that rescanning the data is too slow
+    private void setIndex(AnalysisRecord record) {
+        if (getBooleanProperty("indexIntervals")) {
+            if (record.getIndex() == null) {
+                record.setIndex(new IntervalIndex(record.getDataSet()));
+            }
+        }
+        else {
+            record.setIndex(null);
+        }
+    }
+
     // update the start and end times when new DataSets are added
     // this may change the meaning of Interval.DEFAULT so update that if necessary
     private void recalculateMinAndMaxSystemTime() {
@@ -3,13 +3,9 @@ package com.ibm.nmon;
 import java.io.IOException;
 
 import java.io.File;
-import java.io.PrintWriter;
-import java.io.FileWriter;
 
 import java.io.BufferedReader;
 
-import java.text.SimpleDateFormat;
-
 import java.util.List;
 import java.util.Set;
 
@@ -24,10 +20,19 @@ import com.ibm.nmon.data.Process;
 
 import com.ibm.nmon.file.CombinedFileFilter;
 
+import com.ibm.nmon.util.ChunkedFileWriter;
 import com.ibm.nmon.util.FileHelper;
+import com.ibm.nmon.util.TimestampCodec;
 
 public final class NMONVisualizerCmdLine extends NMONVisualizerApp implements DataSetListener {
-    private static final SimpleDateFormat OUTPUT_FORMAT = new SimpleDateFormat("MM/dd/yy,HH:mm:ss,");
+    private static final ThreadLocal<TimestampCodec> OUTPUT_FORMAT = TimestampCodec.perThread("MM/dd/yy,HH:mm:ss,",
+            java.util.Locale.getDefault());
+
+    // same as PrintWriter.println()
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+    // approximate number of rows formatted by each thread at a time
+    private static final int ROWS_PER_CHUNK = 8192;
 
     public static void main(String[] args) throws Exception {
         // initialize logging from the classpath properties file
@@ -37,7 +42,20 @@ public final class NMONVisualizerCmdLine extends NMONVisualizerApp implements Da
         NMONVisualizerCmdLine app = new NMONVisualizerCmdLine();
         app.addDataSetListener(app);
 
-        File pathToParse = getPathToParse(args);
+        // -z compresses the output files with gzip
+        boolean gzip = false;
+        List<String> remainingArgs = new java.util.ArrayList<String>(args.length);
+
+        for (String arg : args) {
+            if ("-z".equals(arg)) {
+                gzip = true;
+            }
+            else {
+                remainingArgs.add(arg);
+            }
+        }
+
+        File pathToParse = getPathToParse(remainingArgs.toArray(new String[0]));
         List<String> toParse = new java.util.ArrayList<String>();
 
         FileHelper.recurseDirectories(java.util.Collections.singletonList(pathToParse),
@@ -88,13 +106,13 @@ public final class NMONVisualizerCmdLine extends NMONVisualizerApp implements Da
             }
         }
 
-        createMasterDetailFile(outputDir, baseName, app);
+        createMasterDetailFile(outputDir, baseName, app, gzip);
 
         // if any data set has process data, output the process data files
         for (DataSet data : app.getDataSets()) {
             if ((data instanceof ProcessDataSet) && (((ProcessDataSet) data).getProcessCount() > 0)) {
-                createMasterDetailProcessFile(outputDir, baseName, app);
-                createCommandsFile(outputDir, baseName, app);
+                createMasterDetailProcessFile(outputDir, baseName, app, gzip);
+                createCommandsFile(outputDir, baseName, app, gzip);
                 break;
             }
         }
@@ -125,80 +143,127 @@ public final class NMONVisualizerCmdLine extends NMONVisualizerApp implements Da
     // hosts in it, at the expense of being able to sort by a specific metric since the metric name
     // will include the hostname. An alternative, which requires no code change, is to parse each
     // file individually them import each CSV separately into LoadRunner.
-    private static void createMasterDetailFile(String outputDir, String baseName, NMONVisualizerCmdLine app)
-            throws IOException {
-        String outputFile = outputDir + '/' + baseName + "_nmon.csv";
+    private static void createMasterDetailFile(String outputDir, String baseName, NMONVisualizerCmdLine app,
+            boolean gzip) throws IOException {
+        String outputFile = outputDir + '/' + baseName + "_nmon.csv" + (gzip ? ".gz" : "");
 
         List<DataType> typesToOutput = getTypesToOutput(app);
 
         System.out.print("Writing NMON data to master-detail CSV file to " + outputFile + "... ");
         System.out.flush();
-        PrintWriter out = new PrintWriter(new FileWriter(outputFile));
+        ChunkedFileWriter out = new ChunkedFileWriter(outputFile, gzip);
 
-        StringBuilder builder = new StringBuilder(512);
+        try {
+            StringBuilder builder = new StringBuilder(512);
 
-        // output master-detail header
-        // with 1 column for each output field
-        builder.append("Date,Time,System,");
+            // output master-detail header
+            // with 1 column for each output field
+            builder.append("Date,Time,System,");
 
-        for (DataType type : typesToOutput) {
-            for (String field : type.getFields()) {
-                builder.append(type.getId());
-                builder.append('-');
-                builder.append(field);
-                builder.append(',');
-            }
-        }
+            int columnCount = 0;
 
-        // remove trailing comma
-        builder.deleteCharAt(builder.length() - 1);
+            for (DataType type : typesToOutput) {
+                for (String field : type.getFields()) {
+                    builder.append(type.getId());
+                    builder.append('-');
+                    builder.append(field);
+                    builder.append(',');
 
-        out.println(builder);
+                    ++columnCount;
+                }
+            }
 
-        // for each time monitored, output the data for each file, field by field
-        for (long time : app.timesMonitored) {
-            String dateTime = OUTPUT_FORMAT.format(new java.util.Date(time));
+            // remove trailing comma
+            builder.deleteCharAt(builder.length() - 1);
+            builder.append(LINE_SEPARATOR);
 
-            for (DataSet data : app.getDataSets()) {
-                DataRecord record = data.getRecord(time);
+            out.write(builder);
 
-                // no record for the given time, continue to the next host
-                if (record == null) {
-                    continue;
-                }
+            final List<DataSet> dataSets = new java.util.ArrayList<DataSet>(app.getDataSetCount());
 
-                builder.setLength(0);
+            // for each host, look up the host's type and index for every output column once rather than for each
+            // record; a null type or -1 index means the host does not have the value
+            final DataType[][] hostTypes = new DataType[app.getDataSetCount()][columnCount];
+            final int[][] fieldIndexes = new int[app.getDataSetCount()][columnCount];
 
-                builder.append(dateTime);
-                builder.append(data.getHostname());
-                builder.append(',');
+            for (DataSet data : app.getDataSets()) {
+                int h = dataSets.size();
+                int column = 0;
 
                 for (DataType type : typesToOutput) {
                     DataType hostType = data.getType(type.getId());
 
                     for (String field : type.getFields()) {
-                        if (hostType != null) {
-                            // note lookup by host type here
-                            // since this host may not have all the values being searched
-                            if (hostType.hasField(field)) {
-                                builder.append(record.getData(hostType, field));
-                            }
+                        hostTypes[h][column] = hostType;
+
+                        // note lookup by host type here
+                        // since this host may not have all the values being searched
+                        if ((hostType != null) && hostType.hasField(field)) {
+                            fieldIndexes[h][column] = hostType.getFieldIndex(field);
+                        }
+                        else {
+                            fieldIndexes[h][column] = -1;
                         }
 
-                        // note if host does not even have the DataType, still output the correct
-                        // number of commas
-                        builder.append(',');
+                        ++column;
                     }
                 }
 
-                // remove trailing comma
-                builder.deleteCharAt(builder.length() - 1);
-
-                out.println(builder);
+                dataSets.add(data);
             }
-        }
 
-        out.close();
+            final long[] times = toArray(app.timesMonitored);
+            final int timesPerChunk = Math.max(1, ROWS_PER_CHUNK / Math.max(1, dataSets.size()));
+
+            // for each time monitored, output the data for each file, field by field
+            int chunkCount = (times.length + timesPerChunk - 1) / timesPerChunk;
+
+            out.writeChunks(chunkCount, new ChunkedFileWriter.ChunkFormatter() {
+                @Override
+                public void format(int chunk, StringBuilder builder) {
+                    int end = Math.min(times.length, (chunk + 1) * timesPerChunk);
+
+                    for (int t = chunk * timesPerChunk; t < end; t++) {
+                        long time = times[t];
+                        String dateTime = OUTPUT_FORMAT.get().format(time);
+
+                        for (int h = 0; h < dataSets.size(); h++) {
+                            DataSet data = dataSets.get(h);
+                            DataRecord record = data.getRecord(time);
+
+                            // no record for the given time, continue to the next host
+                            if (record == null) {
+                                continue;
+                            }
+
+                            builder.append(dateTime);
+                            builder.append(data.getHostname());
+                            builder.append(',');
+
+                            DataType[] types = hostTypes[h];
+                            int[] indexes = fieldIndexes[h];
+
+                            for (int i = 0; i < types.length; i++) {
+                                if (indexes[i] != -1) {
+                                    builder.append(record.getData(types[i])[indexes[i]]);
+                                }
+
+                                // note if host does not even have the DataType, still output the correct
+                                // number of commas
+                                builder.append(',');
+                            }
+
+                            // remove trailing comma
+                            builder.setLength(builder.length() - 1);
+                            builder.append(LINE_SEPARATOR);
+                        }
+                    }
+                }
+            });
+        }
+        finally {
+            out.close();
+        }
 
         System.out.println("Complete");
     }
@@ -257,10 +322,10 @@ public final class NMONVisualizerCmdLine extends NMONVisualizerApp implements Da
 
     // Output a CSV file with 1 row for each timestamp / hostname combination. Each row will have a
     // column with the value 'host-command-pid' followed by a column with the CPU for that command
-    private static void createMasterDetailProcessFile(String outputDir, String baseName, NMONVisualizerCmdLine app)
-            throws IOException {
+    private static void createMasterDetailProcessFile(String outputDir, String baseName, NMONVisualizerCmdLine app,
+            boolean gzip) throws IOException {
 
-        List<ProcessDataSet> dataSets = new java.util.ArrayList<ProcessDataSet>(app.getDataSetCount());
+        final List<ProcessDataSet> dataSets = new java.util.ArrayList<ProcessDataSet>(app.getDataSetCount());
 
         for (DataSet dataSet : app.getDataSets()) {
             if (dataSet instanceof ProcessDataSet) {
@@ -268,54 +333,93 @@ public final class NMONVisualizerCmdLine extends NMONVisualizerApp implements Da
             }
         }
 
-        String outputFile = outputDir + '/' + baseName + "_top.csv";
+        // for each host, the process types and the 'host-command-pid,' column that starts each row
+        final List<List<DataType>> processTypes = new java.util.ArrayList<List<DataType>>(dataSets.size());
+        final List<List<String>> processLabels = new java.util.ArrayList<List<String>>(dataSets.size());
+        int processCount = 0;
+
+        for (ProcessDataSet data : dataSets) {
+            List<DataType> types = new java.util.ArrayList<DataType>(data.getProcessCount());
+            List<String> labels = new java.util.ArrayList<String>(data.getProcessCount());
+
+            for (Process p : data.getProcesses()) {
+                types.add(data.getType(p));
+
+                StringBuilder builder = new StringBuilder(64);
+
+                builder.append(data.getHostname());
+                builder.append('-');
+                builder.append(p.getName());
+                builder.append('-');
+                if (p.getId() == -1) {
+                    builder.append("ALL");
+                }
+                else {
+                    builder.append(Integer.toString(p.getId()));
+                }
+                builder.append(',');
+
+                labels.add(builder.toString());
+            }
+
+            processTypes.add(types);
+            processLabels.add(labels);
+            processCount += types.size();
+        }
+
+        String outputFile = outputDir + '/' + baseName + "_top.csv" + (gzip ? ".gz" : "");
 
         System.out.print("Writing TOP data to master-detail CSV file to " + outputFile + "... ");
         System.out.flush();
-        PrintWriter out = new PrintWriter(new FileWriter(outputFile));
+        ChunkedFileWriter out = new ChunkedFileWriter(outputFile, gzip);
 
-        StringBuilder builder = new StringBuilder(512);
+        try {
+            out.write("Date,Time,Command,CPU%" + LINE_SEPARATOR);
 
-        builder.append("Date,Time,Command,CPU%");
-        out.println(builder);
+            final long[] times = toArray(app.timesMonitored);
+            final int timesPerChunk = Math.max(1, ROWS_PER_CHUNK / Math.max(1, processCount));
 
-        for (long time : app.timesMonitored) {
-            for (DataSet data : dataSets) {
-                DataRecord record = data.getRecord(time);
+            int chunkCount = (times.length + timesPerChunk - 1) / timesPerChunk;
 
-                if (record == null) {
-                    continue;
-                }
+            out.writeChunks(chunkCount, new ChunkedFileWriter.ChunkFormatter() {
+                @Override
+                public void format(int chunk, StringBuilder builder) {
+                    int end = Math.min(times.length, (chunk + 1) * timesPerChunk);
 
-                for (Process p : ((ProcessDataSet) data).getProcesses()) {
-                    DataType type = ((ProcessDataSet) data).getType(p);
+                    for (int t = chunk * timesPerChunk; t < end; t++) {
+                        long time = times[t];
+                        String dateTime = OUTPUT_FORMAT.get().format(time);
 
-                    if (!record.hasData(type)) {
-                        continue;
-                    }
+                        for (int h = 0; h < dataSets.size(); h++) {
+                            DataRecord record = dataSets.get(h).getRecord(time);
+
+                            if (record == null) {
+                                continue;
+                            }
 
-                    builder.setLength(0);
+                            List<DataType> types = processTypes.get(h);
+                            List<String> labels = processLabels.get(h);
 
-                    builder.append(OUTPUT_FORMAT.format(new java.util.Date(time)));
-                    builder.append(data.getHostname());
-                    builder.append('-');
-                    builder.append(p.getName());
-                    builder.append('-');
-                    if (p.getId() == -1) {
-                        builder.append("ALL");
-                    }
-                    else {
-                        builder.append(Integer.toString(p.getId()));
-                    }
-                    builder.append(',');
-                    builder.append(record.getData(type, "%CPU"));
+                            for (int i = 0; i < types.size(); i++) {
+                                DataType type = types.get(i);
 
-                    out.println(builder);
+                                if (!record.hasData(type)) {
+                                    continue;
+                                }
+
+                                builder.append(dateTime);
+                                builder.append(labels.get(i));
+                                builder.append(record.getData(type, "%CPU"));
+                                builder.append(LINE_SEPARATOR);
+                            }
+                        }
+                    }
                 }
-            }
+            });
+        }
+        finally {
+            out.close();
         }
-
-        out.close();
 
         System.out.println("Complete");
     }
@@ -323,7 +427,7 @@ public final class NMONVisualizerCmdLine extends NMONVisualizerApp implements Da
     // Output a CSV file with 1 row for each timestamp / hostname combination. Each row will have a
     // column with the value 'host-command-pid' followed by a column with the name of the command
     // then final column with the full command line
-    private static void createCommandsFile(String outputDir, String baseName, NMONVisualizerCmdLine app)
+    private static void createCommandsFile(String outputDir, String baseName, NMONVisualizerCmdLine app, boolean gzip)
             throws IOException {
 
         List<ProcessDataSet> dataSets = new java.util.ArrayList<ProcessDataSet>(app.getDataSetCount());
@@ -334,40 +438,53 @@ public final class NMONVisualizerCmdLine extends NMONVisualizerApp implements Da
             }
         }
 
-        String outputFile = outputDir + '/' + baseName + "_commands.csv";
+        String outputFile = outputDir + '/' + baseName + "_commands.csv" + (gzip ? ".gz" : "");
 
         System.out.print("Writing command data to CSV file to " + outputFile + "... ");
         System.out.flush();
-        PrintWriter out = new PrintWriter(new FileWriter(outputFile));
+        ChunkedFileWriter out = new ChunkedFileWriter(outputFile, gzip);
 
-        StringBuilder builder = new StringBuilder(512);
+        try {
+            StringBuilder builder = new StringBuilder(8192);
 
-        builder.append("Host,PID,Command,Command Line");
-        out.println(builder);
+            builder.append("Host,PID,Command,Command Line");
+            builder.append(LINE_SEPARATOR);
 
-        for (ProcessDataSet data : dataSets) {
-            for (Process p : data.getProcesses()) {
-                if (p.getId() == -1) {
-                    continue;
+            for (ProcessDataSet data : dataSets) {
+                for (Process p : data.getProcesses()) {
+                    if (p.getId() == -1) {
+                        continue;
+                    }
+
+                    builder.append(data.getHostname());
+                    builder.append(',');
+                    builder.append(p.getId());
+                    builder.append(',');
+                    builder.append(p.getName());
+                    builder.append(',');
+                    builder.append(p.getCommandLine());
+                    builder.append(LINE_SEPARATOR);
                 }
+            }
 
-                builder.setLength(0);
+            out.write(builder);
+        }
+        finally {
+            out.close();
+        }
 
-                builder.append(data.getHostname());
-                builder.append(',');
-                builder.append(p.getId());
-                builder.append(',');
-                builder.append(p.getName());
-                builder.append(',');
-                builder.append(p.getCommandLine());
+        System.out.println("Complete");
+    }
 
-                out.println(builder);
-            }
-        }
+    private static long[] toArray(Set<Long> times) {
+        long[] array = new long[times.size()];
+        int n = 0;
 
-        out.close();
+        for (long time : times) {
+            array[n++] = time;
+        }
 
-        System.out.println("Complete");
+        return array;
     }
 
     private final Set<Long> timesMonitored = new java.util.TreeSet<Long>();
@@ -10,7 +10,6 @@ import java.io.FileOutputStream;
 import java.io.PrintStream;
 import java.io.FileWriter;
 
-import java.util.Date;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 
@@ -24,9 +23,26 @@ import com.ibm.nmon.util.ParserLog;
 
 import com.ibm.nmon.interval.Interval;
 
+import com.ibm.nmon.analysis.AnalysisRecord;
+import com.ibm.nmon.analysis.ClusterAggregator;
+import com.ibm.nmon.analysis.FieldRanker;
+import com.ibm.nmon.analysis.IntervalAnalyzer;
+import com.ibm.nmon.analysis.RankedField;
+import com.ibm.nmon.analysis.Statistic;
+
 import com.ibm.nmon.data.DataSet;
 import com.ibm.nmon.data.ProcessDataSet;
 
+import com.ibm.nmon.data.definition.DataDefinition;
+import com.ibm.nmon.data.definition.DefaultDataDefinition;
+
+import com.ibm.nmon.data.matcher.RegexFieldMatcher;
+import com.ibm.nmon.data.matcher.RegexTypeMatcher;
+
+import com.ibm.nmon.data.resample.ResampledData;
+import com.ibm.nmon.data.resample.Resampler;
+import com.ibm.nmon.data.resample.TimeGrid;
+
 import com.ibm.nmon.gui.chart.data.DataTupleDataset;
 
 import com.ibm.nmon.gui.chart.ChartFactory;
@@ -39,12 +55,14 @@ import com.ibm.nmon.util.GranularityHelper;
 
 import com.ibm.nmon.util.TimeFormatCache;
 import com.ibm.nmon.util.TimeHelper;
+import com.ibm.nmon.util.TimestampCodec;
 
 import com.ibm.nmon.util.FileHelper;
 import com.ibm.nmon.file.CombinedFileFilter;
 
 public final class ReportGenerator extends NMONVisualizerApp {
-    private static final SimpleDateFormat FILE_TIME_FORMAT = new SimpleDateFormat("HHmmss");
+    private static final ThreadLocal<TimestampCodec> FILE_TIME_FORMAT = TimestampCodec.perThread("HHmmss",
+            java.util.Locale.getDefault());
 
     public static void main(String[] args) {
         if (args.length == 0) {
@@ -71,6 +89,10 @@ public final class ReportGenerator extends NMONVisualizerApp {
         List<String> customSummaryCharts = new java.util.ArrayList<String>();
         List<String> multiplexedFieldCharts = new java.util.ArrayList<String>();
         List<String> multiplexedTypeCharts = new java.util.ArrayList<String>();
+        List<String> metricsFiles = new java.util.ArrayList<String>();
+        List<String> rankings = new java.util.ArrayList<String>();
+
+        String clusterName = null;
 
         String intervalsFile = "";
 
@@ -83,6 +105,9 @@ public final class ReportGenerator extends NMONVisualizerApp {
         boolean writeRawData = false;
         boolean writeChartData = false;
 
+        // <= 0 => do not resample raw data
+        long resampleStep = 0;
+
         for (int i = 0; i < args.length; i++) {
             String arg = args[i];
             char c = arg.charAt(0);
@@ -175,6 +200,54 @@ public final class ReportGenerator extends NMONVisualizerApp {
 
                                 multiplexedTypeCharts.add(args[i]);
                             }
+                            else if ("metrics".equals(param)) {
+                                ++i;
+
+                                if (i >= args.length) {
+                                    System.err.println("file must be specified for " + '-' + '-' + "metrics");
+                                    return;
+                                }
+
+                                metricsFiles.add(args[i]);
+                            }
+                            else if ("cluster".equals(param)) {
+                                ++i;
+
+                                if (i >= args.length) {
+                                    System.err.println("name must be specified for " + '-' + '-' + "cluster");
+                                    return;
+                                }
+
+                                clusterName = args[i];
+                            }
+                            else if ("top".equals(param)) {
+                                ++i;
+
+                                if (i >= args.length) {
+                                    System.err.println("ranking must be specified for " + '-' + '-' + "top");
+                                    return;
+                                }
+
+                                rankings.add(args[i]);
+                            }
+                            else if ("resample".equals(param)) {
+                                ++i;
+
+                                try {
+                                    resampleStep = Long.parseLong(args[i]) * 1000;
+                                }
+                                catch (Exception e) {
+                                    System.err.println("number of seconds must be specified for " + '-' + '-'
+                                            + "resample");
+                                    return;
+                                }
+
+                                if (resampleStep <= 0) {
+                                    System.err.println("number of seconds for " + '-' + '-' + "resample"
+                                            + " must be greater than 0");
+                                    return;
+                                }
+                            }
                             else if ("rawdata".equals(param)) {
                                 writeRawData = true;
                             }
@@ -249,10 +322,34 @@ public final class ReportGenerator extends NMONVisualizerApp {
 
         generator.outputDirectory = outputDirectory.isDirectory() ? outputDirectory : outputDirectory.getParentFile();
         generator.writeChartData = writeChartData;
+        generator.resampleStep = resampleStep;
+
+        // load metrics before parsing so they are calculated as each file is added
+        for (String metricsFile : metricsFiles) {
+            try {
+                generator.getDerivedMetricManager().loadFromFile(metricsFile);
+            }
+            catch (IOException ioe) {
+                System.err.println("cannot load derived metrics from '" + metricsFile + "'");
+                ioe.printStackTrace();
+            }
+        }
 
         // parse files
         generator.parse(filesToParse);
 
+        // aggregate once all the systems are parsed rather than after each file
+        if (clusterName != null) {
+            try {
+                ClusterAggregator aggregator = new ClusterAggregator(generator, clusterName, 0);
+                aggregator.start();
+                aggregator.waitForUpdate();
+            }
+            catch (InterruptedException ie) {
+                System.err.println("interrupted while creating cluster '" + clusterName + "'");
+            }
+        }
+
         // parse intervals
         if (!"".equals(intervalsFile)) {
             try {
@@ -269,6 +366,8 @@ public final class ReportGenerator extends NMONVisualizerApp {
 
         if (createCharts) {
             if (generator.getIntervalManager().getIntervalCount() != 0) {
+                generator.analyzeIntervals();
+
                 // create charts for all intervals
                 for (Interval interval : generator.getIntervalManager().getIntervals()) {
                     generator.createReport(interval, summaryCharts, dataSetCharts);
@@ -299,6 +398,36 @@ public final class ReportGenerator extends NMONVisualizerApp {
             System.out.println("Raw data complete!");
 
         }
+
+        if (!rankings.isEmpty()) {
+            System.out.println();
+
+            List<Interval> intervals = new java.util.ArrayList<Interval>();
+
+            if (generator.getIntervalManager().getIntervalCount() != 0) {
+                for (Interval interval : generator.getIntervalManager().getIntervals()) {
+                    intervals.add(interval);
+                }
+            }
+            else {
+                intervals.add(Interval.DEFAULT);
+            }
+
+            for (String ranking : rankings) {
+                try {
+                    for (Interval interval : intervals) {
+                        generator.writeRanking(ranking, interval);
+                    }
+                }
+                catch (IllegalArgumentException iae) {
+                    System.err.println("invalid ranking '" + ranking + "': " + iae.getMessage());
+                }
+                catch (InterruptedException ie) {
+                    System.err.println("interrupted while ranking '" + ranking + "'");
+                    return;
+                }
+            }
+        }
     }
 
     private static long parseTime(String[] args, int index, char param) {
@@ -307,7 +436,7 @@ public final class ReportGenerator extends NMONVisualizerApp {
         }
 
         try {
-            return TimeHelper.TIMESTAMP_FORMAT_ISO.parse(args[index]).getTime();
+            return TimeHelper.TIMESTAMP_FORMAT_ISO.get().parse(args[index]);
         }
         catch (ParseException pe) {
             throw new IllegalArgumentException(
@@ -325,9 +454,13 @@ public final class ReportGenerator extends NMONVisualizerApp {
     private final List<String> multiplexedFieldCharts;
     private final List<String> multiplexedTypeCharts;
 
+    private final Map<DataSet, List<AnalysisRecord>> intervalAnalysis =
+            new java.util.HashMap<DataSet, List<AnalysisRecord>>();
+
     private File outputDirectory;
 
     private boolean writeChartData = false;
+    private long resampleStep = 0;
 
     private ReportGenerator(List<String> customSummaryCharts, List<String> customDataCharts,
             List<String> multiplexedFieldCharts, List<String> multiplexedTypeCharts) {
@@ -466,11 +599,40 @@ public final class ReportGenerator extends NMONVisualizerApp {
         getIntervalManager().addInterval(toChart);
     }
 
+    // with multiple intervals, analyze all of them in a single pass over the data for each DataSet
+    // rather than rescanning the data for every field in every interval
+    private void analyzeIntervals() {
+        if (getIntervalManager().getIntervalCount() < 2) {
+            return;
+        }
+
+        for (DataSet data : getDataSets()) {
+            IntervalAnalyzer analyzer = new IntervalAnalyzer(data);
+            analyzer.addAllFields();
+
+            intervalAnalysis.put(data,
+                    analyzer.analyze(getIntervalManager().getIntervals(), getAnalysis(data).getGranularity()));
+        }
+    }
+
     private void createReport(Interval interval, boolean summaryCharts, boolean dataSetCharts) {
         System.out.println();
 
         getIntervalManager().setCurrentInterval(interval);
 
+        for (DataSet data : getDataSets()) {
+            List<AnalysisRecord> analysis = intervalAnalysis.get(data);
+
+            if (analysis != null) {
+                for (AnalysisRecord record : analysis) {
+                    if (record.getInterval().equals(interval)) {
+                        getAnalysis(data).addAll(record);
+                        break;
+                    }
+                }
+            }
+        }
+
         System.out.println("Charting interval " + TimeFormatCache.formatInterval(interval));
 
         File chartsDirectory = createSubdirectory("charts", interval);
@@ -578,9 +740,10 @@ public final class ReportGenerator extends NMONVisualizerApp {
     private int multiplexChartsAcrossTypes(String message, String key, File chartsDirectory, DataSet data) {
         int chartsCreated = 0;
 
-        List<BaseChartDefinition> report = cache.multiplexChartsAcrossTypes(key, data, true);
+        // create each chart as it is multiplexed rather than holding all the definitions
+        java.util.Iterator<BaseChartDefinition> report = cache.iterateChartsAcrossTypes(key, data, true).iterator();
 
-        if (!report.isEmpty()) {
+        if (report.hasNext()) {
             System.out.print("\t" + message + " ");
             System.out.flush();
 
@@ -588,17 +751,21 @@ public final class ReportGenerator extends NMONVisualizerApp {
             File datasetDirectory = new File(chartsDirectory, data.getHostname());
             datasetDirectory.mkdir();
 
-            for (BaseChartDefinition definition : report) {
-                if (saveChart(definition, dataSets, datasetDirectory)) {
+            int chartCount = 0;
+
+            while (report.hasNext()) {
+                if (saveChart(report.next(), dataSets, datasetDirectory)) {
                     ++chartsCreated;
                 }
+
+                ++chartCount;
             }
 
             if (chartsCreated == 0) {
                 datasetDirectory.delete();
             }
 
-            System.out.println(" Complete (" + chartsCreated + '/' + report.size() + ")");
+            System.out.println(" Complete (" + chartsCreated + '/' + chartCount + ")");
         }
 
         return chartsCreated;
@@ -607,9 +774,10 @@ public final class ReportGenerator extends NMONVisualizerApp {
     private int multiplexChartsAcrossFields(String message, String key, File chartsDirectory, DataSet data) {
         int chartsCreated = 0;
 
-        List<BaseChartDefinition> report = cache.multiplexChartsAcrossFields(key, data, true);
+        // create each chart as it is multiplexed rather than holding all the definitions
+        java.util.Iterator<BaseChartDefinition> report = cache.iterateChartsAcrossFields(key, data, true).iterator();
 
-        if (!report.isEmpty()) {
+        if (report.hasNext()) {
             System.out.print("\t" + message + " ");
             System.out.flush();
 
@@ -617,17 +785,21 @@ public final class ReportGenerator extends NMONVisualizerApp {
             File datasetDirectory = new File(chartsDirectory, data.getHostname());
             datasetDirectory.mkdir();
 
-            for (BaseChartDefinition definition : report) {
-                if (saveChart(definition, dataSets, datasetDirectory)) {
+            int chartCount = 0;
+
+            while (report.hasNext()) {
+                if (saveChart(report.next(), dataSets, datasetDirectory)) {
                     ++chartsCreated;
                 }
+
+                ++chartCount;
             }
 
             if (chartsCreated == 0) {
                 datasetDirectory.delete();
             }
 
-            System.out.println(" Complete (" + chartsCreated + '/' + report.size() + ")");
+            System.out.println(" Complete (" + chartsCreated + '/' + chartCount + ")");
         }
 
         return chartsCreated;
@@ -668,6 +840,26 @@ public final class ReportGenerator extends NMONVisualizerApp {
 
         System.out.println("Writing CSV files to " + rawDirectory.getAbsolutePath());
 
+        // resample all the systems onto the same grid so the rows in each file line up
+        TimeGrid grid = null;
+        Resampler resampler = new Resampler();
+        List<ResampledData> resampled = new java.util.ArrayList<ResampledData>();
+
+        if ((resampleStep > 0) && (getDataSetCount() > 0)) {
+            try {
+                grid = TimeGrid.covering(getDataSets(), resampleStep);
+
+                if (!Interval.DEFAULT.equals(interval)) {
+                    grid = new TimeGrid(Math.max(grid.getStart(), interval.getStart()),
+                            Math.min(grid.getEnd() + resampleStep - 1, interval.getEnd()), resampleStep);
+                }
+            }
+            catch (IllegalArgumentException iae) {
+                // no data in the interval; each system will report that below
+                grid = null;
+            }
+        }
+
         for (DataSet data : getDataSets()) {
             if (data.getRecordCount(interval) == 0) {
                 System.out.println("\tNo data for " + data.getHostname() + " during the interval");
@@ -683,7 +875,15 @@ public final class ReportGenerator extends NMONVisualizerApp {
             try {
                 writer = new FileWriter(dataFile);
 
-                CSVWriter.write(data, interval, writer);
+                if (grid == null) {
+                    CSVWriter.write(data, interval, writer);
+                }
+                else {
+                    ResampledData systemData = resampler.resample(data, grid);
+                    resampled.add(systemData);
+
+                    CSVWriter.write(systemData, writer);
+                }
 
                 System.out.println("Complete");
             }
@@ -733,6 +933,93 @@ public final class ReportGenerator extends NMONVisualizerApp {
                 }
             }
         }
+
+        if (resampled.size() > 1) {
+            System.out.print("\tWriting CSV for all systems ... ");
+            System.out.flush();
+
+            File dataFile = new File(rawDirectory, "all_systems" + ".csv");
+            FileWriter writer = null;
+
+            try {
+                writer = new FileWriter(dataFile);
+
+                CSVWriter.write(resampled, writer);
+
+                System.out.println("Complete");
+            }
+            catch (IOException ioe) {
+                System.err.println("could not output " + "raw" + " data to " + dataFile.getName());
+            }
+            finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    }
+                    catch (IOException ioe) {
+                        // ignore
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Output the top N fields for a ranking in the form <code>N:statistic:typeRegex[:fieldRegex]</code>, e.g.
+     * <code>20:PERCENTILE_95:DISKBUSY:.*</code>. The field regex defaults to all fields.
+     */
+    private void writeRanking(String ranking, Interval interval) throws InterruptedException {
+        String[] parts = ranking.split(":", 4);
+
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("must be in the form " + "N:statistic:typeRegex[:fieldRegex]");
+        }
+
+        int count = 0;
+
+        try {
+            count = Integer.parseInt(parts[0]);
+        }
+        catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("'" + parts[0] + "' is not a valid number");
+        }
+
+        Statistic statistic = null;
+
+        try {
+            statistic = Statistic.valueOf(parts[1].toUpperCase());
+        }
+        catch (IllegalArgumentException iae) {
+            throw new IllegalArgumentException("'" + parts[1] + "' is not a valid statistic; must be one of "
+                    + java.util.Arrays.toString(Statistic.values()));
+        }
+
+        DataDefinition definition = new DefaultDataDefinition(null, new RegexTypeMatcher(parts[2]),
+                parts.length == 4 ? new RegexFieldMatcher(parts[3]) : null, statistic, false);
+
+        getIntervalManager().setCurrentInterval(interval);
+
+        FieldRanker ranker = new FieldRanker(statistic, count);
+        ranker.setInterval(interval);
+        ranker.setGranularity(granularityHelper.getGranularity());
+
+        List<RankedField> ranked = ranker.rank(getDataSets(), definition);
+
+        System.out.println("Top " + count + " by " + statistic + " for " + ranking + " during "
+                + TimeFormatCache.formatInterval(interval));
+
+        if (ranked.isEmpty()) {
+            System.out.println("\tNo matching data");
+        }
+
+        for (int i = 0; i < ranked.size(); i++) {
+            RankedField field = ranked.get(i);
+
+            System.out.println(String.format("\t%4d  %-24s %-24s %-24s %12.3f", i + 1, field.getDataSet()
+                    .getHostname(), field.getType(), field.getField(), field.getValue()));
+        }
+
+        System.out.println();
     }
 
     private void writeChartData(JFreeChart chart, BaseChartDefinition definition, File saveDirectory) {
@@ -787,8 +1074,8 @@ public final class ReportGenerator extends NMONVisualizerApp {
             // use the interval name if possible
             if ("".equals(interval.getName())) {
                 toCreate = new File(outputDirectory,
-                        subDirName + '/' + FILE_TIME_FORMAT.format(new Date(interval.getStart())) + '-'
-                                + FILE_TIME_FORMAT.format(new Date(interval.getEnd())));
+                        subDirName + '/' + FILE_TIME_FORMAT.get().format(interval.getStart()) + '-'
+                                + FILE_TIME_FORMAT.get().format(interval.getEnd()));
             }
             else {
                 toCreate = new File(outputDirectory, subDirName + '/' + interval.getName());
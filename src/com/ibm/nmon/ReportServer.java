@@ -0,0 +1,870 @@
+package com.ibm.nmon;
+
+import java.util.List;
+import java.util.Map;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.Plot;
+import org.jfree.chart.plot.XYPlot;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import com.ibm.nmon.analysis.AnalysisRecord;
+
+import com.ibm.nmon.chart.definition.BaseChartDefinition;
+
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataSetListener;
+import com.ibm.nmon.data.DataType;
+import com.ibm.nmon.data.SystemDataSet;
+
+import com.ibm.nmon.gui.chart.ChartFactory;
+import com.ibm.nmon.gui.chart.data.DataTupleDataset;
+
+import com.ibm.nmon.interval.Interval;
+
+import com.ibm.nmon.report.ReportCache;
+
+import com.ibm.nmon.util.CSVWriter;
+import com.ibm.nmon.util.FileHelper;
+import com.ibm.nmon.util.GranularityHelper;
+import com.ibm.nmon.util.ParserLog;
+
+import com.ibm.nmon.file.CombinedFileFilter;
+
+/**
+ * <p>
+ * Headless server that keeps parsed data in memory and serves charts, chart data and summary statistics over HTTP.
+ * Unlike {@link ReportGenerator}, which writes every chart to disk and exits, this allows reports to be browsed from
+ * any machine that can reach the server. The server only listens on the loopback address; use an SSH tunnel or a
+ * reverse proxy for remote access. Requests must have a loopback <code>Host</code> header, so a reverse proxy must not
+ * pass the original host through. This keeps web pages from reading data with DNS rebinding.
+ * </p>
+ *
+ * <p>
+ * The following resources are available:
+ * <ul>
+ * <li><code>/reports</code> - JSON listing of the hosts, intervals and the charts in each report</li>
+ * <li><code>/chart.png</code>, <code>/chart.csv</code> - a chart or its data</li>
+ * <li><code>/summary.json</code> - statistics for every field of every host</li>
+ * </ul>
+ * All resources are read only; the data to serve is only given on the command line.
+ * Charts are identified by the <code>report</code> key (default <code>summary</code>), the <code>chart</code> short
+ * name and an optional <code>host</code>; if no host is given, all hosts are charted together. All resources accept an
+ * optional <code>interval</code>, either an interval name or <code>start-end</code> in epoch milliseconds, and an
+ * optional <code>granularity</code> in milliseconds.
+ * </p>
+ *
+ * <p>
+ * Rendered responses are cached in memory, up to a fixed number of bytes. The least recently used responses are
+ * evicted first and the whole cache is cleared whenever the data changes.
+ * </p>
+ *
+ * <p>
+ * All requests are handled on a single thread since charts are created by changing the current interval and
+ * granularity of the application.
+ * </p>
+ */
+public final class ReportServer extends NMONVisualizerApp implements DataSetListener {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_CACHE_SIZE = 64; // MB
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("no path(s) to parse specified");
+            return;
+        }
+
+        // ensure the Swing GUI does not pop up or cause XWindows errors
+        System.setProperty("java.awt.headless", "true");
+
+        try {
+            // initialize logging from the classpath properties file
+            java.util.logging.LogManager.getLogManager()
+                    .readConfiguration(ReportServer.class.getResourceAsStream("/cmdline.logging.properties"));
+        }
+        catch (IOException ioe) {
+            System.err.println("cannot initialize logging, will output to System.out");
+            ioe.printStackTrace();
+        }
+
+        List<String> paths = new java.util.ArrayList<String>();
+        List<String> customCharts = new java.util.ArrayList<String>();
+
+        String intervalsFile = "";
+
+        int port = DEFAULT_PORT;
+        int cacheSize = DEFAULT_CACHE_SIZE;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+
+            if (arg.charAt(0) == '-') {
+                ++i;
+
+                if (i >= args.length) {
+                    System.err.println("value must be specified for " + arg);
+                    return;
+                }
+
+                if ("-p".equals(arg) || "--port".equals(arg)) {
+                    try {
+                        port = Integer.parseInt(args[i]);
+                    }
+                    catch (NumberFormatException nfe) {
+                        System.err.println("invalid port " + args[i]);
+                        return;
+                    }
+                }
+                else if ("-c".equals(arg) || "--cache".equals(arg)) {
+                    try {
+                        cacheSize = Integer.parseInt(args[i]);
+                    }
+                    catch (NumberFormatException nfe) {
+                        System.err.println("invalid cache size " + args[i]);
+                        return;
+                    }
+                }
+                else if ("-i".equals(arg)) {
+                    intervalsFile = args[i];
+                }
+                else if ("-d".equals(arg)) {
+                    customCharts.add(args[i]);
+                }
+                else {
+                    System.err.println("ignoring " + "unknown parameter " + arg);
+                    --i;
+                }
+            }
+            else {
+                // arg does not start with '-', assume file / directory
+                paths.add(arg);
+            }
+        }
+
+        if (paths.isEmpty()) {
+            System.err.println("no path(s) to parse specified");
+            return;
+        }
+
+        ReportServer server = new ReportServer(cacheSize * 1024L * 1024L);
+
+        for (String file : customCharts) {
+            try {
+                // use the file name as the key
+                server.cache.addReport(file, file);
+            }
+            catch (IOException ioe) {
+                System.err.println("cannot parse chart definition " + file);
+                ioe.printStackTrace();
+            }
+        }
+
+        for (String path : paths) {
+            server.parsePath(path);
+        }
+
+        if (!"".equals(intervalsFile)) {
+            try {
+                server.getIntervalManager().loadFromFile(new File(intervalsFile), 0);
+            }
+            catch (IOException ioe) {
+                System.err.println("cannot load intervals from '" + intervalsFile + "'");
+                ioe.printStackTrace();
+            }
+        }
+
+        try {
+            server.start(port);
+        }
+        catch (IOException ioe) {
+            System.err.println("cannot start server on port " + port);
+            ioe.printStackTrace();
+            return;
+        }
+
+        System.out.println("Serving reports at http://localhost:" + port + "/reports");
+    }
+
+    private final ChartFactory factory;
+    private final ReportCache cache;
+    private final GranularityHelper granularityHelper;
+
+    private final RenderCache rendered;
+
+    // interval requested by start and end time rather than one loaded from the intervals file
+    private Interval adHocInterval;
+
+    private ReportServer(long cacheSize) {
+        factory = new ChartFactory(this);
+        cache = new ReportCache();
+
+        granularityHelper = new GranularityHelper(this);
+        granularityHelper.setAutomatic(true);
+
+        rendered = new RenderCache(cacheSize);
+
+        addDataSetListener(this);
+    }
+
+    private void start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        server.createContext("/reports", new Handler() {
+            @Override
+            protected Response handle(Map<String, String> params) throws IOException {
+                return listReports();
+            }
+        });
+
+        server.createContext("/chart.png", new Handler() {
+            @Override
+            protected Response handle(Map<String, String> params) throws IOException {
+                return renderChart(params, false);
+            }
+        });
+
+        server.createContext("/chart.csv", new Handler() {
+            @Override
+            protected Response handle(Map<String, String> params) throws IOException {
+                return renderChart(params, true);
+            }
+        });
+
+        server.createContext("/summary.json", new Handler() {
+            @Override
+            protected Response handle(Map<String, String> params) throws IOException {
+                return summarize(params);
+            }
+        });
+
+        // the default executor handles all requests on the server's thread
+        server.setExecutor(null);
+        server.start();
+
+        logger.info("listening on {}", server.getAddress());
+    }
+
+    private int parsePath(String path) {
+        List<String> filesToParse = new java.util.ArrayList<String>();
+
+        FileHelper.recurseDirectories(java.util.Collections.singletonList(new File(path)),
+                CombinedFileFilter.getInstance(false), filesToParse);
+
+        if (filesToParse.isEmpty()) {
+            System.err.println('\'' + path + "' contains no parsable files");
+            return 0;
+        }
+
+        // data for existing hosts must be reanalyzed after parsing
+        List<String> existingHosts = new java.util.ArrayList<String>();
+
+        for (SystemDataSet data : getDataSets()) {
+            existingHosts.add(data.getHostname());
+        }
+
+        ParserLog log = ParserLog.getInstance();
+        int parsed = 0;
+
+        for (String fileToParse : filesToParse) {
+            log.setCurrentFilename(fileToParse);
+
+            try {
+                parse(fileToParse, getDisplayTimeZone());
+                ++parsed;
+            }
+            catch (Exception e) {
+                log.getLogger().error("could not parse " + fileToParse, e);
+                // continue parsing other files
+            }
+        }
+
+        for (SystemDataSet data : getDataSetsAsList()) {
+            if (existingHosts.contains(data.getHostname())) {
+                updateDataSet(data);
+            }
+        }
+
+        System.out.println("Parsed " + parsed + " of " + filesToParse.size() + " files in " + path);
+
+        return parsed;
+    }
+
+    private List<SystemDataSet> getDataSetsAsList() {
+        List<SystemDataSet> dataSets = new java.util.ArrayList<SystemDataSet>(getDataSetCount());
+
+        for (SystemDataSet data : getDataSets()) {
+            dataSets.add(data);
+        }
+
+        return dataSets;
+    }
+
+    private Response listReports() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator json = JSON_FACTORY.createGenerator(out);
+
+        json.writeStartObject();
+
+        json.writeArrayFieldStart("hosts");
+
+        for (SystemDataSet data : getDataSets()) {
+            json.writeString(data.getHostname());
+        }
+
+        json.writeEndArray();
+
+        json.writeArrayFieldStart("intervals");
+
+        for (Interval interval : getIntervalManager().getIntervals()) {
+            if (interval.equals(adHocInterval)) {
+                continue;
+            }
+
+            json.writeStartObject();
+            json.writeStringField("name", interval.getName());
+            json.writeNumberField("start", interval.getStart());
+            json.writeNumberField("end", interval.getEnd());
+            json.writeEndObject();
+        }
+
+        json.writeEndArray();
+
+        json.writeObjectFieldStart("reports");
+
+        for (String key : new java.util.TreeSet<String>(cache.getReportKeys())) {
+            json.writeArrayFieldStart(key);
+
+            for (BaseChartDefinition definition : cache.getReport(key, getDataSets())) {
+                json.writeString(definition.getShortName());
+            }
+
+            json.writeEndArray();
+        }
+
+        json.writeEndObject();
+
+        json.writeEndObject();
+        json.close();
+
+        return new Response(200, "application/json", out.toByteArray());
+    }
+
+    private Response renderChart(Map<String, String> params, boolean csv) throws IOException {
+        String key = params.containsKey("report") ? params.get("report") : ReportCache.DEFAULT_SUMMARY_CHARTS_KEY;
+        String chartName = params.get("chart");
+
+        if (chartName == null) {
+            return Response.error(400, "chart" + " must be specified");
+        }
+
+        List<DataSet> dataSets = getDataSets(params.get("host"));
+
+        if (dataSets == null) {
+            return Response.error(404, "unknown host " + params.get("host"));
+        }
+
+        BaseChartDefinition definition = null;
+
+        for (BaseChartDefinition toSearch : cache.getReport(key, dataSets)) {
+            if (toSearch.getShortName().equals(chartName)) {
+                definition = toSearch;
+                break;
+            }
+        }
+
+        if (definition == null) {
+            return Response.error(404, "no chart named '" + chartName + "' in report '" + key + "'");
+        }
+
+        Response response = setIntervalAndGranularity(params);
+
+        if (response != null) {
+            return response;
+        }
+
+        String cacheKey = (csv ? "csv" : "png") + '|' + key + '|' + chartName + '|' + params.get("host") + '|'
+                + getCacheKey();
+        response = rendered.get(cacheKey);
+
+        if (response != null) {
+            return response;
+        }
+
+        long start = System.nanoTime();
+
+        JFreeChart chart = factory.createChart(definition, dataSets);
+        DataTupleDataset dataset = getDataset(chart);
+
+        if ((dataset == null) || !hasData(chart)) {
+            // do not cache, data may still be added
+            return Response.error(404, "no data for chart '" + chartName + "'");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        if (csv) {
+            Writer writer = new OutputStreamWriter(out, "UTF-8");
+            CSVWriter.write(dataset, writer);
+            writer.close();
+
+            response = new Response(200, "text/csv", out.toByteArray());
+        }
+        else {
+            ChartUtilities.writeChartAsPNG(out, chart, definition.getWidth(), definition.getHeight());
+
+            response = new Response(200, "image/png", out.toByteArray());
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("rendered {} in {}ms", cacheKey, (System.nanoTime() - start) / 1000000.0d);
+        }
+
+        rendered.put(cacheKey, response);
+
+        return response;
+    }
+
+    private Response summarize(Map<String, String> params) throws IOException {
+        List<DataSet> dataSets = getDataSets(params.get("host"));
+
+        if (dataSets == null) {
+            return Response.error(404, "unknown host " + params.get("host"));
+        }
+
+        Response response = setIntervalAndGranularity(params);
+
+        if (response != null) {
+            return response;
+        }
+
+        String cacheKey = "summary" + '|' + params.get("host") + '|' + getCacheKey();
+        response = rendered.get(cacheKey);
+
+        if (response != null) {
+            return response;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonGenerator json = JSON_FACTORY.createGenerator(out);
+
+        json.writeStartObject();
+
+        for (DataSet data : dataSets) {
+            AnalysisRecord analysis = getAnalysis(data);
+
+            json.writeObjectFieldStart(data.getHostname());
+
+            for (DataType type : data.getTypes()) {
+                json.writeObjectFieldStart(type.getId());
+
+                for (String field : type.getFields()) {
+                    json.writeObjectFieldStart(field);
+
+                    json.writeNumberField("count", analysis.getCount(type, field));
+                    writeValue(json, "average", analysis.getAverage(type, field));
+                    writeValue(json, "minimum", analysis.getMinimum(type, field));
+                    writeValue(json, "maximum", analysis.getMaximum(type, field));
+                    writeValue(json, "granularityMaximum", analysis.getGranularityMaximum(type, field));
+                    writeValue(json, "median", analysis.getMedian(type, field));
+                    writeValue(json, "percentile95", analysis.get95thPercentile(type, field));
+                    writeValue(json, "percentile99", analysis.get99thPercentile(type, field));
+                    writeValue(json, "standardDeviation", analysis.getStandardDeviation(type, field));
+                    writeValue(json, "sum", analysis.getSum(type, field));
+
+                    json.writeEndObject();
+                }
+
+                json.writeEndObject();
+            }
+
+            json.writeEndObject();
+        }
+
+        json.writeEndObject();
+        json.close();
+
+        response = new Response(200, "application/json", out.toByteArray());
+        rendered.put(cacheKey, response);
+
+        return response;
+    }
+
+    // NaN is not valid JSON
+    private static void writeValue(JsonGenerator json, String name, double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            json.writeNullField(name);
+        }
+        else {
+            json.writeNumberField(name, value);
+        }
+    }
+
+    /**
+     * @return all the DataSets if <code>host</code> is null, the matching DataSet or <code>null</code> if no DataSet
+     *         exists for the host
+     */
+    private List<DataSet> getDataSets(String host) {
+        List<DataSet> dataSets = new java.util.ArrayList<DataSet>(getDataSetCount());
+
+        for (SystemDataSet data : getDataSets()) {
+            if ((host == null) || data.getHostname().equals(host)) {
+                dataSets.add(data);
+            }
+        }
+
+        if ((host != null) && dataSets.isEmpty()) {
+            return null;
+        }
+        else {
+            return dataSets;
+        }
+    }
+
+    /**
+     * @return an error response if the interval or granularity are invalid, otherwise <code>null</code>
+     */
+    private Response setIntervalAndGranularity(Map<String, String> params) {
+        Interval interval = Interval.DEFAULT;
+        String value = params.get("interval");
+
+        if ((value != null) && !"".equals(value) && !"default".equalsIgnoreCase(value)) {
+            interval = null;
+
+            for (Interval toSearch : getIntervalManager().getIntervals()) {
+                if (value.equals(toSearch.getName()) && !toSearch.equals(adHocInterval)) {
+                    interval = toSearch;
+                    break;
+                }
+            }
+
+            if (interval == null) {
+                int idx = value.indexOf('-', 1);
+
+                try {
+                    interval = new Interval(Long.parseLong(value.substring(0, idx)),
+                            Long.parseLong(value.substring(idx + 1)));
+                }
+                catch (Exception e) {
+                    return Response.error(400, "invalid interval '" + value + "'; use a name or start-end");
+                }
+            }
+        }
+
+        setCurrentInterval(interval);
+
+        int granularity = granularityHelper.getGranularity();
+        value = params.get("granularity");
+
+        if (value != null) {
+            try {
+                granularity = Integer.parseInt(value);
+            }
+            catch (NumberFormatException nfe) {
+                granularity = -1;
+            }
+
+            if (granularity < 1) {
+                return Response.error(400, "invalid granularity '" + value + '\'');
+            }
+        }
+
+        factory.setGranularity(granularity);
+
+        for (SystemDataSet data : getDataSets()) {
+            getAnalysis(data).setGranularity(granularity);
+        }
+
+        return null;
+    }
+
+    // the IntervalManager only allows known intervals to be current, so intervals given by time are added
+    // temporarily; only one is kept at a time so interval charts do not accumulate them
+    private void setCurrentInterval(Interval interval) {
+        Interval previous = adHocInterval;
+
+        if (!Interval.DEFAULT.equals(interval) && getIntervalManager().addInterval(interval)) {
+            adHocInterval = interval;
+        }
+        else if ((previous != null) && previous.equals(interval)) {
+            adHocInterval = interval;
+        }
+        else {
+            adHocInterval = null;
+        }
+
+        getIntervalManager().setCurrentInterval(interval);
+
+        if ((previous != null) && !previous.equals(adHocInterval)) {
+            getIntervalManager().removeInterval(previous);
+        }
+    }
+
+    private String getCacheKey() {
+        Interval interval = getIntervalManager().getCurrentInterval();
+
+        return interval.getStart() + "-" + interval.getEnd() + '|' + interval.getName() + '|'
+                + getAnalysisGranularity();
+    }
+
+    private int getAnalysisGranularity() {
+        for (SystemDataSet data : getDataSets()) {
+            return getAnalysis(data).getGranularity();
+        }
+
+        return granularityHelper.getGranularity();
+    }
+
+    private static DataTupleDataset getDataset(JFreeChart chart) {
+        Plot plot = chart.getPlot();
+
+        if (plot instanceof CategoryPlot) {
+            return (DataTupleDataset) ((CategoryPlot) plot).getDataset();
+        }
+        else if (plot instanceof XYPlot) {
+            return (DataTupleDataset) ((XYPlot) plot).getDataset();
+        }
+        else {
+            return null;
+        }
+    }
+
+    private static boolean hasData(JFreeChart chart) {
+        Plot plot = chart.getPlot();
+
+        if (plot instanceof CategoryPlot) {
+            CategoryPlot cPlot = (CategoryPlot) plot;
+
+            for (int i = 0; i < cPlot.getDatasetCount(); i++) {
+                for (int j = 0; j < cPlot.getDataset(i).getRowCount(); j++) {
+                    for (int k = 0; k < cPlot.getDataset(i).getColumnCount(); k++) {
+                        Number value = cPlot.getDataset(i).getValue(j, k);
+
+                        if ((value != null) && !Double.isNaN(value.doubleValue())) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        else if (plot instanceof XYPlot) {
+            XYPlot xyPlot = (XYPlot) plot;
+
+            for (int i = 0; i < xyPlot.getDatasetCount(); i++) {
+                if (xyPlot.getDataset(i).getSeriesCount() > 0) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void currentIntervalChanged(Interval interval) {
+        super.currentIntervalChanged(interval);
+
+        granularityHelper.recalculate();
+
+        factory.setInterval(interval);
+    }
+
+    @Override
+    public void intervalRenamed(Interval interval) {
+        rendered.clear();
+    }
+
+    @Override
+    public void intervalsCleared() {
+        rendered.clear();
+    }
+
+    @Override
+    public void dataAdded(DataSet data) {
+        rendered.clear();
+    }
+
+    @Override
+    public void dataRemoved(DataSet data) {
+        rendered.clear();
+    }
+
+    @Override
+    public void dataChanged(DataSet data) {
+        rendered.clear();
+    }
+
+    @Override
+    public void dataCleared() {
+        rendered.clear();
+    }
+
+    private static final class Response {
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+
+        Response(int status, String contentType, byte[] body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        static Response error(int status, String message) {
+            try {
+                return new Response(status, "text/plain", message.getBytes("UTF-8"));
+            }
+            catch (java.io.UnsupportedEncodingException uee) {
+                throw new IllegalStateException(uee);
+            }
+        }
+    }
+
+    private abstract class Handler implements HttpHandler {
+        @Override
+        public final void handle(HttpExchange exchange) throws IOException {
+            Response response = null;
+
+            try {
+                if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                    response = Response.error(403, "Host" + " must be a loopback address");
+                }
+                else if ("GET".equals(exchange.getRequestMethod())) {
+                    response = handle(parseQuery(exchange.getRequestURI().getRawQuery()));
+                }
+                else {
+                    response = Response.error(405, exchange.getRequestMethod() + " not supported");
+                }
+            }
+            catch (Exception e) {
+                logger.error("error handling " + exchange.getRequestURI(), e);
+                response = Response.error(500, String.valueOf(e.getMessage()));
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, response.body.length);
+
+            OutputStream out = exchange.getResponseBody();
+
+            try {
+                out.write(response.body);
+            }
+            finally {
+                out.close();
+            }
+        }
+
+        protected abstract Response handle(Map<String, String> params) throws IOException;
+
+        // the server only listens on loopback, so any other host name means a browser was pointed here by DNS
+        // rebinding; the port is not checked since SSH tunnels can use a different local port
+        private boolean isLoopbackHost(String host) {
+            if (host == null) {
+                // HTTP 1.0 clients; browsers always send a host
+                return true;
+            }
+
+            host = host.trim().toLowerCase(java.util.Locale.ENGLISH);
+
+            if (host.startsWith("[")) {
+                int idx = host.indexOf(']');
+
+                return (idx != -1) && "::1".equals(host.substring(1, idx));
+            }
+
+            int idx = host.lastIndexOf(':');
+
+            if (idx != -1) {
+                host = host.substring(0, idx);
+            }
+
+            return "localhost".equals(host) || host.startsWith("127.");
+        }
+
+        private Map<String, String> parseQuery(String query) throws IOException {
+            Map<String, String> params = new java.util.HashMap<String, String>();
+
+            if (query != null) {
+                for (String param : query.split("&")) {
+                    int idx = param.indexOf('=');
+
+                    if (idx == -1) {
+                        params.put(URLDecoder.decode(param, "UTF-8"), "");
+                    }
+                    else {
+                        params.put(URLDecoder.decode(param.substring(0, idx), "UTF-8"),
+                                URLDecoder.decode(param.substring(idx + 1), "UTF-8"));
+                    }
+                }
+            }
+
+            return params;
+        }
+    }
+
+    /**
+     * LRU cache of responses limited by the total size of the response bodies.
+     */
+    private static final class RenderCache {
+        private final long maxSize;
+        private long size;
+
+        private final Map<String, Response> responses = new java.util.LinkedHashMap<String, Response>(16, 0.75f,
+                true);
+
+        RenderCache(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        Response get(String key) {
+            return responses.get(key);
+        }
+
+        void put(String key, Response response) {
+            // do not let a single large response flush everything else
+            if (response.body.length > maxSize) {
+                return;
+            }
+
+            Response old = responses.put(key, response);
+
+            if (old != null) {
+                size -= old.body.length;
+            }
+
+            size += response.body.length;
+
+            java.util.Iterator<Response> i = responses.values().iterator();
+
+            while (size > maxSize) {
+                size -= i.next().body.length;
+                i.remove();
+            }
+        }
+
+        void clear() {
+            responses.clear();
+            size = 0;
+        }
+    }
+}
@@ -26,7 +26,16 @@ import com.ibm.nmon.util.TimeFormatCache;
  * from the raw data each time. Calculations are done lazily, when a statistic is requested, not
  * when a measurement is added to the record. Data is cached as SoftReference objects, so while this
  * class could potentially use a large amount of memory, it should not cause OutOfMemoryExceptions.
- * </p
+ * </p>
+ * 
+ * <p>
+ * If an {@link IntervalIndex} is set, statistics are calculated from the index instead of the raw
+ * data, so changing the interval does not require rescanning all the data.
+ * </p>
+ * 
+ * <p>
+ * Records can be shared by charts built in the background, so all access is synchronized.
+ * </p>
  */
 public final class AnalysisRecord {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(AnalysisRecord.class);
@@ -34,7 +43,8 @@ public final class AnalysisRecord {
     // struct for holding analyzed data
     // data is analyzed lazily, but everything is calculated on the first call, not for each get
     // method
-    private static final class AnalysisHolder {
+    // IntervalAnalyzer also uses this class to analyze multiple intervals at once
+    static final class AnalysisHolder {
         int count = 0;
         double sum = 0;
 
@@ -49,6 +59,98 @@ public final class AnalysisRecord {
         double maximum = Double.MIN_VALUE;
 
         double standardDeviation = Double.NaN;
+
+        // working values, only used until finish() is called
+        private final int granularity;
+        private double[] allValues;
+        private int valueCount;
+
+        private long lastGranularityTime;
+        private int countSinceLastGranularity;
+        private double granularityTotal;
+
+        // for holders that are filled in directly
+        AnalysisHolder(int granularity) {
+            this.granularity = granularity;
+        }
+
+        AnalysisHolder(int granularity, long startTime, int expectedCount) {
+            this.granularity = granularity;
+            this.lastGranularityTime = startTime;
+
+            allValues = new double[Math.max(expectedCount, 16)];
+        }
+
+        void add(long time, double value) {
+            sum += value;
+
+            if (value > maximum) {
+                maximum = value;
+            }
+
+            if (value < minimum) {
+                minimum = value;
+            }
+
+            if (valueCount == allValues.length) {
+                allValues = java.util.Arrays.copyOf(allValues, valueCount * 2);
+            }
+
+            allValues[valueCount++] = value;
+
+            ++countSinceLastGranularity;
+            granularityTotal += value;
+
+            if ((time - lastGranularityTime) >= granularity) {
+                double peakAverage = granularityTotal / countSinceLastGranularity;
+
+                if (peakAverage > granularityMaximum) {
+                    granularityMaximum = peakAverage;
+                }
+
+                countSinceLastGranularity = 0;
+                granularityTotal = 0;
+
+                lastGranularityTime = time;
+            }
+        }
+
+        void finish() {
+            if (valueCount > 0) {
+                count = valueCount;
+                average = sum / count;
+
+                java.util.Arrays.sort(allValues, 0, count);
+
+                median = calculatePercentile(.5, allValues, count);
+                percentile95 = calculatePercentile(.95, allValues, count);
+                percentile99 = calculatePercentile(.99, allValues, count);
+
+                double sumSqDiffs = 0;
+
+                for (int i = 0; i < count; i++) {
+                    sumSqDiffs += Math.pow(allValues[i] - average, 2);
+                }
+
+                standardDeviation = Math.sqrt(sumSqDiffs / count);
+            }
+            else {
+                // file has data, but not for the given interval
+                // set all values to NaN
+                setMissing();
+            }
+
+            allValues = null;
+        }
+
+        void setMissing() {
+            maximum = Double.NaN;
+            minimum = Double.NaN;
+
+            granularityMaximum = Double.NaN;
+
+            allValues = null;
+        }
     }
 
     private final DataSet data;
@@ -60,6 +162,8 @@ public final class AnalysisRecord {
 
     private int granularity = 60000;
 
+    private IntervalIndex index;
+
     public AnalysisRecord(DataSet data) {
         this.data = data;
         this.interval = Interval.DEFAULT;
@@ -69,11 +173,11 @@ public final class AnalysisRecord {
         return data;
     }
 
-    public Interval getInterval() {
+    public synchronized Interval getInterval() {
         return interval;
     }
 
-    public void setInterval(Interval interval) {
+    public synchronized void setInterval(Interval interval) {
         if (!this.interval.equals(interval)) {
             this.interval = interval;
 
@@ -81,7 +185,7 @@ public final class AnalysisRecord {
         }
     }
 
-    public void setGranularity(int granularity) {
+    public synchronized void setGranularity(int granularity) {
         if (granularity < 1) {
             throw new IllegalArgumentException("granularity must be greater than 0");
         }
@@ -93,6 +197,48 @@ public final class AnalysisRecord {
         }
     }
 
+    public synchronized int getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Use an index to analyze the data rather than scanning all the data in the interval. This makes
+     * changing the interval much cheaper at the cost of the memory used by the index.
+     *
+     * @param index the index to use or <code>null</code> to stop using an index
+     */
+    public synchronized void setIndex(IntervalIndex index) {
+        if ((index != null) && (index.getDataSet() != data)) {
+            throw new IllegalArgumentException("index must be for " + data);
+        }
+
+        if (this.index != index) {
+            this.index = index;
+
+            values.clear();
+        }
+    }
+
+    public synchronized IntervalIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Copy all the statistics that have already been calculated by another record. The other record
+     * must be for the same DataSet, Interval and granularity as this one.
+     *
+     * @see IntervalAnalyzer
+     */
+    public synchronized void addAll(AnalysisRecord other) {
+        if ((other.data != data) || !other.interval.equals(interval) || (other.granularity != granularity)) {
+            throw new IllegalArgumentException("cannot add analysis from a different DataSet, Interval or granularity");
+        }
+
+        synchronized (other) {
+            values.putAll(other.values);
+        }
+    }
+
     public double getAverage(DataType type, String fieldName) {
         return analyzeIfNecessary(type, fieldName).average;
     }
@@ -133,7 +279,7 @@ public final class AnalysisRecord {
         return analyzeIfNecessary(type, fieldName).count;
     }
 
-    private AnalysisHolder analyzeIfNecessary(DataType type, String fieldName) {
+    private synchronized AnalysisHolder analyzeIfNecessary(DataType type, String fieldName) {
         if (type == null) {
             throw new IllegalArgumentException("cannot analyze null " + "type");
         }
@@ -156,113 +302,42 @@ public final class AnalysisRecord {
             // else valid SoftReference but the actual holder has been GC'ed so recreate it
         }
 
-        holder = new AnalysisHolder();
-        values.put(key, new SoftReference<AnalysisHolder>(holder));
-
         long startT = System.nanoTime();
 
         DataType typeToAnalyze = data.getType(type.getId());
 
-        if ((typeToAnalyze != null) && typeToAnalyze.hasField(fieldName)) {
+        if ((typeToAnalyze != null) && typeToAnalyze.hasField(fieldName) && (index != null)) {
+            holder = index.analyze(typeToAnalyze, fieldName,
+                    type.getClass() == com.ibm.nmon.data.ProcessDataType.class, interval, granularity);
+        }
+        else if ((typeToAnalyze != null) && typeToAnalyze.hasField(fieldName)) {
             // depending on the Interval, all DataRecords may not be processed, but assume
             // over-allocating here is faster than forcing some number of array resizes
-            List<Double> allValues = new java.util.ArrayList<Double>(data.getRecordCount());
-
-            long lastGranularityTime = Math.max(interval.getStart(), data.getStartTime());
-            int countSinceLastGranularity = 0;
-            double granularityTotal = 0;
+            holder = new AnalysisHolder(granularity, Math.max(interval.getStart(), data.getStartTime()),
+                    data.getRecordCount());
 
+            int fieldIndex = typeToAnalyze.getFieldIndex(fieldName);
             boolean isProcess = type.getClass() == com.ibm.nmon.data.ProcessDataType.class;
 
             for (DataRecord dataRecord : data.getRecords(interval)) {
-                double value = Double.NaN;
-
-                // for processes, missing values are 0 since NMON does not output data for processes
-                // if there is no activity
-                if (isProcess) {
-                    if (dataRecord.hasData(typeToAnalyze)) {
-                        value = dataRecord.getData(typeToAnalyze, fieldName);
-                    }
-
-                    if (Double.isNaN(value)) {
-                        value = 0;
-                    }
-                }
-                else { // for other types, assume missing values really are missing
-                    if (dataRecord.hasData(typeToAnalyze)) {
-                        value = dataRecord.getData(typeToAnalyze, fieldName);
-                    }
-
-                    if (Double.isNaN(value)) {
-                        continue;
-                    }
-                }
-
-                holder.sum += value;
-
-                if (value > holder.maximum) {
-                    holder.maximum = value;
-                }
+                double value = getValue(dataRecord, typeToAnalyze, fieldIndex, isProcess);
 
-                if (value < holder.minimum) {
-                    holder.minimum = value;
-                }
-
-                allValues.add(value);
-
-                ++countSinceLastGranularity;
-                granularityTotal += value;
-
-                if ((dataRecord.getTime() - lastGranularityTime) >= granularity) {
-                    double peakAverage = granularityTotal / countSinceLastGranularity;
-
-                    if (peakAverage > holder.granularityMaximum) {
-                        holder.granularityMaximum = peakAverage;
-                    }
-
-                    countSinceLastGranularity = 0;
-                    granularityTotal = 0;
-
-                    lastGranularityTime = dataRecord.getTime();
+                if (!Double.isNaN(value)) {
+                    holder.add(dataRecord.getTime(), value);
                 }
             }
 
-            if (allValues.size() > 0) {
-                holder.count = allValues.size();
-                holder.average = holder.sum / holder.count;
-
-                java.util.Collections.sort(allValues);
-
-                holder.median = calculatePercentile(.5, allValues);
-                holder.percentile95 = calculatePercentile(.95, allValues);
-                holder.percentile99 = calculatePercentile(.99, allValues);
-
-                double sumSqDiffs = 0;
-
-                for (double value : allValues) {
-                    sumSqDiffs += Math.pow(value - holder.average, 2);
-                }
-
-                holder.standardDeviation = Math.sqrt(sumSqDiffs / holder.count);
-            }
-            else {
-                // file has data, but not for the given interval
-                // set all values to NaN
-                holder.maximum = Double.NaN;
-                holder.minimum = Double.NaN;
-
-                holder.granularityMaximum = Double.NaN;
-            }
+            holder.finish();
         }
         else {
             // typeToAnalyze is null or type does not have the field
             // just return a holder full of NaNs
-            holder.maximum = Double.NaN;
-            holder.minimum = Double.NaN;
-
-            holder.granularityMaximum = Double.NaN;
+            holder = new AnalysisHolder(granularity, 0, 0);
+            holder.setMissing();
         }
 
+        values.put(key, new SoftReference<AnalysisHolder>(holder));
+
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("{}: {}-{} analyzed for {} in {}ms ",
                     new Object[] { data, type, fieldName, TimeFormatCache.formatInterval(interval),
@@ -272,6 +347,35 @@ public final class AnalysisRecord {
         return holder;
     }
 
+    synchronized boolean isAnalyzed(String key) {
+        SoftReference<AnalysisHolder> holderRef = values.get(key);
+
+        return (holderRef != null) && (holderRef.get() != null);
+    }
+
+    synchronized void setAnalysis(String key, AnalysisHolder holder) {
+        values.put(key, new SoftReference<AnalysisHolder>(holder));
+    }
+
+    /**
+     * Get the value to analyze for the given record. For processes, missing values are 0 since NMON
+     * does not output data for processes if there is no activity. For other types, assume missing
+     * values really are missing and return <code>NaN</code>.
+     */
+    static double getValue(DataRecord dataRecord, DataType typeToAnalyze, int fieldIndex, boolean isProcess) {
+        double value = Double.NaN;
+
+        if (dataRecord.hasData(typeToAnalyze)) {
+            value = dataRecord.getData(typeToAnalyze)[fieldIndex];
+        }
+
+        if (isProcess && Double.isNaN(value)) {
+            value = 0;
+        }
+
+        return value;
+    }
+
     public static double calculatePercentile(double percentile, List<Double> allValues) {
         double n = allValues.size() * percentile;
         int idx = (int) n;
@@ -283,4 +387,16 @@ public final class AnalysisRecord {
             return allValues.get(idx);
         }
     }
+
+    static double calculatePercentile(double percentile, double[] sortedValues, int count) {
+        double n = count * percentile;
+        int idx = (int) n;
+
+        if ((n - idx) == 0) {
+            return (sortedValues[idx] + sortedValues[idx - 1]) / 2;
+        }
+        else {
+            return sortedValues[idx];
+        }
+    }
 }
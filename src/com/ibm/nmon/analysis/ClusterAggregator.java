@@ -0,0 +1,770 @@
+package com.ibm.nmon.analysis;
+
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.nmon.NMONVisualizerApp;
+
+import com.ibm.nmon.data.ClusterDataSet;
+import com.ibm.nmon.data.DataRecord;
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataSetListener;
+import com.ibm.nmon.data.DataType;
+import com.ibm.nmon.data.ProcessDataType;
+import com.ibm.nmon.data.SubDataType;
+import com.ibm.nmon.data.SystemDataSet;
+
+import com.ibm.nmon.data.resample.ResamplePolicy;
+import com.ibm.nmon.data.resample.ResampledData;
+import com.ibm.nmon.data.resample.Resampler;
+import com.ibm.nmon.data.resample.TimeGrid;
+
+/**
+ * <p>
+ * Combines all the systems loaded into an application into a single {@link ClusterDataSet}. First, the records for
+ * each system are {@link Resampler resampled} by averaging into fixed size time buckets, so systems with different
+ * intervals or slightly different clocks line up. Then, for every type and field, the values from all the systems in
+ * each bucket are combined using one or more {@link Statistic statistics}. Each statistic is output as a
+ * {@link SubDataType} of the original type, e.g. <code>CPU_ALL (Sum)</code>. Process data is not aggregated.
+ * </p>
+ *
+ * <p>
+ * This class listens for data set events and recalculates the cluster in the background whenever systems are added,
+ * changed or removed. The bucketed data for each system is cached so only new or changed systems are read again.
+ * Systems are bucketed in parallel and types are aggregated in parallel. Events that arrive while an update is queued
+ * are handled by that update. The cluster is added to, updated in or removed from the application by the given event
+ * executor, which should run tasks on the thread that fires data set events.
+ * </p>
+ */
+public final class ClusterAggregator implements DataSetListener {
+    private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(ClusterAggregator.class);
+
+    // used when bucket size cannot be determined from the data
+    private static final long DEFAULT_BUCKET_SIZE = 60000;
+
+    // updates for all clusters run one at a time so each one sees a consistent set of systems
+    private static final ExecutorService UPDATER;
+    private static final ExecutorService WORKERS;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new java.util.concurrent.LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, ClusterAggregator.class.getName() + " Updater");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        UPDATER = executor;
+
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new java.util.concurrent.LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private int count = 0;
+
+                    @Override
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, ClusterAggregator.class.getName() + " Worker " + ++count);
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        WORKERS = executor;
+    }
+
+    private final NMONVisualizerApp app;
+    private final ClusterDataSet cluster;
+
+    // <= 0 => calculate from the data
+    private final long requestedBucketSize;
+    private final Statistic[] statistics;
+
+    private final Executor eventExecutor;
+
+    // the systems in the cluster; a new entry is created every time a system changes
+    // IdentityHashMap because DataSet equality changes as data is added
+    private final Map<SystemDataSet, SystemEntry> systems = new java.util.IdentityHashMap<SystemDataSet, SystemEntry>(
+            64);
+
+    private boolean running = false;
+    private boolean updateQueued = false;
+
+    // true if the cluster has been added to the application
+    private volatile boolean registered = false;
+
+    /**
+     * Create an aggregator that updates the application on its own background thread. Use this constructor when the
+     * application is not being accessed by any other threads, i.e. from the command line.
+     *
+     * @see #ClusterAggregator(NMONVisualizerApp, String, long, Executor, Statistic...)
+     */
+    public ClusterAggregator(NMONVisualizerApp app, String name, long bucketSize, Statistic... statistics) {
+        this(app, name, bucketSize, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, statistics);
+    }
+
+    /**
+     * @param bucketSize the size of each bucket in milliseconds; if less than or equal to 0, the largest typical
+     *            interval of all the systems is used
+     * @param eventExecutor runs tasks that update the application
+     * @param statistics the statistics to calculate for every field; if none are given, the sum, average, minimum,
+     *            maximum and 95th percentile are calculated
+     */
+    public ClusterAggregator(NMONVisualizerApp app, String name, long bucketSize, Executor eventExecutor,
+            Statistic... statistics) {
+        if (app == null) {
+            throw new IllegalArgumentException("app" + " cannot be null");
+        }
+
+        if (eventExecutor == null) {
+            throw new IllegalArgumentException("eventExecutor" + " cannot be null");
+        }
+
+        if ((statistics == null) || (statistics.length == 0)) {
+            statistics = new Statistic[] { Statistic.SUM, Statistic.AVERAGE, Statistic.MINIMUM, Statistic.MAXIMUM,
+                    Statistic.PERCENTILE_95 };
+        }
+
+        for (Statistic statistic : statistics) {
+            if (statistic == Statistic.GRANULARITY_MAXIMUM) {
+                throw new IllegalArgumentException(statistic + " is not supported for clusters");
+            }
+        }
+
+        this.app = app;
+        this.cluster = new ClusterDataSet(name);
+        this.requestedBucketSize = bucketSize;
+        this.statistics = statistics.clone();
+        this.eventExecutor = eventExecutor;
+    }
+
+    public ClusterDataSet getCluster() {
+        return cluster;
+    }
+
+    /**
+     * Start listening for data set events and aggregate all the systems currently in the application.
+     */
+    public void start() {
+        synchronized (this) {
+            if (running) {
+                return;
+            }
+
+            running = true;
+
+            for (SystemDataSet data : app.getDataSets()) {
+                if (isSystem(data)) {
+                    systems.put(data, new SystemEntry());
+                }
+            }
+        }
+
+        app.addDataSetListener(this);
+        scheduleUpdate();
+    }
+
+    /**
+     * Stop listening for data set events and remove the cluster from the application.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+
+            running = false;
+            systems.clear();
+        }
+
+        app.removeDataSetListener(this);
+
+        // after any pending updates
+        eventExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (registered) {
+                    registered = false;
+                    app.removeDataSet(cluster);
+                }
+            }
+        });
+    }
+
+    /**
+     * Block until all the updates that have been queued so far are complete. If the event executor runs tasks
+     * asynchronously, the application may not be updated when this method returns.
+     */
+    public void waitForUpdate() throws InterruptedException {
+        try {
+            UPDATER.submit(new Runnable() {
+                @Override
+                public void run() {}
+            }).get();
+        }
+        catch (ExecutionException ee) {
+            // cannot happen for an empty task
+        }
+    }
+
+    @Override
+    public void dataAdded(DataSet data) {
+        systemChanged(data);
+    }
+
+    @Override
+    public void dataChanged(DataSet data) {
+        systemChanged(data);
+    }
+
+    @Override
+    public void dataRemoved(DataSet data) {
+        if (data == cluster) {
+            // removed by the user rather than an update
+            if (registered) {
+                registered = false;
+                stop();
+            }
+
+            return;
+        }
+
+        boolean removed = false;
+
+        synchronized (this) {
+            removed = systems.remove(data) != null;
+        }
+
+        if (removed) {
+            scheduleUpdate();
+        }
+    }
+
+    @Override
+    public void dataCleared() {
+        synchronized (this) {
+            systems.clear();
+        }
+
+        // the cluster was cleared too; it will be added again along with new systems
+        registered = false;
+    }
+
+    private void systemChanged(DataSet data) {
+        if (!isSystem(data)) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+
+            systems.put((SystemDataSet) data, new SystemEntry());
+        }
+
+        scheduleUpdate();
+    }
+
+    private static boolean isSystem(DataSet data) {
+        return (data instanceof SystemDataSet) && !(data instanceof ClusterDataSet);
+    }
+
+    private synchronized void scheduleUpdate() {
+        if (running && !updateQueued) {
+            updateQueued = true;
+            UPDATER.execute(new Update());
+        }
+    }
+
+    private final class Update implements Runnable {
+        @Override
+        public void run() {
+            Map<SystemDataSet, SystemEntry> toAggregate = null;
+
+            synchronized (ClusterAggregator.this) {
+                // events after this point queue another update
+                updateQueued = false;
+
+                if (!running) {
+                    return;
+                }
+
+                toAggregate = new java.util.IdentityHashMap<SystemDataSet, SystemEntry>(systems);
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                final long bucketSize = requestedBucketSize > 0 ? requestedBucketSize
+                        : calculateBucketSize(toAggregate.keySet());
+
+                List<SystemEntry> toBucket = new java.util.ArrayList<SystemEntry>();
+                List<Callable<ResampledData>> tasks = new java.util.ArrayList<Callable<ResampledData>>();
+
+                for (final Map.Entry<SystemDataSet, SystemEntry> entry : toAggregate.entrySet()) {
+                    ResampledData existing = entry.getValue().buckets;
+
+                    if ((existing == null) || (existing.getGrid().getStep() != bucketSize)) {
+                        toBucket.add(entry.getValue());
+                        tasks.add(new Callable<ResampledData>() {
+                            @Override
+                            public ResampledData call() {
+                                return bucket(entry.getKey(), bucketSize);
+                            }
+                        });
+                    }
+                }
+
+                List<Future<ResampledData>> bucketed = WORKERS.invokeAll(tasks);
+
+                for (int i = 0; i < bucketed.size(); i++) {
+                    // if the system changed again, its new entry will be bucketed by the next update
+                    toBucket.get(i).buckets = bucketed.get(i).get();
+                }
+
+                List<ResampledData> buckets = new java.util.ArrayList<ResampledData>(toAggregate.size());
+
+                for (SystemEntry entry : toAggregate.values()) {
+                    // systems with no data would stretch the grid back to the epoch
+                    if (entry.buckets.getTypeCount() > 0) {
+                        buckets.add(entry.buckets);
+                    }
+                }
+
+                final Result result = aggregate(buckets, bucketSize);
+
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("aggregated {} systems ({} rebucketed) into {} types for {} in {}ms", new Object[] {
+                            buckets.size(), tasks.size(), result.types.size(), cluster,
+                            (System.nanoTime() - start) / 1000000.0d });
+                }
+
+                eventExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        publish(result);
+                    }
+                });
+            }
+            catch (InterruptedException ie) {
+                LOGGER.warn("interrupted while aggregating {}", cluster);
+            }
+            catch (ExecutionException ee) {
+                LOGGER.error("could not aggregate {}", cluster, ee.getCause());
+            }
+        }
+    }
+
+    // on the event thread
+    private void publish(Result result) {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+        }
+
+        if (result.records.isEmpty()) {
+            if (registered) {
+                registered = false;
+                app.removeDataSet(cluster);
+            }
+
+            return;
+        }
+
+        cluster.setData(result.systemCount, result.bucketSize, result.types, result.records);
+
+        if (registered) {
+            app.updateDataSet(cluster);
+        }
+        else {
+            try {
+                app.addDataSet(cluster);
+                registered = true;
+            }
+            catch (IllegalArgumentException iae) {
+                LOGGER.warn("cannot add cluster {}: {}", cluster, iae.getMessage());
+            }
+        }
+    }
+
+    // the largest median interval of all the systems, rounded to the nearest second
+    private static long calculateBucketSize(Iterable<SystemDataSet> systems) {
+        long bucketSize = 0;
+
+        for (SystemDataSet data : systems) {
+            int count = data.getRecordCount();
+
+            if (count < 2) {
+                continue;
+            }
+
+            long[] intervals = new long[count - 1];
+            long previous = Long.MIN_VALUE;
+            int n = 0;
+
+            for (long time : data.getTimes()) {
+                if ((previous != Long.MIN_VALUE) && (n < intervals.length)) {
+                    intervals[n++] = time - previous;
+                }
+
+                previous = time;
+            }
+
+            if (n == 0) {
+                continue;
+            }
+
+            java.util.Arrays.sort(intervals, 0, n);
+
+            bucketSize = Math.max(bucketSize, intervals[n / 2]);
+        }
+
+        if (bucketSize == 0) {
+            return DEFAULT_BUCKET_SIZE;
+        }
+        else {
+            return Math.max(1000, Math.round(bucketSize / 1000.0d) * 1000);
+        }
+    }
+
+    // average each field's values in each bucket
+    private static ResampledData bucket(SystemDataSet data, long bucketSize) {
+        List<DataType> types = new java.util.ArrayList<DataType>(data.getTypeCount());
+
+        for (DataType type : data.getTypes()) {
+            if (!(type instanceof ProcessDataType)) {
+                types.add(type);
+            }
+        }
+
+        // an empty grid at the epoch for systems with no data; it will have no types
+        TimeGrid grid = data.getRecordCount() == 0 ? new TimeGrid(0, 0, bucketSize) : TimeGrid.covering(data,
+                bucketSize);
+
+        return new Resampler(ResamplePolicy.MEAN).resample(data, grid, types);
+    }
+
+    private Result aggregate(final List<ResampledData> systems, long bucketSize) throws InterruptedException,
+            ExecutionException {
+        if (systems.isEmpty()) {
+            return new Result(0, bucketSize, java.util.Collections.<DataType> emptyList(),
+                    java.util.Collections.<DataRecord> emptyList());
+        }
+
+        // all the system grids are aligned to the bucket size, so each one is a contiguous part of the cluster grid
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+
+        for (ResampledData buckets : systems) {
+            start = Math.min(start, buckets.getGrid().getStart());
+            end = Math.max(end, buckets.getGrid().getEnd());
+        }
+
+        final TimeGrid grid = new TimeGrid(start, end, bucketSize);
+        final int timeCount = grid.size();
+
+        // the index of each system's first bucket in the cluster grid
+        final int[] offsets = new int[systems.size()];
+
+        for (int s = 0; s < systems.size(); s++) {
+            offsets[s] = systems.get(s).getGrid().offsetIn(grid);
+        }
+
+        java.util.Set<String> typeIds = new java.util.TreeSet<String>();
+
+        for (ResampledData buckets : systems) {
+            for (DataType type : buckets.getTypes()) {
+                typeIds.add(type.getId());
+            }
+        }
+
+        List<Callable<TypeResult>> tasks = new java.util.ArrayList<Callable<TypeResult>>(typeIds.size());
+
+        for (final String typeId : typeIds) {
+            tasks.add(new Callable<TypeResult>() {
+                @Override
+                public TypeResult call() {
+                    return aggregateType(typeId, systems, offsets, timeCount);
+                }
+            });
+        }
+
+        List<TypeResult> results = new java.util.ArrayList<TypeResult>(typeIds.size());
+        boolean[] recordHasData = new boolean[timeCount];
+
+        for (Future<TypeResult> future : WORKERS.invokeAll(tasks)) {
+            TypeResult result = future.get();
+
+            for (int s = 0; s < statistics.length; s++) {
+                double[][] values = result.values[s];
+
+                for (int i = 0; i < timeCount; i++) {
+                    if (values[i] != null) {
+                        recordHasData[i] = true;
+                    }
+                }
+            }
+
+            results.add(result);
+        }
+
+        // only create records for buckets with data; most of the grid may be empty if systems ran at different times
+        DataRecord[] records = new DataRecord[timeCount];
+        List<DataRecord> toReturn = new java.util.ArrayList<DataRecord>();
+
+        for (int i = 0; i < timeCount; i++) {
+            if (recordHasData[i]) {
+                records[i] = new DataRecord(grid.getTime(i), String.format("T%04d", toReturn.size() + 1));
+                toReturn.add(records[i]);
+            }
+        }
+
+        List<DataType> types = new java.util.ArrayList<DataType>(typeIds.size() * statistics.length);
+
+        for (TypeResult result : results) {
+            for (int s = 0; s < statistics.length; s++) {
+                DataType type = result.types[s];
+                double[][] values = result.values[s];
+                boolean hasData = false;
+
+                for (int i = 0; i < timeCount; i++) {
+                    double[] row = values[i];
+
+                    if (row != null) {
+                        records[i].addData(type, row);
+                        hasData = true;
+                    }
+                }
+
+                if (hasData) {
+                    types.add(type);
+                }
+            }
+        }
+
+        return new Result(systems.size(), bucketSize, types, toReturn);
+    }
+
+    private TypeResult aggregateType(String typeId, List<ResampledData> systems, int[] offsets, int timeCount) {
+        // union of the fields across all systems; collect the source of the data for each field
+        Map<String, List<FieldSource>> fieldSources = new java.util.LinkedHashMap<String, List<FieldSource>>();
+        String typeName = null;
+
+        for (int s = 0; s < systems.size(); s++) {
+            ResampledData buckets = systems.get(s);
+            DataType type = buckets.getType(typeId);
+
+            if (type == null) {
+                continue;
+            }
+
+            if (typeName == null) {
+                typeName = type.getName();
+            }
+
+            double[][] values = buckets.getValues(type);
+
+            for (int f = 0; f < type.getFieldCount(); f++) {
+                String field = type.getField(f);
+                List<FieldSource> sources = fieldSources.get(field);
+
+                if (sources == null) {
+                    sources = new java.util.ArrayList<FieldSource>(systems.size());
+                    fieldSources.put(field, sources);
+                }
+
+                sources.add(new FieldSource(values[f], offsets[s]));
+            }
+        }
+
+        String[] fields = fieldSources.keySet().toArray(new String[fieldSources.size()]);
+        int fieldCount = fields.length;
+
+        TypeResult result = new TypeResult(statistics.length);
+
+        for (int s = 0; s < statistics.length; s++) {
+            result.types[s] = new SubDataType(typeId, statistics[s].toString(), typeName + ' ' + statistics[s],
+                    fields);
+            result.values[s] = new double[timeCount][];
+        }
+
+        double[] values = new double[systems.size()];
+
+        for (int f = 0; f < fieldCount; f++) {
+            List<FieldSource> sources = fieldSources.get(fields[f]);
+
+            for (int i = 0; i < timeCount; i++) {
+                int count = 0;
+
+                for (FieldSource source : sources) {
+                    int bucket = i - source.offset;
+
+                    if ((bucket >= 0) && (bucket < source.values.length)) {
+                        double value = source.values[bucket];
+
+                        if (!Double.isNaN(value)) {
+                            values[count++] = value;
+                        }
+                    }
+                }
+
+                if (count == 0) {
+                    continue;
+                }
+
+                calculate(values, count, f, fieldCount, i, result);
+            }
+        }
+
+        return result;
+    }
+
+    private void calculate(double[] values, int count, int field, int fieldCount, int bucket, TypeResult result) {
+        double sum = 0;
+        double minimum = Double.POSITIVE_INFINITY;
+        double maximum = Double.NEGATIVE_INFINITY;
+
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+
+            sum += value;
+
+            if (value < minimum) {
+                minimum = value;
+            }
+
+            if (value > maximum) {
+                maximum = value;
+            }
+        }
+
+        double average = sum / count;
+        boolean sorted = false;
+
+        for (int s = 0; s < statistics.length; s++) {
+            double value = Double.NaN;
+
+            switch (statistics[s]) {
+            case AVERAGE:
+                value = average;
+                break;
+            case MINIMUM:
+                value = minimum;
+                break;
+            case MAXIMUM:
+                value = maximum;
+                break;
+            case SUM:
+                value = sum;
+                break;
+            case COUNT:
+                value = count;
+                break;
+            case STD_DEV: {
+                double sumSqDiffs = 0;
+
+                for (int i = 0; i < count; i++) {
+                    sumSqDiffs += (values[i] - average) * (values[i] - average);
+                }
+
+                value = Math.sqrt(sumSqDiffs / count);
+                break;
+            }
+            case MEDIAN:
+            case PERCENTILE_95:
+            case PERCENTILE_99: {
+                if (!sorted) {
+                    java.util.Arrays.sort(values, 0, count);
+                    sorted = true;
+                }
+
+                double percentile = statistics[s] == Statistic.MEDIAN ? .5
+                        : (statistics[s] == Statistic.PERCENTILE_95 ? .95 : .99);
+
+                value = AnalysisRecord.calculatePercentile(percentile, values, count);
+                break;
+            }
+            default:
+                break;
+            }
+
+            double[] row = result.values[s][bucket];
+
+            if (row == null) {
+                row = new double[fieldCount];
+                java.util.Arrays.fill(row, Double.NaN);
+
+                result.values[s][bucket] = row;
+            }
+
+            row[field] = value;
+        }
+    }
+
+    private static final class SystemEntry {
+        // null until bucketed
+        volatile ResampledData buckets;
+    }
+
+    private static final class FieldSource {
+        // one value per bucket in the system's grid; NaN if the system has no data in the bucket
+        final double[] values;
+        // index of the system's first bucket in the cluster grid
+        final int offset;
+
+        FieldSource(double[] values, int offset) {
+            this.values = values;
+            this.offset = offset;
+        }
+    }
+
+    private static final class TypeResult {
+        final DataType[] types;
+        // [statistic][bucket][field]; rows are null if there is no data in the bucket
+        final double[][][] values;
+
+        TypeResult(int statisticCount) {
+            types = new DataType[statisticCount];
+            values = new double[statisticCount][][];
+        }
+    }
+
+    private static final class Result {
+        final int systemCount;
+        final long bucketSize;
+        final List<DataType> types;
+        final List<DataRecord> records;
+
+        Result(int systemCount, long bucketSize, List<DataType> types, List<DataRecord> records) {
+            this.systemCount = systemCount;
+            this.bucketSize = bucketSize;
+            this.types = types;
+            this.records = records;
+        }
+    }
+}
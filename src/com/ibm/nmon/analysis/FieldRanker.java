@@ -0,0 +1,453 @@
+package com.ibm.nmon.analysis;
+
+import org.slf4j.Logger;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.nmon.data.DataRecord;
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataType;
+import com.ibm.nmon.data.ProcessDataType;
+
+import com.ibm.nmon.data.definition.DataDefinition;
+
+import com.ibm.nmon.interval.Interval;
+
+/**
+ * <p>
+ * Finds the top (or bottom) N fields for a given {@link Statistic} across any number of data sets, e.g. the 20 busiest
+ * disks by 95th percentile across all systems. The hosts, types and fields to rank are chosen by a
+ * {@link DataDefinition}.
+ * </p>
+ *
+ * <p>
+ * Ranking is done in two phases. First, each data set is read once, in parallel, to calculate the count, sum, minimum
+ * and maximum of every matching field. These are enough to rank by average, minimum, maximum, sum and count directly.
+ * For the other statistics, they provide a bound: the median, percentiles and granularity maximum of a field can never
+ * be larger than its maximum or smaller than its minimum and its standard deviation can never be more than half its
+ * range. Second, fields are visited in order of their bound and the exact statistic is calculated, in parallel
+ * batches, only until no remaining field's bound can beat the current Nth value. Usually only a small fraction of the
+ * fields need to be sorted for percentiles.
+ * </p>
+ *
+ * <p>
+ * Fields with no data in the interval are not ranked. Like {@link AnalysisRecord}, missing process data is counted as
+ * 0.
+ * </p>
+ */
+public final class FieldRanker {
+    private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(FieldRanker.class);
+
+    private static final ExecutorService WORKERS;
+    private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                new java.util.concurrent.LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private int count = 0;
+
+                    @Override
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, FieldRanker.class.getName() + " Worker " + ++count);
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        WORKERS = executor;
+    }
+
+    private final Statistic statistic;
+    private final int count;
+
+    private Interval interval = Interval.DEFAULT;
+    private int granularity = 60000;
+    private boolean ascending = false;
+
+    /**
+     * @param count the number of fields to return
+     */
+    public FieldRanker(Statistic statistic, int count) {
+        if (statistic == null) {
+            throw new IllegalArgumentException("statistic" + " cannot be null");
+        }
+
+        if (count < 1) {
+            throw new IllegalArgumentException("count" + " must be greater than 0");
+        }
+
+        this.statistic = statistic;
+        this.count = count;
+    }
+
+    public Statistic getStatistic() {
+        return statistic;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Interval getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Interval interval) {
+        this.interval = interval == null ? Interval.DEFAULT : interval;
+    }
+
+    public int getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * Only used for {@link Statistic#GRANULARITY_MAXIMUM}.
+     */
+    public void setGranularity(int granularity) {
+        if (granularity < 1) {
+            throw new IllegalArgumentException("granularity must be greater than 0");
+        }
+
+        this.granularity = granularity;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    /**
+     * @param ascending <code>true</code> to return the N smallest values rather than the N largest
+     */
+    public void setAscending(boolean ascending) {
+        this.ascending = ascending;
+    }
+
+    /**
+     * Rank all the fields matched by the definition.
+     *
+     * @return at most N fields, best first
+     */
+    public List<RankedField> rank(Iterable<? extends DataSet> dataSets, DataDefinition definition)
+            throws InterruptedException {
+        long start = System.nanoTime();
+
+        Collection<DataSet> toMatch = new java.util.ArrayList<DataSet>();
+
+        for (DataSet data : dataSets) {
+            toMatch.add(data);
+        }
+
+        List<Callable<List<Candidate>>> scans = new java.util.ArrayList<Callable<List<Candidate>>>();
+
+        for (final DataSet data : definition.getMatchingHosts(toMatch)) {
+            final List<DataType> types = definition.getMatchingTypes(data);
+
+            if (types.isEmpty()) {
+                continue;
+            }
+
+            final List<List<String>> fields = new java.util.ArrayList<List<String>>(types.size());
+
+            for (DataType type : types) {
+                List<String> typeFields = new java.util.ArrayList<String>();
+
+                for (String field : definition.getMatchingFields(type)) {
+                    if (type.hasField(field)) {
+                        typeFields.add(field);
+                    }
+                }
+
+                fields.add(typeFields);
+            }
+
+            scans.add(new Callable<List<Candidate>>() {
+                @Override
+                public List<Candidate> call() {
+                    return scan(data, types, fields);
+                }
+            });
+        }
+
+        List<Candidate> candidates = new java.util.ArrayList<Candidate>();
+
+        for (List<Candidate> scanned : invokeAll(scans)) {
+            candidates.addAll(scanned);
+        }
+
+        // the worst of the current top N is at the head of the queue
+        java.util.PriorityQueue<RankedField> top = new java.util.PriorityQueue<RankedField>(count + 1,
+                java.util.Collections.reverseOrder(new RankedFieldComparator(ascending)));
+
+        int exactCount = 0;
+
+        if (isCheap(statistic)) {
+            for (Candidate candidate : candidates) {
+                offer(top, candidate.toRankedField(candidate.getCheapValue(statistic)));
+            }
+        }
+        else {
+            for (Candidate candidate : candidates) {
+                candidate.bound = candidate.getBound(statistic, ascending);
+            }
+
+            java.util.Collections.sort(candidates, new Comparator<Candidate>() {
+                @Override
+                public int compare(Candidate c1, Candidate c2) {
+                    return ascending ? Double.compare(c1.bound, c2.bound) : Double.compare(c2.bound, c1.bound);
+                }
+            });
+
+            int batchSize = Math.max(THREAD_COUNT * 4, count);
+            int next = 0;
+
+            while (next < candidates.size()) {
+                List<Callable<RankedField>> batch = new java.util.ArrayList<Callable<RankedField>>(batchSize);
+
+                while ((next < candidates.size()) && (batch.size() < batchSize)) {
+                    final Candidate candidate = candidates.get(next);
+
+                    if (!canBeat(top, candidate.bound)) {
+                        // candidates are sorted by bound, so none of the rest can either
+                        next = candidates.size();
+                        break;
+                    }
+
+                    batch.add(new Callable<RankedField>() {
+                        @Override
+                        public RankedField call() {
+                            return calculate(candidate);
+                        }
+                    });
+
+                    ++next;
+                }
+
+                for (RankedField ranked : invokeAll(batch)) {
+                    offer(top, ranked);
+                }
+
+                exactCount += batch.size();
+            }
+        }
+
+        List<RankedField> ranked = new java.util.ArrayList<RankedField>(top);
+        java.util.Collections.sort(ranked, new RankedFieldComparator(ascending));
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("ranked {} fields in {} data sets by {}; calculated {} exactly in {}ms", new Object[] {
+                    candidates.size(), scans.size(), statistic, exactCount,
+                    (System.nanoTime() - start) / 1000000.0d });
+        }
+
+        return ranked;
+    }
+
+    // count, sum, minimum and maximum of every field in a single pass over the data set
+    private List<Candidate> scan(DataSet data, List<DataType> types, List<List<String>> fields) {
+        List<Candidate> candidates = new java.util.ArrayList<Candidate>();
+
+        // [type][field]
+        Candidate[][] byType = new Candidate[types.size()][];
+        int[][] fieldIndexes = new int[types.size()][];
+        boolean[] isProcess = new boolean[types.size()];
+
+        for (int t = 0; t < types.size(); t++) {
+            DataType type = types.get(t);
+            List<String> typeFields = fields.get(t);
+
+            byType[t] = new Candidate[typeFields.size()];
+            fieldIndexes[t] = new int[typeFields.size()];
+            isProcess[t] = type.getClass() == ProcessDataType.class;
+
+            for (int f = 0; f < typeFields.size(); f++) {
+                byType[t][f] = new Candidate(data, type, typeFields.get(f));
+                fieldIndexes[t][f] = type.getFieldIndex(typeFields.get(f));
+            }
+        }
+
+        for (DataRecord record : data.getRecords(interval)) {
+            for (int t = 0; t < byType.length; t++) {
+                if (!isProcess[t] && !record.hasData(types.get(t))) {
+                    continue;
+                }
+
+                for (int f = 0; f < byType[t].length; f++) {
+                    double value = AnalysisRecord.getValue(record, types.get(t), fieldIndexes[t][f], isProcess[t]);
+
+                    if (!Double.isNaN(value)) {
+                        byType[t][f].add(value);
+                    }
+                }
+            }
+        }
+
+        for (Candidate[] typeCandidates : byType) {
+            for (Candidate candidate : typeCandidates) {
+                if (candidate.count > 0) {
+                    candidates.add(candidate);
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    private RankedField calculate(Candidate candidate) {
+        AnalysisRecord record = new AnalysisRecord(candidate.data);
+        record.setInterval(interval);
+        record.setGranularity(granularity);
+
+        return candidate.toRankedField(statistic.getValue(record, candidate.type, candidate.field));
+    }
+
+    private void offer(java.util.PriorityQueue<RankedField> top, RankedField ranked) {
+        if (Double.isNaN(ranked.getValue())) {
+            return;
+        }
+
+        if (top.size() < count) {
+            top.add(ranked);
+        }
+        else if (isBetter(ranked.getValue(), top.peek().getValue())) {
+            top.poll();
+            top.add(ranked);
+        }
+    }
+
+    private boolean canBeat(java.util.PriorityQueue<RankedField> top, double bound) {
+        return (top.size() < count) || isBetter(bound, top.peek().getValue());
+    }
+
+    private boolean isBetter(double value, double than) {
+        return ascending ? value < than : value > than;
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) throws InterruptedException {
+        List<T> results = new java.util.ArrayList<T>(tasks.size());
+
+        try {
+            for (Future<T> future : WORKERS.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        }
+        catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            else {
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        return results;
+    }
+
+    // statistics that can be calculated from the count, sum, minimum and maximum alone
+    private static boolean isCheap(Statistic statistic) {
+        switch (statistic) {
+        case AVERAGE:
+        case MINIMUM:
+        case MAXIMUM:
+        case SUM:
+        case COUNT:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static final class Candidate {
+        final DataSet data;
+        final DataType type;
+        final String field;
+
+        int count;
+        double sum;
+        double minimum = Double.POSITIVE_INFINITY;
+        double maximum = Double.NEGATIVE_INFINITY;
+
+        double bound;
+
+        Candidate(DataSet data, DataType type, String field) {
+            this.data = data;
+            this.type = type;
+            this.field = field;
+        }
+
+        void add(double value) {
+            ++count;
+            sum += value;
+
+            if (value < minimum) {
+                minimum = value;
+            }
+
+            if (value > maximum) {
+                maximum = value;
+            }
+        }
+
+        double getCheapValue(Statistic statistic) {
+            switch (statistic) {
+            case AVERAGE:
+                return sum / count;
+            case MINIMUM:
+                return minimum;
+            case MAXIMUM:
+                return maximum;
+            case SUM:
+                return sum;
+            case COUNT:
+                return count;
+            default:
+                throw new IllegalArgumentException(statistic + " cannot be calculated directly");
+            }
+        }
+
+        // the best value the statistic could possibly have
+        double getBound(Statistic statistic, boolean ascending) {
+            if (statistic == Statistic.STD_DEV) {
+                return ascending ? 0 : (maximum - minimum) / 2;
+            }
+            else {
+                return ascending ? minimum : maximum;
+            }
+        }
+
+        RankedField toRankedField(double value) {
+            return new RankedField(data, type, field, value);
+        }
+    }
+
+    // best first
+    private static final class RankedFieldComparator implements Comparator<RankedField> {
+        private final boolean ascending;
+
+        RankedFieldComparator(boolean ascending) {
+            this.ascending = ascending;
+        }
+
+        @Override
+        public int compare(RankedField r1, RankedField r2) {
+            return ascending ? Double.compare(r1.getValue(), r2.getValue()) : Double.compare(r2.getValue(),
+                    r1.getValue());
+        }
+    }
+}
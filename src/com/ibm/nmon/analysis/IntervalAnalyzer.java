@@ -0,0 +1,326 @@
+package com.ibm.nmon.analysis;
+
+import org.slf4j.Logger;
+
+import java.util.List;
+
+import com.ibm.nmon.data.DataRecord;
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataType;
+
+import com.ibm.nmon.interval.Interval;
+
+/**
+ * <p>
+ * Analyzes multiple Intervals of a single DataSet at once. {@link AnalysisRecord} analyzes each
+ * type / field combination separately, rescanning the data for every statistic requested. For a
+ * large number of intervals or fields, it is much more efficient to calculate all the statistics for
+ * every interval in a single pass over the data. This class does exactly that and returns
+ * AnalysisRecords that already contain the calculated values.
+ * </p>
+ *
+ * <p>
+ * Intervals can overlap. All values must be held in memory until the statistics are calculated, so
+ * if there are a large number of fields, the analysis is split into multiple passes, each holding
+ * at most {@value #MAX_VALUES_PER_PASS} values.
+ * </p>
+ */
+public final class IntervalAnalyzer {
+    private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(IntervalAnalyzer.class);
+
+    static final int MAX_VALUES_PER_PASS = 8 * 1024 * 1024;
+
+    private final DataSet data;
+
+    private final List<DataType> types = new java.util.ArrayList<DataType>();
+    private final List<String> fields = new java.util.ArrayList<String>();
+
+    public IntervalAnalyzer(DataSet data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data" + " cannot be null");
+        }
+
+        this.data = data;
+    }
+
+    public DataSet getDataSet() {
+        return data;
+    }
+
+    public void addField(DataType type, String field) {
+        if (type == null) {
+            throw new IllegalArgumentException("cannot analyze null " + "type");
+        }
+
+        if ((field == null) || "".equals(field)) {
+            throw new IllegalArgumentException("cannot analyze null " + "field");
+        }
+
+        types.add(type);
+        fields.add(field);
+    }
+
+    /**
+     * Analyze every field of every DataType in the DataSet.
+     */
+    public void addAllFields() {
+        for (DataType type : data.getTypes()) {
+            for (String field : type.getFields()) {
+                addField(type, field);
+            }
+        }
+    }
+
+    /**
+     * Analyze all the fields added to this analyzer for the given intervals.
+     *
+     * @return an AnalysisRecord for each interval, in the same order
+     */
+    public List<AnalysisRecord> analyze(Iterable<Interval> intervals, int granularity) {
+        List<AnalysisRecord> records = new java.util.ArrayList<AnalysisRecord>();
+
+        for (Interval interval : intervals) {
+            AnalysisRecord record = new AnalysisRecord(data);
+            record.setInterval(interval);
+            record.setGranularity(granularity);
+
+            records.add(record);
+        }
+
+        analyze(records);
+
+        return records;
+    }
+
+    /**
+     * Analyze all the fields added to this analyzer, storing the results in the given records. All
+     * the records must be for this analyzer's DataSet and have the same granularity. Fields that
+     * have already been analyzed by all the records are skipped.
+     */
+    public void analyze(List<AnalysisRecord> records) {
+        if (records.isEmpty() || types.isEmpty() || (data.getRecordCount() == 0)) {
+            return;
+        }
+
+        long startT = System.nanoTime();
+
+        int granularity = records.get(0).getGranularity();
+
+        for (AnalysisRecord record : records) {
+            if (record.getDataSet() != data) {
+                throw new IllegalArgumentException("all records must be for " + data);
+            }
+
+            if (record.getGranularity() != granularity) {
+                throw new IllegalArgumentException("all records must have the same granularity");
+            }
+        }
+
+        // sort by start time so each record only needs to check the intervals that have started
+        AnalysisRecord[] sorted = records.toArray(new AnalysisRecord[records.size()]);
+        java.util.Arrays.sort(sorted, new java.util.Comparator<AnalysisRecord>() {
+            @Override
+            public int compare(AnalysisRecord r1, AnalysisRecord r2) {
+                long s1 = getStart(r1.getInterval());
+                long s2 = getStart(r2.getInterval());
+
+                return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+            }
+        });
+
+        // only analyze fields that are not already available for all records
+        List<DataType> typesToAnalyze = new java.util.ArrayList<DataType>(types.size());
+        List<String> fieldsToAnalyze = new java.util.ArrayList<String>(types.size());
+
+        for (int i = 0; i < types.size(); i++) {
+            DataType type = types.get(i);
+            String field = fields.get(i);
+            String key = type.getKey(field);
+
+            boolean analyzed = true;
+
+            for (AnalysisRecord record : sorted) {
+                if (!record.isAnalyzed(key)) {
+                    analyzed = false;
+                    break;
+                }
+            }
+
+            if (!analyzed) {
+                typesToAnalyze.add(type);
+                fieldsToAnalyze.add(field);
+            }
+        }
+
+        if (typesToAnalyze.isEmpty()) {
+            return;
+        }
+
+        // all the records for all the intervals
+        long minStart = Long.MAX_VALUE;
+        long maxEnd = Long.MIN_VALUE;
+
+        for (AnalysisRecord record : sorted) {
+            minStart = Math.min(minStart, getStart(record.getInterval()));
+            maxEnd = Math.max(maxEnd, getEnd(record.getInterval()));
+        }
+
+        Iterable<DataRecord> span = null;
+        int spanSize = 0;
+
+        if ((minStart == Long.MIN_VALUE) && (maxEnd == Long.MAX_VALUE)) {
+            span = data.getRecords();
+            spanSize = data.getRecordCount();
+        }
+        else {
+            Interval spanInterval = new Interval(minStart, maxEnd);
+            span = data.getRecords(spanInterval);
+            spanSize = data.getRecordCount(spanInterval);
+        }
+
+        // assume intervals do not overlap when estimating memory
+        int fieldsPerPass = Math.max(1, MAX_VALUES_PER_PASS / Math.max(1, spanSize));
+        int passes = 0;
+
+        for (int start = 0; start < typesToAnalyze.size(); start += fieldsPerPass) {
+            int end = Math.min(start + fieldsPerPass, typesToAnalyze.size());
+
+            analyze(sorted, span, typesToAnalyze.subList(start, end), fieldsToAnalyze.subList(start, end),
+                    granularity, Math.max(16, spanSize / sorted.length));
+
+            ++passes;
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("{}: {} fields analyzed for {} intervals in {} passes in {}ms", new Object[] { data,
+                    typesToAnalyze.size(), sorted.length, passes, (System.nanoTime() - startT) / 1000000.0d });
+        }
+    }
+
+    private void analyze(AnalysisRecord[] sorted, Iterable<DataRecord> span, List<DataType> types,
+            List<String> fields, int granularity, int expectedCount) {
+        int fieldCount = types.size();
+
+        // the type in the DataSet, or null if it does not exist
+        DataType[] typesToAnalyze = new DataType[fieldCount];
+        int[] fieldIndexes = new int[fieldCount];
+        boolean[] isProcess = new boolean[fieldCount];
+        String[] keys = new String[fieldCount];
+
+        for (int f = 0; f < fieldCount; f++) {
+            DataType type = types.get(f);
+            String field = fields.get(f);
+
+            keys[f] = type.getKey(field);
+            isProcess[f] = type.getClass() == com.ibm.nmon.data.ProcessDataType.class;
+
+            DataType typeToAnalyze = data.getType(type.getId());
+
+            if ((typeToAnalyze != null) && typeToAnalyze.hasField(field)) {
+                typesToAnalyze[f] = typeToAnalyze;
+                fieldIndexes[f] = typeToAnalyze.getFieldIndex(field);
+            }
+        }
+
+        AnalysisRecord.AnalysisHolder[][] holders = new AnalysisRecord.AnalysisHolder[sorted.length][];
+
+        // indexes into sorted of the intervals that contain the current record
+        int[] active = new int[sorted.length];
+        int activeCount = 0;
+        int next = 0;
+
+        double[] values = new double[fieldCount];
+
+        for (DataRecord dataRecord : span) {
+            long time = dataRecord.getTime();
+
+            // start intervals
+            while ((next < sorted.length) && (getStart(sorted[next].getInterval()) <= time)) {
+                Interval interval = sorted[next].getInterval();
+
+                // skip intervals that ended before this record; they have no data
+                if (getEnd(interval) >= time) {
+                    AnalysisRecord.AnalysisHolder[] intervalHolders = new AnalysisRecord.AnalysisHolder[fieldCount];
+                    long startTime = Math.max(interval.getStart(), data.getStartTime());
+
+                    for (int f = 0; f < fieldCount; f++) {
+                        if (typesToAnalyze[f] != null) {
+                            intervalHolders[f] = new AnalysisRecord.AnalysisHolder(granularity, startTime,
+                                    expectedCount);
+                        }
+                    }
+
+                    holders[next] = intervalHolders;
+                    active[activeCount++] = next;
+                }
+
+                ++next;
+            }
+
+            // end intervals
+            int remaining = 0;
+
+            for (int i = 0; i < activeCount; i++) {
+                if (getEnd(sorted[active[i]].getInterval()) >= time) {
+                    active[remaining++] = active[i];
+                }
+            }
+
+            activeCount = remaining;
+
+            if (activeCount == 0) {
+                continue;
+            }
+
+            for (int f = 0; f < fieldCount; f++) {
+                if (typesToAnalyze[f] != null) {
+                    values[f] = AnalysisRecord.getValue(dataRecord, typesToAnalyze[f], fieldIndexes[f],
+                            isProcess[f]);
+                }
+                else {
+                    values[f] = Double.NaN;
+                }
+            }
+
+            for (int i = 0; i < activeCount; i++) {
+                AnalysisRecord.AnalysisHolder[] intervalHolders = holders[active[i]];
+
+                for (int f = 0; f < fieldCount; f++) {
+                    if (!Double.isNaN(values[f])) {
+                        intervalHolders[f].add(time, values[f]);
+                    }
+                }
+            }
+        }
+
+        for (int r = 0; r < sorted.length; r++) {
+            AnalysisRecord record = sorted[r];
+            AnalysisRecord.AnalysisHolder[] intervalHolders = holders[r];
+
+            for (int f = 0; f < fieldCount; f++) {
+                AnalysisRecord.AnalysisHolder holder = null;
+
+                if ((intervalHolders == null) || (intervalHolders[f] == null)) {
+                    // interval with no data or a type / field not in the DataSet
+                    holder = new AnalysisRecord.AnalysisHolder(granularity, 0, 0);
+                    holder.setMissing();
+                }
+                else {
+                    holder = intervalHolders[f];
+                    holder.finish();
+                }
+
+                record.setAnalysis(keys[f], holder);
+            }
+        }
+    }
+
+    // Interval.DEFAULT covers all data, regardless of the times
+    private static long getStart(Interval interval) {
+        return Interval.DEFAULT.equals(interval) ? Long.MIN_VALUE : interval.getStart();
+    }
+
+    private static long getEnd(Interval interval) {
+        return Interval.DEFAULT.equals(interval) ? Long.MAX_VALUE : interval.getEnd();
+    }
+}
@@ -0,0 +1,458 @@
+package com.ibm.nmon.analysis;
+
+import org.slf4j.Logger;
+
+import java.lang.ref.SoftReference;
+
+import java.util.Map;
+
+import com.ibm.nmon.data.DataRecord;
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataType;
+
+import com.ibm.nmon.interval.Interval;
+
+/**
+ * <p>
+ * An index over the values of a DataSet that allows statistics for <em>any</em> Interval to be
+ * calculated without rescanning and sorting the data. This is useful when the current interval
+ * changes often, for example when the user is editing intervals in the GUI.
+ * </p>
+ *
+ * <p>
+ * Each field is indexed the first time it is analyzed, in a single pass over the data. After
+ * that, the count, sum, average and standard deviation come from prefix sums; the minimum and
+ * maximum from segment trees and the median and percentiles from a wavelet matrix. All of these
+ * are logarithmic in the number of values. The granularity maximum depends on the exact record
+ * times, so it is still calculated with a linear pass, but only over the primitive values in the
+ * interval.
+ * </p>
+ *
+ * <p>
+ * Percentiles, minimums and maximums are exact. Sums and standard deviations are calculated from
+ * differences of running totals, so they can differ from {@link AnalysisRecord}'s direct
+ * calculations in the last few bits.
+ * </p>
+ *
+ * <p>
+ * Field indexes are held as SoftReferences and are rebuilt if the DataSet's records change.
+ * </p>
+ *
+ * @see AnalysisRecord#setIndex(IntervalIndex)
+ */
+public final class IntervalIndex {
+    private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(IntervalIndex.class);
+
+    // 2^27 + 1, for splitting doubles into two 26 bit halves
+    private static final double SPLITTER = 134217729.0d;
+
+    private final DataSet data;
+
+    private final Map<String, SoftReference<FieldIndex>> fields =
+            new java.util.HashMap<String, SoftReference<FieldIndex>>();
+
+    // state of the DataSet when the field indexes were built; any changes invalidate all of them
+    private int recordCount = -1;
+    private long startTime;
+    private long endTime;
+
+    public IntervalIndex(DataSet data) {
+        if (data == null) {
+            throw new IllegalArgumentException("data" + " cannot be null");
+        }
+
+        this.data = data;
+    }
+
+    public DataSet getDataSet() {
+        return data;
+    }
+
+    /**
+     * Analyze a field that exists in the DataSet.
+     */
+    AnalysisRecord.AnalysisHolder analyze(DataType typeToAnalyze, String fieldName, boolean isProcess,
+            Interval interval, int granularity) {
+        if (data.getRecordCount() == 0) {
+            AnalysisRecord.AnalysisHolder holder = new AnalysisRecord.AnalysisHolder(granularity);
+            holder.setMissing();
+
+            return holder;
+        }
+
+        if ((recordCount != data.getRecordCount()) || (startTime != data.getStartTime())
+                || (endTime != data.getEndTime())) {
+            fields.clear();
+
+            recordCount = data.getRecordCount();
+            startTime = data.getStartTime();
+            endTime = data.getEndTime();
+        }
+
+        String key = typeToAnalyze.getKey(fieldName);
+        SoftReference<FieldIndex> indexRef = fields.get(key);
+        FieldIndex index = indexRef == null ? null : indexRef.get();
+
+        if (index == null) {
+            long startT = System.nanoTime();
+
+            index = new FieldIndex(data, typeToAnalyze, typeToAnalyze.getFieldIndex(fieldName), isProcess);
+            fields.put(key, new SoftReference<FieldIndex>(index));
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("{}: {}-{} indexed {} values in {}ms", new Object[] { data, typeToAnalyze, fieldName,
+                        index.times.length, (System.nanoTime() - startT) / 1000000.0d });
+            }
+        }
+
+        int from = 0;
+        int to = index.times.length;
+
+        if (!Interval.DEFAULT.equals(interval)) {
+            from = lowerBound(index.times, interval.getStart(), false);
+            to = lowerBound(index.times, interval.getEnd(), true);
+        }
+
+        AnalysisRecord.AnalysisHolder holder = new AnalysisRecord.AnalysisHolder(granularity);
+
+        if (from >= to) {
+            // file has data, but not for the given interval
+            holder.setMissing();
+            return holder;
+        }
+
+        int count = to - from;
+
+        holder.count = count;
+
+        double[] sum = range(index.sumHigh, index.sumLow, from, to);
+        double[] sumSquares = range(index.squareHigh, index.squareLow, from, to);
+
+        holder.sum = sum[0];
+        holder.average = holder.sum / count;
+
+        // variance = (count * sum of squares - sum^2) / count^2
+        // calculate the numerator with double-doubles so there is no cancellation for small ranges
+        double a = sumSquares[0] * count;
+        double aLow = productError(sumSquares[0], count, a) + (sumSquares[1] * count);
+        double b = sum[0] * sum[0];
+        double bLow = productError(sum[0], sum[0], b) + (2 * sum[0] * sum[1]);
+        double difference = a - b;
+        double differenceLow = sumError(a, -b, difference) + (aLow - bLow);
+
+        holder.standardDeviation = Math.sqrt(Math.max(0, (difference + differenceLow) / ((double) count * count)));
+
+        holder.minimum = index.minimum(from, to);
+        holder.maximum = index.maximum(from, to);
+
+        holder.median = calculatePercentile(.5, index, from, to);
+        holder.percentile95 = calculatePercentile(.95, index, from, to);
+        holder.percentile99 = calculatePercentile(.99, index, from, to);
+
+        // same logic as AnalysisHolder.add()
+        long lastGranularityTime = Math.max(interval.getStart(), data.getStartTime());
+        int countSinceLastGranularity = 0;
+        double granularityTotal = 0;
+
+        for (int i = from; i < to; i++) {
+            ++countSinceLastGranularity;
+            granularityTotal += index.values[i];
+
+            if ((index.times[i] - lastGranularityTime) >= granularity) {
+                double peakAverage = granularityTotal / countSinceLastGranularity;
+
+                if (peakAverage > holder.granularityMaximum) {
+                    holder.granularityMaximum = peakAverage;
+                }
+
+                countSinceLastGranularity = 0;
+                granularityTotal = 0;
+
+                lastGranularityTime = index.times[i];
+            }
+        }
+
+        return holder;
+    }
+
+    // same as AnalysisRecord.calculatePercentile() but selecting from the index rather than sorting
+    private static double calculatePercentile(double percentile, FieldIndex index, int from, int to) {
+        double n = (to - from) * percentile;
+        int idx = (int) n;
+
+        if ((n - idx) == 0) {
+            return (index.select(from, to, idx) + index.select(from, to, idx - 1)) / 2;
+        }
+        else {
+            return index.select(from, to, idx);
+        }
+    }
+
+    // double-double sum of the values in [from, to); high part first
+    private static double[] range(double[] high, double[] low, int from, int to) {
+        double s = high[to] - high[from];
+        double e = sumError(high[to], -high[from], s) + (low[to] - low[from]);
+        double sum = s + e;
+
+        return new double[] { sum, e - (sum - s) };
+    }
+
+    // high[i + 1] + low[i + 1] = high[i] + low[i] + value + error
+    private static void accumulate(double[] high, double[] low, int i, double value, double error) {
+        double s = high[i] + value;
+        double e = sumError(high[i], value, s) + low[i] + error;
+
+        high[i + 1] = s + e;
+        low[i + 1] = e - (high[i + 1] - s);
+    }
+
+    // error free transformations, i.e. (a + b) - s and (a * b) - p exactly
+    private static double sumError(double a, double b, double s) {
+        double bVirtual = s - a;
+
+        return (a - (s - bVirtual)) + (b - bVirtual);
+    }
+
+    private static double productError(double a, double b, double p) {
+        double c = SPLITTER * a;
+        double aHigh = c - (c - a);
+        double aLow = a - aHigh;
+
+        c = SPLITTER * b;
+        double bHigh = c - (c - b);
+        double bLow = b - bHigh;
+
+        return (((aHigh * bHigh) - p) + (aHigh * bLow) + (aLow * bHigh)) + (aLow * bLow);
+    }
+
+    // index of the first time greater than (or equal to, if not inclusive) the given time
+    private static int lowerBound(long[] times, long time, boolean inclusive) {
+        int low = 0;
+        int high = times.length;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if ((times[mid] < time) || (inclusive && (times[mid] == time))) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    private static final class FieldIndex {
+        // all the non-NaN values and their times, in time order
+        final long[] times;
+        final double[] values;
+
+        // prefix sums of the values and their squares, as double-doubles
+        final double[] sumHigh;
+        final double[] sumLow;
+        final double[] squareHigh;
+        final double[] squareLow;
+
+        // implicit binary trees; leaves start at values.length
+        private final double[] minimums;
+        private final double[] maximums;
+
+        // wavelet matrix over the ranks of the values
+        private final double[] distinctValues;
+        private final long[][] bits;
+        private final int[][] ranks;
+        private final int[] zeroCounts;
+
+        FieldIndex(DataSet data, DataType typeToAnalyze, int fieldIndex, boolean isProcess) {
+            long[] times = new long[data.getRecordCount()];
+            double[] values = new double[data.getRecordCount()];
+            int n = 0;
+
+            for (DataRecord dataRecord : data.getRecords()) {
+                double value = AnalysisRecord.getValue(dataRecord, typeToAnalyze, fieldIndex, isProcess);
+
+                if (!Double.isNaN(value)) {
+                    times[n] = dataRecord.getTime();
+                    values[n] = value;
+                    ++n;
+                }
+            }
+
+            this.times = java.util.Arrays.copyOf(times, n);
+            this.values = java.util.Arrays.copyOf(values, n);
+
+            sumHigh = new double[n + 1];
+            sumLow = new double[n + 1];
+            squareHigh = new double[n + 1];
+            squareLow = new double[n + 1];
+
+            for (int i = 0; i < n; i++) {
+                double value = values[i];
+                double square = value * value;
+
+                accumulate(sumHigh, sumLow, i, value, 0);
+                accumulate(squareHigh, squareLow, i, square, productError(value, value, square));
+            }
+
+            minimums = new double[2 * n];
+            maximums = new double[2 * n];
+
+            System.arraycopy(this.values, 0, minimums, n, n);
+            System.arraycopy(this.values, 0, maximums, n, n);
+
+            for (int i = n - 1; i > 0; i--) {
+                minimums[i] = min(minimums[2 * i], minimums[(2 * i) + 1]);
+                maximums[i] = max(maximums[2 * i], maximums[(2 * i) + 1]);
+            }
+
+            double[] sorted = java.util.Arrays.copyOf(this.values, n);
+            java.util.Arrays.sort(sorted);
+
+            int distinct = 0;
+
+            for (int i = 0; i < n; i++) {
+                if ((distinct == 0) || (Double.compare(sorted[i], sorted[distinct - 1]) != 0)) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+
+            distinctValues = java.util.Arrays.copyOf(sorted, distinct);
+
+            int levels = distinct <= 1 ? 1 : 32 - Integer.numberOfLeadingZeros(distinct - 1);
+
+            bits = new long[levels][];
+            ranks = new int[levels][];
+            zeroCounts = new int[levels];
+
+            int[] current = new int[n];
+            int[] next = new int[n];
+
+            for (int i = 0; i < n; i++) {
+                current[i] = java.util.Arrays.binarySearch(distinctValues, this.values[i]);
+            }
+
+            // level 0 holds the highest bit; each level stably partitions zeros before ones
+            for (int level = 0; level < levels; level++) {
+                int bit = levels - 1 - level;
+                long[] levelBits = new long[(n >>> 6) + 1];
+                int zeros = 0;
+
+                for (int i = 0; i < n; i++) {
+                    if (((current[i] >>> bit) & 1) == 0) {
+                        ++zeros;
+                    }
+                    else {
+                        levelBits[i >>> 6] |= 1L << (i & 63);
+                    }
+                }
+
+                int[] levelRanks = new int[levelBits.length];
+
+                for (int w = 1; w < levelBits.length; w++) {
+                    levelRanks[w] = levelRanks[w - 1] + Long.bitCount(levelBits[w - 1]);
+                }
+
+                int z = 0;
+                int o = zeros;
+
+                for (int i = 0; i < n; i++) {
+                    if (((current[i] >>> bit) & 1) == 0) {
+                        next[z++] = current[i];
+                    }
+                    else {
+                        next[o++] = current[i];
+                    }
+                }
+
+                bits[level] = levelBits;
+                ranks[level] = levelRanks;
+                zeroCounts[level] = zeros;
+
+                int[] temp = current;
+                current = next;
+                next = temp;
+            }
+        }
+
+        double minimum(int from, int to) {
+            int n = values.length;
+            // start with the same values as AnalysisHolder and keep the earliest value on ties so
+            // the result always matches a linear scan
+            double left = Double.MAX_VALUE;
+            double right = Double.MAX_VALUE;
+
+            for (int l = from + n, r = to + n; l < r; l >>>= 1, r >>>= 1) {
+                if ((l & 1) == 1) {
+                    left = min(left, minimums[l++]);
+                }
+
+                if ((r & 1) == 1) {
+                    right = min(minimums[--r], right);
+                }
+            }
+
+            return min(left, right);
+        }
+
+        double maximum(int from, int to) {
+            int n = values.length;
+            double left = Double.MIN_VALUE;
+            double right = Double.MIN_VALUE;
+
+            for (int l = from + n, r = to + n; l < r; l >>>= 1, r >>>= 1) {
+                if ((l & 1) == 1) {
+                    left = max(left, maximums[l++]);
+                }
+
+                if ((r & 1) == 1) {
+                    right = max(maximums[--r], right);
+                }
+            }
+
+            return max(left, right);
+        }
+
+        /**
+         * @return the k-th smallest value, starting at 0, in the range [from, to)
+         */
+        double select(int from, int to, int k) {
+            int rank = 0;
+
+            for (int level = 0; level < bits.length; level++) {
+                int onesFrom = rank(level, from);
+                int onesTo = rank(level, to);
+                int zerosFrom = from - onesFrom;
+                int zerosTo = to - onesTo;
+
+                if (k < (zerosTo - zerosFrom)) {
+                    from = zerosFrom;
+                    to = zerosTo;
+                }
+                else {
+                    k -= zerosTo - zerosFrom;
+                    rank |= 1 << (bits.length - 1 - level);
+
+                    from = zeroCounts[level] + onesFrom;
+                    to = zeroCounts[level] + onesTo;
+                }
+            }
+
+            return distinctValues[rank];
+        }
+
+        // number of ones before position i
+        private int rank(int level, int i) {
+            return ranks[level][i >>> 6] + Long.bitCount(bits[level][i >>> 6] & ((1L << (i & 63)) - 1));
+        }
+
+        private static double min(double first, double second) {
+            return second < first ? second : first;
+        }
+
+        private static double max(double first, double second) {
+            return second > first ? second : first;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.ibm.nmon.analysis;
+
+/**
+ * <p>
+ * A log-linear histogram of non-negative integer values, in the style of HdrHistogram. Values less
+ * than 2048 are counted exactly. Larger values are grouped into buckets that are 1/1024th of
+ * their power of two, so any reported value is within 0.1% of a recorded value.
+ * </p>
+ *
+ * <p>
+ * Recording a value is constant time and does not allocate once the histogram has grown to cover
+ * the largest value seen. Histograms can be {@link #clear() cleared} and reused.
+ * </p>
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 11;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS; // 2048
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1; // 1024
+
+    private long[] counts = new long[SUB_BUCKET_COUNT];
+    // highest index with a non-zero count; used to limit scans and clears
+    private int maxIndex = -1;
+
+    private long count;
+    private double sum;
+    private long min;
+    private long max;
+
+    public LatencyHistogram() {
+        clear();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("value" + " cannot be negative");
+        }
+
+        int idx = indexOf(value);
+
+        if (idx >= counts.length) {
+            counts = java.util.Arrays.copyOf(counts, Math.max(idx + 1, counts.length + SUB_BUCKET_HALF_COUNT));
+        }
+
+        ++counts[idx];
+
+        if (idx > maxIndex) {
+            maxIndex = idx;
+        }
+
+        ++count;
+        sum += value;
+
+        if (value < min) {
+            min = value;
+        }
+
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getAverage() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public double getMinimum() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double getMaximum() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Get the value at the given percentile, i.e. the smallest recorded value where at least
+     * <code>percentile</code> percent of all values are less than or equal to it.
+     *
+     * @param percentile a value between 0 and 100
+     *
+     * @return the highest value equivalent to the bucket that contains the percentile, limited to
+     *         the maximum recorded value; <code>NaN</code> if the histogram is empty
+     */
+    public double getPercentile(double percentile) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+
+        if (percentile <= 0) {
+            return min;
+        }
+
+        long target = (long) Math.ceil(Math.min(percentile, 100) / 100 * count);
+
+        if (target < 1) {
+            target = 1;
+        }
+
+        long total = 0;
+
+        for (int i = 0; i <= maxIndex; i++) {
+            total += counts[i];
+
+            if (total >= target) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+
+        return max;
+    }
+
+    /**
+     * Reset this histogram to empty.
+     */
+    public void clear() {
+        if (maxIndex >= 0) {
+            java.util.Arrays.fill(counts, 0, maxIndex + 1, 0);
+        }
+
+        maxIndex = -1;
+
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        else {
+            // shift so the value is between 1024 and 2047
+            int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+
+            return SUB_BUCKET_COUNT + ((shift - 1) * SUB_BUCKET_HALF_COUNT)
+                    + (int) ((value >>> shift) - SUB_BUCKET_HALF_COUNT);
+        }
+    }
+
+    private static long highestEquivalentValue(int idx) {
+        if (idx < SUB_BUCKET_COUNT) {
+            return idx;
+        }
+        else {
+            int shift = ((idx - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT) + 1;
+            long subBucket = ((idx - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT) + SUB_BUCKET_HALF_COUNT;
+
+            return ((subBucket + 1) << shift) - 1;
+        }
+    }
+}
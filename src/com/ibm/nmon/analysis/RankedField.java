@@ -0,0 +1,42 @@
+package com.ibm.nmon.analysis;
+
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataType;
+
+/**
+ * A single field and its value, as ranked by {@link FieldRanker}.
+ */
+public final class RankedField {
+    private final DataSet data;
+    private final DataType type;
+    private final String field;
+    private final double value;
+
+    RankedField(DataSet data, DataType type, String field, double value) {
+        this.data = data;
+        this.type = type;
+        this.field = field;
+        this.value = value;
+    }
+
+    public DataSet getDataSet() {
+        return data;
+    }
+
+    public DataType getType() {
+        return type;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return data.getHostname() + ' ' + type + ' ' + field + '=' + value;
+    }
+}
@@ -2,6 +2,8 @@ package com.ibm.nmon.data;
 
 import java.util.Map;
 
+import com.ibm.nmon.util.DataHelper;
+
 public class BasicDataSet extends DataSet {
     private final Map<String, String> metadata = new java.util.HashMap<String, String>();
 
@@ -23,7 +25,7 @@ public class BasicDataSet extends DataSet {
             throw new IllegalArgumentException("hostname cannot be null");
         }
 
-        metadata.put("hostname", hostname);
+        metadata.put("hostname", DataHelper.intern(hostname));
     }
 
     public String getSourceFile() {
@@ -48,7 +50,7 @@ public class BasicDataSet extends DataSet {
 
     public final void setMetadata(String name, String value) {
         if ((name != null) && !"".equals(name) && (value != null) && !"".equals(value)) {
-            metadata.put(name, value);
+            metadata.put(DataHelper.intern(name), DataHelper.intern(value));
         }
     }
 }
@@ -0,0 +1,54 @@
+package com.ibm.nmon.data;
+
+/**
+ * A virtual system that combines the data from a number of other systems into a single set of time series. Unlike
+ * other data sets, the data is not parsed but calculated, and all of it is replaced whenever the systems that make up
+ * the cluster change.
+ *
+ * @see com.ibm.nmon.analysis.ClusterAggregator
+ */
+public final class ClusterDataSet extends SystemDataSet {
+    private int systemCount;
+    private long bucketSize;
+
+    public ClusterDataSet(String name) {
+        super(name);
+    }
+
+    /**
+     * @return the number of systems that were combined to create the current data
+     */
+    public int getSystemCount() {
+        return systemCount;
+    }
+
+    /**
+     * @return the time span, in milliseconds, of each record
+     */
+    public long getBucketSize() {
+        return bucketSize;
+    }
+
+    /**
+     * Replace all the types and records in this data set.
+     */
+    public void setData(int systemCount, long bucketSize, Iterable<DataType> types, Iterable<DataRecord> records) {
+        clearData();
+
+        for (DataType type : types) {
+            addType(type);
+        }
+
+        for (DataRecord record : records) {
+            addRecord(record);
+        }
+
+        this.systemCount = systemCount;
+        this.bucketSize = bucketSize;
+    }
+
+    @Override
+    public String getSourceFile() {
+        return systemCount + (systemCount == 1 ? " system" : " systems");
+    }
+}
@@ -1,10 +1,14 @@
 package com.ibm.nmon.data;
 
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 import java.util.Set;
 
 import com.ibm.nmon.interval.Interval;
 
+import com.ibm.nmon.data.matcher.TypeMatcher;
+
 /**
  * <p>
  * A container for all the data in a single parsed file.
@@ -58,6 +62,9 @@ public abstract class DataSet implements Comparable<DataSet> {
     // associate data with each timestamp
     private final TreeMap<Long, DataRecord> data = new TreeMap<Long, DataRecord>();
 
+    // TypeMatcher results; cleared whenever types are added or removed
+    private final Map<TypeMatcher, List<DataType>> matchingTypes = new java.util.HashMap<TypeMatcher, List<DataType>>();
+
     public abstract String getHostname();
 
     public abstract void setHostname(String hostname);
@@ -72,6 +79,7 @@ public abstract class DataSet implements Comparable<DataSet> {
             }
             else {
                 dataTypes.put(type.getId(), type);
+                clearMatchingTypes();
             }
         }
     }
@@ -80,9 +88,31 @@ public abstract class DataSet implements Comparable<DataSet> {
     final void removeType(DataType type) {
         if (type != null) {
             dataTypes.remove(type.getId());
+            clearMatchingTypes();
         }
     }
 
+    /**
+     * Remove the given type from this data set along with all the data recorded for it.
+     */
+    public final void removeTypeAndData(DataType type) {
+        if (type != null) {
+            for (DataRecord record : data.values()) {
+                record.removeData(type);
+            }
+
+            removeType(type);
+        }
+    }
+
+    // for data sets that are recalculated rather than parsed; removes all types and records
+    final void clearData() {
+        dataTypes.clear();
+        data.clear();
+
+        clearMatchingTypes();
+    }
+
     public final boolean containsType(String typeId) {
         return dataTypes.containsKey(typeId);
     }
@@ -102,6 +132,33 @@ public abstract class DataSet implements Comparable<DataSet> {
         return dataTypes.size();
     }
 
+    /**
+     * Get the DataTypes in this data set that match the given matcher. Matching every type can be expensive for data
+     * sets with a large number of types, so results are cached until types are added or removed. This method can be
+     * called concurrently from multiple threads.
+     * 
+     * @return an unmodifiable list of the matching types
+     */
+    public final List<DataType> getMatchingTypes(TypeMatcher matcher) {
+        synchronized (matchingTypes) {
+            List<DataType> types = matchingTypes.get(matcher);
+
+            if (types == null) {
+                types = java.util.Collections.unmodifiableList(matcher.getMatchingTypes(this));
+                matchingTypes.put(matcher, types);
+            }
+
+            return types;
+        }
+    }
+
+    // matchers can depend on other state, like processes, so subclasses can also clear the cache
+    final void clearMatchingTypes() {
+        synchronized (matchingTypes) {
+            matchingTypes.clear();
+        }
+    }
+
     public final void addRecord(DataRecord record) {
         if (record != null) {
             data.put(record.getTime(), record);
@@ -4,6 +4,10 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import com.ibm.nmon.data.matcher.FieldMatcher;
+
+import com.ibm.nmon.util.DataHelper;
+
 /**
  * <p>
  * A DataType defines the field (column) names for a row of parsed data. Each DataType has a short
@@ -31,6 +35,9 @@ public class DataType {
     // map field names to unique keys so type/field combos can be used efficiently in hashmaps
     private final Map<String, String> fieldKeys;
 
+    // FieldMatcher results; created on first use since most types are never matched
+    private Map<FieldMatcher, List<String>> matchingFields;
+
     public DataType(String id, String name, String... fields) {
         if ((id == null) || id.equals("")) {
             throw new IllegalArgumentException("id" + " cannot be empty");
@@ -48,17 +55,24 @@ public class DataType {
             throw new IllegalArgumentException("fields" + " cannot be empty");
         }
 
-        this.id = id;
-        this.name = name;
-        this.orderedFields = java.util.Collections.unmodifiableList(Arrays.asList(fields));
+        // field names are usually the same for every system, so share them
+        String[] interned = new String[fields.length];
 
-        this.fields = new java.util.HashMap<String, Integer>(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            interned[i] = DataHelper.intern(fields[i]);
+        }
+
+        this.id = DataHelper.intern(id);
+        this.name = DataHelper.intern(name);
+        this.orderedFields = java.util.Collections.unmodifiableList(Arrays.asList(interned));
+
+        this.fields = new java.util.HashMap<String, Integer>(interned.length);
 
         for (int i = 0; i < orderedFields.size(); i++) {
             this.fields.put(orderedFields.get(i), i);
         }
 
-        this.fieldKeys = new java.util.HashMap<String, String>(fields.length);
+        this.fieldKeys = new java.util.HashMap<String, String>(interned.length);
     }
 
     public final String getId() {
@@ -97,15 +111,38 @@ public class DataType {
     }
 
     public final String getKey(String field) {
-        String key = fieldKeys.get(field);
+        synchronized (fieldKeys) {
+            String key = fieldKeys.get(field);
+
+            if (key == null) {
+                getFieldIndex(field); // throws error on invalid field
+                key = getId() + ':' + field;
+                fieldKeys.put(field, key);
+            }
+
+            return key;
+        }
+    }
+
+    /**
+     * Get the fields in this type that match the given matcher. Fields cannot change, so the results are cached. This
+     * method can be called concurrently from multiple threads.
+     * 
+     * @return an unmodifiable list of the matching fields
+     */
+    public final synchronized List<String> getMatchingFields(FieldMatcher matcher) {
+        if (matchingFields == null) {
+            matchingFields = new java.util.HashMap<FieldMatcher, List<String>>(4);
+        }
+
+        List<String> toReturn = matchingFields.get(matcher);
 
-        if (key == null) {
-            getFieldIndex(field); // throws error on invalid field
-            key = getId() + ':' + field;
-            fieldKeys.put(field, key);
+        if (toReturn == null) {
+            toReturn = java.util.Collections.unmodifiableList(matcher.getMatchingFields(this));
+            matchingFields.put(matcher, toReturn);
         }
 
-        return key;
+        return toReturn;
     }
 
     @Override
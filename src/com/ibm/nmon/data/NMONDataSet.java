@@ -2,6 +2,8 @@ package com.ibm.nmon.data;
 
 import java.util.Map;
 
+import com.ibm.nmon.util.DataHelper;
+
 public final class NMONDataSet extends ProcessDataSet {
     private final Map<String, String> metadata = new java.util.TreeMap<String, String>();
     private final Map<String, String> systemInfo = new java.util.TreeMap<String, String>();
@@ -23,7 +25,7 @@ public final class NMONDataSet extends ProcessDataSet {
             throw new IllegalArgumentException("hostname cannot be null");
         }
 
-        metadata.put("host", hostname);
+        metadata.put("host", DataHelper.intern(hostname));
     }
 
     public String getSourceFile() {
@@ -70,7 +72,7 @@ public final class NMONDataSet extends ProcessDataSet {
 
     public void setMetadata(String name, String value) {
         if ((name != null) && !"".equals(name) && (value != null) && !"".equals(value)) {
-            metadata.put(name, value);
+            metadata.put(DataHelper.intern(name), DataHelper.intern(value));
         }
     }
 }
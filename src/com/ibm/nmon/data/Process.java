@@ -1,5 +1,11 @@
 package com.ibm.nmon.data;
 
+import java.lang.ref.SoftReference;
+
+import com.ibm.nmon.util.CompactString;
+import com.ibm.nmon.util.DataHelper;
+import com.ibm.nmon.util.Interner;
+
 /**
  * <p>
  * A class that stores data for a single operating system process. Processes have an id, name,
@@ -12,11 +18,17 @@ package com.ibm.nmon.data;
  * </p>
  */
 public final class Process implements Comparable<Process> {
+    // the same command lines are repeated for every system; longer ones are also stored as single byte strings
+    private static final Interner<CharSequence> COMMAND_LINES = new Interner<CharSequence>();
+    private static final int COMPACT_LENGTH = 64;
+
     // note Process with id of -1 is used to represent an aggregate of all processes with the given
     // name; it is treated differently in terms of id, equals and hashcode
     private final int id;
     private final String name;
-    private String commandLine;
+    private CharSequence commandLine;
+    // CompactString command lines are decoded when read and kept until memory is needed
+    private SoftReference<String> decodedCommandLine;
     private final long startTime;
     private long endTime = Long.MAX_VALUE;
 
@@ -29,7 +41,7 @@ public final class Process implements Comparable<Process> {
     public Process(int id, long startTime, String name, String typeName) {
         this.id = id;
         this.startTime = startTime;
-        this.name = name;
+        this.name = DataHelper.intern(name);
         this.commandLine = "";
 
         if (id == -1) {
@@ -49,16 +61,64 @@ public final class Process implements Comparable<Process> {
     }
 
     public void setCommandLine(String commandLine) {
-        if (commandLine == null) {
+        decodedCommandLine = null;
+
+        if ((commandLine == null) || "".equals(commandLine)) {
             this.commandLine = "";
         }
+        else if (commandLine.length() < COMPACT_LENGTH) {
+            this.commandLine = DataHelper.intern(commandLine);
+        }
         else {
-            this.commandLine = commandLine;
+            CompactString compact = CompactString.valueOf(commandLine);
+
+            // fall back to the original when there are characters outside of ISO-8859-1
+            this.commandLine = COMMAND_LINES.intern(compact == null ? commandLine : compact);
         }
     }
 
     public String getCommandLine() {
-        return commandLine;
+        if (commandLine instanceof String) {
+            return (String) commandLine;
+        }
+
+        String decoded = decodedCommandLine == null ? null : decodedCommandLine.get();
+
+        if (decoded == null) {
+            decoded = commandLine.toString();
+            decodedCommandLine = new SoftReference<String>(decoded);
+        }
+
+        return decoded;
+    }
+
+    public boolean isCommandLineEmpty() {
+        return commandLine.length() == 0;
+    }
+
+    /**
+     * Compare the command line without decoding it to a String.
+     */
+    public boolean commandLineEquals(String toCompare) {
+        if (toCompare == null) {
+            return false;
+        }
+
+        if (commandLine instanceof String) {
+            return commandLine.equals(toCompare);
+        }
+
+        if (commandLine.length() != toCompare.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < toCompare.length(); i++) {
+            if (commandLine.charAt(i) != toCompare.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     public long getStartTime() {
@@ -118,7 +178,8 @@ public final class Process implements Comparable<Process> {
             return name.hashCode();
         }
         else {
-            return ((id * 17) << 16) & ((int) (startTime ^ (startTime >>> 32)));
+            // xor, not and; and-ing zeroes most bits so processes with the same start time collide
+            return ((id * 17) << 16) ^ ((int) (startTime ^ (startTime >>> 32)));
         }
     }
 
@@ -7,6 +7,7 @@ public abstract class ProcessDataSet extends DataSet {
 
     public final void addProcess(Process process) {
         processes.add(process);
+        clearMatchingTypes();
     }
 
     public final Iterable<Process> getProcesses() {
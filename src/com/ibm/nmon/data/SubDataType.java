@@ -1,5 +1,7 @@
 package com.ibm.nmon.data;
 
+import com.ibm.nmon.util.DataHelper;
+
 /**
  * A DataType that defines a secondary identifier. The primary and secondary ids are combined so
  * that calls to <code>getId()</code> return a combination of both ids.
@@ -19,7 +21,7 @@ public final class SubDataType extends DataType {
             throw new IllegalArgumentException("subId" + " cannot be empty");
         }
 
-        this.subId = subId;
+        this.subId = DataHelper.intern(subId);
 
         if (displayPrimaryId) {
             this.asString = this.id; // same as buildId();
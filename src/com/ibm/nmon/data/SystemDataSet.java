@@ -13,7 +13,7 @@ import com.ibm.nmon.interval.Interval;
  * Parsed files are identified by the {@link DataSet#getStartTime() start time} of the file, so
  * these times should be unique.
  */
-public final class SystemDataSet extends ProcessDataSet {
+public class SystemDataSet extends ProcessDataSet {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(SystemDataSet.class);
 
     private final TreeMap<Long, Map<String, String>> systemInfo = new TreeMap<Long, Map<String, String>>();
@@ -29,7 +29,7 @@ public abstract class DataDefinition {
         };
 
         public List<DataType> getMatchingTypes(DataSet data) {
-            return TypeMatcher.ALL.getMatchingTypes(data);
+            return data == null ? TypeMatcher.ALL.getMatchingTypes(data) : data.getMatchingTypes(TypeMatcher.ALL);
         };
 
         public List<String> getMatchingFields(DataType type) {
@@ -117,12 +117,22 @@ public final class DefaultDataDefinition extends DataDefinition {
 
     @Override
     public List<DataType> getMatchingTypes(DataSet data) {
-        return typeMatcher.getMatchingTypes(data);
+        if (data == null) {
+            return java.util.Collections.emptyList();
+        }
+        else {
+            return data.getMatchingTypes(typeMatcher);
+        }
     }
 
     @Override
     public List<String> getMatchingFields(DataType type) {
-        return fieldMatcher.getMatchingFields(type);
+        if (type == null) {
+            return java.util.Collections.emptyList();
+        }
+        else {
+            return type.getMatchingFields(fieldMatcher);
+        }
     }
 
     @Override
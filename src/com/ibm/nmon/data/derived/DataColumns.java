@@ -0,0 +1,90 @@
+package com.ibm.nmon.data.derived;
+
+import java.util.Map;
+
+import com.ibm.nmon.data.DataRecord;
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataType;
+
+/**
+ * Column oriented view of a single DataSet used while evaluating {@link Expression expressions}. Each field is copied
+ * out of the records into a single array the first time it is needed and then reused by all the expressions that
+ * reference it. Records that have no data for a type have <code>NaN</code> values.
+ */
+final class DataColumns {
+    private final DataSet data;
+    private final DataRecord[] records;
+
+    // type id:field key to values
+    private final Map<String, double[]> columns = new java.util.HashMap<String, double[]>();
+    private final Map<Double, double[]> constants = new java.util.HashMap<Double, double[]>();
+
+    DataColumns(DataSet data) {
+        this.data = data;
+
+        java.util.List<DataRecord> records = new java.util.ArrayList<DataRecord>(data.getRecordCount());
+
+        for (DataRecord record : data.getRecords()) {
+            records.add(record);
+        }
+
+        this.records = records.toArray(new DataRecord[records.size()]);
+    }
+
+    int getRecordCount() {
+        return records.length;
+    }
+
+    DataRecord getRecord(int index) {
+        return records[index];
+    }
+
+    DataType getType(String typeId) {
+        return data.getType(typeId);
+    }
+
+    Iterable<DataType> getTypes() {
+        return data.getTypes();
+    }
+
+    double[] getColumn(DataType type, int field) {
+        String key = type.getKey(type.getField(field));
+        double[] values = columns.get(key);
+
+        if (values == null) {
+            values = new double[records.length];
+
+            for (int i = 0; i < records.length; i++) {
+                DataRecord record = records[i];
+
+                if (record.hasData(type)) {
+                    values[i] = record.getData(type)[field];
+                }
+                else {
+                    values[i] = Double.NaN;
+                }
+            }
+
+            columns.put(key, values);
+        }
+
+        return values;
+    }
+
+    double[] getConstant(double value) {
+        double[] values = constants.get(value);
+
+        if (values == null) {
+            values = new double[records.length];
+            java.util.Arrays.fill(values, value);
+
+            constants.put(value, values);
+        }
+
+        return values;
+    }
+
+    int getLoadedColumnCount() {
+        return columns.size();
+    }
+}
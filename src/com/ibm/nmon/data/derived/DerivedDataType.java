@@ -0,0 +1,21 @@
+package com.ibm.nmon.data.derived;
+
+import com.ibm.nmon.data.DataType;
+
+/**
+ * A DataType whose data is computed from other types in the same data set by a {@link DerivedMetric}, rather than
+ * being parsed. The data for these types is replaced whenever the {@link DerivedMetricManager} recalculates it.
+ */
+public final class DerivedDataType extends DataType {
+    private final DerivedMetric metric;
+
+    DerivedDataType(DerivedMetric metric) {
+        super(metric.getId(), metric.getName(), metric.getFields().toArray(new String[0]));
+
+        this.metric = metric;
+    }
+
+    public DerivedMetric getMetric() {
+        return metric;
+    }
+}
@@ -0,0 +1,89 @@
+package com.ibm.nmon.data.derived;
+
+import java.util.List;
+
+/**
+ * <p>
+ * A user defined metric that is computed from the existing data in a data set. Each metric defines a single
+ * {@link DerivedDataType} with one or more fields. Each field is defined by an expression over other fields, for
+ * example <code>{MEM:memfree} / {MEM:memtotal} * 100</code> or <code>max({CPU*:User%})</code>.
+ * </p>
+ *
+ * <p>
+ * Expressions support <code>+ - * /</code>, parentheses, numeric constants and the aggregate functions
+ * <code>sum</code>, <code>avg</code>, <code>min</code>, <code>max</code> and <code>count</code>. Aggregates combine
+ * all their arguments for each record; arguments can use <code>*</code> and <code>?</code> wildcards in the type or
+ * field names to select multiple fields, e.g. <code>sum({DISKBUSY:*})</code>.
+ * </p>
+ *
+ * @see ExpressionParser
+ */
+public final class DerivedMetric {
+    private final String id;
+    private final String name;
+
+    private final List<String> fields = new java.util.ArrayList<String>(2);
+    private final List<String> expressionText = new java.util.ArrayList<String>(2);
+    private final List<Expression> expressions = new java.util.ArrayList<Expression>(2);
+
+    public DerivedMetric(String id, String name) {
+        if ((id == null) || id.equals("")) {
+            throw new IllegalArgumentException("id" + " cannot be empty");
+        }
+
+        this.id = id;
+        this.name = ((name == null) || name.equals("")) ? id : name;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Add a field to this metric.
+     *
+     * @throws IllegalArgumentException if the field already exists or the expression is not valid
+     */
+    public void addField(String field, String expression) {
+        if ((field == null) || field.equals("")) {
+            throw new IllegalArgumentException("field" + " cannot be empty");
+        }
+
+        if (fields.contains(field)) {
+            throw new IllegalArgumentException("metric " + id + " already has a field named " + field);
+        }
+
+        Expression parsed = ExpressionParser.parse(expression);
+
+        fields.add(field);
+        expressionText.add(expression);
+        expressions.add(parsed);
+    }
+
+    public List<String> getFields() {
+        return java.util.Collections.unmodifiableList(fields);
+    }
+
+    public String getExpression(String field) {
+        int idx = fields.indexOf(field);
+
+        return idx == -1 ? null : expressionText.get(idx);
+    }
+
+    int getFieldCount() {
+        return fields.size();
+    }
+
+    Expression getExpression(int field) {
+        return expressions.get(field);
+    }
+
+    @Override
+    public String toString() {
+        return id;
+    }
+}
@@ -0,0 +1,304 @@
+package com.ibm.nmon.data.derived;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+
+import java.lang.ref.WeakReference;
+
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.nmon.data.DataRecord;
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataType;
+
+/**
+ * <p>
+ * A manager for {@link DerivedMetric derived metrics}. Maintains an ordered set of metrics and applies them to data sets
+ * by adding a {@link DerivedDataType} for each metric.
+ * </p>
+ *
+ * <p>
+ * Metrics are computed over whole data sets, a column at a time. Only the fields referenced by the metrics are read
+ * from the data set and each field is only read once, no matter how many metrics use it. Metrics are applied in the
+ * order they were added, so a metric can reference any metric added before it. Metrics that do not reference any data
+ * in a data set are not added to it.
+ * </p>
+ *
+ * <p>
+ * Applying metrics to a data set that has not changed since the last time they were applied does nothing, so it is
+ * safe to call {@link #apply(DataSet)} whenever data may have been added to a data set. All methods in this class are
+ * thread safe.
+ * </p>
+ */
+public final class DerivedMetricManager {
+    private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(DerivedMetricManager.class);
+
+    private final Map<String, DerivedMetric> metrics = new java.util.LinkedHashMap<String, DerivedMetric>();
+
+    // incremented whenever metrics change so data sets are recalculated
+    private int version = 0;
+
+    // the state of each data set the last time metrics were applied
+    // not a WeakHashMap because DataSet equality is based on mutable data and not identity
+    private final List<AppliedState> applied = new java.util.LinkedList<AppliedState>();
+
+    public synchronized void addMetric(DerivedMetric metric) {
+        if (metric != null) {
+            // remove first so the updated metric is applied after any metrics it depends on
+            metrics.remove(metric.getId());
+            metrics.put(metric.getId(), metric);
+            ++version;
+
+            LOGGER.debug("added " + "derived metric {}", metric.getId());
+        }
+    }
+
+    public synchronized boolean removeMetric(String id) {
+        if (metrics.remove(id) != null) {
+            ++version;
+            LOGGER.debug("removed " + "derived metric {}", id);
+
+            return true;
+        }
+        else {
+            return false;
+        }
+    }
+
+    public synchronized void clearMetrics() {
+        if (!metrics.isEmpty()) {
+            metrics.clear();
+            ++version;
+
+            LOGGER.debug("derived metrics cleared");
+        }
+    }
+
+    public synchronized DerivedMetric getMetric(String id) {
+        return metrics.get(id);
+    }
+
+    public synchronized List<DerivedMetric> getMetrics() {
+        return java.util.Collections.unmodifiableList(new java.util.ArrayList<DerivedMetric>(metrics.values()));
+    }
+
+    public synchronized int getMetricCount() {
+        return metrics.size();
+    }
+
+    /**
+     * Parse a metric definition file and add all its metrics to this manager.
+     *
+     * @return the metrics defined in the file
+     * @see DerivedMetricParser
+     */
+    public List<DerivedMetric> loadFromFile(String filename) throws IOException {
+        List<DerivedMetric> loaded = new DerivedMetricParser().parseMetrics(filename);
+
+        synchronized (this) {
+            for (DerivedMetric metric : loaded) {
+                addMetric(metric);
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * Recalculate all the derived metrics for the given data set, replacing any previously derived data. Derived types
+     * for metrics that have since been removed are also removed.
+     *
+     * @return <code>true</code> if the data set's types or data were changed
+     */
+    public synchronized boolean apply(DataSet data) {
+        if (data == null) {
+            return false;
+        }
+
+        AppliedState state = getAppliedState(data);
+
+        if (state.isCurrent(data, version)) {
+            LOGGER.trace("derived metrics for {} are up to date", data);
+            return false;
+        }
+
+        long start = System.nanoTime();
+        boolean changed = false;
+
+        List<DataType> toRemove = new java.util.ArrayList<DataType>();
+
+        for (DataType type : data.getTypes()) {
+            if (type instanceof DerivedDataType) {
+                toRemove.add(type);
+            }
+        }
+
+        for (DataType type : toRemove) {
+            data.removeTypeAndData(type);
+            changed = true;
+        }
+
+        int added = 0;
+
+        if (!metrics.isEmpty() && (data.getRecordCount() > 0)) {
+            DataColumns columns = new DataColumns(data);
+
+            for (DerivedMetric metric : metrics.values()) {
+                if (addMetricData(metric, data, columns)) {
+                    ++added;
+                }
+            }
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("added {} of {} derived metrics to {} from {} fields in {}ms", new Object[] { added,
+                        metrics.size(), data, columns.getLoadedColumnCount(),
+                        (System.nanoTime() - start) / 1000000.0d });
+            }
+        }
+
+        state.update(data, version);
+
+        return changed || (added > 0);
+    }
+
+    private boolean addMetricData(DerivedMetric metric, DataSet data, DataColumns columns) {
+        if (data.containsType(metric.getId())) {
+            LOGGER.warn("cannot add derived metric {} to {}; a DataType with the same id already exists",
+                    metric.getId(), data);
+            return false;
+        }
+
+        int fieldCount = metric.getFieldCount();
+        double[][] values = new double[fieldCount][];
+        boolean resolved = false;
+
+        for (int i = 0; i < fieldCount; i++) {
+            values[i] = metric.getExpression(i).evaluate(columns);
+
+            if (values[i] != null) {
+                resolved = true;
+            }
+        }
+
+        if (!resolved) {
+            LOGGER.debug("not adding derived metric {} to {}; it does not reference any data in the data set",
+                    metric.getId(), data);
+            return false;
+        }
+
+        // transpose back to rows, skipping records where nothing could be calculated
+        int recordCount = columns.getRecordCount();
+        double[][] rows = new double[recordCount][];
+        boolean hasData = false;
+
+        for (int n = 0; n < recordCount; n++) {
+            double[] row = null;
+
+            for (int i = 0; i < fieldCount; i++) {
+                double value = values[i] == null ? Double.NaN : values[i][n];
+
+                if (!Double.isNaN(value)) {
+                    if (row == null) {
+                        row = new double[fieldCount];
+                        java.util.Arrays.fill(row, Double.NaN);
+                    }
+
+                    row[i] = value;
+                }
+            }
+
+            rows[n] = row;
+            hasData |= row != null;
+        }
+
+        if (!hasData) {
+            LOGGER.debug("not adding derived metric {} to {}; no values could be calculated", metric.getId(), data);
+            return false;
+        }
+
+        DerivedDataType type = new DerivedDataType(metric);
+        data.addType(type);
+
+        for (int n = 0; n < recordCount; n++) {
+            if (rows[n] != null) {
+                DataRecord record = columns.getRecord(n);
+                record.addData(type, rows[n]);
+            }
+        }
+
+        return true;
+    }
+
+    private AppliedState getAppliedState(DataSet data) {
+        AppliedState toReturn = null;
+
+        for (java.util.Iterator<AppliedState> i = applied.iterator(); i.hasNext();) {
+            AppliedState state = i.next();
+            DataSet existing = state.get();
+
+            if (existing == null) {
+                i.remove();
+            }
+            else if (existing == data) {
+                toReturn = state;
+            }
+        }
+
+        if (toReturn == null) {
+            toReturn = new AppliedState(data);
+            applied.add(toReturn);
+        }
+
+        return toReturn;
+    }
+
+    /**
+     * Approximates whether or not a data set has changed by its size, time range and number of non-derived types.
+     */
+    private static final class AppliedState extends WeakReference<DataSet> {
+        // -1 => never applied
+        private int version = -1;
+
+        private int recordCount;
+        private long startTime;
+        private long endTime;
+        private int typeCount;
+
+        AppliedState(DataSet data) {
+            super(data);
+        }
+
+        boolean isCurrent(DataSet data, int version) {
+            return (this.version == version) && (recordCount == data.getRecordCount())
+                    && (startTime == getStartTime(data)) && (endTime == data.getEndTime())
+                    && (typeCount == countTypes(data));
+        }
+
+        void update(DataSet data, int version) {
+            this.version = version;
+
+            recordCount = data.getRecordCount();
+            startTime = getStartTime(data);
+            endTime = data.getEndTime();
+            typeCount = countTypes(data);
+        }
+
+        private static long getStartTime(DataSet data) {
+            return data.getRecordCount() == 0 ? Long.MIN_VALUE : data.getStartTime();
+        }
+
+        private static int countTypes(DataSet data) {
+            int count = 0;
+
+            for (DataType type : data.getTypes()) {
+                if (!(type instanceof DerivedDataType)) {
+                    ++count;
+                }
+            }
+
+            return count;
+        }
+    }
+}
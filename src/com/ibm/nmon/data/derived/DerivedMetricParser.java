@@ -0,0 +1,134 @@
+package com.ibm.nmon.data.derived;
+
+import java.io.IOException;
+
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.nmon.parser.BasicXMLParser;
+
+/**
+ * <p>
+ * Parses derived metric definitions from XML. The format is:
+ * </p>
+ *
+ * <pre>
+ * &lt;metrics&gt;
+ *   &lt;metric id="DISKBUSY_TOTAL" name="Total Disk Busy"&gt;
+ *     &lt;field name="Total" expression="sum({DISKBUSY:*})" /&gt;
+ *     &lt;field name="Max" expression="max({DISKBUSY:*})" /&gt;
+ *   &lt;/metric&gt;
+ *   &lt;metric id="MEM_USED_PCT" name="Memory Used %"&gt;
+ *     &lt;field name="Used%" expression="100 - {MEM:memfree} / {MEM:memtotal} * 100" /&gt;
+ *   &lt;/metric&gt;
+ * &lt;/metrics&gt;
+ * </pre>
+ *
+ * <p>
+ * The metric id becomes the id of the {@link DerivedDataType}, so metrics can be charted like any other type, e.g.
+ * with <code>&lt;type name="DISKBUSY_TOTAL" /&gt;</code> in a chart definition. Invalid metrics and fields are logged
+ * and ignored.
+ * </p>
+ *
+ * @see DerivedMetric
+ */
+public final class DerivedMetricParser extends BasicXMLParser {
+    private final List<DerivedMetric> metrics = new java.util.ArrayList<DerivedMetric>();
+    private DerivedMetric currentMetric;
+
+    public DerivedMetricParser() {
+        reset();
+    }
+
+    public List<DerivedMetric> parseMetrics(String filename) throws IOException {
+        long start = System.nanoTime();
+
+        try {
+            parse(filename);
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("parse complete for file '{}' in {}ms", filename, (System.nanoTime() - start) / 1000000.0d);
+            }
+
+            if (metrics.isEmpty()) {
+                throw new IOException("metric definition file '" + filename
+                        + "' does not appear to have any metrics defined");
+            }
+
+            return java.util.Collections.unmodifiableList(new java.util.ArrayList<DerivedMetric>(metrics));
+        }
+        finally {
+            reset();
+        }
+    }
+
+    @Override
+    protected void startElement(String element, String unparsedAttributes) {
+        if ("metric".equals(element)) {
+            if (currentMetric != null) {
+                logger.warn("ignoring " + "nested " + "<metric>" + " element at line {}", getLineNumber());
+                return;
+            }
+
+            Map<String, String> attributes = parseAttributes(unparsedAttributes);
+
+            try {
+                currentMetric = new DerivedMetric(attributes.get("id"), attributes.get("name"));
+                skip = false;
+            }
+            catch (IllegalArgumentException iae) {
+                logger.warn("ignoring " + "<metric>" + " element at line {}: {}", getLineNumber(), iae.getMessage());
+                skip = true;
+            }
+        }
+        else if ("field".equals(element)) {
+            if (skip) {
+                return;
+            }
+
+            if (currentMetric == null) {
+                logger.warn("ignoring " + "<field>" + " element at line {} outside of a <metric>", getLineNumber());
+                return;
+            }
+
+            Map<String, String> attributes = parseAttributes(unparsedAttributes);
+
+            try {
+                currentMetric.addField(attributes.get("name"), attributes.get("expression"));
+            }
+            catch (IllegalArgumentException iae) {
+                logger.warn("ignoring " + "<field>" + " element for metric " + currentMetric.getId()
+                        + " at line {}: {}", getLineNumber(), iae.getMessage());
+            }
+        }
+        else if (!"metrics".equals(element)) {
+            logger.warn("ignoring " + "unknown element <{}> at line {}", element, getLineNumber());
+        }
+    }
+
+    @Override
+    protected void endElement(String element) {
+        if ("metric".equals(element)) {
+            if (currentMetric != null) {
+                if (currentMetric.getFields().isEmpty()) {
+                    logger.warn("ignoring " + "metric {} ending at line {}; it has no valid fields",
+                            currentMetric.getId(), getLineNumber());
+                }
+                else {
+                    metrics.add(currentMetric);
+                }
+            }
+
+            currentMetric = null;
+            skip = false;
+        }
+    }
+
+    @Override
+    protected void reset() {
+        super.reset();
+
+        metrics.clear();
+        currentMetric = null;
+    }
+}
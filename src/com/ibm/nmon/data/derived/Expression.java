@@ -0,0 +1,347 @@
+package com.ibm.nmon.data.derived;
+
+import java.util.List;
+
+import com.ibm.nmon.data.DataType;
+
+/**
+ * <p>
+ * A parsed derived metric expression. Expressions are evaluated a column at a time: each node produces an array with
+ * one value for every record in a data set rather than being evaluated record by record.
+ * </p>
+ *
+ * <p>
+ * Evaluation returns <code>null</code> if the expression references data that does not exist in the data set.
+ * Missing values for individual records are <code>NaN</code>.
+ * </p>
+ *
+ * @see ExpressionParser
+ */
+abstract class Expression {
+    /**
+     * @return the values for all records in the data set or <code>null</code> if the data does not exist. Returned
+     *         arrays may be shared with {@link DataColumns} and must not be modified by callers.
+     */
+    abstract double[] evaluate(DataColumns columns);
+
+    static final class Constant extends Expression {
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        double[] evaluate(DataColumns columns) {
+            return columns.getConstant(value);
+        }
+
+        @Override
+        public String toString() {
+            return Double.toString(value);
+        }
+    }
+
+    /**
+     * A single field in a single type, i.e. <code>{TYPE:field}</code>.
+     */
+    static final class FieldReference extends Expression {
+        private final String typeId;
+        private final String field;
+
+        FieldReference(String typeId, String field) {
+            this.typeId = typeId;
+            this.field = field;
+        }
+
+        @Override
+        double[] evaluate(DataColumns columns) {
+            DataType type = columns.getType(typeId);
+
+            if ((type == null) || !type.hasField(field)) {
+                return null;
+            }
+            else {
+                return columns.getColumn(type, type.getFieldIndex(field));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return '{' + typeId + ':' + field + '}';
+        }
+    }
+
+    /**
+     * Any number of fields selected with wildcards, i.e. <code>{DISKBUSY:*}</code> or <code>{CPU*:User%}</code>. Only
+     * valid as an argument to an {@link Aggregate}.
+     */
+    static final class Selection {
+        private final String typeId;
+        private final String field;
+
+        private final java.util.regex.Pattern typePattern;
+        private final java.util.regex.Pattern fieldPattern;
+
+        Selection(String typeId, String field) {
+            this.typeId = typeId;
+            this.field = field;
+
+            this.typePattern = toPattern(typeId);
+            this.fieldPattern = toPattern(field);
+        }
+
+        void addColumns(DataColumns columns, List<double[]> toAdd) {
+            for (DataType type : columns.getTypes()) {
+                // do not aggregate over other derived metrics; reference them explicitly instead
+                if ((type instanceof DerivedDataType) || !typePattern.matcher(type.getId()).matches()) {
+                    continue;
+                }
+
+                for (int i = 0; i < type.getFieldCount(); i++) {
+                    if (fieldPattern.matcher(type.getField(i)).matches()) {
+                        toAdd.add(columns.getColumn(type, i));
+                    }
+                }
+            }
+        }
+
+        // glob to regex; * matches any number of characters, ? matches any single character
+        private static java.util.regex.Pattern toPattern(String glob) {
+            StringBuilder regex = new StringBuilder(glob.length() + 16);
+            int literalStart = 0;
+
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+
+                if ((c == '*') || (c == '?')) {
+                    if (i > literalStart) {
+                        regex.append(java.util.regex.Pattern.quote(glob.substring(literalStart, i)));
+                    }
+
+                    regex.append(c == '*' ? ".*" : ".");
+                    literalStart = i + 1;
+                }
+            }
+
+            if (literalStart < glob.length()) {
+                regex.append(java.util.regex.Pattern.quote(glob.substring(literalStart)));
+            }
+
+            return java.util.regex.Pattern.compile(regex.toString());
+        }
+
+        @Override
+        public String toString() {
+            return '{' + typeId + ':' + field + '}';
+        }
+    }
+
+    static final class Binary extends Expression {
+        private final char operator;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(char operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double[] evaluate(DataColumns columns) {
+            double[] a = left.evaluate(columns);
+
+            if (a == null) {
+                return null;
+            }
+
+            double[] b = right.evaluate(columns);
+
+            if (b == null) {
+                return null;
+            }
+
+            double[] result = new double[a.length];
+
+            switch (operator) {
+            case '+':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = a[i] + b[i];
+                }
+                break;
+            case '-':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = a[i] - b[i];
+                }
+                break;
+            case '*':
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = a[i] * b[i];
+                }
+                break;
+            case '/':
+                for (int i = 0; i < result.length; i++) {
+                    // x / 0 is undefined rather than infinite so it is not charted
+                    result[i] = b[i] == 0 ? Double.NaN : a[i] / b[i];
+                }
+                break;
+            default:
+                throw new IllegalStateException("unknown operator " + operator);
+            }
+
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + ' ' + operator + ' ' + right + ')';
+        }
+    }
+
+    static final class Negate extends Expression {
+        private final Expression expression;
+
+        Negate(Expression expression) {
+            this.expression = expression;
+        }
+
+        @Override
+        double[] evaluate(DataColumns columns) {
+            double[] values = expression.evaluate(columns);
+
+            if (values == null) {
+                return null;
+            }
+
+            double[] result = new double[values.length];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = -values[i];
+            }
+
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "-" + expression;
+        }
+    }
+
+    /**
+     * A function that combines any number of columns into a single column, record by record. <code>NaN</code> values
+     * are ignored; if all the values for a record are <code>NaN</code>, the result for that record is also
+     * <code>NaN</code>.
+     */
+    static final class Aggregate extends Expression {
+        enum Function {
+            SUM, AVG, MIN, MAX, COUNT
+        }
+
+        private final Function function;
+        // either Expressions or Selections
+        private final List<Object> arguments;
+
+        Aggregate(Function function, List<Object> arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        @Override
+        double[] evaluate(DataColumns columns) {
+            List<double[]> inputs = new java.util.ArrayList<double[]>();
+
+            for (Object argument : arguments) {
+                if (argument instanceof Selection) {
+                    ((Selection) argument).addColumns(columns, inputs);
+                }
+                else {
+                    double[] values = ((Expression) argument).evaluate(columns);
+
+                    if (values != null) {
+                        inputs.add(values);
+                    }
+                }
+            }
+
+            if (inputs.isEmpty()) {
+                return null;
+            }
+
+            int length = columns.getRecordCount();
+
+            double[] result = new double[length];
+            int[] counts = new int[length];
+
+            switch (function) {
+            case MIN:
+                java.util.Arrays.fill(result, Double.POSITIVE_INFINITY);
+                break;
+            case MAX:
+                java.util.Arrays.fill(result, Double.NEGATIVE_INFINITY);
+                break;
+            default:
+                break;
+            }
+
+            // loop over columns then records so each input array is read sequentially
+            for (double[] values : inputs) {
+                for (int i = 0; i < length; i++) {
+                    double value = values[i];
+
+                    if (Double.isNaN(value)) {
+                        continue;
+                    }
+
+                    ++counts[i];
+
+                    switch (function) {
+                    case MIN:
+                        if (value < result[i]) {
+                            result[i] = value;
+                        }
+                        break;
+                    case MAX:
+                        if (value > result[i]) {
+                            result[i] = value;
+                        }
+                        break;
+                    default:
+                        result[i] += value;
+                    }
+                }
+            }
+
+            for (int i = 0; i < length; i++) {
+                if (counts[i] == 0) {
+                    result[i] = Double.NaN;
+                }
+                else if (function == Function.AVG) {
+                    result[i] /= counts[i];
+                }
+                else if (function == Function.COUNT) {
+                    result[i] = counts[i];
+                }
+            }
+
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(function.name().toLowerCase()).append('(');
+
+            for (int i = 0; i < arguments.size(); i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+
+                builder.append(arguments.get(i));
+            }
+
+            return builder.append(')').toString();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.ibm.nmon.data.derived;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Recursive descent parser for derived metric expressions. The grammar is:
+ * </p>
+ *
+ * <pre>
+ * expression := term (('+' | '-') term)*
+ * term       := unary (('*' | '/') unary)*
+ * unary      := '-' unary | primary
+ * primary    := number | '{' type ':' field '}' | function '(' argument (',' argument)* ')' | '(' expression ')'
+ * argument   := '{' typeGlob ':' fieldGlob '}' | expression
+ * function   := sum | avg | min | max | count
+ * </pre>
+ *
+ * <p>
+ * Type ids and field names are taken literally up to the first <code>':'</code> and the closing <code>'}'</code>,
+ * respectively, so they can contain spaces and operators. Wildcards (<code>*</code> and <code>?</code>) are only
+ * allowed in references that are direct arguments to a function. Function names are not case sensitive.
+ * </p>
+ */
+final class ExpressionParser {
+    private final String text;
+    private int position;
+
+    private ExpressionParser(String text) {
+        this.text = text;
+        this.position = 0;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    static Expression parse(String text) {
+        if ((text == null) || "".equals(text.trim())) {
+            throw new IllegalArgumentException("expression" + " cannot be empty");
+        }
+
+        ExpressionParser parser = new ExpressionParser(text);
+        Expression expression = parser.parseExpression();
+
+        parser.skipWhitespace();
+
+        if (parser.position < text.length()) {
+            throw parser.error("unexpected '" + text.charAt(parser.position) + '\'');
+        }
+
+        return expression;
+    }
+
+    private Expression parseExpression() {
+        Expression expression = parseTerm();
+
+        while (true) {
+            char c = peek();
+
+            if ((c == '+') || (c == '-')) {
+                ++position;
+                expression = new Expression.Binary(c, expression, parseTerm());
+            }
+            else {
+                return expression;
+            }
+        }
+    }
+
+    private Expression parseTerm() {
+        Expression expression = parseUnary();
+
+        while (true) {
+            char c = peek();
+
+            if ((c == '*') || (c == '/')) {
+                ++position;
+                expression = new Expression.Binary(c, expression, parseUnary());
+            }
+            else {
+                return expression;
+            }
+        }
+    }
+
+    private Expression parseUnary() {
+        if (peek() == '-') {
+            ++position;
+            return new Expression.Negate(parseUnary());
+        }
+        else {
+            return parsePrimary();
+        }
+    }
+
+    private Expression parsePrimary() {
+        char c = peek();
+
+        if (c == '(') {
+            ++position;
+            Expression expression = parseExpression();
+            expect(')');
+
+            return expression;
+        }
+        else if (c == '{') {
+            int start = position;
+            String[] reference = parseReference();
+
+            if (isGlob(reference[0]) || isGlob(reference[1])) {
+                position = start;
+                throw error("wildcards are only allowed in function arguments");
+            }
+
+            return new Expression.FieldReference(reference[0], reference[1]);
+        }
+        else if (((c >= '0') && (c <= '9')) || (c == '.')) {
+            return parseNumber();
+        }
+        else if (Character.isLetter(c)) {
+            return parseFunction();
+        }
+        else if (c == 0) {
+            throw error("unexpected end of expression");
+        }
+        else {
+            throw error("unexpected '" + c + '\'');
+        }
+    }
+
+    private Expression parseNumber() {
+        int start = position;
+
+        while (position < text.length()) {
+            char c = text.charAt(position);
+
+            if (((c >= '0') && (c <= '9')) || (c == '.')) {
+                ++position;
+            }
+            else if (((c == 'e') || (c == 'E')) && (position > start)) {
+                ++position;
+
+                // allow a signed exponent
+                if ((position < text.length()) && ((text.charAt(position) == '-') || (text.charAt(position) == '+'))) {
+                    ++position;
+                }
+            }
+            else {
+                break;
+            }
+        }
+
+        String number = text.substring(start, position);
+
+        try {
+            return new Expression.Constant(Double.parseDouble(number));
+        }
+        catch (NumberFormatException nfe) {
+            position = start;
+            throw error("invalid number '" + number + '\'');
+        }
+    }
+
+    private Expression parseFunction() {
+        int start = position;
+
+        while ((position < text.length()) && Character.isLetter(text.charAt(position))) {
+            ++position;
+        }
+
+        String name = text.substring(start, position);
+        Expression.Aggregate.Function function = null;
+
+        for (Expression.Aggregate.Function f : Expression.Aggregate.Function.values()) {
+            if (f.name().equalsIgnoreCase(name)) {
+                function = f;
+                break;
+            }
+        }
+
+        if (function == null) {
+            position = start;
+            throw error("unknown function '" + name + '\'');
+        }
+
+        expect('(');
+
+        List<Object> arguments = new java.util.ArrayList<Object>(2);
+
+        while (true) {
+            arguments.add(parseArgument());
+
+            char c = peek();
+
+            if (c == ',') {
+                ++position;
+            }
+            else if (c == ')') {
+                ++position;
+                break;
+            }
+            else {
+                throw error("expected ',' or ')'");
+            }
+        }
+
+        return new Expression.Aggregate(function, arguments);
+    }
+
+    private Object parseArgument() {
+        if (peek() == '{') {
+            int start = position;
+            String[] reference = parseReference();
+
+            // a glob selection must be the whole argument; otherwise it is part of a larger expression
+            char next = peek();
+
+            if ((next == ',') || (next == ')')) {
+                if (isGlob(reference[0]) || isGlob(reference[1])) {
+                    return new Expression.Selection(reference[0], reference[1]);
+                }
+            }
+
+            position = start;
+        }
+
+        return parseExpression();
+    }
+
+    // {type:field}; returns {type, field}
+    private String[] parseReference() {
+        expect('{');
+
+        int start = position;
+        int end = text.indexOf('}', position);
+
+        if (end == -1) {
+            throw error("missing '}'");
+        }
+
+        int separator = text.indexOf(':', position);
+
+        if ((separator == -1) || (separator > end)) {
+            throw error("reference must be in the form {type:field}");
+        }
+
+        String type = text.substring(start, separator).trim();
+        String field = text.substring(separator + 1, end).trim();
+
+        if ("".equals(type) || "".equals(field)) {
+            throw error("reference must be in the form {type:field}");
+        }
+
+        position = end + 1;
+
+        return new String[] { type, field };
+    }
+
+    private void expect(char c) {
+        if (peek() == c) {
+            ++position;
+        }
+        else {
+            throw error("expected '" + c + '\'');
+        }
+    }
+
+    // skip whitespace and return the next character without consuming it; 0 at the end of the expression
+    private char peek() {
+        skipWhitespace();
+
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private void skipWhitespace() {
+        while ((position < text.length()) && Character.isWhitespace(text.charAt(position))) {
+            ++position;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + (position + 1) + " in expression '" + text
+                + '\'');
+    }
+
+    private static boolean isGlob(String s) {
+        return (s.indexOf('*') != -1) || (s.indexOf('?') != -1);
+    }
+}
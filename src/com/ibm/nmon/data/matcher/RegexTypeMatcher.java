@@ -3,7 +3,6 @@ package com.ibm.nmon.data.matcher;
 import java.util.List;
 
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 import com.ibm.nmon.data.DataSet;
 import com.ibm.nmon.data.DataType;
@@ -12,10 +11,11 @@ import com.ibm.nmon.data.DataType;
  * Matches a set of {@link DataType DataTypes} based on a regular expression.
  */
 public final class RegexTypeMatcher implements TypeMatcher {
-    private final Matcher matcher;
+    // Patterns are thread safe, Matchers are not
+    private final Pattern pattern;
 
     public RegexTypeMatcher(String regex) {
-        matcher = Pattern.compile(regex).matcher("");
+        pattern = Pattern.compile(regex);
     }
 
     @Override
@@ -28,7 +28,7 @@ public final class RegexTypeMatcher implements TypeMatcher {
 
             for (DataType type : data.getTypes()) {
                 // note matching on toString, not typeId
-                if (matcher.reset(type.toString()).matches()) {
+                if (pattern.matcher(type.toString()).matches()) {
                     toReturn.add(type);
                 }
             }
@@ -39,12 +39,12 @@ public final class RegexTypeMatcher implements TypeMatcher {
 
     @Override
     public String toString() {
-        return matcher.pattern().pattern();
+        return pattern.pattern();
     }
 
     @Override
     public int hashCode() {
-        return matcher.pattern().pattern().hashCode();
+        return pattern.pattern().hashCode();
     }
 
     @Override
@@ -55,7 +55,7 @@ public final class RegexTypeMatcher implements TypeMatcher {
         else if (obj instanceof RegexTypeMatcher) {
             RegexTypeMatcher matcher = (RegexTypeMatcher) obj;
 
-            return this.matcher.pattern().pattern().equals(matcher.matcher.pattern().pattern());
+            return this.pattern.pattern().equals(matcher.pattern.pattern());
         }
         else {
             return false;
@@ -0,0 +1,18 @@
+package com.ibm.nmon.data.resample;
+
+/**
+ * How the values in a single {@link TimeGrid} bucket are combined when resampling. <code>NaN</code> values are ignored
+ * by all policies; buckets with no values are always <code>NaN</code>.
+ */
+public enum ResamplePolicy {
+    /** The average of all the values in the bucket. Suitable for rates and utilizations. */
+    MEAN,
+    /** The latest value in the bucket. Suitable for gauges and counters. */
+    LAST,
+    /** The smallest value in the bucket. */
+    MIN,
+    /** The largest value in the bucket. Suitable for peaks. */
+    MAX,
+    /** The total of all the values in the bucket. Suitable for event counts. */
+    SUM;
+}
@@ -0,0 +1,136 @@
+package com.ibm.nmon.data.resample;
+
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataType;
+
+/**
+ * <p>
+ * The data from a single {@link DataSet} projected onto a {@link TimeGrid}. Data is stored by column: for each type,
+ * there is an array of values for each field with one value per bucket. Buckets with no data are <code>NaN</code>.
+ * Only types that have data in at least one bucket are included.
+ * </p>
+ *
+ * <p>
+ * The arrays returned by this class are not copied and should not be modified.
+ * </p>
+ *
+ * @see Resampler
+ */
+public final class ResampledData {
+    private final DataSet data;
+    private final TimeGrid grid;
+
+    // [field][bucket] for each type
+    private final Map<DataType, double[][]> columns;
+    private final Map<DataType, ResamplePolicy> policies;
+    private final Map<String, DataType> typesById;
+
+    // true if any type has data in the bucket
+    private final boolean[] hasData;
+
+    ResampledData(DataSet data, TimeGrid grid, Map<DataType, double[][]> columns,
+            Map<DataType, ResamplePolicy> policies, boolean[] hasData) {
+        this.data = data;
+        this.grid = grid;
+        this.columns = columns;
+        this.policies = policies;
+        this.hasData = hasData;
+
+        this.typesById = new java.util.HashMap<String, DataType>(columns.size());
+
+        for (DataType type : columns.keySet()) {
+            typesById.put(type.getId(), type);
+        }
+    }
+
+    public DataSet getDataSet() {
+        return data;
+    }
+
+    public TimeGrid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return the types with data, in the order they were resampled
+     */
+    public List<DataType> getTypes() {
+        return java.util.Collections.unmodifiableList(new java.util.ArrayList<DataType>(columns.keySet()));
+    }
+
+    public int getTypeCount() {
+        return columns.size();
+    }
+
+    public DataType getType(String typeId) {
+        return typesById.get(typeId);
+    }
+
+    public boolean containsType(DataType type) {
+        return columns.containsKey(type);
+    }
+
+    public ResamplePolicy getPolicy(DataType type) {
+        return policies.get(type);
+    }
+
+    /**
+     * @return the values for all the fields of the type, indexed by [field][bucket] or <code>null</code> if the type
+     *         has no data
+     */
+    public double[][] getValues(DataType type) {
+        return columns.get(type);
+    }
+
+    /**
+     * @return the values for the field, one per bucket, or <code>null</code> if the type or field has no data
+     */
+    public double[] getValues(DataType type, String field) {
+        double[][] values = columns.get(type);
+
+        if ((values == null) || !type.hasField(field)) {
+            return null;
+        }
+
+        return values[type.getFieldIndex(field)];
+    }
+
+    /**
+     * @return the value of the field in the given bucket; <code>NaN</code> if there is no data
+     */
+    public double getValue(DataType type, String field, int bucket) {
+        double[] values = getValues(type, field);
+
+        return values == null ? Double.NaN : values[bucket];
+    }
+
+    /**
+     * @return <code>true</code> if any type has data in the given bucket
+     */
+    public boolean hasData(int bucket) {
+        return hasData[bucket];
+    }
+
+    /**
+     * @return the number of buckets with data
+     */
+    public int getBucketCount() {
+        int count = 0;
+
+        for (boolean b : hasData) {
+            if (b) {
+                ++count;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return data + " " + grid;
+    }
+}
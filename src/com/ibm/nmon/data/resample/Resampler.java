@@ -0,0 +1,231 @@
+package com.ibm.nmon.data.resample;
+
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+
+import com.ibm.nmon.data.DataRecord;
+import com.ibm.nmon.data.DataSet;
+import com.ibm.nmon.data.DataType;
+
+import com.ibm.nmon.interval.Interval;
+
+/**
+ * <p>
+ * Projects the data in a {@link DataSet} onto a {@link TimeGrid}. All the values for a field in each bucket are
+ * combined into a single value using a {@link ResamplePolicy}. Policies can be set per type id; all other types use the
+ * default policy.
+ * </p>
+ *
+ * <p>
+ * Resampling reads each record in the grid once. The output uses memory proportional to the grid size and the number
+ * of fields with data, not the number of records in the data set. This makes it possible to align data sets with
+ * different or irregular intervals, e.g. NMON and iostat data for the same system, or data from multiple systems,
+ * without creating records for every distinct timestamp.
+ * </p>
+ */
+public final class Resampler {
+    private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(Resampler.class);
+
+    private final ResamplePolicy defaultPolicy;
+    private final Map<String, ResamplePolicy> policies = new java.util.HashMap<String, ResamplePolicy>();
+
+    public Resampler() {
+        this(ResamplePolicy.MEAN);
+    }
+
+    public Resampler(ResamplePolicy defaultPolicy) {
+        if (defaultPolicy == null) {
+            throw new IllegalArgumentException("defaultPolicy" + " cannot be null");
+        }
+
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    public ResamplePolicy getDefaultPolicy() {
+        return defaultPolicy;
+    }
+
+    /**
+     * Set the policy for all types with the given id. A <code>null</code> policy reverts to the default.
+     */
+    public void setPolicy(String typeId, ResamplePolicy policy) {
+        if (policy == null) {
+            policies.remove(typeId);
+        }
+        else {
+            policies.put(typeId, policy);
+        }
+    }
+
+    public ResamplePolicy getPolicy(DataType type) {
+        ResamplePolicy policy = policies.get(type.getId());
+
+        return policy == null ? defaultPolicy : policy;
+    }
+
+    public ResampledData resample(DataSet data, TimeGrid grid) {
+        return resample(data, grid, data.getTypes());
+    }
+
+    /**
+     * Resample the given types. Types are matched by id, so the types do not have to come from the data set itself.
+     * Types that the data set does not contain or that have no data in the grid are not included in the result.
+     */
+    public ResampledData resample(DataSet data, TimeGrid grid, Iterable<DataType> types) {
+        long start = System.nanoTime();
+
+        List<DataType> toResample = new java.util.ArrayList<DataType>();
+
+        for (DataType type : types) {
+            DataType dataType = data.getType(type.getId());
+
+            if ((dataType != null) && !toResample.contains(dataType)) {
+                toResample.add(dataType);
+            }
+        }
+
+        int typeCount = toResample.size();
+        int size = grid.size();
+
+        ResamplePolicy[] typePolicies = new ResamplePolicy[typeCount];
+
+        // [type][field][bucket]; created on first use so types with no data in the grid use no memory
+        double[][][] values = new double[typeCount][][];
+        // only used for MEAN
+        int[][][] counts = new int[typeCount][][];
+
+        boolean[] typeHasData = new boolean[typeCount];
+        boolean[] hasData = new boolean[size];
+
+        for (int t = 0; t < typeCount; t++) {
+            typePolicies[t] = getPolicy(toResample.get(t));
+        }
+
+        int recordCount = 0;
+
+        if ((typeCount > 0) && (data.getRecordCount() > 0)) {
+            // subMap is inclusive, so this may include one record past the end of the grid
+            Interval interval = new Interval(grid.getStart(), grid.getEnd() + grid.getStep());
+
+            for (DataRecord record : data.getRecords(interval)) {
+                int bucket = grid.indexOf(record.getTime());
+
+                if (bucket == -1) {
+                    continue;
+                }
+
+                ++recordCount;
+
+                for (int t = 0; t < typeCount; t++) {
+                    DataType type = toResample.get(t);
+
+                    if (!record.hasData(type)) {
+                        continue;
+                    }
+
+                    if (values[t] == null) {
+                        values[t] = createColumns(type.getFieldCount(), size);
+
+                        if (typePolicies[t] == ResamplePolicy.MEAN) {
+                            counts[t] = new int[type.getFieldCount()][size];
+                        }
+                    }
+
+                    if (accumulate(typePolicies[t], record.getData(type), values[t], counts[t], bucket)) {
+                        typeHasData[t] = true;
+                        hasData[bucket] = true;
+                    }
+                }
+            }
+        }
+
+        Map<DataType, double[][]> columns = new java.util.LinkedHashMap<DataType, double[][]>();
+        Map<DataType, ResamplePolicy> columnPolicies = new java.util.HashMap<DataType, ResamplePolicy>();
+
+        for (int t = 0; t < typeCount; t++) {
+            // records with only NaN values still create columns
+            if (!typeHasData[t]) {
+                continue;
+            }
+
+            if (counts[t] != null) {
+                for (int f = 0; f < values[t].length; f++) {
+                    double[] column = values[t][f];
+                    int[] count = counts[t][f];
+
+                    for (int b = 0; b < size; b++) {
+                        if (count[b] > 1) {
+                            column[b] /= count[b];
+                        }
+                    }
+                }
+            }
+
+            columns.put(toResample.get(t), values[t]);
+            columnPolicies.put(toResample.get(t), typePolicies[t]);
+        }
+
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("resampled {} records for {} types from {} onto {} in {}ms", new Object[] { recordCount,
+                    columns.size(), data, grid, (System.nanoTime() - start) / 1000000.0d });
+        }
+
+        return new ResampledData(data, grid, columns, columnPolicies, hasData);
+    }
+
+    private static double[][] createColumns(int fieldCount, int size) {
+        double[][] columns = new double[fieldCount][size];
+
+        for (double[] column : columns) {
+            java.util.Arrays.fill(column, Double.NaN);
+        }
+
+        return columns;
+    }
+
+    // NaN in the output => no values in the bucket yet
+    private static boolean accumulate(ResamplePolicy policy, double[] recordData, double[][] values, int[][] counts,
+            int bucket) {
+        boolean accumulated = false;
+
+        for (int f = 0; f < recordData.length; f++) {
+            double value = recordData[f];
+
+            if (Double.isNaN(value)) {
+                continue;
+            }
+
+            double current = values[f][bucket];
+
+            switch (policy) {
+            case MEAN:
+                ++counts[f][bucket];
+                values[f][bucket] = Double.isNaN(current) ? value : current + value;
+                break;
+            case SUM:
+                values[f][bucket] = Double.isNaN(current) ? value : current + value;
+                break;
+            case LAST:
+                // records are sorted by time
+                values[f][bucket] = value;
+                break;
+            case MIN:
+                if (Double.isNaN(current) || (value < current)) {
+                    values[f][bucket] = value;
+                }
+                break;
+            case MAX:
+                if (Double.isNaN(current) || (value > current)) {
+                    values[f][bucket] = value;
+                }
+                break;
+            }
+
+            accumulated = true;
+        }
+
+        return accumulated;
+    }
+}
@@ -0,0 +1,166 @@
+package com.ibm.nmon.data.resample;
+
+import com.ibm.nmon.data.DataSet;
+
+/**
+ * <p>
+ * A fixed size set of consecutive time buckets. Bucket <code>i</code> contains all the times from
+ * <code>getTime(i)</code>, inclusive, to <code>getTime(i + 1)</code>, exclusive. The start of the grid is always a
+ * multiple of the step, so grids with the same step line up with each other, no matter what data they were created
+ * for.
+ * </p>
+ *
+ * <p>
+ * Since bucket times are calculated rather than stored, a grid uses the same amount of memory regardless of its size.
+ * </p>
+ */
+public final class TimeGrid {
+    private final long start;
+    private final long step;
+    private final int size;
+
+    /**
+     * @param start the first time to include in the grid; the grid starts at the closest multiple of the step less than
+     *            or equal to this value
+     * @param end the last time to include in the grid
+     * @param step the size of each bucket in milliseconds
+     */
+    public TimeGrid(long start, long end, long step) {
+        if (step <= 0) {
+            throw new IllegalArgumentException("step" + " must be greater than 0");
+        }
+
+        if (end < start) {
+            throw new IllegalArgumentException("end" + " must be greater than or equal to " + "start");
+        }
+
+        this.step = step;
+        this.start = align(start, step);
+
+        long size = ((end - this.start) / step) + 1;
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("a step of " + step + "ms creates too many buckets");
+        }
+
+        this.size = (int) size;
+    }
+
+    /**
+     * Create a grid that contains all the records in all the given data sets.
+     *
+     * @throws IllegalArgumentException if none of the data sets have any data
+     */
+    public static TimeGrid covering(Iterable<? extends DataSet> dataSets, long step) {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+
+        for (DataSet data : dataSets) {
+            if (data.getRecordCount() > 0) {
+                start = Math.min(start, data.getStartTime());
+                end = Math.max(end, data.getEndTime());
+            }
+        }
+
+        if (end == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("no data to create a grid for");
+        }
+
+        return new TimeGrid(start, end, step);
+    }
+
+    public static TimeGrid covering(DataSet data, long step) {
+        return covering(java.util.Collections.singletonList(data), step);
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the start of the last bucket
+     */
+    public long getEnd() {
+        return start + ((size - 1) * step);
+    }
+
+    public long getStep() {
+        return step;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the start of the given bucket
+     */
+    public long getTime(int index) {
+        if ((index < 0) || (index >= size)) {
+            throw new IndexOutOfBoundsException("index " + index + " must be between 0 and " + (size - 1));
+        }
+
+        return start + (index * step);
+    }
+
+    /**
+     * @return the index of the bucket that contains the given time or -1 if the time is not in the grid
+     */
+    public int indexOf(long time) {
+        if (time < start) {
+            return -1;
+        }
+
+        long index = (time - start) / step;
+
+        return index < size ? (int) index : -1;
+    }
+
+    /**
+     * @return the offset of this grid's first bucket in the given grid or <code>Integer.MIN_VALUE</code> if the grids
+     *         do not line up
+     */
+    public int offsetIn(TimeGrid grid) {
+        if ((grid.step != step) || (((start - grid.start) % step) != 0)) {
+            return Integer.MIN_VALUE;
+        }
+
+        long offset = (start - grid.start) / step;
+
+        if ((offset > Integer.MAX_VALUE) || (offset <= Integer.MIN_VALUE)) {
+            return Integer.MIN_VALUE;
+        }
+
+        return (int) offset;
+    }
+
+    // round down to a multiple of step, including negative times
+    private static long align(long time, long step) {
+        return time - (((time % step) + step) % step);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        else if (obj instanceof TimeGrid) {
+            TimeGrid grid = (TimeGrid) obj;
+
+            return (this.start == grid.start) && (this.step == grid.step) && (this.size == grid.size);
+        }
+        else {
+            return false;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return ((int) (start ^ (start >>> 32)) * 31 + (int) (step ^ (step >>> 32))) * 31 + size;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeGrid[start=" + start + ", step=" + step + ", size=" + size + ']';
+    }
+}
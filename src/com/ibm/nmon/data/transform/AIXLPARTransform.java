@@ -5,7 +5,7 @@ import com.ibm.nmon.data.DataType;
 /**
  * Changes the EC_Idle% and VP_Idle% metric for AIX LPARs to CPU% (i.e. Usr% + Sys%).
  */
-public final class AIXLPARTransform implements DataTransform {
+public final class AIXLPARTransform implements BindableDataTransform {
     @Override
     public DataType buildDataType(String id, String subId, String name, String... fields) {
         String[] newFields = null;
@@ -77,4 +77,77 @@ public final class AIXLPARTransform implements DataTransform {
     public boolean isValidFor(String typeId, String subId) {
         return "LPAR".equals(typeId);
     }
+
+    // how each field is computed by the bound transform
+    private static final byte COPY = 0;
+    private static final byte EC_CPU = 1;
+    private static final byte VP_CPU = 2;
+    private static final byte UNFOLDED = 3;
+
+    @Override
+    public DataTransform bind(DataType type) {
+        final byte[] kinds = new byte[type.getFieldCount()];
+
+        // -1 => not used by this type
+        int ecUser = -1;
+        int ecSys = -1;
+        int vpUser = -1;
+        int vpSys = -1;
+        int virtualCPUs = -1;
+        int folded = -1;
+
+        for (int j = 0; j < kinds.length; j++) {
+            String field = type.getField(j);
+
+            if (field.equals("EC" + "_CPU%")) {
+                kinds[j] = EC_CPU;
+                ecUser = type.getFieldIndex("EC" + "_User%");
+                ecSys = type.getFieldIndex("EC" + "_Sys%");
+            }
+            else if (field.equals("VP" + "_CPU%")) {
+                kinds[j] = VP_CPU;
+                vpUser = type.getFieldIndex("VP" + "_User%");
+                vpSys = type.getFieldIndex("VP" + "_Sys%");
+            }
+            else if (field.equals("Unfolded")) {
+                kinds[j] = UNFOLDED;
+                virtualCPUs = type.getFieldIndex("virtualCPUs");
+                folded = type.getFieldIndex("Folded");
+            }
+            else {
+                kinds[j] = COPY;
+            }
+        }
+
+        final int[] indexes = new int[] { ecUser, ecSys, vpUser, vpSys, virtualCPUs, folded,
+                type.getFieldIndex("poolCPUs"), type.getFieldIndex("PoolIdle"), type.getFieldIndex("PhysicalCPU") };
+
+        return new BoundTransform(this) {
+            @Override
+            public double[] transform(DataType type, double[] data) {
+                double[] newData = new double[kinds.length];
+
+                for (int i = 0, j = 0; i < data.length; i++, j++) {
+                    switch (kinds[j]) {
+                        case EC_CPU:
+                            newData[j] = data[indexes[0]] + data[indexes[1]];
+                            break;
+                        case VP_CPU:
+                            newData[j] = data[indexes[2]] + data[indexes[3]];
+                            break;
+                        case UNFOLDED:
+                            newData[j] = data[indexes[4]] - data[indexes[5]];
+                            i--;
+                            break;
+                        default:
+                            newData[j] = data[i];
+                    }
+                }
+
+                newData[newData.length - 1] = data[indexes[6]] - data[indexes[7]] - data[indexes[8]];
+
+                return newData;
+            }
+        };
+    }
 }
@@ -0,0 +1,22 @@
+package com.ibm.nmon.data.transform;
+
+import com.ibm.nmon.data.DataType;
+
+/**
+ * A DataTransform that can look up the fields it needs once for a given DataType rather than for every call to
+ * <code>transform</code>. Parsers that transform many records of the same type should call {@link #bind(DataType)}
+ * once per type and use the returned transform for every record of that type.
+ */
+public interface BindableDataTransform extends DataTransform {
+    /**
+     * Create a transform that is only valid for the given DataType. The returned transform ignores the type passed
+     * to <code>transform</code>.
+     * 
+     * @param type a DataType created by a previous call to <code>buildDataType</code>
+     * 
+     * @return a DataTransform with the same results as this one for the given DataType
+     * 
+     * @throws IllegalArgumentException if the DataType does not contain the fields needed by this transform
+     */
+    public DataTransform bind(DataType type);
+}
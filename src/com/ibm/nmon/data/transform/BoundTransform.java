@@ -0,0 +1,25 @@
+package com.ibm.nmon.data.transform;
+
+import com.ibm.nmon.data.DataType;
+
+/**
+ * Base class for transforms returned by {@link BindableDataTransform#bind(DataType)}. Delegates everything except
+ * <code>transform</code> to the original, unbound transform.
+ */
+abstract class BoundTransform implements DataTransform {
+    private final DataTransform unbound;
+
+    BoundTransform(DataTransform unbound) {
+        this.unbound = unbound;
+    }
+
+    @Override
+    public final DataType buildDataType(String id, String subId, String name, String... fields) {
+        return unbound.buildDataType(id, subId, name, fields);
+    }
+
+    @Override
+    public final boolean isValidFor(String typeId, String subId) {
+        return unbound.isValidFor(typeId, subId);
+    }
+}
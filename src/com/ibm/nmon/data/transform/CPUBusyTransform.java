@@ -6,7 +6,7 @@ import com.ibm.nmon.data.DataType;
  * Changes the Idle% metric for CPU measurements to CPU% (i.e. Usr% + Sys%). Also modifies the AIX
  * <code>PhysicalCPUs</code> value to <code>CPUs</code>, the same as Linux.
  */
-public final class CPUBusyTransform implements DataTransform {
+public final class CPUBusyTransform implements BindableDataTransform {
     @Override
     public DataType buildDataType(String id, String subId, String name, String... fields) {
         for (int i = 0; i < fields.length; i++) {
@@ -38,4 +38,20 @@ public final class CPUBusyTransform implements DataTransform {
     public boolean isValidFor(String typeId, String subId) {
         return typeId.startsWith("CPU");
     }
+
+    @Override
+    public DataTransform bind(DataType type) {
+        final int idx = type.getFieldIndex("CPU%");
+        final int user = type.getFieldIndex("User%");
+        final int sys = type.getFieldIndex("Sys%");
+
+        return new BoundTransform(this) {
+            @Override
+            public double[] transform(DataType type, double[] data) {
+                data[idx] = data[user] + data[sys];
+
+                return data;
+            }
+        };
+    }
 }
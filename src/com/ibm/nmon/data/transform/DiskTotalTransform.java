@@ -8,7 +8,7 @@ import com.ibm.nmon.util.DataHelper;
  * analyzed. This transform skips partitions under the assumption that there will be an already
  * existing parent disk metric that aggregates measurements for all the partitions in a disk.
  */
-public final class DiskTotalTransform implements DataTransform {
+public final class DiskTotalTransform implements BindableDataTransform {
     @Override
     public DataType buildDataType(String id, String subId, String name, String... fields) {
         String[] newFields = new String[fields.length + 1];
@@ -50,4 +50,43 @@ public final class DiskTotalTransform implements DataTransform {
     public boolean isValidFor(String typeId, String subId) {
         return typeId.startsWith("DISK") && !typeId.equals("DISKBUSY");
     }
+
+    @Override
+    public DataTransform bind(DataType type) {
+        // indexes of the disks to total, in field order
+        int[] temp = new int[type.getFieldCount()];
+        int n = 0;
+
+        for (String field : type.getFields()) {
+            if (DataHelper.isNotPartition(field)) {
+                temp[n++] = type.getFieldIndex(field);
+            }
+        }
+
+        final int[] disks = java.util.Arrays.copyOf(temp, n);
+
+        return new BoundTransform(this) {
+            @Override
+            public double[] transform(DataType type, double[] data) {
+                double[] newData = new double[data.length + 1];
+                System.arraycopy(data, 0, newData, 0, data.length);
+
+                double total = 0;
+
+                for (int idx : disks) {
+                    if (idx < data.length) {
+                        total += data[idx];
+                    }
+                    else {
+                        // disks could have been removed, assume all subsequent disks are missing too
+                        break;
+                    }
+                }
+
+                newData[data.length] = total;
+
+                return newData;
+            }
+        };
+    }
 }
@@ -13,6 +13,15 @@ import com.ibm.nmon.util.DataHelper;
 public final class EthernetTotalPostProcessor implements DataPostProcessor {
     private final String typePrefix;
 
+    // the field indexes for each Ethernet interface, in the order they are used; only rebuilt when the types change,
+    // i.e. for a new file
+    private DataType boundNet;
+    private DataType boundError;
+    private DataType boundPacket;
+    private DataType boundSize;
+    private int[] indexes;
+    private int ifaceCount;
+
     public EthernetTotalPostProcessor(String typePrefix) {
         if ((typePrefix == null) || typePrefix.equals("")) {
             throw new IllegalArgumentException("typePrefix cannot be null");
@@ -84,49 +93,56 @@ public final class EthernetTotalPostProcessor implements DataPostProcessor {
         DataType packet = data.getType(typePrefix + "PACKET");
         DataType size = data.getType(typePrefix + "SIZE");
 
-        boolean hasErrors = error != null;
-        boolean hasPackets = packet != null;
-        boolean hasSize = size != null;
+        if ((net != boundNet) || (error != boundError) || (packet != boundPacket) || (size != boundSize)) {
+            bind(net, error, packet, size);
+        }
 
         double[] ethernetData = new double[ethernet.getFieldCount()];
 
+        if (ifaceCount == 0) {
+            record.addData(ethernet, ethernetData);
+            return;
+        }
+
+        double[] netData = record.getData(net);
+        double[] errorData = error != null ? record.getData(error) : null;
+        double[] packetData = packet != null ? record.getData(packet) : null;
+        double[] sizeData = size != null ? record.getData(size) : null;
+
         int n = 0;
+        int i = 0;
 
-        for (String iface : DataHelper.getInterfaces(net)) {
+        for (int iface = 0; iface < ifaceCount; iface++) {
             n = 0;
 
-            if (!iface.startsWith("eth") && !iface.startsWith("en")) {
-                continue;
-            }
-
-            double read = record.getData(net, iface + "-read-KB/s");
-            double write = record.getData(net, iface + "-write-KB/s");
+            double read = netData[indexes[i++]];
+            double write = netData[indexes[i++]];
 
             ethernetData[n++] += read;
             ethernetData[n++] += write;
             ethernetData[n++] += read + write;
 
-            if (hasErrors) {
-                double ierrs = record.getData(error, iface + "-ierrs");
-                double oerrs = record.getData(error, iface + "-oerrs");
-                double collisions = record.getData(error, iface + "-collisions");
+            if (errorData != null) {
+                double ierrs = errorData[indexes[i++]];
+                double oerrs = errorData[indexes[i++]];
+                double collisions = errorData[indexes[i++]];
 
                 ethernetData[n++] += ierrs;
                 ethernetData[n++] += oerrs;
                 ethernetData[n++] += collisions;
                 ethernetData[n++] += ierrs + oerrs + collisions;
             }
-            if (hasPackets) {
-                read = record.getData(packet, iface + "-reads/s");
-                write = record.getData(packet, iface + "-writes/s");
+            if (packetData != null) {
+                read = packetData[indexes[i++]];
+                write = packetData[indexes[i++]];
 
                 ethernetData[n++] += read;
                 ethernetData[n++] += write;
                 ethernetData[n++] += read + write;
             }
-            if (hasSize) {
-                read = record.getData(size, iface + "-readsize");
-                write = record.getData(size, iface + "-writesize");
+            if (sizeData != null) {
+                read = sizeData[indexes[i++]];
+                write = sizeData[indexes[i++]];
 
                 ethernetData[n++] += read;
                 ethernetData[n++] += write;
@@ -136,4 +152,44 @@ public final class EthernetTotalPostProcessor implements DataPostProcessor {
 
         record.addData(ethernet, ethernetData);
     }
+
+    private void bind(DataType net, DataType error, DataType packet, DataType size) {
+        java.util.Set<String> ifaces = DataHelper.getInterfaces(net);
+        int[] temp = new int[ifaces.size() * 9];
+        int i = 0;
+        int count = 0;
+
+        for (String iface : ifaces) {
+            if (!iface.startsWith("eth") && !iface.startsWith("en")) {
+                continue;
+            }
+
+            temp[i++] = net.getFieldIndex(iface + "-read-KB/s");
+            temp[i++] = net.getFieldIndex(iface + "-write-KB/s");
+
+            if (error != null) {
+                temp[i++] = error.getFieldIndex(iface + "-ierrs");
+                temp[i++] = error.getFieldIndex(iface + "-oerrs");
+                temp[i++] = error.getFieldIndex(iface + "-collisions");
+            }
+            if (packet != null) {
+                temp[i++] = packet.getFieldIndex(iface + "-reads/s");
+                temp[i++] = packet.getFieldIndex(iface + "-writes/s");
+            }
+            if (size != null) {
+                temp[i++] = size.getFieldIndex(iface + "-readsize");
+                temp[i++] = size.getFieldIndex(iface + "-writesize");
+            }
+
+            ++count;
+        }
+
+        indexes = java.util.Arrays.copyOf(temp, i);
+        ifaceCount = count;
+
+        boundNet = net;
+        boundError = error;
+        boundPacket = packet;
+        boundSize = size;
+    }
 }
@@ -5,7 +5,7 @@ import com.ibm.nmon.data.DataType;
 /**
  * Adds a <code>swapused</code> metric for Linux memory measurements.
  */
-public final class LinuxMemoryTransform implements DataTransform {
+public final class LinuxMemoryTransform implements BindableDataTransform {
     @Override
     public DataType buildDataType(String id, String subId, String name, String... fields) {
         String[] newFields = new String[fields.length + 1];
@@ -32,4 +32,22 @@ public final class LinuxMemoryTransform implements DataTransform {
     public boolean isValidFor(String typeId, String subId) {
         return "MEM".equals(typeId);
     }
+
+    @Override
+    public DataTransform bind(DataType type) {
+        final int swaptotal = type.getFieldIndex("swaptotal");
+        final int swapfree = type.getFieldIndex("swapfree");
+
+        return new BoundTransform(this) {
+            @Override
+            public double[] transform(DataType type, double[] data) {
+                double[] newData = new double[data.length + 1];
+                System.arraycopy(data, 0, newData, 0, data.length);
+
+                newData[data.length] = newData[swaptotal] - newData[swapfree];
+
+                return newData;
+            }
+        };
+    }
 }
@@ -16,6 +16,15 @@ import com.ibm.nmon.util.DataHelper;
 public final class NetworkTotalPostProcessor implements DataPostProcessor {
     private final String typePrefix;
 
+    // the field indexes needed for each record, in the order they are used; only rebuilt when the types change, i.e.
+    // for a new file
+    private DataType boundNet;
+    private DataType boundError;
+    private DataType boundPacket;
+    private DataType boundSize;
+    private int[] indexes;
+    private int ifaceCount;
+
     public NetworkTotalPostProcessor(String typePrefix) {
         if ((typePrefix == null) || typePrefix.equals("")) {
             throw new IllegalArgumentException("typePrefix cannot be null");
@@ -82,43 +91,82 @@ public final class NetworkTotalPostProcessor implements DataPostProcessor {
         DataType packet = data.getType(typePrefix + "PACKET");
         DataType size = data.getType(typePrefix + "SIZE");
 
-        boolean hasErrors = error != null;
-        boolean hasPackets = packet != null;
-        boolean hasSize = size != null;
-
-        Set<String> ifaces = DataHelper.getInterfaces(net);
+        if ((net != boundNet) || (error != boundError) || (packet != boundPacket) || (size != boundSize)) {
+            bind(net, error, packet, size);
+        }
 
         double[] totalData = new double[total.getFieldCount()];
 
-        int n = 0;
+        if (ifaceCount > 0) {
+            double[] netData = record.getData(net);
+            double[] errorData = error != null ? record.getData(error) : null;
+            double[] packetData = packet != null ? record.getData(packet) : null;
+            double[] sizeData = size != null ? record.getData(size) : null;
 
-        for (String iface : ifaces) {
-            double read = record.getData(net, iface + "-read-KB/s");
-            double write = record.getData(net, iface + "-write-KB/s");
+            int n = 0;
+            int i = 0;
 
-            totalData[n++] = read + write;
+            for (int iface = 0; iface < ifaceCount; iface++) {
+                double read = netData[indexes[i++]];
+                double write = netData[indexes[i++]];
 
-            if (hasErrors) {
-                double ierrs = record.getData(error, iface + "-ierrs");
-                double oerrs = record.getData(error, iface + "-oerrs");
-                double collisions = record.getData(error, iface + "-collisions");
+                totalData[n++] = read + write;
 
-                totalData[n++] = ierrs + oerrs + collisions;
+                if (errorData != null) {
+                    double ierrs = errorData[indexes[i++]];
+                    double oerrs = errorData[indexes[i++]];
+                    double collisions = errorData[indexes[i++]];
+
+                    totalData[n++] = ierrs + oerrs + collisions;
+                }
+                if (packetData != null) {
+                    read = packetData[indexes[i++]];
+                    write = packetData[indexes[i++]];
+
+                    totalData[n++] = read + write;
+                }
+                if (sizeData != null) {
+                    read = sizeData[indexes[i++]];
+                    write = sizeData[indexes[i++]];
+
+                    totalData[n++] = read + write;
+                }
             }
-            if (hasPackets) {
-                read = record.getData(packet, iface + "-reads/s");
-                write = record.getData(packet, iface + "-writes/s");
+        }
 
-                totalData[n++] = read + write;
-            }
-            if (hasSize) {
-                read = record.getData(size, iface + "-readsize");
-                write = record.getData(size, iface + "-writesize");
+        record.addData(total, totalData);
+    }
 
-                totalData[n++] = read + write;
+    private void bind(DataType net, DataType error, DataType packet, DataType size) {
+        Set<String> ifaces = DataHelper.getInterfaces(net);
+        int[] temp = new int[ifaces.size() * 9];
+        int i = 0;
+
+        for (String iface : ifaces) {
+            temp[i++] = net.getFieldIndex(iface + "-read-KB/s");
+            temp[i++] = net.getFieldIndex(iface + "-write-KB/s");
+
+            if (error != null) {
+                temp[i++] = error.getFieldIndex(iface + "-ierrs");
+                temp[i++] = error.getFieldIndex(iface + "-oerrs");
+                temp[i++] = error.getFieldIndex(iface + "-collisions");
+            }
+            if (packet != null) {
+                temp[i++] = packet.getFieldIndex(iface + "-reads/s");
+                temp[i++] = packet.getFieldIndex(iface + "-writes/s");
+            }
+            if (size != null) {
+                temp[i++] = size.getFieldIndex(iface + "-readsize");
+                temp[i++] = size.getFieldIndex(iface + "-writesize");
             }
         }
 
-        record.addData(total, totalData);
+        indexes = java.util.Arrays.copyOf(temp, i);
+        ifaceCount = ifaces.size();
+
+        boundNet = net;
+        boundError = error;
+        boundPacket = packet;
+        boundSize = size;
     }
 }
@@ -0,0 +1,237 @@
+package com.ibm.nmon.gui.analysis;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import java.util.List;
+
+import java.util.regex.PatternSyntaxException;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+import javax.swing.table.DefaultTableModel;
+
+import com.ibm.nmon.analysis.FieldRanker;
+import com.ibm.nmon.analysis.RankedField;
+import com.ibm.nmon.analysis.Statistic;
+
+import com.ibm.nmon.data.definition.DataDefinition;
+import com.ibm.nmon.data.definition.DefaultDataDefinition;
+
+import com.ibm.nmon.data.matcher.RegexFieldMatcher;
+import com.ibm.nmon.data.matcher.RegexTypeMatcher;
+
+import com.ibm.nmon.gui.GUIDialog;
+import com.ibm.nmon.gui.Styles;
+import com.ibm.nmon.gui.main.NMONVisualizerGui;
+
+import com.ibm.nmon.interval.Interval;
+
+/**
+ * Dialog to find the top N fields across all systems for a given statistic during the current interval. Types and
+ * fields are matched with regular expressions.
+ *
+ * @see FieldRanker
+ */
+public final class RankingDialog extends GUIDialog {
+    private static final long serialVersionUID = -2860463618725406513L;
+
+    private final JTextField types;
+    private final JTextField fields;
+    private final JComboBox<Statistic> statistic;
+    private final JTextField count;
+    private final JCheckBox lowest;
+
+    private final JButton rank;
+
+    private final DefaultTableModel results;
+    private final JTable table;
+
+    public RankingDialog(NMONVisualizerGui gui) {
+        super(gui, gui.getMainFrame(), "Top Fields");
+
+        setLayout(new BorderLayout());
+        setResizable(true);
+
+        types = new JTextField("DISKBUSY", 12);
+        fields = new JTextField(".*", 12);
+
+        statistic = new JComboBox<Statistic>(Statistic.values());
+        statistic.setSelectedItem(Statistic.PERCENTILE_95);
+
+        count = new JTextField("20", 3);
+        lowest = new JCheckBox();
+
+        rank = new JButton("Rank");
+        rank.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                rank();
+            }
+        });
+
+        results = new DefaultTableModel(new Object[] { "#", "System", "Type", "Field", "Value" }, 0) {
+            private static final long serialVersionUID = 4370135812906578826L;
+
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        table = new JTable(results);
+        table.getColumnModel().getColumn(0).setMaxWidth(40);
+
+        JScrollPane scroller = new JScrollPane(table);
+        scroller.setPreferredSize(new Dimension(600, 300));
+
+        JPanel options = new JPanel(new GridBagLayout());
+        options.setBorder(Styles.CONTENT_BORDER);
+
+        GridBagConstraints constraints = new GridBagConstraints();
+        constraints.insets = new Insets(5, 0, 0, 5);
+        constraints.anchor = GridBagConstraints.BASELINE_TRAILING;
+
+        addOption(options, constraints, 0, 0, "Types:", types);
+        addOption(options, constraints, 1, 0, "Fields:", fields);
+        addOption(options, constraints, 0, 2, "Statistic:", statistic);
+        addOption(options, constraints, 1, 2, "Top:", count);
+        addOption(options, constraints, 0, 4, "Lowest:", lowest);
+
+        constraints.gridx = 5;
+        constraints.gridy = 1;
+        options.add(rank, constraints);
+
+        add(options, BorderLayout.PAGE_START);
+        add(scroller, BorderLayout.CENTER);
+    }
+
+    private static void addOption(JPanel options, GridBagConstraints constraints, int row, int column, String label,
+            java.awt.Component component) {
+        JLabel optionLabel = new JLabel(label);
+        optionLabel.setFont(Styles.LABEL);
+        optionLabel.setHorizontalAlignment(SwingConstants.TRAILING);
+
+        constraints.gridy = row;
+
+        constraints.gridx = column;
+        constraints.anchor = GridBagConstraints.BASELINE_TRAILING;
+        constraints.fill = GridBagConstraints.NONE;
+        options.add(optionLabel, constraints);
+
+        constraints.gridx = column + 1;
+        constraints.anchor = GridBagConstraints.BASELINE_LEADING;
+        constraints.fill = GridBagConstraints.HORIZONTAL;
+        options.add(component, constraints);
+    }
+
+    private void rank() {
+        int n = 0;
+
+        try {
+            n = Integer.parseInt(count.getText());
+        }
+        catch (NumberFormatException nfe) {
+            n = -1;
+        }
+
+        if (n < 1) {
+            JOptionPane.showMessageDialog(this, "Top" + " must be " + "a whole number greater than 0!", "Invalid Top",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        final Statistic stat = (Statistic) statistic.getSelectedItem();
+        final DataDefinition definition;
+
+        try {
+            definition = new DefaultDataDefinition(null, new RegexTypeMatcher(types.getText()), new RegexFieldMatcher(
+                    fields.getText()), stat, false);
+        }
+        catch (PatternSyntaxException pse) {
+            JOptionPane.showMessageDialog(this, pse.getMessage(), "Invalid Regex", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        final Interval interval = gui.getIntervalManager().getCurrentInterval();
+
+        final FieldRanker ranker = new FieldRanker(stat, n);
+        ranker.setInterval(interval);
+        ranker.setGranularity(gui.getGranularity());
+        ranker.setAscending(lowest.isSelected());
+
+        rank.setEnabled(false);
+        results.setRowCount(0);
+        table.getColumnModel().getColumn(4).setHeaderValue(stat.getName(gui.getGranularity()));
+        table.getTableHeader().repaint();
+
+        // rank in the background and update the table on the Swing thread
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                List<RankedField> ranked = java.util.Collections.emptyList();
+                String error = null;
+
+                try {
+                    ranked = ranker.rank(gui.getDataSets(), definition);
+                }
+                catch (InterruptedException ie) {
+                    // no results
+                }
+                catch (RuntimeException re) {
+                    error = re.getMessage();
+                }
+
+                final List<RankedField> toShow = ranked;
+                final String toReport = error;
+
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (toReport != null) {
+                            JOptionPane.showMessageDialog(RankingDialog.this, toReport, "Ranking Failed",
+                                    JOptionPane.ERROR_MESSAGE);
+                        }
+
+                        for (int i = 0; i < toShow.size(); i++) {
+                            RankedField field = toShow.get(i);
+
+                            results.addRow(new Object[] { i + 1, field.getDataSet().getHostname(), field.getType(),
+                                    field.getField(), Styles.NUMBER_FORMAT.format(field.getValue()) });
+                        }
+
+                        rank.setEnabled(true);
+                    }
+                });
+            }
+        }, getClass().getName() + " Ranker");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void setVisible(boolean b) {
+        if (b) {
+            getRootPane().setDefaultButton(rank);
+        }
+
+        super.setVisible(b);
+    }
+}
@@ -272,12 +272,25 @@ public class BaseChartPanel extends ChartPanel implements PropertyChangeListener
     }
 
     public final void saveChart(String directory, String filename) {
+        saveChart(directory, filename, getChart(), saveWidth, saveHeight);
+    }
+
+    /**
+     * Save a chart that is not displayed by this panel, using this panel's file naming rules. This method does not
+     * access any Swing state, so it can be called outside of the Swing event thread as long as the chart is not
+     * being displayed.
+     */
+    public final void saveChart(String directory, String filename, JFreeChart chart, int width, int height) {
+        if (((filename == null) || "".equals(filename)) && (chart != getChart())) {
+            filename = chart.getTitle().getText();
+        }
+
         filename = validateSaveFileName(filename);
 
         File chartFile = new File(directory, filename);
 
         try {
-            ChartUtilities.saveChartAsPNG(chartFile, getChart(), saveWidth, saveHeight);
+            ChartUtilities.saveChartAsPNG(chartFile, chart, width, height);
         }
         catch (IOException ioe) {
             logger.error("could not save chart '" + filename + "' to directory '" + directory + "'", ioe);
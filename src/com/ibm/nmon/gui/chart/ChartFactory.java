@@ -3,6 +3,7 @@ package com.ibm.nmon.gui.chart;
 import org.slf4j.Logger;
 
 import java.util.List;
+import java.util.Map;
 
 import org.jfree.chart.JFreeChart;
 
@@ -31,6 +32,11 @@ public class ChartFactory {
     private final IntervalChartBuilder intervalChartBuilder;
     private final HistogramChartBuilder histogramChartBuilder;
 
+    // AnalysisRecords for interval charts; weak keys so removed DataSets are not held in memory
+    private final Map<DataSet, List<AnalysisRecord>> intervalAnalysis =
+            new java.util.WeakHashMap<DataSet, List<AnalysisRecord>>();
+    private final Map<DataSet, Integer> intervalRecordCounts = new java.util.WeakHashMap<DataSet, Integer>();
+
     public ChartFactory(NMONVisualizerApp app) {
         this.app = app;
 
@@ -42,6 +48,57 @@ public class ChartFactory {
         histogramChartBuilder = new HistogramChartBuilder();
     }
 
+    /**
+     * Get AnalysisRecords for all the current intervals. The records are reused across charts as
+     * long as the intervals, granularity and data are unchanged so each statistic is only
+     * calculated once, no matter how many interval charts use it.
+     */
+    private List<AnalysisRecord> getIntervalAnalysis(DataSet data) {
+        List<AnalysisRecord> analysis = intervalAnalysis.get(data);
+        int granularity = intervalChartBuilder.getGranularity();
+
+        if (analysis != null) {
+            // DataSet equality is not identity, so make sure the records are for this instance
+            boolean valid = (analysis.size() == app.getIntervalManager().getIntervalCount())
+                    && (analysis.isEmpty() || (analysis.get(0).getDataSet() == data));
+
+            if (valid) {
+                int n = 0;
+
+                for (Interval i : app.getIntervalManager().getIntervals()) {
+                    AnalysisRecord record = analysis.get(n++);
+
+                    if (!i.equals(record.getInterval()) || !i.getName().equals(record.getInterval().getName())
+                            || (record.getGranularity() != granularity)) {
+                        valid = false;
+                        break;
+                    }
+                }
+            }
+
+            Integer recordCount = intervalRecordCounts.get(data);
+
+            if (valid && (recordCount != null) && (recordCount == data.getRecordCount())) {
+                return analysis;
+            }
+        }
+
+        analysis = new java.util.ArrayList<AnalysisRecord>(app.getIntervalManager().getIntervalCount());
+
+        for (Interval i : app.getIntervalManager().getIntervals()) {
+            AnalysisRecord record = new AnalysisRecord(data);
+            record.setInterval(i);
+            record.setGranularity(granularity);
+
+            analysis.add(record);
+        }
+
+        intervalAnalysis.put(data, analysis);
+        intervalRecordCounts.put(data, data.getRecordCount());
+
+        return analysis;
+    }
+
     public void setGranularity(int granularity) {
         lineChartBuilder.setGranularity(granularity);
         barChartBuilder.setGranularity(granularity);
@@ -100,18 +157,7 @@ public class ChartFactory {
             intervalChartBuilder.initChart(lineDefinition);
 
             for (DataSet data : dataSets) {
-                // TODO AnalysisRecord cache needed here?
-                List<AnalysisRecord> analysis = new java.util.ArrayList<AnalysisRecord>();
-
-                for (Interval i : app.getIntervalManager().getIntervals()) {
-                    AnalysisRecord record = new AnalysisRecord(data);
-                    record.setInterval(i);
-                    record.setGranularity(intervalChartBuilder.getGranularity());
-
-                    analysis.add(record);
-                }
-
-                intervalChartBuilder.addLine(lineDefinition, analysis);
+                intervalChartBuilder.addLine(lineDefinition, getIntervalAnalysis(data));
             }
 
             chart = intervalChartBuilder.getChart();
@@ -0,0 +1,367 @@
+package com.ibm.nmon.gui.chart;
+
+import org.slf4j.Logger;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Stroke;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+
+import java.awt.image.BufferedImage;
+
+import java.lang.ref.SoftReference;
+
+import java.util.Map;
+
+import org.jfree.chart.axis.ValueAxis;
+
+import org.jfree.chart.event.AxisChangeEvent;
+import org.jfree.chart.event.RendererChangeEvent;
+
+import org.jfree.chart.plot.CrosshairState;
+import org.jfree.chart.plot.PlotRenderingInfo;
+import org.jfree.chart.plot.SeriesRenderingOrder;
+import org.jfree.chart.plot.XYPlot;
+
+import org.jfree.chart.renderer.AbstractRenderer;
+import org.jfree.chart.renderer.RendererUtilities;
+
+import org.jfree.chart.renderer.xy.XYItemRenderer;
+import org.jfree.chart.renderer.xy.XYItemRendererState;
+
+import org.jfree.data.general.DatasetChangeEvent;
+import org.jfree.data.general.DatasetUtilities;
+
+import org.jfree.data.xy.XYDataset;
+
+/**
+ * <p>
+ * XYPlot that can render its data into an offscreen image and reuse that image on subsequent draws. Everything else
+ * the plot draws (background, gridlines, markers and annotations) is drawn as usual, so changing markers or
+ * annotations only costs a copy of the image instead of rendering every data point again.
+ * </p>
+ *
+ * <p>
+ * Series drawn with the highlight stroke are rendered into the image with the renderer's default stroke and then
+ * drawn again, on top of the image, with the highlight stroke. Highlights that are changed <em>without</em> firing a
+ * renderer change event do not invalidate the image; see {@link LineChartPanel#highlightElement(int, int)}.
+ * </p>
+ *
+ * <p>
+ * Images are held as SoftReferences and are rendered again if the dataset, renderer, axes or data area change. Since
+ * no entities are created when the image is rendered, caching is off by default and should only be enabled for charts
+ * that do not need <code>XYItemEntity</code> objects.
+ * </p>
+ */
+public final class LayeredXYPlot extends XYPlot {
+    private static final long serialVersionUID = -4416095219530358618L;
+
+    private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(LayeredXYPlot.class);
+
+    private boolean cacheDataLayer = false;
+    private Stroke highlightStroke = null;
+
+    // by dataset index
+    private transient Map<Integer, DataLayer> layers = new java.util.HashMap<Integer, DataLayer>();
+
+    public LayeredXYPlot(XYDataset dataset, ValueAxis domainAxis, ValueAxis rangeAxis, XYItemRenderer renderer) {
+        super(dataset, domainAxis, rangeAxis, renderer);
+    }
+
+    public boolean isCacheDataLayer() {
+        return cacheDataLayer;
+    }
+
+    /**
+     * Enable or disable rendering data into a cached image. This does not fire a change event.
+     */
+    public void setCacheDataLayer(boolean cacheDataLayer) {
+        this.cacheDataLayer = cacheDataLayer;
+
+        if (!cacheDataLayer) {
+            invalidateDataLayers();
+        }
+    }
+
+    public Stroke getHighlightStroke() {
+        return highlightStroke;
+    }
+
+    /**
+     * Set the series stroke that denotes a highlighted series. This does not fire a change event.
+     */
+    public void setHighlightStroke(Stroke highlightStroke) {
+        this.highlightStroke = highlightStroke;
+    }
+
+    public void invalidateDataLayers() {
+        // null when called from the super class constructor
+        if (layers != null) {
+            layers.clear();
+        }
+    }
+
+    @Override
+    public boolean render(Graphics2D g2, Rectangle2D dataArea, int index, PlotRenderingInfo info,
+            CrosshairState crosshairState) {
+        if (!cacheDataLayer) {
+            return super.render(g2, dataArea, index, info, crosshairState);
+        }
+
+        XYDataset dataset = getDataset(index);
+
+        if (DatasetUtilities.isEmptyOrNull(dataset)) {
+            return false;
+        }
+
+        ValueAxis domainAxis = getDomainAxisForDataset(index);
+        ValueAxis rangeAxis = getRangeAxisForDataset(index);
+        XYItemRenderer renderer = getRenderer(index);
+
+        if (renderer == null) {
+            renderer = getRenderer();
+        }
+
+        if ((domainAxis == null) || (rangeAxis == null) || (renderer == null)) {
+            return true;
+        }
+
+        AffineTransform transform = g2.getTransform();
+        DataLayer layer = layers.get(index);
+        BufferedImage image = layer == null ? null : layer.image.get();
+
+        if ((image == null) || !layer.matches(dataArea, transform, dataset, domainAxis, rangeAxis, renderer)) {
+            long start = System.nanoTime();
+
+            layer = new DataLayer(dataArea, transform, dataset, domainAxis, rangeAxis, renderer);
+            image = renderDataLayer(g2, dataArea, transform, layer.bounds, dataset, domainAxis, rangeAxis, renderer);
+            layer.image = new SoftReference<BufferedImage>(image);
+
+            layers.put(index, layer);
+
+            if (LOGGER.isTraceEnabled()) {
+                LOGGER.trace("rendered data layer {} ({}x{}) in {}ms", new Object[] { index, image.getWidth(),
+                        image.getHeight(), (System.nanoTime() - start) / 1000000.0d });
+            }
+        }
+
+        // the image is in device space; copy it back without any scaling or interpolation
+        Rectangle bounds = layer.bounds;
+
+        g2.setTransform(new AffineTransform());
+        g2.drawImage(image, bounds.x, bounds.y, null);
+        g2.setTransform(transform);
+
+        // draw highlighted series on top of the cached data
+        for (int series = 0; series < dataset.getSeriesCount(); series++) {
+            if (isHighlighted(renderer, series) && renderer.isSeriesVisible(series)) {
+                renderSeries(g2, dataArea, dataset, domainAxis, rangeAxis, renderer, series);
+            }
+        }
+
+        return true;
+    }
+
+    private BufferedImage renderDataLayer(Graphics2D g2, Rectangle2D dataArea, AffineTransform transform,
+            Rectangle bounds, XYDataset dataset, ValueAxis domainAxis, ValueAxis rangeAxis, XYItemRenderer renderer) {
+        BufferedImage image = new BufferedImage(Math.max(1, bounds.width), Math.max(1, bounds.height),
+                BufferedImage.TYPE_INT_ARGB);
+
+        Graphics2D imageGraphics = image.createGraphics();
+
+        try {
+            // render exactly as if drawing to g2 but offset to the image's location in device space
+            imageGraphics.setRenderingHints(g2.getRenderingHints());
+            imageGraphics.setComposite(AlphaComposite.SrcOver);
+            imageGraphics.translate(-bounds.x, -bounds.y);
+            imageGraphics.transform(transform);
+            imageGraphics.clip(dataArea);
+
+            // render highlighted series with the default stroke; remove and restore the series strokes without
+            // notifying so the layer is not invalidated
+            int seriesCount = dataset.getSeriesCount();
+            Stroke[] strokes = new Stroke[seriesCount];
+            boolean highlighted = false;
+
+            for (int series = 0; series < seriesCount; series++) {
+                if (isHighlighted(renderer, series)) {
+                    strokes[series] = renderer.getSeriesStroke(series);
+                    highlighted = true;
+                }
+            }
+
+            if (highlighted && (renderer instanceof AbstractRenderer)) {
+                for (int series = 0; series < seriesCount; series++) {
+                    if (strokes[series] != null) {
+                        ((AbstractRenderer) renderer).setSeriesStroke(series, null, false);
+                    }
+                }
+            }
+
+            try {
+                // same order as XYPlot.render()
+                if (getSeriesRenderingOrder() == SeriesRenderingOrder.FORWARD) {
+                    for (int series = 0; series < seriesCount; series++) {
+                        renderSeries(imageGraphics, dataArea, dataset, domainAxis, rangeAxis, renderer, series);
+                    }
+                }
+                else {
+                    for (int series = seriesCount - 1; series >= 0; series--) {
+                        renderSeries(imageGraphics, dataArea, dataset, domainAxis, rangeAxis, renderer, series);
+                    }
+                }
+            }
+            finally {
+                if (highlighted && (renderer instanceof AbstractRenderer)) {
+                    for (int series = 0; series < seriesCount; series++) {
+                        if (strokes[series] != null) {
+                            ((AbstractRenderer) renderer).setSeriesStroke(series, strokes[series], false);
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            imageGraphics.dispose();
+        }
+
+        return image;
+    }
+
+    private boolean isHighlighted(XYItemRenderer renderer, int series) {
+        return (highlightStroke != null) && highlightStroke.equals(renderer.getSeriesStroke(series));
+    }
+
+    // render a single series as in XYPlot.render() but without entities or crosshairs
+    private void renderSeries(Graphics2D g2, Rectangle2D dataArea, XYDataset dataset, ValueAxis domainAxis,
+            ValueAxis rangeAxis, XYItemRenderer renderer, int series) {
+        int firstItem = 0;
+        int lastItem = dataset.getItemCount(series) - 1;
+
+        if (lastItem == -1) {
+            return;
+        }
+
+        XYItemRendererState state = renderer.initialise(g2, dataArea, this, dataset, null);
+
+        if (state.getProcessVisibleItemsOnly()) {
+            int[] itemBounds = RendererUtilities.findLiveItems(dataset, series, domainAxis.getLowerBound(),
+                    domainAxis.getUpperBound());
+            firstItem = Math.max(itemBounds[0] - 1, 0);
+            lastItem = Math.min(itemBounds[1] + 1, lastItem);
+        }
+
+        int passCount = renderer.getPassCount();
+
+        for (int pass = 0; pass < passCount; pass++) {
+            state.startSeriesPass(dataset, series, firstItem, lastItem, pass, passCount);
+
+            for (int item = firstItem; item <= lastItem; item++) {
+                renderer.drawItem(g2, state, dataArea, null, this, domainAxis, rangeAxis, dataset, series, item, null,
+                        pass);
+            }
+
+            state.endSeriesPass(dataset, series, firstItem, lastItem, pass, passCount);
+        }
+    }
+
+    @Override
+    public void datasetChanged(DatasetChangeEvent event) {
+        invalidateDataLayers();
+        super.datasetChanged(event);
+    }
+
+    @Override
+    public void rendererChanged(RendererChangeEvent event) {
+        invalidateDataLayers();
+        super.rendererChanged(event);
+    }
+
+    @Override
+    public void axisChanged(AxisChangeEvent event) {
+        invalidateDataLayers();
+        super.axisChanged(event);
+    }
+
+    @Override
+    public Object clone() throws CloneNotSupportedException {
+        LayeredXYPlot clone = (LayeredXYPlot) super.clone();
+        clone.layers = new java.util.HashMap<Integer, DataLayer>();
+
+        return clone;
+    }
+
+    private void readObject(java.io.ObjectInputStream in) throws java.io.IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        layers = new java.util.HashMap<Integer, DataLayer>();
+    }
+
+    // the state a cached image was rendered with
+    // DataTupleXYDataset does not fire change events, so the series and item counts are also checked
+    private static final class DataLayer {
+        private final Rectangle2D dataArea;
+        private final AffineTransform transform;
+        // dataArea in device space
+        private final Rectangle bounds;
+
+        private final XYDataset dataset;
+        private final int seriesCount;
+        private final int itemCount;
+
+        private final ValueAxis domainAxis;
+        private final double domainLower;
+        private final double domainUpper;
+
+        private final ValueAxis rangeAxis;
+        private final double rangeLower;
+        private final double rangeUpper;
+
+        private final XYItemRenderer renderer;
+
+        private SoftReference<BufferedImage> image;
+
+        DataLayer(Rectangle2D dataArea, AffineTransform transform, XYDataset dataset, ValueAxis domainAxis,
+                ValueAxis rangeAxis, XYItemRenderer renderer) {
+            this.dataArea = (Rectangle2D) dataArea.clone();
+            this.transform = (AffineTransform) transform.clone();
+            this.bounds = transform.createTransformedShape(dataArea).getBounds();
+
+            this.dataset = dataset;
+            this.seriesCount = dataset.getSeriesCount();
+            this.itemCount = countItems(dataset);
+
+            this.domainAxis = domainAxis;
+            this.domainLower = domainAxis.getLowerBound();
+            this.domainUpper = domainAxis.getUpperBound();
+
+            this.rangeAxis = rangeAxis;
+            this.rangeLower = rangeAxis.getLowerBound();
+            this.rangeUpper = rangeAxis.getUpperBound();
+
+            this.renderer = renderer;
+        }
+
+        boolean matches(Rectangle2D dataArea, AffineTransform transform, XYDataset dataset, ValueAxis domainAxis,
+                ValueAxis rangeAxis, XYItemRenderer renderer) {
+            return this.dataArea.equals(dataArea) && this.transform.equals(transform) && (this.dataset == dataset)
+                    && (seriesCount == dataset.getSeriesCount()) && (itemCount == countItems(dataset))
+                    && (this.domainAxis == domainAxis) && (domainLower == domainAxis.getLowerBound())
+                    && (domainUpper == domainAxis.getUpperBound()) && (this.rangeAxis == rangeAxis)
+                    && (rangeLower == rangeAxis.getLowerBound()) && (rangeUpper == rangeAxis.getUpperBound())
+                    && (this.renderer == renderer);
+        }
+
+        private static int countItems(XYDataset dataset) {
+            int count = 0;
+
+            for (int series = 0; series < dataset.getSeriesCount(); series++) {
+                count += dataset.getItemCount(series);
+            }
+
+            return count;
+        }
+    }
+}
@@ -2,11 +2,15 @@ package com.ibm.nmon.gui.chart;
 
 import com.ibm.nmon.gui.main.NMONVisualizerGui;
 
+import java.awt.Graphics;
+import java.awt.Point;
 import java.awt.Stroke;
 import java.awt.BasicStroke;
 
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
+import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
 import java.beans.PropertyChangeEvent;
 
 import java.util.List;
@@ -21,6 +25,8 @@ import org.jfree.data.xy.XYDataset;
 import org.jfree.chart.ChartMouseListener;
 import org.jfree.chart.ChartMouseEvent;
 
+import org.jfree.chart.labels.XYToolTipGenerator;
+
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.plot.Marker;
 
@@ -47,6 +53,12 @@ public class LineChartPanel extends BaseChartPanel implements ChartMouseListener
 
     private final BasicStroke SELECTED_STROKE = new BasicStroke(5);
 
+    // charts with more data points than this do not create an XYItemEntity for every point on every repaint; clicks
+    // and tooltips use an XYPointIndex instead and the data is cached by LayeredXYPlot
+    private static final int ENTITY_LIMIT = 10000;
+
+    private boolean createEntities = true;
+
     public LineChartPanel(NMONVisualizerGui gui, JFrame parent) {
         super(gui, parent);
 
@@ -92,8 +104,11 @@ public class LineChartPanel extends BaseChartPanel implements ChartMouseListener
     public final void highlightElement(int row, int column) {
         if (getChart() != null) {
             if ((row >= 0) && (row < getChart().getXYPlot().getDataset().getSeriesCount())) {
-                XYItemRenderer renderer = getChart().getXYPlot().getRenderer();
-                renderer.setSeriesStroke(row, SELECTED_STROKE);
+                AbstractRenderer renderer = (AbstractRenderer) getChart().getXYPlot().getRenderer();
+
+                // do not notify; with a LayeredXYPlot that would render all the data again
+                renderer.setSeriesStroke(row, SELECTED_STROKE, false);
+                repaint();
             }
         }
     }
@@ -179,16 +194,12 @@ public class LineChartPanel extends BaseChartPanel implements ChartMouseListener
 
         ChartEntity entity = event.getEntity();
 
-        if (entity == null) {
-            return;
-        }
-
         // users can click on either the line or the legend
         // regardless, figure out the series index
-        if (entity.getClass() == XYItemEntity.class) {
+        if ((entity != null) && (entity.getClass() == XYItemEntity.class)) {
             series = ((XYItemEntity) event.getEntity()).getSeriesIndex();
         }
-        else if (entity.getClass() == LegendItemEntity.class) {
+        else if ((entity != null) && (entity.getClass() == LegendItemEntity.class)) {
             LegendItemEntity legendEntity = (LegendItemEntity) event.getEntity();
             XYDataset dataset = (XYDataset) legendEntity.getDataset();
 
@@ -199,33 +210,117 @@ public class LineChartPanel extends BaseChartPanel implements ChartMouseListener
                 }
             }
         }
+        else if (!createEntities) {
+            XYPointIndex.Item item = findItem(event.getTrigger());
+
+            if (item != null) {
+                series = item.getSeries();
+            }
+        }
 
         if (series != -1) {
-            XYItemRenderer renderer = getChart().getXYPlot().getRenderer();
+            AbstractRenderer renderer = (AbstractRenderer) getChart().getXYPlot().getRenderer();
             Stroke oldHighlight = renderer.getSeriesStroke(series);
 
             // clear existing highlights
-            ((AbstractRenderer) getChart().getXYPlot().getRenderer()).clearSeriesStrokes(false);
+            renderer.clearSeriesStrokes(false);
 
             // toggle series stroke
+            // highlights do not notify so a LayeredXYPlot does not render all the data again
             if (oldHighlight != SELECTED_STROKE) {
-                renderer.setSeriesStroke(series, SELECTED_STROKE);
+                renderer.setSeriesStroke(series, SELECTED_STROKE, false);
 
                 firePropertyChange("highlightedLine", null, series);
             }
             else {
-                renderer.setSeriesStroke(series, null);
+                renderer.setSeriesStroke(series, null, false);
 
                 firePropertyChange("highlightedLine", series, null);
             }
 
-            // assume whatever fired the event will repaint the chart
+            repaint();
         }
     }
 
     @Override
     public final void chartMouseMoved(ChartMouseEvent event) {}
 
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        if (createEntities) {
+            return super.getToolTipText(event);
+        }
+
+        XYPointIndex.Item item = findItem(event);
+
+        if (item == null) {
+            return null;
+        }
+
+        XYItemRenderer renderer = getChart().getXYPlot().getRendererForDataset(item.getDataset());
+        XYToolTipGenerator generator = renderer.getToolTipGenerator(item.getSeries(), item.getItem());
+
+        return generator == null ? null : generator.generateToolTip(item.getDataset(), item.getSeries(),
+                item.getItem());
+    }
+
+    @Override
+    public void paintComponent(Graphics g) {
+        if (getChart() != null) {
+            updateEntityCreation(getChart().getXYPlot());
+        }
+
+        super.paintComponent(g);
+    }
+
+    // turn off entities for large charts so painting does not create an entity and tooltip for every data point
+    // legend entities are still created by the legend
+    private void updateEntityCreation(XYPlot plot) {
+        long points = 0;
+
+        for (int i = 0; i < plot.getDatasetCount(); i++) {
+            XYDataset dataset = plot.getDataset(i);
+
+            if (dataset != null) {
+                for (int series = 0; series < dataset.getSeriesCount(); series++) {
+                    points += dataset.getItemCount(series);
+                }
+            }
+        }
+
+        boolean create = points <= ENTITY_LIMIT;
+
+        for (int i = 0; i < plot.getRendererCount(); i++) {
+            XYItemRenderer renderer = plot.getRenderer(i);
+
+            // do not notify; that would cause another repaint
+            if ((renderer instanceof AbstractRenderer)
+                    && (((AbstractRenderer) renderer).getBaseCreateEntities() != create)) {
+                ((AbstractRenderer) renderer).setBaseCreateEntities(create, false);
+            }
+        }
+
+        createEntities = create;
+
+        // without entities, there is no need to render every data point on every repaint
+        if (plot instanceof LayeredXYPlot) {
+            ((LayeredXYPlot) plot).setCacheDataLayer(!create);
+            ((LayeredXYPlot) plot).setHighlightStroke(SELECTED_STROKE);
+        }
+    }
+
+    private XYPointIndex.Item findItem(MouseEvent event) {
+        if ((getChart() == null) || (event == null)) {
+            return null;
+        }
+
+        Point2D point = translateScreenToJava2D(new Point(event.getX(), event.getY()));
+        XYPointIndex index = new XYPointIndex(getChart().getXYPlot(), getChartRenderingInfo().getPlotInfo()
+                .getDataArea());
+
+        return index.find(point.getX(), point.getY());
+    }
+
     private void setAxisTimeZone(TimeZone timeZone) {
         if (getChart() != null) {
             XYPlot plot = getChart().getXYPlot();
@@ -0,0 +1,320 @@
+package com.ibm.nmon.gui.chart;
+
+import java.awt.geom.Rectangle2D;
+
+import org.jfree.chart.axis.ValueAxis;
+
+import org.jfree.chart.plot.XYPlot;
+
+import org.jfree.chart.renderer.xy.StackedXYAreaRenderer2;
+import org.jfree.chart.renderer.xy.StandardXYItemRenderer;
+import org.jfree.chart.renderer.xy.XYItemRenderer;
+
+import org.jfree.data.xy.TableXYDataset;
+import org.jfree.data.xy.XYDataset;
+
+import org.jfree.ui.RectangleEdge;
+
+import org.jfree.util.UnitType;
+
+/**
+ * <p>
+ * Finds the data item under a point on an {@link XYPlot} without using JFreeChart's <code>XYItemEntity</code> objects.
+ * Creating an entity for every rendered point is expensive for large charts since the entities are recreated on every
+ * repaint.
+ * </p>
+ *
+ * <p>
+ * Each dataset's items are assumed to be sorted by x value, as are all the datasets created by
+ * {@link com.ibm.nmon.gui.chart.builder.LineChartBuilder LineChartBuilder}. The items on either side of the point are
+ * found with a binary search on x. Undefined (NaN) items are skipped since the renderer draws lines across them. The
+ * matching series is the one whose line is closest to the point in y. For stacked charts, the matching series is the
+ * one whose area contains the point.
+ * </p>
+ *
+ * <p>
+ * Nothing is cached, so an index can be reused as long as the plot's data area does not change.
+ * </p>
+ */
+final class XYPointIndex {
+    // maximum distance, in pixels, between a point and a line for the line to be found
+    private static final double TOLERANCE = 5;
+
+    private final XYPlot plot;
+    private final Rectangle2D dataArea;
+
+    XYPointIndex(XYPlot plot, Rectangle2D dataArea) {
+        this.plot = plot;
+        this.dataArea = dataArea;
+    }
+
+    /**
+     * @param x the x coordinate, in Java2D space
+     * @param y the y coordinate, in Java2D space
+     * @return the item closest to the given point or <code>null</code> if no visible series is close enough
+     */
+    Item find(double x, double y) {
+        if ((dataArea == null) || !dataArea.contains(x, y)) {
+            return null;
+        }
+
+        RectangleEdge domainEdge = plot.getDomainAxisEdge();
+        double xValue = plot.getDomainAxis().java2DToValue(x, dataArea, domainEdge);
+
+        Item closest = null;
+        double closestDistance = TOLERANCE;
+
+        for (int d = 0; d < plot.getDatasetCount(); d++) {
+            XYDataset dataset = plot.getDataset(d);
+
+            if ((dataset == null) || (dataset.getSeriesCount() == 0)) {
+                continue;
+            }
+
+            XYItemRenderer renderer = plot.getRendererForDataset(dataset);
+            ValueAxis rangeAxis = plot.getRangeAxisForDataset(d);
+
+            if ((renderer == null) || (rangeAxis == null)) {
+                continue;
+            }
+
+            RectangleEdge rangeEdge = plot.getRangeAxisEdge(plot.getRangeAxisIndex(rangeAxis));
+            ValueAxis domainAxis = plot.getDomainAxisForDataset(d);
+
+            if ((renderer instanceof StackedXYAreaRenderer2) && (dataset instanceof TableXYDataset)) {
+                Item item = findStacked((TableXYDataset) dataset, d, renderer,
+                        rangeAxis.java2DToValue(y, dataArea, rangeEdge), xValue);
+
+                if (item != null) {
+                    // inside an area is always closer than near a line
+                    return item;
+                }
+
+                continue;
+            }
+
+            // all series in a table dataset share x values so only search once
+            int shared = dataset instanceof TableXYDataset ? search(dataset, 0, xValue) : -1;
+
+            for (int series = 0; series < dataset.getSeriesCount(); series++) {
+                if (!renderer.isSeriesVisible(series)) {
+                    continue;
+                }
+
+                int itemCount = dataset.getItemCount(series);
+
+                if (itemCount == 0) {
+                    continue;
+                }
+
+                int after = shared == -1 ? search(dataset, series, xValue) : shared;
+
+                // series share a merged time axis so they are undefined at other series' times
+                // skip those items like StandardXYItemRenderer, which draws lines across them
+                int before = previousDefined(dataset, series, after - 1);
+                after = nextDefined(dataset, series, after, itemCount);
+
+                double lineY = Double.NaN;
+                int nearest = -1;
+
+                if ((before != -1) && (after != -1)) {
+                    double x1 = dataset.getXValue(series, before);
+                    double x2 = dataset.getXValue(series, after);
+
+                    nearest = (xValue - x1) <= (x2 - xValue) ? before : after;
+
+                    if (x1 == x2) {
+                        lineY = dataset.getYValue(series, before);
+                    }
+                    else if (!isGap(renderer, dataset, series, x1, x2)) {
+                        double y1 = dataset.getYValue(series, before);
+                        double y2 = dataset.getYValue(series, after);
+
+                        // interpolate so the point can be anywhere along the line, not just near the data points
+                        lineY = y1 + ((y2 - y1) * (xValue - x1) / (x2 - x1));
+                    }
+                }
+                else {
+                    nearest = before == -1 ? after : before;
+                }
+
+                if (nearest == -1) {
+                    continue;
+                }
+
+                if (Double.isNaN(lineY)) {
+                    // no line at this point, only the nearest data point itself
+                    double pointX = domainAxis.valueToJava2D(dataset.getXValue(series, nearest), dataArea,
+                            domainEdge);
+
+                    if (Math.abs(pointX - x) > TOLERANCE) {
+                        continue;
+                    }
+
+                    lineY = dataset.getYValue(series, nearest);
+                }
+
+                if (!renderer.getItemVisible(series, nearest)) {
+                    continue;
+                }
+
+                double distance = Math.abs(rangeAxis.valueToJava2D(lineY, dataArea, rangeEdge) - y);
+
+                if (distance <= closestDistance) {
+                    closest = new Item(dataset, d, series, nearest);
+                    closestDistance = distance;
+                }
+            }
+        }
+
+        return closest;
+    }
+
+    // stack values the same way as StackedXYAreaRenderer2; positive and negative values are stacked separately
+    private Item findStacked(TableXYDataset dataset, int datasetIndex, XYItemRenderer renderer, double yValue,
+            double xValue) {
+        int itemCount = dataset.getItemCount();
+
+        if (itemCount == 0) {
+            return null;
+        }
+
+        int after = search(dataset, 0, xValue);
+        int nearest = after;
+
+        if (after == itemCount) {
+            nearest = after - 1;
+        }
+        else if (after > 0) {
+            double x1 = dataset.getXValue(0, after - 1);
+            double x2 = dataset.getXValue(0, after);
+
+            if ((xValue - x1) <= (x2 - xValue)) {
+                nearest = after - 1;
+            }
+        }
+
+        double positive = 0;
+        double negative = 0;
+
+        for (int series = 0; series < dataset.getSeriesCount(); series++) {
+            double value = dataset.getYValue(series, nearest);
+
+            if (Double.isNaN(value)) {
+                continue;
+            }
+
+            boolean contains = false;
+
+            if (value >= 0) {
+                contains = (yValue >= positive) && (yValue <= (positive + value));
+                positive += value;
+            }
+            else {
+                contains = (yValue <= negative) && (yValue >= (negative + value));
+                negative += value;
+            }
+
+            if (contains && renderer.isSeriesVisible(series)) {
+                return new Item(dataset, datasetIndex, series, nearest);
+            }
+        }
+
+        return null;
+    }
+
+    // last item at or before the given index with both values defined; -1 if none
+    private static int previousDefined(XYDataset dataset, int series, int item) {
+        while ((item >= 0) && isUndefined(dataset, series, item)) {
+            --item;
+        }
+
+        return item;
+    }
+
+    // first item at or after the given index with both values defined; -1 if none
+    private static int nextDefined(XYDataset dataset, int series, int item, int itemCount) {
+        while ((item < itemCount) && isUndefined(dataset, series, item)) {
+            ++item;
+        }
+
+        return item == itemCount ? -1 : item;
+    }
+
+    private static boolean isUndefined(XYDataset dataset, int series, int item) {
+        return Double.isNaN(dataset.getXValue(series, item)) || Double.isNaN(dataset.getYValue(series, item));
+    }
+
+    // true if the renderer does not draw a line between the given x values; same checks as StandardXYItemRenderer
+    private static boolean isGap(XYItemRenderer renderer, XYDataset dataset, int series, double x1, double x2) {
+        if (!(renderer instanceof StandardXYItemRenderer)) {
+            return false;
+        }
+
+        StandardXYItemRenderer standard = (StandardXYItemRenderer) renderer;
+
+        if (!standard.getPlotDiscontinuous()) {
+            return false;
+        }
+
+        if (standard.getGapThresholdType() == UnitType.ABSOLUTE) {
+            return Math.abs(x2 - x1) > standard.getGapThreshold();
+        }
+        else {
+            int itemCount = dataset.getItemCount(series);
+            double minX = dataset.getXValue(series, 0);
+            double maxX = dataset.getXValue(series, itemCount - 1);
+
+            return Math.abs(x2 - x1) > ((maxX - minX) / itemCount * standard.getGapThreshold());
+        }
+    }
+
+    // index of the first item with an x value greater than or equal to the given value; the item count if none
+    private static int search(XYDataset dataset, int series, double xValue) {
+        int low = 0;
+        int high = dataset.getItemCount(series);
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+
+            if (dataset.getXValue(series, mid) < xValue) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    static final class Item {
+        private final XYDataset dataset;
+        private final int datasetIndex;
+        private final int series;
+        private final int item;
+
+        private Item(XYDataset dataset, int datasetIndex, int series, int item) {
+            this.dataset = dataset;
+            this.datasetIndex = datasetIndex;
+            this.series = series;
+            this.item = item;
+        }
+
+        XYDataset getDataset() {
+            return dataset;
+        }
+
+        int getDatasetIndex() {
+            return datasetIndex;
+        }
+
+        int getSeries() {
+            return series;
+        }
+
+        int getItem() {
+            return item;
+        }
+    }
+}
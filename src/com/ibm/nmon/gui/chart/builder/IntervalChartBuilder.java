@@ -16,6 +16,7 @@ import org.jfree.chart.labels.StandardCategoryToolTipGenerator;
 import org.jfree.chart.renderer.category.LineAndShapeRenderer;
 
 import com.ibm.nmon.analysis.AnalysisRecord;
+import com.ibm.nmon.analysis.IntervalAnalyzer;
 
 import com.ibm.nmon.data.DataSet;
 import com.ibm.nmon.data.DataType;
@@ -142,6 +143,8 @@ public final class IntervalChartBuilder extends BaseChartBuilder<IntervalChartDe
         // assume all records are from the same DataSet
         DataSet data = records.get(0).getDataSet();
 
+        analyze(lineDefinition, data, records);
+
         Map<String, Integer> usedIntervalNames = new java.util.HashMap<String, Integer>(records.size());
 
         for (DataDefinition definition : lineDefinition.getData()) {
@@ -205,6 +208,24 @@ public final class IntervalChartBuilder extends BaseChartBuilder<IntervalChartDe
         }
     }
 
+    // calculate the statistics for every line and interval in a single pass over the data rather
+    // than letting each AnalysisRecord rescan the data for every field
+    private void analyze(IntervalChartDefinition lineDefinition, DataSet data, List<AnalysisRecord> records) {
+        IntervalAnalyzer analyzer = new IntervalAnalyzer(data);
+
+        for (DataDefinition definition : lineDefinition.getData()) {
+            if (definition.matchesHost(data)) {
+                for (DataType type : definition.getMatchingTypes(data)) {
+                    for (String field : definition.getMatchingFields(type)) {
+                        analyzer.addField(type, field);
+                    }
+                }
+            }
+        }
+
+        analyzer.analyze(records);
+    }
+
     public void setPercentYAxis() {
         NumberAxis yAxis = (NumberAxis) ((CategoryPlot) chart.getPlot()).getRangeAxis();
         yAxis.setRange(0, 100);
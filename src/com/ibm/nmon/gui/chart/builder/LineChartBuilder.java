@@ -17,8 +17,6 @@ import org.jfree.chart.renderer.xy.StandardXYItemRenderer;
 import org.jfree.chart.util.RelativeDateFormat;
 import org.jfree.util.UnitType;
 
-import org.jfree.data.time.FixedMillisecond;
-
 import org.jfree.data.xy.XYDataset;
 
 import com.ibm.nmon.data.DataSet;
@@ -28,6 +26,7 @@ import com.ibm.nmon.data.DataTuple;
 
 import com.ibm.nmon.data.definition.DataDefinition;
 import com.ibm.nmon.data.definition.NamingMode;
+import com.ibm.nmon.gui.chart.LayeredXYPlot;
 import com.ibm.nmon.gui.chart.data.DataTupleXYDataset;
 
 import com.ibm.nmon.chart.definition.LineChartDefinition;
@@ -53,13 +52,13 @@ public class LineChartBuilder extends BaseChartBuilder<LineChartDefinition> {
             StackedXYAreaRenderer2 renderer = new StackedXYAreaRenderer2();
             renderer.setBaseSeriesVisible(true, false);
 
-            plot = new XYPlot(dataset, timeAxis, valueAxis, renderer);
+            plot = new LayeredXYPlot(dataset, timeAxis, valueAxis, renderer);
         }
         else {
             StandardXYItemRenderer renderer = new StandardXYItemRenderer();
             renderer.setBaseSeriesVisible(true, false);
 
-            plot = new XYPlot(dataset, timeAxis, valueAxis, renderer);
+            plot = new LayeredXYPlot(dataset, timeAxis, valueAxis, renderer);
         }
 
         if (definition.hasSecondaryYAxis()) {
@@ -209,10 +208,19 @@ public class LineChartBuilder extends BaseChartBuilder<LineChartDefinition> {
         // use NaN as chart data when no values are defined rather than 0
         java.util.Arrays.fill(totals, Double.NaN);
 
-        int n = 0;
-
         long lastOutputTime = Math.max(getInterval().getStart(), data.getStartTime());
 
+        // averaged values are output into primitive arrays that the dataset uses directly
+        // each output is at least 1 granularity apart, so size by the time span rather than the number of records; data
+        // sets that merge sources with different intervals can have many more records than points on the chart
+        long span = Math.min(getInterval().getEnd(), data.getEndTime()) - lastOutputTime;
+        int capacity = (int) Math.max(0, Math.min(data.getRecordCount(getInterval()), span / getGranularity())) + 1;
+        long[] times = new long[capacity];
+        double[][] values = new double[fields.size()][capacity];
+        int outputCount = 0;
+
+        int n = 0;
+
         for (DataRecord record : data.getRecords(getInterval())) {
             if ((record != null) && record.hasData(type)) {
                 for (int i = 0; i < fields.size(); i++) {
@@ -234,7 +242,7 @@ public class LineChartBuilder extends BaseChartBuilder<LineChartDefinition> {
             // else no data for this type at this time but may still need to output
 
             if ((n > 0) && ((record.getTime() - lastOutputTime) >= getGranularity())) {
-                FixedMillisecond graphTime = new FixedMillisecond(record.getTime());
+                times[outputCount] = record.getTime();
 
                 for (int i = 0; i < fields.size(); i++) {
                     if (logger.isTraceEnabled()) {
@@ -242,17 +250,14 @@ public class LineChartBuilder extends BaseChartBuilder<LineChartDefinition> {
                                 + totals[i] / n + "\t" + n + "\t" + (record.getTime() - lastOutputTime));
                     }
 
-                    if (!Double.isNaN(totals[i])) {
-                        // if the plot is listening for dataset changes, it will fire an event for
-                        // every data point
-                        // this causes a huge amount of GC and very slow response times so the false
-                        // value is important here
-                        dataset.add(graphTime, totals[i] / n, fieldNames.get(i), false);
-                    }
+                    // NaN totals => no data for this field
+                    values[i][outputCount] = totals[i] / n;
 
                     totals[i] = Double.NaN;
                 }
 
+                ++outputCount;
+
                 lastOutputTime = record.getTime();
                 n = 0;
             }
@@ -262,7 +267,7 @@ public class LineChartBuilder extends BaseChartBuilder<LineChartDefinition> {
         long endTime = data.getEndTime();
 
         if (endTime != lastOutputTime) {
-            FixedMillisecond graphTime = new FixedMillisecond(endTime);
+            times[outputCount] = endTime;
 
             for (int i = 0; i < fields.size(); i++) {
                 if (logger.isTraceEnabled()) {
@@ -270,12 +275,23 @@ public class LineChartBuilder extends BaseChartBuilder<LineChartDefinition> {
                             + "\t" + n + "\t" + (endTime - lastOutputTime));
                 }
 
-                if (!Double.isNaN(totals[i])) {
-                    dataset.add(graphTime, totals[i] / n, fieldNames.get(i), false);
-                }
+                values[i][outputCount] = totals[i] / n;
+            }
+
+            ++outputCount;
+        }
+
+        if (outputCount != capacity) {
+            times = java.util.Arrays.copyOf(times, outputCount);
+
+            for (int i = 0; i < fields.size(); i++) {
+                values[i] = java.util.Arrays.copyOf(values[i], outputCount);
             }
         }
 
+        // the dataset does not fire change events, so the plot will not be redrawn for every line
+        dataset.addSeries(fieldNames, times, values);
+
         // fieldName may not have been used if there was no data
         // so, search the dataset first before associating tuples
         for (int i = 0; i < dataset.getSeriesCount(); i++) {
@@ -1,12 +1,34 @@
 package com.ibm.nmon.gui.chart.data;
 
 import java.util.List;
+import java.util.Map;
 
-import org.jfree.data.time.TimeTableXYDataset;
+import org.jfree.data.DomainInfo;
+import org.jfree.data.Range;
+
+import org.jfree.data.time.FixedMillisecond;
+import org.jfree.data.time.TimePeriod;
+
+import org.jfree.data.xy.AbstractXYDataset;
+import org.jfree.data.xy.TableXYDataset;
 
 import com.ibm.nmon.data.DataTuple;
 
-public final class DataTupleXYDataset extends TimeTableXYDataset implements DataTupleDataset {
+/**
+ * <p>
+ * Time based XY data that is backed by primitive arrays. Like JFreeChart's
+ * <code>TimeTableXYDataset</code>, all series share the same set of times and a series without a
+ * value at a given time returns <code>null</code>. Unlike <code>TimeTableXYDataset</code>, no
+ * objects are created for each data point.
+ * </p>
+ *
+ * <p>
+ * Series are added in groups that share the same times. The combined times for all the series are
+ * calculated lazily, when the data is first accessed.
+ * </p>
+ */
+public final class DataTupleXYDataset extends AbstractXYDataset implements TableXYDataset, DomainInfo,
+        DataTupleDataset {
     private static final long serialVersionUID = 9065578614822952026L;
 
     private final List<DataTuple> tuples;
@@ -14,6 +36,17 @@ public final class DataTupleXYDataset extends TimeTableXYDataset implements Data
     private final boolean stacked;
     private GraphData[] graphData;
 
+    @SuppressWarnings("rawtypes")
+    private final List<Comparable> seriesKeys = new java.util.ArrayList<Comparable>();
+    // series added together share the same times array; values are NaN when a series has no data
+    private final List<long[]> seriesTimes = new java.util.ArrayList<long[]>();
+    private final List<double[]> seriesValues = new java.util.ArrayList<double[]>();
+
+    // all times, sorted and distinct; null when it needs to be recalculated
+    private long[] times;
+    // for each series, the index into its values array for each time or -1 if there is no value
+    private int[][] seriesIndexes;
+
     private DatasetCallback callback = new DatasetCallback() {
         @Override
         public int getDataCount() {
@@ -38,6 +71,216 @@ public final class DataTupleXYDataset extends TimeTableXYDataset implements Data
         this.stacked = stacked;
     }
 
+    /**
+     * <p>
+     * Add multiple series that have values at the same times. The arrays are used directly, not
+     * copied, so they must not be modified after this call.
+     * </p>
+     *
+     * <p>
+     * <code>NaN</code> values are treated as missing data. Series with no data are not added. New
+     * series are ordered by the time of their first value. If a series with the same key already
+     * exists, the new values are merged into it, replacing any values at the same times.
+     * </p>
+     *
+     * @param keys the key for each series
+     * @param times the times for all the series, sorted ascending
+     * @param values the values for each series, in the same order as the keys
+     */
+    @SuppressWarnings("rawtypes")
+    public void addSeries(List<? extends Comparable> keys, long[] times, double[][] values) {
+        if (keys.size() != values.length) {
+            throw new IllegalArgumentException("there must be a values array for each key");
+        }
+
+        // do not keep times where no series has data
+        int timeCount = 0;
+
+        for (int i = 0; i < times.length; i++) {
+            boolean hasData = false;
+
+            for (int j = 0; j < values.length; j++) {
+                if (!Double.isNaN(values[j][i])) {
+                    hasData = true;
+                    break;
+                }
+            }
+
+            if (hasData) {
+                if (timeCount != i) {
+                    times[timeCount] = times[i];
+
+                    for (int j = 0; j < values.length; j++) {
+                        values[j][timeCount] = values[j][i];
+                    }
+                }
+
+                ++timeCount;
+            }
+        }
+
+        if (timeCount == 0) {
+            return;
+        }
+
+        if (timeCount != times.length) {
+            times = java.util.Arrays.copyOf(times, timeCount);
+
+            for (int j = 0; j < values.length; j++) {
+                values[j] = java.util.Arrays.copyOf(values[j], timeCount);
+            }
+        }
+
+        // order new series by their first value, keeping the given order for ties
+        final int[] firstIndexes = new int[values.length];
+        Integer[] order = new Integer[values.length];
+
+        for (int j = 0; j < values.length; j++) {
+            firstIndexes[j] = timeCount;
+
+            for (int i = 0; i < timeCount; i++) {
+                if (!Double.isNaN(values[j][i])) {
+                    firstIndexes[j] = i;
+                    break;
+                }
+            }
+
+            order[j] = j;
+        }
+
+        java.util.Arrays.sort(order, new java.util.Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return firstIndexes[o1] - firstIndexes[o2];
+            }
+        });
+
+        for (int j : order) {
+            if (firstIndexes[j] == timeCount) {
+                // no data
+                continue;
+            }
+
+            int existing = seriesKeys.indexOf(keys.get(j));
+
+            if (existing == -1) {
+                seriesKeys.add(keys.get(j));
+                seriesTimes.add(times);
+                seriesValues.add(values[j]);
+            }
+            else {
+                merge(existing, times, values[j]);
+            }
+        }
+
+        this.times = null;
+        this.seriesIndexes = null;
+        graphData = null;
+    }
+
+    // combine new values for an existing series; new values replace existing values at the same time
+    private void merge(int series, long[] newTimes, double[] newValues) {
+        long[] oldTimes = seriesTimes.get(series);
+        double[] oldValues = seriesValues.get(series);
+
+        long[] mergedTimes = new long[oldTimes.length + newTimes.length];
+        double[] mergedValues = new double[mergedTimes.length];
+
+        int i = 0;
+        int j = 0;
+        int n = 0;
+
+        while ((i < oldTimes.length) || (j < newTimes.length)) {
+            if ((j == newTimes.length) || ((i < oldTimes.length) && (oldTimes[i] < newTimes[j]))) {
+                mergedTimes[n] = oldTimes[i];
+                mergedValues[n++] = oldValues[i++];
+            }
+            else if ((i == oldTimes.length) || (newTimes[j] < oldTimes[i])) {
+                mergedTimes[n] = newTimes[j];
+                mergedValues[n++] = newValues[j++];
+            }
+            else {
+                mergedTimes[n] = newTimes[j];
+                mergedValues[n++] = Double.isNaN(newValues[j]) ? oldValues[i] : newValues[j];
+
+                ++i;
+                ++j;
+            }
+        }
+
+        seriesTimes.set(series, java.util.Arrays.copyOf(mergedTimes, n));
+        seriesValues.set(series, java.util.Arrays.copyOf(mergedValues, n));
+    }
+
+    private void calculateTimes() {
+        if (times != null) {
+            return;
+        }
+
+        // series added together share the same array, so only process each array once
+        Map<long[], int[]> indexes = new java.util.IdentityHashMap<long[], int[]>();
+
+        for (long[] t : seriesTimes) {
+            indexes.put(t, null);
+        }
+
+        if (indexes.size() == 1) {
+            times = indexes.keySet().iterator().next();
+        }
+        else if (indexes.isEmpty()) {
+            times = new long[0];
+        }
+        else {
+            int total = 0;
+
+            for (long[] t : indexes.keySet()) {
+                total += t.length;
+            }
+
+            long[] all = new long[total];
+            total = 0;
+
+            for (long[] t : indexes.keySet()) {
+                System.arraycopy(t, 0, all, total, t.length);
+                total += t.length;
+            }
+
+            java.util.Arrays.sort(all);
+
+            int distinct = 0;
+
+            for (int i = 0; i < all.length; i++) {
+                if ((distinct == 0) || (all[i] != all[distinct - 1])) {
+                    all[distinct++] = all[i];
+                }
+            }
+
+            times = java.util.Arrays.copyOf(all, distinct);
+        }
+
+        for (long[] t : indexes.keySet()) {
+            int[] index = new int[times.length];
+            int j = 0;
+
+            for (int i = 0; i < times.length; i++) {
+                if ((j < t.length) && (t[j] == times[i])) {
+                    index[i] = j++;
+                }
+                else {
+                    index[i] = -1;
+                }
+            }
+
+            indexes.put(t, index);
+        }
+
+        seriesIndexes = new int[seriesTimes.size()][];
+
+        for (int i = 0; i < seriesIndexes.length; i++) {
+            seriesIndexes[i] = indexes.get(seriesTimes.get(i));
+        }
+    }
+
     @Override
     @SuppressWarnings("rawtypes")
     public void associateTuple(Comparable rowKey, Comparable columnKey, DataTuple tuple) {
@@ -63,6 +306,85 @@ public final class DataTupleXYDataset extends TimeTableXYDataset implements Data
         return stacked;
     }
 
+    @Override
+    public int getSeriesCount() {
+        return seriesKeys.size();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Comparable getSeriesKey(int series) {
+        return seriesKeys.get(series);
+    }
+
+    @Override
+    public int getItemCount() {
+        calculateTimes();
+        return times.length;
+    }
+
+    /**
+     * All series have the same number of items.
+     */
+    @Override
+    public int getItemCount(int series) {
+        return getItemCount();
+    }
+
+    public TimePeriod getTimePeriod(int item) {
+        calculateTimes();
+        return new FixedMillisecond(times[item]);
+    }
+
+    @Override
+    public Number getX(int series, int item) {
+        return getXValue(series, item);
+    }
+
+    @Override
+    public double getXValue(int series, int item) {
+        calculateTimes();
+        return times[item];
+    }
+
+    @Override
+    public Number getY(int series, int item) {
+        double value = getYValue(series, item);
+
+        return Double.isNaN(value) ? null : value;
+    }
+
+    @Override
+    public double getYValue(int series, int item) {
+        calculateTimes();
+
+        int idx = seriesIndexes[series][item];
+
+        return idx == -1 ? Double.NaN : seriesValues.get(series)[idx];
+    }
+
+    @Override
+    public double getDomainLowerBound(boolean includeInterval) {
+        Range range = getDomainBounds(includeInterval);
+
+        return range == null ? Double.NaN : range.getLowerBound();
+    }
+
+    @Override
+    public double getDomainUpperBound(boolean includeInterval) {
+        Range range = getDomainBounds(includeInterval);
+
+        return range == null ? Double.NaN : range.getUpperBound();
+    }
+
+    @Override
+    public Range getDomainBounds(boolean includeInterval) {
+        calculateTimes();
+
+        // all times are points, so includeInterval does not matter
+        return times.length == 0 ? null : new Range(times[0], times[times.length - 1]);
+    }
+
     @Override
     public double getAverage(int row) {
         calculateGraphData();
@@ -127,6 +449,13 @@ public final class DataTupleXYDataset extends TimeTableXYDataset implements Data
         toReturn.tuples.addAll(this.tuples);
         toReturn.tuples.addAll(other.tuples);
 
+        // arrays are not modified once added so they can be shared
+        for (DataTupleXYDataset dataset : new DataTupleXYDataset[] { this, other }) {
+            toReturn.seriesKeys.addAll(dataset.seriesKeys);
+            toReturn.seriesTimes.addAll(dataset.seriesTimes);
+            toReturn.seriesValues.addAll(dataset.seriesValues);
+        }
+
         return toReturn;
     }
 
@@ -165,7 +165,7 @@ public final class TreeTransferHandler extends TransferHandler {
                         ProcessDataSet processData = (ProcessDataSet) data;
 
                         for (Process process : processData.getProcesses()) {
-                            if (process.getCommandLine().equals(command)) {
+                            if (process.commandLineEquals(command)) {
                                 transferable.addTuple(new DataTuple(processData, processData.getType(process), field));
                             }
                         }
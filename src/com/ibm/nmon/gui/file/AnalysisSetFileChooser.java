@@ -140,7 +140,7 @@ public final class AnalysisSetFileChooser extends GUIFileChooser {
                             // this allows the process id to change but the analysis set to always
                             // show the same data
                             for (Process process : processData.getProcesses()) {
-                                if (process.getCommandLine().equals(command)) {
+                                if (process.commandLineEquals(command)) {
                                     analysis.addData(processData.getType(process), field);
                                 }
                             }
@@ -11,12 +11,15 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 
+import com.ibm.nmon.analysis.ClusterAggregator;
 import com.ibm.nmon.data.DataSet;
 import com.ibm.nmon.data.DataSetListener;
 import com.ibm.nmon.data.transform.name.HostRenamerFactory;
 import com.ibm.nmon.data.transform.name.HostRenamer;
 import com.ibm.nmon.gui.Styles;
+import com.ibm.nmon.gui.analysis.RankingDialog;
 import com.ibm.nmon.gui.file.FileLoadAction;
 import com.ibm.nmon.gui.file.GUIFileChooser;
 import com.ibm.nmon.gui.chart.annotate.AnnotationCache;
@@ -39,6 +42,7 @@ import java.beans.PropertyChangeEvent;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
 
 /**
  * Main menu bar for the application. Listens for interval changes and some property changes so the menu items stay in
@@ -52,6 +56,9 @@ final class MainMenu extends JMenuBar implements IntervalListener, DataSetListen
     // 1-based index -- see createHelpMenu()
     private int oracleJVMHeapDumpCount = 1;
 
+    private ClusterAggregator clusterAggregator;
+    private JCheckBoxMenuItem clusterItem;
+
     MainMenu(NMONVisualizerGui gui) {
         super();
 
@@ -82,6 +89,28 @@ final class MainMenu extends JMenuBar implements IntervalListener, DataSetListen
 
         menu.add(item);
 
+        item = new JMenuItem("Load Metrics...");
+        item.setMnemonic('m');
+        item.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                GUIFileChooser chooser = new GUIFileChooser(gui, "Select Metric Definitions", "metrics.xml");
+
+                if (chooser.showDialog(gui.getMainFrame(), "Load") == JFileChooser.APPROVE_OPTION) {
+                    try {
+                        gui.loadDerivedMetrics(chooser.getSelectedFile().getAbsolutePath());
+                    }
+                    catch (Exception ex) {
+                        JOptionPane.showMessageDialog(gui.getMainFrame(),
+                                "Error parsing file '" + chooser.getSelectedFile().getName() + "'.\n" + ex.getMessage(),
+                                "Parse Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        });
+
+        menu.add(item);
+
         menu.addSeparator();
 
         item = new JMenuItem("Remove All");
@@ -234,6 +263,17 @@ final class MainMenu extends JMenuBar implements IntervalListener, DataSetListen
 
         menu.add(item);
 
+        item = new JMenuItem("Top Fields...");
+        item.setMnemonic('f');
+        item.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                new RankingDialog(gui).setVisible(true);
+            }
+        });
+
+        menu.add(item);
+
         menu.addSeparator();
 
         JMenu chartSubMenu = new JMenu("Chart");
@@ -439,6 +479,59 @@ final class MainMenu extends JMenuBar implements IntervalListener, DataSetListen
 
         menu.add(checkItem);
 
+        checkItem = new JCheckBoxMenuItem("FIO Latency Percentiles");
+        checkItem.setMnemonic('f');
+        checkItem.setSelected(gui.getBooleanProperty("fioLatencyPercentiles"));
+
+        checkItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                gui.setProperty("fioLatencyPercentiles", ((JCheckBoxMenuItem) e.getSource()).isSelected());
+            }
+        });
+
+        menu.add(checkItem);
+
+        checkItem = new JCheckBoxMenuItem("Index Data for Intervals");
+        checkItem.setMnemonic('i');
+        checkItem.setSelected(gui.getBooleanProperty("indexIntervals"));
+
+        checkItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                gui.setProperty("indexIntervals", ((JCheckBoxMenuItem) e.getSource()).isSelected());
+            }
+        });
+
+        menu.add(checkItem);
+
+        checkItem = new JCheckBoxMenuItem("Aggregate Systems into Cluster");
+        checkItem.setMnemonic('g');
+
+        // unchecked if the user removes the cluster; see dataRemoved()
+        clusterItem = checkItem;
+
+        checkItem.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (clusterAggregator != null) {
+                    clusterAggregator.stop();
+                    clusterAggregator = null;
+                }
+
+                if (((JCheckBoxMenuItem) e.getSource()).isSelected()) {
+                    // update the cluster in the event dispatch thread like all other data set changes
+                    clusterAggregator = new ClusterAggregator(gui, "Cluster", 0, new Executor() {
+                        @Override
+                        public void execute(Runnable command) {
+                            SwingUtilities.invokeLater(command);
+                        }
+                    });
+
+                    clusterAggregator.start();
+                }
+            }
+        });
+
+        menu.add(checkItem);
+
         checkItem = new JCheckBoxMenuItem("Show Status Bar");
         checkItem.setMnemonic('b');
         checkItem.setSelected(gui.getBooleanProperty("showStatusBar"));
@@ -762,6 +855,12 @@ final class MainMenu extends JMenuBar implements IntervalListener, DataSetListen
     }
 
     public void dataRemoved(DataSet data) {
+        if ((clusterAggregator != null) && (data == clusterAggregator.getCluster())) {
+            // the aggregator stops itself when the cluster is removed from the tree
+            clusterAggregator = null;
+            clusterItem.setSelected(false);
+        }
+
         changeDefaultIntervalName();
     }
 
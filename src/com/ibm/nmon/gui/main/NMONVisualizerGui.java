@@ -3,6 +3,10 @@ package com.ibm.nmon.gui.main;
 import java.util.List;
 import java.io.File;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
 import java.util.prefs.Preferences;
 
 import javax.swing.JFrame;
@@ -66,37 +70,55 @@ public final class NMONVisualizerGui extends NMONVisualizerApp {
             }
         }
 
+        // find the files to parse on this thread while the UI is being built on the Swing thread
+        final FutureTask<List<String>> findFiles = new FutureTask<List<String>>(new Callable<List<String>>() {
+            @Override
+            public List<String> call() {
+                File[] files = new File[args.length];
+
+                for (int i = 0; i < args.length; i++) {
+                    files[i] = new File(args[i]);
+                }
+
+                List<String> toParse = new java.util.ArrayList<String>();
+                FileHelper.recurseDirectories(files, CombinedFileFilter.getInstance(false), toParse);
+
+                return toParse;
+            }
+        });
+
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 try {
                     NMONVisualizerGui gui = new NMONVisualizerGui();
 
-                    gui.getMainFrame().setVisible(true);
-
                     if (args.length > 0) {
                         gui.logger.info("starting with files {}", java.util.Arrays.toString(args));
 
-                        File[] files = new File[args.length];
+                        try {
+                            List<String> toParse = findFiles.get();
 
-                        for (int i = 0; i < args.length; i++) {
-                            files[i] = new File(args[i]);
-                        }
-
-                        List<String> toParse = new java.util.ArrayList<String>();
-
-                        gui.logger.debug("parsing files {}", toParse);
+                            gui.logger.debug("parsing files {}", toParse);
 
-                        FileHelper.recurseDirectories(files, CombinedFileFilter.getInstance(false), toParse);
-
-                        new Thread(new ParserRunner(gui, toParse, gui.getDisplayTimeZone()),
-                                getClass().getName() + " Parser").start();
+                            // start parsing before the main frame is displayed; data added events are queued on
+                            // this thread so they will not be handled until after the frame is shown
+                            new Thread(new ParserRunner(gui, toParse, gui.getDisplayTimeZone()),
+                                    getClass().getName() + " Parser").start();
+                        }
+                        catch (ExecutionException ee) {
+                            gui.logger.error("cannot find files to parse", ee.getCause());
+                        }
                     }
+
+                    gui.getMainFrame().setVisible(true);
                 }
                 catch (Exception e) {
                     e.printStackTrace();
                 }
             }
         });
+
+        findFiles.run();
     }
 
     private static final String DEFAULT_WINDOW_TITLE = "NMON Visualizer";
@@ -155,6 +177,10 @@ public final class NMONVisualizerGui extends NMONVisualizerApp {
         // NMONVisuzlizerApp already set default value for scaleProcessesByCPUs property
         setProperty("scaleProcessesByCPUs",
                 preferences.get("scaleProcessesByCPUs", getProperty("scaleProcessesByCPUs")));
+        setProperty("fioLatencyPercentiles",
+                preferences.get("fioLatencyPercentiles", getProperty("fioLatencyPercentiles")));
+        // interval changes are common in the GUI, so index by default
+        setProperty("indexIntervals", preferences.get("indexIntervals", "true"));
 
         setProperty("showStatusBar", preferences.get("showStatusBar", "false"));
 
@@ -345,6 +371,8 @@ public final class NMONVisualizerGui extends NMONVisualizerApp {
 
             getPreferences().put("systemsNamedBy", getProperty("systemsNamedBy"));
             getPreferences().put("scaleProcessesByCPUs", getProperty("scaleProcessesByCPUs"));
+            getPreferences().put("fioLatencyPercentiles", getProperty("fioLatencyPercentiles"));
+            getPreferences().put("indexIntervals", getProperty("indexIntervals"));
             getPreferences().put("showStatusBar", getProperty("showStatusBar"));
             getPreferences().put("lineChartLegend", getProperty("lineChartLegend"));
 
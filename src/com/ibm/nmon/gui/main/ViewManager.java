@@ -40,12 +40,17 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
     private final NMONVisualizerGui gui;
 
     private final SummaryView summaryView;
-    private final DataSetView dataSetView;
-    private final DataTypeView dataTypeView;
+
+    // created on first use; DataSetView builds a report for every system, even if it is never viewed
+    private DataSetView dataSetView;
+    private DataTypeView dataTypeView;
 
     private final JPanel blank;
 
-    private final SummaryTablePanel tablePanel;
+    private SummaryTablePanel tablePanel;
+
+    // last divider location shared by all the views; applied to views as they are created
+    private int dividerLocation = -1;
 
     private final PathParser pathParser;
 
@@ -65,25 +70,14 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
         this.gui = gui;
         this.pathParser = new PathParser();
 
+        // SummaryView must always be created since it adds the 'all intervals' check box to the main frame
         summaryView = new SummaryView(gui);
-        dataSetView = new DataSetView(gui);
-        dataTypeView = new DataTypeView(gui);
-
-        summaryView.addPropertyChangeListener("annotation", this);
-        dataSetView.addPropertyChangeListener("annotation", this);
-        dataTypeView.addPropertyChangeListener("annotation", this);
-
-        summaryView.addPropertyChangeListener("chart", this);
-        dataSetView.addPropertyChangeListener("chart", this);
-        dataTypeView.addPropertyChangeListener("chart", this);
+        addView(summaryView);
 
         blank = new JPanel();
         blank.setBackground(java.awt.Color.WHITE);
         blank.setBorder(Styles.createTopLineBorder(this));
 
-        tablePanel = new SummaryTablePanel(gui, gui.getMainFrame());
-        tablePanel.setEnabled(false);
-
         gui.addPropertyChangeListener("chartsDisplayed", this);
 
         AnnotationCache.addAnnotationListener(this);
@@ -91,6 +85,64 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
         add(blank);
     }
 
+    private void addView(ChartSplitPane view) {
+        // views are enabled when shown
+        view.setEnabled(false);
+
+        view.addPropertyChangeListener("annotation", this);
+        view.addPropertyChangeListener("chart", this);
+
+        if (dividerLocation != -1) {
+            view.setDividerLocation(dividerLocation);
+        }
+    }
+
+    private DataSetView getDataSetView() {
+        if (dataSetView == null) {
+            // DataSetView adds reports for all existing data
+            dataSetView = new DataSetView(gui);
+            addView(dataSetView);
+        }
+
+        return dataSetView;
+    }
+
+    private DataTypeView getDataTypeView() {
+        if (dataTypeView == null) {
+            dataTypeView = new DataTypeView(gui);
+            addView(dataTypeView);
+        }
+
+        return dataTypeView;
+    }
+
+    private SummaryTablePanel getTablePanel() {
+        if (tablePanel == null) {
+            // data is only added by dragging from the tree, so the table always starts empty
+            tablePanel = new SummaryTablePanel(gui, gui.getMainFrame());
+            tablePanel.setEnabled(false);
+        }
+
+        return tablePanel;
+    }
+
+    // enable the given view and disable all the others that have been created
+    private void enableOnly(java.awt.Component view) {
+        summaryView.setEnabled(view == summaryView);
+
+        if (dataSetView != null) {
+            dataSetView.setEnabled(view == dataSetView);
+        }
+
+        if (dataTypeView != null) {
+            dataTypeView.setEnabled(view == dataTypeView);
+        }
+
+        if (tablePanel != null) {
+            tablePanel.setEnabled(view == tablePanel);
+        }
+    }
+
     void displayTableColumnChooser() {
         if (currentView != null) {
             currentView.displayTableColumnChooser();
@@ -102,10 +154,7 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
             remove(0);
             add(blank);
 
-            summaryView.setEnabled(false);
-            dataSetView.setEnabled(false);
-            dataTypeView.setEnabled(false);
-            tablePanel.setEnabled(false);
+            enableOnly(blank);
 
             updateDividerLocation();
 
@@ -118,10 +167,7 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
             remove(0);
             add(summaryView);
 
-            summaryView.setEnabled(true);
-            dataSetView.setEnabled(false);
-            dataTypeView.setEnabled(false);
-            tablePanel.setEnabled(false);
+            enableOnly(summaryView);
 
             updateDividerLocation();
 
@@ -130,14 +176,11 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
     }
 
     private void showDataSetView() {
-        if (currentView != dataSetView) {
+        if ((dataSetView == null) || (currentView != dataSetView)) {
             remove(0);
-            add(dataSetView);
+            add(getDataSetView());
 
-            summaryView.setEnabled(false);
-            dataSetView.setEnabled(true);
-            dataTypeView.setEnabled(false);
-            tablePanel.setEnabled(false);
+            enableOnly(dataSetView);
 
             updateDividerLocation();
 
@@ -146,14 +189,11 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
     }
 
     private void showDataTypeView() {
-        if (currentView != dataTypeView) {
+        if ((dataTypeView == null) || (currentView != dataTypeView)) {
             remove(0);
-            add(dataTypeView);
+            add(getDataTypeView());
 
-            summaryView.setEnabled(false);
-            dataSetView.setEnabled(false);
-            dataTypeView.setEnabled(true);
-            tablePanel.setEnabled(false);
+            enableOnly(dataTypeView);
 
             updateDividerLocation();
 
@@ -162,14 +202,11 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
     }
 
     private void showTable() {
-        if (getComponent(0) != tablePanel) {
+        if ((tablePanel == null) || (getComponent(0) != tablePanel)) {
             remove(0);
-            add(tablePanel);
+            add(getTablePanel());
 
-            summaryView.setEnabled(false);
-            dataSetView.setEnabled(false);
-            dataTypeView.setEnabled(false);
-            tablePanel.setEnabled(true);
+            enableOnly(tablePanel);
 
             updateDividerLocation();
 
@@ -179,11 +216,17 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
 
     private void updateDividerLocation() {
         if (currentView != null) {
-            int location = currentView.getDividerLocation();
+            dividerLocation = currentView.getDividerLocation();
 
-            summaryView.setDividerLocation(location);
-            dataSetView.setDividerLocation(location);
-            dataTypeView.setDividerLocation(location);
+            summaryView.setDividerLocation(dividerLocation);
+
+            if (dataSetView != null) {
+                dataSetView.setDividerLocation(dividerLocation);
+            }
+
+            if (dataTypeView != null) {
+                dataTypeView.setDividerLocation(dividerLocation);
+            }
         }
     }
 
@@ -291,7 +334,7 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
 
         @Override
         protected void onDataSetPath(DataSet data) {
-            dataSetView.setData(data);
+            getDataSetView().setData(data);
 
             if (gui.getBooleanProperty("chartsDisplayed")) {
                 showDataSetView();
@@ -310,7 +353,7 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
 
         @Override
         protected void onTypePath(DataSet data, DataType type) {
-            dataTypeView.setData(data, type);
+            getDataTypeView().setData(data, type);
 
             if (gui.getBooleanProperty("chartsDisplayed")) {
                 showDataTypeView();
@@ -320,7 +363,7 @@ public final class ViewManager extends JPanel implements PropertyChangeListener,
 
         @Override
         protected void onFieldPath(DataSet data, DataType type, String field) {
-            dataTypeView.setData(data, type, field);
+            getDataTypeView().setData(data, type, field);
 
             if (gui.getBooleanProperty("chartsDisplayed")) {
                 showDataTypeView();
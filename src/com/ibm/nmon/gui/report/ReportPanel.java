@@ -5,6 +5,14 @@ import org.slf4j.Logger;
 import java.util.BitSet;
 import java.util.List;
 
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeEvent;
 
@@ -29,6 +37,7 @@ import com.ibm.nmon.gui.Styles;
 
 import com.ibm.nmon.gui.chart.*;
 
+import com.ibm.nmon.gui.chart.annotate.AnnotationCache;
 import com.ibm.nmon.gui.chart.builder.ChartBuilderPlugin;
 
 import com.ibm.nmon.gui.main.NMONVisualizerGui;
@@ -54,12 +63,42 @@ import com.ibm.nmon.interval.Interval;
  * allows multiple chart definitions with the same short name to be passed in if they match different data sets (i.e.
  * different hostnames or operating systems).
  * </p>
+ * 
+ * <p>
+ * Charts are only displayed when their tab is selected. While this panel is enabled, charts for the other tabs are
+ * built in the background, nearest tabs first, so that switching tabs does not have to wait for the chart to be
+ * created. Background charts are discarded if the chart is invalidated before it is displayed.
+ * </p>
  */
 public final class ReportPanel extends JTabbedPane implements PropertyChangeListener, IntervalListener {
     private static final long serialVersionUID = 6377401207979477789L;
 
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(ReportPanel.class);
 
+    // shared by all reports; low priority daemon threads so the UI stays responsive
+    private static final ExecutorService CHART_BUILDERS;
+
+    static {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new java.util.concurrent.LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private int count = 0;
+
+                    @Override
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, ReportPanel.class.getName() + " Chart Builder " + ++count);
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        CHART_BUILDERS = executor;
+    }
+
     public static enum MultiplexMode {
         NONE, BY_TYPE, BY_FIELD
     };
@@ -74,8 +113,19 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
     private List<BaseChartDefinition> chartsInUse;
     private BitSet chartNeedsUpdate;
 
+    // incremented every time a chart needs to be updated so out of date background charts can be ignored
+    private int[] chartVersions;
+    // charts built in the background, waiting for their tab to be selected
+    private JFreeChart[] builtCharts;
+    private ChartBuilder[] chartBuilders;
+
     private final ChartFactory chartFactory;
 
+    // ChartFactory is not thread safe, so background builders create their own with the same settings
+    private final List<ChartBuilderPlugin> plugins = new java.util.ArrayList<ChartBuilderPlugin>();
+    private int granularity;
+    private Interval interval = Interval.DEFAULT;
+
     // ignore chart updates when tabs are being built
     private boolean buildingTabs;
 
@@ -96,6 +146,7 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
         setTabLayoutPolicy(SCROLL_TAB_LAYOUT);
         this.chartFactory = new ChartFactory(gui);
         this.chartFactory.setGranularity(gui.getGranularity());
+        this.granularity = gui.getGranularity();
 
         this.gui = gui;
         this.parent = parent;
@@ -161,9 +212,12 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
                         // notify listeners that the chart is not showing
                         getChartPanel().clearChart();
                         // ensure chart is recreated when re-enabled
-                        chartNeedsUpdate.set(idx);
+                        markForUpdate(idx);
                         // chart panel will already have fired a PropertyChange event
                     }
+
+                    // no need to build charts that are not being displayed
+                    cancelChartBuilders();
                 }
 
                 if (idx != -1) {
@@ -231,8 +285,8 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
 
     // mark all charts as invalid; update the current one
     public void resetReport() {
-        if (chartNeedsUpdate != null) {
-            chartNeedsUpdate.set(0, chartNeedsUpdate.size(), true);
+        for (int i = 0; i < chartsInUse.size(); i++) {
+            markForUpdate(i);
         }
 
         updateChart();
@@ -242,6 +296,8 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
     // note that clearing / setting the chart fires a property change event
     // return false if this did not happen so callers can fire the event regardless
     private boolean updateChart() {
+        boolean updated = false;
+
         if (isEnabled() && (getTabCount() != 0)) {
             int index = getSelectedIndex();
 
@@ -257,12 +313,87 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
                     }
 
                     chartNeedsUpdate.clear(index);
-                    return true;
+                    updated = true;
                 }
             }
+
+            buildChartsInBackground();
         }
 
-        return false;
+        return updated;
+    }
+
+    private void markForUpdate(int index) {
+        chartNeedsUpdate.set(index);
+        ++chartVersions[index];
+        builtCharts[index] = null;
+    }
+
+    // queue all the charts that need updating, nearest to the current tab first
+    // queued builders are resubmitted so the order changes as the selected tab changes
+    private void buildChartsInBackground() {
+        int selected = getSelectedIndex();
+
+        if ((selected == -1) || chartsInUse.isEmpty() || dataSets.isEmpty()) {
+            return;
+        }
+
+        List<DataSet> data = new java.util.ArrayList<DataSet>(dataSets);
+
+        for (int distance = 1; distance < chartsInUse.size(); distance++) {
+            for (int index : new int[] { selected + distance, selected - distance }) {
+                if ((index < 0) || (index >= chartsInUse.size())) {
+                    continue;
+                }
+
+                if (!chartNeedsUpdate.get(index) || (builtCharts[index] != null)) {
+                    continue;
+                }
+
+                ChartBuilder builder = chartBuilders[index];
+
+                if (builder != null) {
+                    if ((builder.version == chartVersions[index]) && builder.started) {
+                        // already building
+                        continue;
+                    }
+                    else {
+                        builder.future.cancel(false);
+                    }
+                }
+
+                builder = new ChartBuilder(index, data);
+                builder.future = CHART_BUILDERS.submit(builder);
+
+                chartBuilders[index] = builder;
+            }
+        }
+    }
+
+    private void cancelChartBuilders() {
+        if (chartBuilders != null) {
+            for (int i = 0; i < chartBuilders.length; i++) {
+                if (chartBuilders[i] != null) {
+                    chartBuilders[i].future.cancel(false);
+                    chartBuilders[i] = null;
+                }
+            }
+        }
+    }
+
+    // called in the Swing thread when a background chart is complete
+    private void chartBuilt(ChartBuilder builder) {
+        int index = builder.index;
+
+        if ((builder.charts == chartsInUse) && (chartBuilders != null)) {
+            if (chartBuilders[index] == builder) {
+                chartBuilders[index] = null;
+            }
+
+            if ((builder.chart != null) && (builder.version == chartVersions[index]) && chartNeedsUpdate.get(index)) {
+                builtCharts[index] = builder.chart;
+            }
+        }
     }
 
     public BaseChartPanel getChartPanel() {
@@ -286,6 +417,7 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
 
     public void addPlugin(ChartBuilderPlugin plugin) {
         chartFactory.addPlugin(plugin);
+        plugins.add(plugin);
     }
 
     @Override
@@ -299,6 +431,7 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
             int newGranularity = (Integer) evt.getNewValue();
 
             chartFactory.setGranularity(newGranularity);
+            granularity = newGranularity;
 
             // always update line charts on granularity changes
             // bar charts and interval line charts do not need to be updated unless the stat is
@@ -310,13 +443,13 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
                         || chartDefinition.getClass().equals(BarChartDefinition.class)) {
                     for (DataDefinition definition : chartDefinition.getData()) {
                         if (definition.getStatistic() == Statistic.GRANULARITY_MAXIMUM) {
-                            chartNeedsUpdate.set(i);
+                            markForUpdate(i);
                             break;
                         }
                     }
                 }
                 else {
-                    chartNeedsUpdate.set(i);
+                    markForUpdate(i);
                 }
             }
 
@@ -326,8 +459,15 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
             // called by chart panels when annotations / markers are added
             // all charts except the current need to be updated to show the new annotation
             if (chartNeedsUpdate != null) {
-                chartNeedsUpdate.set(0, chartNeedsUpdate.size(), true);
-                chartNeedsUpdate.flip(getSelectedIndex());
+                int selected = getSelectedIndex();
+
+                for (int i = 0; i < chartsInUse.size(); i++) {
+                    if (i != selected) {
+                        markForUpdate(i);
+                    }
+                }
+
+                chartNeedsUpdate.clear(selected);
             }
 
             firePropertyChange(evt.getPropertyName(), evt.getOldValue(), evt.getNewValue());
@@ -350,7 +490,7 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
                 BaseChartDefinition chartDefinition = chartsInUse.get(i);
 
                 if (chartDefinition.getClass().equals(LineChartDefinition.class)) {
-                    chartNeedsUpdate.set(i);
+                    markForUpdate(i);
                 }
             }
 
@@ -376,11 +516,12 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
     @Override
     public void currentIntervalChanged(Interval interval) {
         chartFactory.setInterval(interval);
+        this.interval = interval;
 
         // update non-interval charts
         for (int i = 0; i < chartsInUse.size(); i++) {
             if (!chartsInUse.get(i).getClass().equals(IntervalChartDefinition.class)) {
-                chartNeedsUpdate.set(i);
+                markForUpdate(i);
             }
         }
 
@@ -407,7 +548,13 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
 
         super.removeAll();
 
+        cancelChartBuilders();
+
         chartsInUse = java.util.Collections.emptyList();
+        chartNeedsUpdate = null;
+        chartVersions = null;
+        builtCharts = null;
+        chartBuilders = null;
     }
 
     public void dispose() {
@@ -423,7 +570,7 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
         // interval charts need to be updated
         for (int i = 0; i < chartsInUse.size(); i++) {
             if (chartsInUse.get(i).getClass().equals(IntervalChartDefinition.class)) {
-                chartNeedsUpdate.set(i);
+                markForUpdate(i);
             }
         }
 
@@ -477,6 +624,10 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
                 chartNeedsUpdate = new BitSet(chartsInUse.size());
                 chartNeedsUpdate.set(0, chartNeedsUpdate.size(), true);
 
+                chartVersions = new int[chartsInUse.size()];
+                builtCharts = new JFreeChart[chartsInUse.size()];
+                chartBuilders = new ChartBuilder[chartsInUse.size()];
+
                 for (BaseChartDefinition report : chartsInUse) {
                     BaseChartPanel chartPanel = null;
 
@@ -522,7 +673,31 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
     private void createChart(int index) {
         BaseChartDefinition definition = chartsInUse.get(index);
 
-        JFreeChart chart = chartFactory.createChart(definition, dataSets);
+        JFreeChart chart = builtCharts[index];
+        builtCharts[index] = null;
+
+        ChartBuilder builder = chartBuilders[index];
+        chartBuilders[index] = null;
+
+        if (builder != null) {
+            if ((chart == null) && builder.started && (builder.version == chartVersions[index])) {
+                // already being built; waiting is faster than starting over
+                try {
+                    builder.future.get();
+                    chart = builder.chart;
+                }
+                catch (Exception e) {
+                    // build the chart below
+                }
+            }
+            else {
+                builder.future.cancel(false);
+            }
+        }
+
+        if (chart == null) {
+            chart = chartFactory.createChart(definition, dataSets);
+        }
 
         // setChart will fire the event that updates the data table
         BaseChartPanel chartPanel = getChartPanel(index);
@@ -540,6 +715,17 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
             }
         }
 
+        // annotations are added by listeners when a chart is displayed, so those charts must be
+        // saved by selecting each tab in turn
+        if (AnnotationCache.hasAnnotations() || dataSets.isEmpty()) {
+            saveAllChartsSequentially(directory, progress);
+        }
+        else {
+            saveAllChartsInParallel(directory, progress);
+        }
+    }
+
+    private void saveAllChartsSequentially(final String directory, final ItemProgressDialog progress) {
         // This code is a mess of things running in and out of the Swing Event Thread mostly to
         // allow the progress dialog to be modal. If it was not modal, other issues would arise if
         // users could continue to click on the UI while this code is trying to change tabs, etc.
@@ -620,6 +806,217 @@ public final class ReportPanel extends JTabbedPane implements PropertyChangeList
         saver.start();
     }
 
+    // build charts that are not already displayed on the worker threads and save them there
+    // the progress dialog is still modal since the tabs cannot change while saving
+    private void saveAllChartsInParallel(final String directory, final ItemProgressDialog progress) {
+        final int chartCount = chartsInUse.size();
+
+        final String[] names = new String[chartCount];
+        final BaseChartPanel[] panels = new BaseChartPanel[chartCount];
+        final JFreeChart[] charts = new JFreeChart[chartCount];
+        final List<ChartBuilder> toBuild = new java.util.ArrayList<ChartBuilder>();
+
+        // everything that is built in the background will be built again for saving
+        cancelChartBuilders();
+
+        List<DataSet> data = new java.util.ArrayList<DataSet>(dataSets);
+
+        for (int i = 0; i < chartCount; i++) {
+            names[i] = chartsInUse.get(i).getShortName();
+            panels[i] = getChartPanel(i);
+
+            if (!chartNeedsUpdate.get(i)) {
+                charts[i] = getChartPanel(i).getChart();
+            }
+            else if (builtCharts[i] != null) {
+                charts[i] = builtCharts[i];
+            }
+            else {
+                toBuild.add(new ChartBuilder(i, data));
+            }
+        }
+
+        Thread saver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+
+                // start modal dialog must not happen directly in the Swing thread or no other code
+                // will run until it is closed
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        progress.setVisible(true);
+                    }
+                });
+
+                CompletionService<ChartBuilder> completed = new ExecutorCompletionService<ChartBuilder>(
+                        CHART_BUILDERS);
+
+                for (final ChartBuilder builder : toBuild) {
+                    completed.submit(new java.util.concurrent.Callable<ChartBuilder>() {
+                        @Override
+                        public ChartBuilder call() {
+                            builder.run();
+
+                            if (builder.chart != null) {
+                                saveChart(directory, panels[builder.index], builder.chart,
+                                        builder.charts.get(builder.index));
+                            }
+
+                            return builder;
+                        }
+                    });
+                }
+
+                // displayed charts are saved in the event thread since they may be changed there
+                for (int i = 0; i < chartCount; i++) {
+                    if (charts[i] != null) {
+                        final int n = i;
+
+                        try {
+                            SwingUtilities.invokeAndWait(new Runnable() {
+                                @Override
+                                public void run() {
+                                    saveChart(directory, panels[n], charts[n], chartsInUse.get(n));
+                                }
+                            });
+                        }
+                        catch (Exception e) {
+                            LOGGER.warn("error saving chart " + names[n], e);
+                        }
+
+                        updateProgress(progress, names[n]);
+                    }
+                }
+
+                for (int i = 0; i < toBuild.size(); i++) {
+                    try {
+                        ChartBuilder builder = completed.take().get();
+
+                        if (builder.chart == null) {
+                            LOGGER.warn("error saving chart " + names[builder.index]);
+                        }
+
+                        updateProgress(progress, names[builder.index]);
+                    }
+                    catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                    catch (java.util.concurrent.ExecutionException ee) {
+                        LOGGER.warn("error saving chart", ee.getCause());
+                    }
+                }
+
+                LOGGER.debug("saved {} charts in {}ms", chartCount, (System.nanoTime() - start) / 1000000.0d);
+
+                // wait here so that the progress dialog finishes updating before disappearing
+                try {
+                    SwingUtilities.invokeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            progress.dispose();
+                        }
+                    });
+                }
+                catch (Exception e) {
+                    LOGGER.warn("error closing progress dialog", e);
+                }
+            }
+        });
+
+        saver.start();
+    }
+
+    private void saveChart(String directory, BaseChartPanel panel, JFreeChart chart, BaseChartDefinition definition) {
+        panel.saveChart(directory, definition.getShortName(), chart, definition.getWidth(), definition.getHeight());
+    }
+
+    private void updateProgress(final ItemProgressDialog progress, final String name) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                progress.setCurrentItem(name);
+                progress.updateProgress();
+            }
+        });
+    }
+
+    /**
+     * Builds a single chart with its own ChartFactory, using the settings that were current when
+     * the builder was created. The result is passed back to the Swing thread, which ignores it if
+     * the chart has been changed since.
+     */
+    private final class ChartBuilder implements Runnable {
+        private final int index;
+        private final int version;
+        private final List<BaseChartDefinition> charts;
+        private final List<DataSet> data;
+
+        private final int granularity;
+        private final Interval interval;
+        private final boolean showLegends;
+        private final List<ChartBuilderPlugin> plugins;
+
+        private volatile boolean started;
+        private volatile JFreeChart chart;
+
+        private Future<?> future;
+
+        // must be created in the Swing thread
+        ChartBuilder(int index, List<DataSet> data) {
+            this.index = index;
+            this.version = chartVersions[index];
+            this.charts = chartsInUse;
+            this.data = data;
+
+            this.granularity = ReportPanel.this.granularity;
+            this.interval = ReportPanel.this.interval;
+            this.showLegends = gui.getBooleanProperty("lineChartLegend");
+            this.plugins = new java.util.ArrayList<ChartBuilderPlugin>(ReportPanel.this.plugins);
+        }
+
+        @Override
+        public void run() {
+            started = true;
+
+            long start = System.nanoTime();
+
+            ChartFactory factory = new ChartFactory(gui);
+            factory.setGranularity(granularity);
+            factory.setInterval(interval);
+            factory.showLegends(showLegends);
+
+            for (ChartBuilderPlugin plugin : plugins) {
+                factory.addPlugin(plugin);
+            }
+
+            try {
+                chart = factory.createChart(charts.get(index), data);
+
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("built chart '{}' in the background in {}ms", charts.get(index).getShortName(),
+                            (System.nanoTime() - start) / 1000000.0d);
+                }
+            }
+            catch (RuntimeException re) {
+                // data or intervals changed while building; the chart will be rebuilt when displayed
+                LOGGER.debug("could not build chart '" + charts.get(index).getShortName() + "' in the background",
+                        re);
+            }
+
+            final ChartBuilder builder = this;
+
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    chartBuilt(builder);
+                }
+            });
+        }
+    }
+
     private JLabel createNoReportsLabel(String toDisplay) {
         JLabel label = new JLabel(toDisplay);
         label.setFont(Styles.LABEL_ERROR.deriveFont(Styles.LABEL_ERROR.getSize() * 1.5f));
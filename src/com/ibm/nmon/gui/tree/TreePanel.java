@@ -1,14 +1,23 @@
 package com.ibm.nmon.gui.tree;
 
+import org.slf4j.Logger;
+
 import java.util.List;
 import java.util.Map;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import javax.swing.BorderFactory;
 import javax.swing.JScrollPane;
 import javax.swing.JTree;
+import javax.swing.SwingUtilities;
 import javax.swing.ToolTipManager;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 import javax.swing.tree.TreeSelectionModel;
 import javax.swing.tree.DefaultTreeModel;
@@ -28,11 +37,39 @@ import com.ibm.nmon.gui.main.NMONVisualizerGui;
 
 import com.ibm.nmon.util.DataHelper;
 
+/**
+ * Displays all the parsed data as a tree of systems, types and fields. The tree for each DataSet is built in the
+ * background and field nodes are only created when their parent is expanded. When a DataSet changes, only the nodes
+ * for new or changed types are added to the existing tree.
+ */
 public final class TreePanel extends JScrollPane implements DataSetListener {
     private static final long serialVersionUID = 8763622839346467286L;
 
+    private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(TreePanel.class);
+
     static final String ROOT_NAME = "All Systems";
 
+    // a single thread so trees for the same DataSet are always built, and applied, in order
+    private static final ExecutorService TREE_BUILDER;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new java.util.concurrent.LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, TreePanel.class.getName() + " Tree Builder");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+
+        TREE_BUILDER = executor;
+    }
+
+    private final NMONVisualizerGui gui;
+
     protected final JTree tree;
 
     public void addTreeSelectionListener(TreeSelectionListener tsl) {
@@ -40,6 +77,8 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
     }
 
     public TreePanel(NMONVisualizerGui gui) {
+        this.gui = gui;
+
         DefaultMutableTreeNode root = new DefaultMutableTreeNode(ROOT_NAME);
 
         tree = new JTree(root);
@@ -67,6 +106,18 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
 
     @Override
     public final void dataAdded(DataSet data) {
+        // the types are copied here, on the EDT, since the DataSet can be modified by parsing while the tree is built
+        TREE_BUILDER.execute(new TreeBuilder(data));
+    }
+
+    // called on the EDT once the tree for the data has been built
+    private void updateTree(DataSet data, DefaultMutableTreeNode builtNode) {
+        // ignore data that was removed while the tree was being built
+        if (!isLoaded(data)) {
+            return;
+        }
+
+        DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
         DefaultMutableTreeNode dataNode = null;
         TreePath selectedPath = null;
         List<TreePath> expandedPaths = null;
@@ -74,7 +125,7 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
         int insertIdx = 0;
 
         // find the existing data set node, if any
-        DefaultMutableTreeNode root = (DefaultMutableTreeNode) ((DefaultTreeModel) tree.getModel()).getRoot();
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) model.getRoot();
 
         for (int i = 0; i < root.getChildCount(); i++) {
             DefaultMutableTreeNode toSearch = (DefaultMutableTreeNode) root.getChildAt(i);
@@ -88,8 +139,8 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
                 dataNode = toSearch;
                 existing = true;
 
-                // if the DataSet node has children, remove them since the DataTypes could have
-                // changed; save the existing tree state first
+                // the DataTypes could have changed; save the existing tree state first so it can be
+                // restored for any replaced nodes
                 TreePath current = tree.getSelectionPath();
 
                 if ((current != null) && new TreePath(dataNode.getPath()).isDescendant(current)) {
@@ -106,38 +157,39 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
                     expandedPaths = java.util.Collections.emptyList();
                 }
 
-                dataNode.removeAllChildren();
-
                 break;
             }
         }
 
-        // new data set, new tree node
-        if (dataNode == null) {
-            dataNode = new DefaultMutableTreeNode(data);
-        }
-
-        buildDataSetTree(dataNode, data);
-
-        // adding to an existing data set, alert the tree the structure has changed and make
-        // sure the same nodes are expanded / selected
+        // adding to an existing data set, only update the nodes that changed and make sure the
+        // same nodes are expanded / selected
         if (existing) {
-            ((javax.swing.tree.DefaultTreeModel) tree.getModel()).nodeStructureChanged(dataNode);
+            long start = System.nanoTime();
+
+            mergeChildren(model, dataNode, builtNode);
 
             for (TreePath path : expandedPaths) {
                 tree.expandPath(rebuildPath(path));
             }
 
             if (selectedPath != null) {
+                // always reselect so any TreeSelectionListeners see the new data
+                tree.clearSelection();
                 tree.setSelectionPath(rebuildPath(selectedPath));
             }
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("updated tree for {} in {}ms", data, (System.nanoTime() - start) / 1000000.0d);
+            }
         }
         else {
+            dataNode = builtNode;
+
             if (insertIdx > root.getChildCount()) {
                 insertIdx = root.getChildCount() - 1;
             }
 
-            ((DefaultTreeModel) tree.getModel()).insertNodeInto(dataNode, root, insertIdx);
+            model.insertNodeInto(dataNode, root, insertIdx);
 
             if (root.getChildCount() == 1) {
                 // expand the root node now that there is something in the tree
@@ -222,26 +274,148 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
             List<DefaultMutableTreeNode> children = java.util.Collections
                     .list((java.util.Enumeration<DefaultMutableTreeNode>) parent.children());
 
+            DefaultMutableTreeNode next = null;
+
             for (DefaultMutableTreeNode child : children) {
                 if (((DefaultMutableTreeNode) oldPaths[pathIdx]).getUserObject().equals(child.getUserObject())) {
-                    newPath[pathIdx] = child;
-                    ++pathIdx;
-                    parent = child;
+                    next = child;
                     break;
                 }
             }
+
+            if (next == null) {
+                // node no longer exists; use the closest ancestor that does
+                return new TreePath(java.util.Arrays.copyOf(newPath, pathIdx));
+            }
+
+            newPath[pathIdx] = next;
+            ++pathIdx;
+            parent = next;
         }
 
         return new TreePath(newPath);
     }
 
-    private void buildDataSetTree(DefaultMutableTreeNode dataNode, DataSet data) {
-        boolean buildProcessNode = false;
+    private boolean isLoaded(DataSet data) {
+        for (DataSet loaded : gui.getDataSets()) {
+            if (loaded == data) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // update the existing node's children to match the newly built ones; existing nodes for unchanged types are
+    // kept so that only new or changed types are added to the tree
+    private void mergeChildren(DefaultTreeModel model, DefaultMutableTreeNode existing, DefaultMutableTreeNode built) {
+        List<DefaultMutableTreeNode> builtChildren = new java.util.ArrayList<DefaultMutableTreeNode>(
+                built.getChildCount());
+        Map<Object, DefaultMutableTreeNode> builtByUserObject = new java.util.HashMap<Object, DefaultMutableTreeNode>(
+                built.getChildCount() * 2);
+
+        for (int i = 0; i < built.getChildCount(); i++) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) built.getChildAt(i);
+
+            builtChildren.add(child);
+            builtByUserObject.put(child.getUserObject(), child);
+        }
+
+        // built node -> existing node to keep in its place
+        Map<DefaultMutableTreeNode, DefaultMutableTreeNode> kept = new java.util.IdentityHashMap<DefaultMutableTreeNode,
+                DefaultMutableTreeNode>();
+
+        List<Integer> removedIndexes = new java.util.ArrayList<Integer>();
+        List<Object> removed = new java.util.ArrayList<Object>();
+
+        for (int i = 0; i < existing.getChildCount(); i++) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) existing.getChildAt(i);
+            DefaultMutableTreeNode match = builtByUserObject.remove(child.getUserObject());
+
+            if ((match != null) && canMerge(child, match)) {
+                kept.put(match, child);
+            }
+            else {
+                removedIndexes.add(i);
+                removed.add(child);
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            int[] indexes = new int[removedIndexes.size()];
+
+            for (int i = indexes.length - 1; i >= 0; i--) {
+                indexes[i] = removedIndexes.get(i);
+                existing.remove(indexes[i]);
+            }
+
+            model.nodesWereRemoved(existing, indexes, removed.toArray());
+        }
+
+        List<Integer> insertedIndexes = new java.util.ArrayList<Integer>();
+        List<DefaultMutableTreeNode> toMerge = new java.util.ArrayList<DefaultMutableTreeNode>();
+        boolean reordered = false;
+
+        for (int i = 0; i < builtChildren.size(); i++) {
+            DefaultMutableTreeNode child = builtChildren.get(i);
+            DefaultMutableTreeNode existingChild = kept.get(child);
+
+            if (existingChild == null) {
+                existing.insert(child, i);
+                insertedIndexes.add(i);
+            }
+            else {
+                if (existing.getChildAt(i) != existingChild) {
+                    // should not happen since types and processes are always sorted, but handle it anyway
+                    existing.insert(existingChild, i);
+                    reordered = true;
+                }
+
+                if (!(existingChild instanceof FieldTreeNode)) {
+                    toMerge.add(child);
+                }
+            }
+        }
+
+        if (reordered) {
+            model.nodeStructureChanged(existing);
+        }
+        else if (!insertedIndexes.isEmpty()) {
+            int[] indexes = new int[insertedIndexes.size()];
+
+            for (int i = 0; i < indexes.length; i++) {
+                indexes[i] = insertedIndexes.get(i);
+            }
+
+            model.nodesWereInserted(existing, indexes);
+        }
+
+        for (DefaultMutableTreeNode child : toMerge) {
+            mergeChildren(model, kept.get(child), child);
+        }
+    }
+
+    private static boolean canMerge(DefaultMutableTreeNode existing, DefaultMutableTreeNode built) {
+        if (existing.getClass() != built.getClass()) {
+            return false;
+        }
+        else if (existing instanceof FieldTreeNode) {
+            // merged types are replaced with new types that contain all the fields
+            return ((FieldTreeNode) existing).type == ((FieldTreeNode) built).type;
+        }
+        else {
+            // grouping node; merge its children
+            return true;
+        }
+    }
+
+    private static void buildDataSetTree(DefaultMutableTreeNode dataNode, List<DataType> types, String topName) {
+        Map<Process, ProcessDataType> processTypes = null;
         List<SubDataType> gcTypes = null;
         Map<String, DefaultMutableTreeNode> subtypes = null;
 
         // add types and processes
-        for (DataType type : data.getTypes()) {
+        for (DataType type : types) {
             if (type.getClass().equals(SubDataType.class)) {
                 if (type.getId().startsWith("GC")) {
                     if (gcTypes == null) {
@@ -273,15 +447,20 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
                 }
             }
             else if (type.getClass().equals(ProcessDataType.class)) {
-                buildProcessNode = true;
+                if (processTypes == null) {
+                    processTypes = new java.util.HashMap<Process, ProcessDataType>();
+                }
+
+                ProcessDataType processType = (ProcessDataType) type;
+                processTypes.put(processType.getProcess(), processType);
             }
             else {
                 dataNode.add(new TypeTreeNode(type));
             }
         }
 
-        if (buildProcessNode) {
-            dataNode.add(buildTopTree((ProcessDataSet) data));
+        if ((processTypes != null) && (topName != null)) {
+            dataNode.add(buildTopTree(topName, processTypes));
         }
 
         if (gcTypes != null) {
@@ -289,7 +468,7 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
         }
     }
 
-    private DefaultMutableTreeNode buildTopTree(ProcessDataSet data) {
+    private static DefaultMutableTreeNode buildTopTree(String topName, Map<Process, ProcessDataType> processTypes) {
         // TOP
         // |_ process [single instance] (as ProcessDataType)
         // ...|_ TOP field 1
@@ -308,9 +487,9 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
         // ......|_ TOP fields
 
         // format topNode's name like TypeTreeNode
-        DefaultMutableTreeNode topNode = new DefaultMutableTreeNode(data.getTypeIdPrefix());
+        DefaultMutableTreeNode topNode = new DefaultMutableTreeNode(topName);
 
-        Map<String, List<Process>> processNameToProcesses = DataHelper.getProcessesByName(data, true);
+        Map<String, List<Process>> processNameToProcesses = DataHelper.getProcessesByName(processTypes.keySet(), true);
 
         for (String processName : processNameToProcesses.keySet()) {
             List<Process> processes = processNameToProcesses.get(processName);
@@ -322,29 +501,13 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
                 // process node will be an AggregateDataType; sub-tree contains processs
                 processNode = new DefaultMutableTreeNode(processes.get(0).getName());
 
-                List<DataType> types = new java.util.ArrayList<DataType>();
-
                 for (Process process : processes) {
-                    DefaultMutableTreeNode processInstance = new DefaultMutableTreeNode(process);
-
-                    DataType type = data.getType(process);
-
-                    types.add(type);
-
-                    for (String field : type.getFields()) {
-                        processInstance.add(new DefaultMutableTreeNode(field));
-                    }
-
-                    processNode.add(processInstance);
+                    processNode.add(new FieldTreeNode(process, processTypes.get(process)));
                 }
             }
             else {
                 // process node is the process; no sub-tree
-                processNode = new DefaultMutableTreeNode(processes.get(0));
-
-                for (String field : data.getType(processes.get(0)).getFields()) {
-                    processNode.add(new DefaultMutableTreeNode(field));
-                }
+                processNode = new FieldTreeNode(processes.get(0), processTypes.get(processes.get(0)));
             }
 
             topNode.add(processNode);
@@ -353,7 +516,7 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
         return topNode;
     }
 
-    private DefaultMutableTreeNode buildGCTree(List<SubDataType> gcTypes) {
+    private static DefaultMutableTreeNode buildGCTree(List<SubDataType> gcTypes) {
         // create a top-level GC node
         DefaultMutableTreeNode gcNode = new DefaultMutableTreeNode("GC");
         Map<String, DefaultMutableTreeNode> jvmNodes = new java.util.HashMap<String, DefaultMutableTreeNode>();
@@ -377,23 +540,127 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
         return gcNode;
     }
 
-    private final class TypeTreeNode extends DefaultMutableTreeNode {
+    /**
+     * Builds the tree for a DataSet in the background, then updates the tree on the EDT.
+     */
+    private final class TreeBuilder implements Runnable {
+        private final DataSet data;
+        private final List<DataType> types;
+        private final String topName;
+
+        TreeBuilder(DataSet data) {
+            this.data = data;
+
+            types = new java.util.ArrayList<DataType>(data.getTypeCount());
+
+            for (DataType type : data.getTypes()) {
+                types.add(type);
+            }
+
+            if (data instanceof ProcessDataSet) {
+                topName = ((ProcessDataSet) data).getTypeIdPrefix();
+            }
+            else {
+                topName = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+
+            final DefaultMutableTreeNode dataNode = new DefaultMutableTreeNode(data);
+            buildDataSetTree(dataNode, types, topName);
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("built tree for {} in {}ms", data, (System.nanoTime() - start) / 1000000.0d);
+            }
+
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    updateTree(data, dataNode);
+                }
+            });
+        }
+    }
+
+    /**
+     * A node that creates a child for each of a DataType's fields only when its children are first accessed, i.e.
+     * when the node is expanded.
+     */
+    private static class FieldTreeNode extends DefaultMutableTreeNode {
+        private static final long serialVersionUID = 2918457391845370937L;
+
+        private final DataType type;
+        private boolean fieldsAdded = false;
+
+        FieldTreeNode(Object userObject, DataType type) {
+            super(userObject);
+
+            this.type = type;
+        }
+
+        private void addFields() {
+            if (!fieldsAdded) {
+                // set first since add() calls getChildCount()
+                fieldsAdded = true;
+
+                for (String field : type.getFields()) {
+                    add(new DefaultMutableTreeNode(field));
+                }
+            }
+        }
+
+        @Override
+        public int getChildCount() {
+            addFields();
+            return super.getChildCount();
+        }
+
+        @Override
+        public TreeNode getChildAt(int index) {
+            addFields();
+            return super.getChildAt(index);
+        }
+
+        @Override
+        public int getIndex(TreeNode child) {
+            addFields();
+            return super.getIndex(child);
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public java.util.Enumeration children() {
+            addFields();
+            return super.children();
+        }
+
+        @Override
+        public boolean isLeaf() {
+            if (fieldsAdded) {
+                return super.isLeaf();
+            }
+            else {
+                return type.getFieldCount() == 0;
+            }
+        }
+    }
+
+    private static final class TypeTreeNode extends FieldTreeNode {
         private static final long serialVersionUID = -3704741016840510282L;
 
         private final String toDisplay;
 
         TypeTreeNode(DataType type) {
-            super(type);
+            super(type, type);
 
             toDisplay = type.getId();
-
-            for (String field : type.getFields()) {
-                add(new DefaultMutableTreeNode(field));
-            }
         }
 
         TypeTreeNode(SubDataType type, boolean showSubId) {
-            super(type);
+            super(type, type);
 
             if (showSubId) {
                 toDisplay = type.getSubId();
@@ -401,10 +668,6 @@ public final class TreePanel extends JScrollPane implements DataSetListener {
             else {
                 toDisplay = type.getPrimaryId();
             }
-
-            for (String field : type.getFields()) {
-                add(new DefaultMutableTreeNode(field));
-            }
         }
 
         @Override
@@ -4,7 +4,6 @@ import org.slf4j.Logger;
 
 import java.util.List;
 import java.util.Set;
-import java.util.Date;
 
 import java.util.regex.Pattern;
 import java.text.ParseException;
@@ -198,7 +197,7 @@ public final class IntervalManager {
                 long endTime = 0;
 
                 try {
-                    startTime = TimeHelper.TIMESTAMP_FORMAT_ISO.parse(start).getTime();
+                    startTime = TimeHelper.TIMESTAMP_FORMAT_ISO.get().parse(start);
                 }
                 catch (ParseException pe) {
                     try {
@@ -216,7 +215,7 @@ public final class IntervalManager {
                 }
 
                 try {
-                    endTime = TimeHelper.TIMESTAMP_FORMAT_ISO.parse(end).getTime();
+                    endTime = TimeHelper.TIMESTAMP_FORMAT_ISO.get().parse(end);
                 }
                 catch (ParseException pe) {
                     try {
@@ -268,9 +267,9 @@ public final class IntervalManager {
                 writer.write(',');
 
                 if (offset == 0) { // absolute time
-                    writer.write(TimeHelper.TIMESTAMP_FORMAT_ISO.format(new Date(start)));
+                    writer.write(TimeHelper.TIMESTAMP_FORMAT_ISO.get().format(start));
                     writer.write(',');
-                    writer.write(TimeHelper.TIMESTAMP_FORMAT_ISO.format(new Date(end)));
+                    writer.write(TimeHelper.TIMESTAMP_FORMAT_ISO.get().format(end));
                 }
                 else { // relative time
                     writer.write(Long.toString(start));
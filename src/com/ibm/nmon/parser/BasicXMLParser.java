@@ -2,174 +2,306 @@ package com.ibm.nmon.parser;
 
 import org.slf4j.Logger;
 
+import com.ibm.nmon.parser.util.NameTable;
+import com.ibm.nmon.parser.util.XMLAttributes;
 import com.ibm.nmon.parser.util.XMLParserHelper;
-import com.ibm.nmon.util.DataHelper;
 
 import java.io.IOException;
 
-import java.io.LineNumberReader;
 import java.io.InputStream;
+import java.io.Reader;
 
 import java.util.Map;
 
 /**
- * Simple non-validating XML parser.
+ * Simple non-validating XML parser. Scans the input with a single character buffer, interning
+ * element names and passing attributes to subclasses unparsed.
  */
 public abstract class BasicXMLParser {
     protected final Logger logger = org.slf4j.LoggerFactory.getLogger(getClass());
 
-    private LineNumberReader in;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Reader in;
+
+    // the parser scans a single char buffer rather than reading lines so that elements spanning
+    // lines are not concatenated and no Strings are created for unneeded data
+    private char[] buffer;
+    // next character to scan
+    private int position;
+    // end of the valid data in buffer
+    private int limit;
+    // start of the data that must be kept in the buffer when it is refilled
+    private int markStart;
+
+    private int lineNumber;
+
+    // element names and attribute values repeat constantly; intern them to avoid allocations
+    private final NameTable names = new NameTable();
+    private final XMLAttributes attributes = new XMLAttributes(new NameTable());
 
     protected boolean skip = false;
 
     protected final void parse(String filename) throws IOException {
-        in = new LineNumberReader(new java.io.FileReader(filename));
+        in = new java.io.FileReader(filename);
         parse();
     }
 
     protected final void parse(InputStream stream) throws IOException {
-        in = new LineNumberReader(new java.io.InputStreamReader(stream));
+        in = new java.io.InputStreamReader(stream);
         parse();
     }
 
     private void parse() throws IOException {
-        try {
-            String line = null;
+        buffer = new char[BUFFER_SIZE];
+        position = 0;
+        limit = 0;
+        markStart = 0;
+        lineNumber = 1;
 
+        try {
             // attempt to search for <?xml> first - abort if not present
             // only search the first few lines
             boolean valid = false;
 
-            for (int i = 0; i < 10; i++) {
-                line = in.readLine();
+            while (true) {
+                markStart = position;
+                int elementStart = indexOf('<');
+
+                if (elementStart == -1) {
+                    if (!valid) {
+                        throw new IllegalArgumentException("file ended before " + "<?xml> tag");
+                    }
 
-                if (line == null) {
-                    throw new IllegalArgumentException("file ended before " + "<?xml> tag");
-                }
-                else if (line.contains("<?xml")) {
-                    valid = true;
                     break;
                 }
-            }
 
-            if (!valid) {
-                throw new IllegalArgumentException("file contains no " + "<?xml> tag" + " in the first 10 lines ");
-            }
-
-            line = in.readLine();
-            int searchStart = 0;
+                if (!valid && (lineNumber > 10)) {
+                    throw new IllegalArgumentException("file contains no " + "<?xml> tag" + " in the first 10 lines ");
+                }
 
-            while (line != null) {
-                int elementStart = line.indexOf('<', searchStart) + 1;
+                markStart = elementStart;
+                position = elementStart + 1;
 
-                // no xml element => try next line
-                if (elementStart == 0) {
-                    line = in.readLine();
-                    searchStart = 0;
-                    continue;
+                if (!require(1)) {
+                    break;
                 }
 
-                char c = line.charAt(elementStart);
+                char c = buffer[position];
 
-                if (c == '!') {
+                if (c == '?') {
+                    // <?xml ... ?> or other processing instruction
+                    if (!valid && require(4)) {
+                        valid = (buffer[position + 1] == 'x') && (buffer[position + 2] == 'm')
+                                && (buffer[position + 3] == 'l');
+                    }
+
+                    if (!skipTo('?')) {
+                        break;
+                    }
+                }
+                else if (c == '!') {
                     // comment or other xml directive
-                    // lastIndexOf here because the comment can contain other xml elements
-                    // look for the very last > to find the end of the comment
-                    int elementEnd = line.lastIndexOf('>');
+                    if (require(3) && (buffer[position + 1] == '-') && (buffer[position + 2] == '-')) {
+                        position += 3;
 
-                    // no '>' => append next line and try again
-                    if (elementEnd == -1) {
-                        line += in.readLine();
-                        continue;
+                        // comments can contain other xml elements; look for the closing -->
+                        if (!skipTo('-')) {
+                            break;
+                        }
                     }
-                    else if (line.charAt(elementEnd - 1) == '-') {
-                        // comment complete
-                        line = in.readLine();
-                        searchStart = 0;
+                    else if (!skipTo((char) 0)) {
+                        break;
                     }
-                    else {
-                        line += in.readLine();
+                }
+                else if (!valid) {
+                    // ignore everything before <?xml>
+                    if (!skipTo((char) 0)) {
+                        break;
                     }
                 }
                 else {
-                    // no '>' => append next line and try again
-                    int elementEnd = line.indexOf('>', elementStart);
+                    int elementEnd = indexOf('>');
 
                     if (elementEnd == -1) {
-                        line += in.readLine();
-                        continue;
+                        logger.warn("file ended before element at line {} was closed", getLineNumber());
+                        break;
                     }
 
-                    boolean start = true;
-                    boolean end = false;
+                    // indexOf may have moved the data in the buffer
+                    elementStart = markStart;
+                    position = elementEnd + 1;
+
+                    parseElement(elementStart + 1, elementEnd);
+                }
+            }
+        }
+        finally {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (Exception e) {
+                    // ignore
+                }
+
+                in = null;
+            }
 
-                    int nameStart = elementStart;
+            buffer = null;
+        }
+    }
 
-                    // </element...
-                    if (c == '/') {
-                        start = false;
-                        end = true;
-                        ++nameStart;
-                    }
+    // nameStart is the index after '<'; elementEnd is the index of '>'
+    private void parseElement(int nameStart, int elementEnd) {
+        boolean start = true;
+        boolean end = false;
 
-                    if (nameStart == elementEnd) {
-                        logger.warn("ignoring unnamed element at line {}", getLineNumber());
-                        searchStart = elementEnd + 1;
-                        continue;
-                    }
+        // </element...
+        if (buffer[nameStart] == '/') {
+            start = false;
+            end = true;
+            ++nameStart;
+        }
 
-                    int nameEnd = line.indexOf(' ', nameStart);
+        int attributesEnd = elementEnd;
 
-                    // <element... /
-                    if (line.charAt(elementEnd - 1) == '/') {
-                        end = true;
+        // <element... />
+        if ((elementEnd > nameStart) && (buffer[elementEnd - 1] == '/')) {
+            end = true;
+            --attributesEnd;
+        }
 
-                        if (nameEnd == -1) {
-                            // <element/> => drop '/' at end of name
-                            nameEnd = elementEnd - 1;
-                        }
-                    }
-                    else {
-                        if (nameEnd == -1) {
-                            nameEnd = elementEnd;
-                        }
-                    }
+        int nameEnd = nameStart;
 
-                    String name = DataHelper.newString(line.substring(nameStart, nameEnd));
+        while ((nameEnd < attributesEnd) && (buffer[nameEnd] > ' ')) {
+            ++nameEnd;
+        }
 
-                    if (start) {
-                        String unparsedAttributes = line.substring(nameEnd, elementEnd);
-                        logger.trace("start element '{}' with attributes '{}'", name, unparsedAttributes);
-                        startElement(name, unparsedAttributes);
-                    }
+        if (nameStart == nameEnd) {
+            logger.warn("ignoring unnamed element at line {}", getLineNumber());
+            return;
+        }
 
-                    if (end) {
-                        logger.trace("end element '{}'", name);
-                        endElement(name);
-                    }
+        String name = names.get(buffer, nameStart, nameEnd);
 
-                    // more data on the current line?
-                    if (elementEnd == (line.length() - 1)) {
-                        line = in.readLine();
-                        searchStart = 0;
-                    }
-                    else {
-                        searchStart = elementEnd + 1;
-                    }
-                }
+        if (start) {
+            attributes.reset(buffer, nameEnd, attributesEnd);
+
+            if (logger.isTraceEnabled()) {
+                logger.trace("start element '{}' with attributes '{}'", name, attributes);
             }
+
+            startElement(name, attributes);
         }
-        finally {
-            if (in != null) {
-                try {
-                    in.close();
+
+        if (end) {
+            logger.trace("end element '{}'", name);
+            endElement(name);
+        }
+    }
+
+    /**
+     * Find the next occurrence of the given character, reading more data as needed and counting
+     * lines along the way. Data from <code>markStart</code> on is kept in the buffer.
+     *
+     * @return the index of the character or -1 if the end of the file is reached
+     */
+    private int indexOf(char toFind) throws IOException {
+        int i = position;
+
+        while (true) {
+            char[] buffer = this.buffer;
+            int limit = this.limit;
+
+            for (; i < limit; i++) {
+                char c = buffer[i];
+
+                if (c == toFind) {
+                    return i;
                 }
-                catch (Exception e) {
-                    // ignore
+                else if (c == '\n') {
+                    ++lineNumber;
                 }
+            }
 
-                in = null;
+            position = i;
+            int shift = markStart;
+
+            if (!fill()) {
+                return -1;
             }
+
+            i -= shift;
+        }
+    }
+
+    /**
+     * Skip to the end of the current markup, i.e. the next '&gt;' that is preceded by the given
+     * character. Use <code>0</code> to skip to the next '&gt;' regardless of the preceding
+     * character. For <code>'-'</code>, the '&gt;' must be preceded by two dashes.
+     *
+     * @return <code>false</code> if the end of the file is reached
+     */
+    private boolean skipTo(char preceding) throws IOException {
+        while (true) {
+            // keep the two previous characters so they can be checked
+            markStart = Math.max(0, position - 2);
+
+            int end = indexOf('>');
+
+            if (end == -1) {
+                return false;
+            }
+
+            position = end + 1;
+
+            if ((preceding == 0) || ((buffer[end - 1] == preceding) && ((preceding != '-') || (buffer[end - 2] == '-')))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Ensure at least <code>count</code> characters are available in the buffer starting at
+     * <code>position</code>.
+     *
+     * @return <code>false</code> if the end of the file is reached first
+     */
+    private boolean require(int count) throws IOException {
+        while ((limit - position) < count) {
+            if (!fill()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read more data into the buffer, discarding everything before <code>markStart</code>. Grows the
+     * buffer if an element is larger than the current buffer.
+     */
+    private boolean fill() throws IOException {
+        if (markStart > 0) {
+            System.arraycopy(buffer, markStart, buffer, 0, limit - markStart);
+            limit -= markStart;
+            position -= markStart;
+            markStart = 0;
+        }
+
+        if (limit == buffer.length) {
+            buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+
+        if (read == -1) {
+            return false;
+        }
+        else {
+            limit += read;
+            return true;
         }
     }
 
@@ -177,7 +309,17 @@ public abstract class BasicXMLParser {
         skip = false;
     }
 
-    protected abstract void startElement(String element, String unparsedAttributes);
+    /**
+     * Called for every start element. By default, this calls
+     * {@link #startElement(String, String)} with the unparsed attribute text. Subclasses that want
+     * to avoid creating Strings for every element should override this method instead. Note that
+     * the attributes are only valid during this call.
+     */
+    protected void startElement(String element, XMLAttributes attributes) {
+        startElement(element, attributes.toString());
+    }
+
+    protected void startElement(String element, String unparsedAttributes) {}
 
     protected abstract void endElement(String element);
 
@@ -191,10 +333,8 @@ public abstract class BasicXMLParser {
 
     /**
      * Only valid during parsing.
-     * 
-     * @throws NullPointerException if a parse is not currently in progress
      */
     protected final int getLineNumber() {
-        return in.getLineNumber();
+        return lineNumber;
     }
 }
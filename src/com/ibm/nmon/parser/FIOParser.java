@@ -2,26 +2,32 @@ package com.ibm.nmon.parser;
 
 import org.slf4j.Logger;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import java.io.IOException;
 
 import java.io.File;
 
-import java.io.LineNumberReader;
 import java.io.FileReader;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.TimeZone;
-import java.util.regex.Pattern;
 
 import com.ibm.nmon.data.BasicDataSet;
 import com.ibm.nmon.data.DataRecord;
 import com.ibm.nmon.data.DataType;
 import com.ibm.nmon.data.SubDataType;
 
+import com.ibm.nmon.analysis.LatencyHistogram;
+
+import com.ibm.nmon.parser.util.CharLineReader;
+import com.ibm.nmon.parser.util.CharTokenizer;
+import com.ibm.nmon.parser.util.NumberParser;
+
 import com.ibm.nmon.util.DataHelper;
+import com.ibm.nmon.util.TimestampCodec;
 
 /**
  * A parser for FIO output. This class assumes log files with names in the form of <code>id_datetime_type.log</code>.
@@ -29,10 +35,6 @@ import com.ibm.nmon.util.DataHelper;
 public final class FIOParser {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(FIOParser.class);
 
-    private static final SimpleDateFormat TIMESTAMP_FORMAT = new SimpleDateFormat("yyyyddMM_HHmmss");
-
-    private static final Pattern DATA_SPLITTER = Pattern.compile(",\\s?");
-
     private static final Map<String, String> TYPE_NAMES;
 
     static {
@@ -47,11 +49,46 @@ public final class FIOParser {
         TYPE_NAMES = java.util.Collections.unmodifiableMap(temp);
     }
 
+    private static final Set<String> LATENCY_TYPES = java.util.Collections
+            .unmodifiableSet(new java.util.HashSet<String>(java.util.Arrays.asList("LAT", "CLAT", "SLAT")));
+
+    /**
+     * The length of time, in milliseconds, that latencies are grouped into when calculating
+     * percentiles.
+     */
+    public static final long PERCENTILE_INTERVAL = 1000;
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private static final String[] HISTOGRAM_FIELDS = { "read", "write", "read_count", "read_p50", "read_p90",
+            "read_p99", "read_p99.9", "read_max", "write_count", "write_p50", "write_p90", "write_p99",
+            "write_p99.9", "write_max" };
+
+    private final TimestampCodec timestampFormat = new TimestampCodec("yyyyddMM_HHmmss");
+
+    // allocation free parsing of each line
+    private final CharTokenizer tokenizer = new CharTokenizer(',');
+    private final int[] fieldStarts = new int[4];
+    private final int[] fieldEnds = new int[4];
+
     public BasicDataSet parse(File file, TimeZone timeZone) throws IOException, ParseException {
-        return parse(file.getAbsolutePath(), timeZone);
+        return parse(file.getAbsolutePath(), timeZone, false);
     }
 
     public BasicDataSet parse(String filepath, TimeZone timeZone) throws IOException {
+        return parse(filepath, timeZone, false);
+    }
+
+    /**
+     * Parse the given file. If <code>latencyPercentiles</code> is <code>true</code> and the file
+     * is a latency log (LAT, CLAT or SLAT), every I/O is recorded in a histogram per
+     * {@link #PERCENTILE_INTERVAL} and the resulting DataTypes contain the count, percentiles and
+     * maximum for reads and writes in addition to the average. Otherwise, each timestamp in the file
+     * is averaged into a single value.
+     */
+    public BasicDataSet parse(String filepath, TimeZone timeZone, boolean latencyPercentiles) throws IOException {
+        long parseStart = System.nanoTime();
+
         File file = new File(filepath);
         String filename = file.getName();
 
@@ -78,7 +115,7 @@ public final class FIOParser {
         long baseTime = 0;
 
         try {
-            baseTime = TIMESTAMP_FORMAT.parse(timestamp).getTime();
+            baseTime = timestampFormat.parse(timestamp);
         }
         catch (ParseException e) {
             throw new IllegalArgumentException(
@@ -97,103 +134,131 @@ public final class FIOParser {
                     "unrecoginized type name '" + typeName + "' ; valid values are " + TYPE_NAMES.keySet());
         }
 
-        LineNumberReader in = null;
+        boolean histograms = latencyPercentiles && LATENCY_TYPES.contains(typeName);
+
+        CharLineReader in = null;
 
         try {
-            in = new LineNumberReader(new FileReader(file));
+            in = new CharLineReader(new FileReader(file));
 
-            String line = null;
             DataRecord currentRecord = null;
+            // time of the current record relative to the file's timestamp
+            long currentTime = -1;
 
             // usually only 1 block size
-            // one aggregator for read, one for write
-            Map<String, DataType> typesByBlockSize = new java.util.HashMap<String, DataType>(1);
-            Map<String, Aggregator> readDataByBlockSize = new java.util.HashMap<String, Aggregator>(1);
-            Map<String, Aggregator> writeDataByBlockSize = new java.util.HashMap<String, Aggregator>(1);
+            List<BlockSizeData> blockSizes = new java.util.ArrayList<BlockSizeData>(1);
+
+            while (in.nextLine()) {
+                tokenizer.reset(in);
 
-            while ((line = in.readLine()) != null) {
-                String[] values = DATA_SPLITTER.split(line);
+                int fieldCount = 0;
 
-                if (values.length != 4) {
+                while (tokenizer.next()) {
+                    if (fieldCount < 4) {
+                        fieldStarts[fieldCount] = tokenizer.getTokenStart();
+                        fieldEnds[fieldCount] = tokenizer.getTokenEnd();
+                    }
+
+                    ++fieldCount;
+                }
+
+                if (fieldCount != 4) {
                     LOGGER.warn("invalid data at line {}; it does not contain 4 fields", in.getLineNumber());
                     continue;
                 }
 
-                if (currentRecord == null) {
-                    currentRecord = new DataRecord(baseTime + Integer.parseInt(values[0]), values[0]);
-                }
-                else if (!currentRecord.getTimestamp().equals(values[0])) {
-                    // timestamp changed, add the data collected so far and start a new record
-                    for (String blockSize : typesByBlockSize.keySet()) {
-                        DataType type = typesByBlockSize.get(blockSize);
-                        Aggregator readAggregator = readDataByBlockSize.get(blockSize);
-                        Aggregator writeAggregator = writeDataByBlockSize.get(blockSize);
+                char[] buffer = in.getBuffer();
 
-                        double read = Double.NaN;
-                        double write = Double.NaN;
+                long time;
+                long operation; // 0 => read; 1 => write
+                long blockSize;
 
-                        if (readAggregator != null) {
-                            read = readAggregator.getAverage();
-                            readAggregator.clear();
-                        }
+                try {
+                    time = NumberParser.parseLong(buffer, fieldStarts[0], fieldEnds[0]);
+                    operation = NumberParser.parseLong(buffer, fieldStarts[2], fieldEnds[2]);
+                    blockSize = NumberParser.parseLong(buffer, fieldStarts[3], fieldEnds[3]);
+                }
+                catch (NumberFormatException nfe) {
+                    LOGGER.warn("invalid data at line {}; ignoring", in.getLineNumber());
+                    continue;
+                }
 
-                        if (writeAggregator != null) {
-                            write = writeAggregator.getAverage();
-                            writeAggregator.clear();
-                        }
+                long value;
 
-                        currentRecord.addData(type, new double[] { read, write });
-                    }
+                try {
+                    value = NumberParser.parseLong(buffer, fieldStarts[1], fieldEnds[1]);
+                }
+                catch (NumberFormatException nfe) {
+                    LOGGER.warn("invalid numeric data '{}' at line {}; ignoring",
+                            new String(buffer, fieldStarts[1], fieldEnds[1] - fieldStarts[1]), in.getLineNumber());
+                    value = -1;
+                }
 
+                if (histograms) {
+                    // aggregate individual I/Os into intervals
+                    time -= time % PERCENTILE_INTERVAL;
+                }
+
+                if (currentRecord == null) {
+                    currentRecord = new DataRecord(baseTime + time, Long.toString(time));
+                    currentTime = time;
+                }
+                else if (currentTime != time) {
+                    // timestamp changed, add the data collected so far and start a new record
+                    addData(currentRecord, blockSizes, histograms);
                     data.addRecord(currentRecord);
 
-                    currentRecord = new DataRecord(baseTime + Integer.parseInt(values[0]), values[0]);
+                    currentRecord = new DataRecord(baseTime + time, Long.toString(time));
+                    currentTime = time;
                 }
                 // else continue aggregating data for the current record
 
-                String operation = values[2]; // 0 => read; 1 => write
-                String blockSize = DataHelper.newString(values[3]);
-
-                Aggregator aggregator = null;
+                BlockSizeData blockSizeData = null;
 
-                if ("0".equals(operation)) {
-                    aggregator = readDataByBlockSize.get(blockSize);
-
-                    if (aggregator == null) {
-                        aggregator = new Aggregator();
-                        readDataByBlockSize.put(blockSize, aggregator);
+                for (int i = 0; i < blockSizes.size(); i++) {
+                    if (blockSizes.get(i).blockSize == blockSize) {
+                        blockSizeData = blockSizes.get(i);
+                        break;
                     }
                 }
-                else {
-                    aggregator = writeDataByBlockSize.get(blockSize);
 
-                    if (aggregator == null) {
-                        aggregator = new Aggregator();
-                        writeDataByBlockSize.put(blockSize, aggregator);
-                    }
-                }
+                if (blockSizeData == null) {
+                    String subId = DataHelper.newString(Long.toString(blockSize));
+                    DataType type = null;
 
-                DataType type = typesByBlockSize.get(blockSize);
+                    if (histograms) {
+                        type = new SubDataType(typeName, subId, TYPE_NAMES.get(typeName), HISTOGRAM_FIELDS);
+                    }
+                    else {
+                        type = new SubDataType(typeName, subId, TYPE_NAMES.get(typeName), "read", "write");
+                    }
 
-                if (type == null) {
-                    type = new SubDataType(typeName, blockSize, TYPE_NAMES.get(typeName), "read", "write");
                     data.addType(type);
 
-                    typesByBlockSize.put(blockSize, type);
+                    blockSizeData = new BlockSizeData(blockSize, type, histograms);
+                    blockSizes.add(blockSizeData);
                 }
 
-                try {
-                    aggregator.aggregate(Integer.parseInt(values[1]));
-                }
-                catch (NumberFormatException nfe) {
-                    LOGGER.warn("invalid numeric data '{}' at line {}; ignoring", values[1], in.getLineNumber());
+                if (value >= 0) {
+                    if (operation == 0) {
+                        blockSizeData.read.aggregate(value);
+                    }
+                    else {
+                        blockSizeData.write.aggregate(value);
+                    }
                 }
             }
 
             if (currentRecord != null) {
+                addData(currentRecord, blockSizes, histograms);
                 data.addRecord(currentRecord);
             }
 
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Parse" + " complete for {} in {}ms", data.getSourceFile(),
+                        (System.nanoTime() - parseStart) / 1000000.0d);
+            }
+
             return data;
         }
         finally {
@@ -203,13 +268,79 @@ public final class FIOParser {
         }
     }
 
+    private void addData(DataRecord record, List<BlockSizeData> blockSizes, boolean histograms) {
+        for (BlockSizeData blockSizeData : blockSizes) {
+            Aggregator read = blockSizeData.read;
+            Aggregator write = blockSizeData.write;
+
+            if (histograms) {
+                double[] values = new double[HISTOGRAM_FIELDS.length];
+
+                values[0] = read.getAverage();
+                values[1] = write.getAverage();
+
+                read.getPercentiles(values, 2);
+                write.getPercentiles(values, 2 + PERCENTILES.length + 2);
+
+                record.addData(blockSizeData.type, values);
+            }
+            else {
+                record.addData(blockSizeData.type, new double[] { read.getAverage(), write.getAverage() });
+            }
+
+            read.clear();
+            write.clear();
+        }
+    }
+
+    private static final class BlockSizeData {
+        private final long blockSize;
+        private final DataType type;
+
+        private final Aggregator read;
+        private final Aggregator write;
+
+        BlockSizeData(long blockSize, DataType type, boolean histograms) {
+            this.blockSize = blockSize;
+            this.type = type;
+
+            this.read = new Aggregator(histograms);
+            this.write = new Aggregator(histograms);
+        }
+    }
+
     private static final class Aggregator {
-        private int count = 0;
-        private int value = 0;
+        // longs since per-I/O logs can easily overflow an int sum
+        private long count = 0;
+        private long value = 0;
+
+        // only used when calculating percentiles
+        private final LatencyHistogram histogram;
+
+        Aggregator(boolean histogram) {
+            this.histogram = histogram ? new LatencyHistogram() : null;
+        }
 
-        private void aggregate(int newValue) {
+        private void aggregate(long newValue) {
             ++count;
             value += newValue;
+
+            if (histogram != null) {
+                histogram.record(newValue);
+            }
+        }
+
+        /**
+         * Copy count, percentiles and max to <code>values</code>, starting at <code>offset</code>.
+         */
+        private void getPercentiles(double[] values, int offset) {
+            values[offset++] = count;
+
+            for (double percentile : PERCENTILES) {
+                values[offset++] = histogram.getPercentile(percentile);
+            }
+
+            values[offset] = histogram.getMaximum();
         }
 
         private double getAverage() {
@@ -224,6 +355,10 @@ public final class FIOParser {
         private void clear() {
             count = 0;
             value = 0;
+
+            if (histogram != null) {
+                histogram.clear();
+            }
         }
     }
 }
@@ -4,18 +4,19 @@ import org.slf4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.LineNumberReader;
 
 import java.util.regex.Pattern;
 
 import com.ibm.nmon.data.BasicDataSet;
 import com.ibm.nmon.data.DataType;
 import com.ibm.nmon.data.DataRecord;
-import com.ibm.nmon.util.DataHelper;
+import com.ibm.nmon.parser.util.CharLineReader;
+import com.ibm.nmon.parser.util.CharTokenizer;
 
 public final class HATJParser {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(NMONParser.class);
 
+    // only used for the header; data lines use a CharTokenizer
     private static final Pattern DATA_SPLITTER = Pattern.compile(",");
 
     public static final String DEFAULT_HOSTNAME = "hatj";
@@ -60,16 +61,17 @@ public final class HATJParser {
             startTime = System.currentTimeMillis();
         }
 
-        LineNumberReader in = null;
+        CharLineReader in = null;
 
         try {
-            in = new LineNumberReader(new java.io.FileReader(filename));
-            String line = in.readLine();
+            in = new CharLineReader(new java.io.FileReader(filename));
 
-            if (line == null) {
+            if (!in.nextLine()) {
                 throw new IOException("file '" + filename + "' does not appear to have any data records");
             }
 
+            String line = in.getLine();
+
             BasicDataSet data = new BasicDataSet(filename);
             data.setHostname(hostname);
 
@@ -128,30 +130,44 @@ public final class HATJParser {
             data.addType(info);
             data.addType(response);
 
-            while ((line = in.readLine()) != null) {
-                values = DATA_SPLITTER.split(line);
+            CharTokenizer tokenizer = new CharTokenizer(',');
+
+            while (in.nextLine()) {
+                tokenizer.reset(in);
 
-                long duration = Long.parseLong(values[0]);
+                tokenizer.next();
+                long duration = tokenizer.parseLong();
 
-                DataRecord record = new DataRecord(startTime + (duration * 1000), DataHelper.newString(values[0]));
+                DataRecord record = new DataRecord(startTime + (duration * 1000), tokenizer.getToken());
 
-                record.addData(info, new double[] { Double.parseDouble(values[1]), Double.parseDouble(values[2]),
-                        Double.parseDouble(values[3]) });
+                double[] infoData = new double[3];
+
+                for (int i = 0; i < infoData.length; i++) {
+                    tokenizer.next();
+                    infoData[i] = tokenizer.parseDouble();
+                }
+
+                record.addData(info, infoData);
 
                 double[] recordData = new double[response.getFieldCount()];
                 int n = 0;
 
-                for (int i = 4; i < values.length; i++) {
-                    if ("".equals(values[i]) || values[i].contains("nan")) {
+                // missing or trailing empty values are NaN
+                while (tokenizer.next() && (n < recordData.length)) {
+                    if ((tokenizer.getTokenLength() == 0) || tokenizer.tokenContains("nan")) {
                         recordData[n] = Double.NaN;
                     }
                     else {
-                        recordData[n] = Double.parseDouble(values[i]);
+                        recordData[n] = tokenizer.parseDouble();
                     }
 
                     ++n;
                 }
 
+                for (; n < recordData.length; n++) {
+                    recordData[n] = Double.NaN;
+                }
+
                 record.addData(response, recordData);
                 data.addRecord(record);
             }
@@ -2,7 +2,6 @@ package com.ibm.nmon.parser;
 
 import org.slf4j.Logger;
 
-import java.text.SimpleDateFormat;
 import java.text.ParseException;
 
 import java.util.List;
@@ -16,39 +15,54 @@ import java.util.regex.Matcher;
 import java.io.IOException;
 
 import java.io.File;
-import java.io.LineNumberReader;
 
 import com.ibm.nmon.data.BasicDataSet;
 import com.ibm.nmon.data.DataRecord;
 import com.ibm.nmon.data.DataType;
 import com.ibm.nmon.data.SubDataType;
+
+import com.ibm.nmon.parser.util.CharLineReader;
+import com.ibm.nmon.parser.util.CharTokenizer;
+import com.ibm.nmon.parser.util.NumberParser;
+
 import com.ibm.nmon.util.DataHelper;
 
 import com.ibm.nmon.util.TimeHelper;
-import static com.ibm.nmon.util.TimeHelper.TIMESTAMP_FORMAT_ISO;
-import static com.ibm.nmon.util.TimeHelper.DATE_FORMAT_ISO;
+import com.ibm.nmon.util.TimestampCodec;
 
 public final class IOStatParser {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(IOStatParser.class);
 
-    private static final SimpleDateFormat TIMESTAMP_FORMAT_US = new SimpleDateFormat("MM/dd/yy HH:mm:ss");
-    private static final SimpleDateFormat TIMESTAMP_FORMAT_OLD = new SimpleDateFormat("'Time: 'hh:mm:ss a");
-    private static final SimpleDateFormat TIMESTAMP_FORMAT_AIX = new SimpleDateFormat("HH:mm:ss");
-    private static final SimpleDateFormat DATE_FORMAT_US = new SimpleDateFormat("MM/dd/yyyy");
-
     private static final Matcher ISO_PATTERN = Pattern.compile(
             "(Time: )?\\d{4}\\-\\d{2}\\-\\d{2}T\\d{2}:\\d{2}:\\d{2}([\\-+](\\d{4}?|\\d{2}:\\d{2}|\\d{2})|Z)").matcher(
             "");
     private static final Matcher INFO = Pattern.compile(
             "(.+)\\s(.+)\\s\\((.+)\\)\\s+(\\d{2,4}[\\/-]\\d{2}[\\/-]\\d{2,4})(\\s+_(.+)_)?(\\s+\\((.+)\\sCPU\\))?")
             .matcher("");
+    // only used when parsing headers; data uses tokenizer
     private static final Pattern DATA_SPLITTER = Pattern.compile(":?\\s+");
 
     public static final String DEFAULT_HOSTNAME = "iostat";
 
-    private LineNumberReader in = null;
+    private CharLineReader in = null;
+
+    // allocation free parsing of data lines; splits the same way as DATA_SPLITTER
+    private final CharTokenizer tokenizer = new CharTokenizer(CharTokenizer.Mode.COLON_WHITESPACE);
+    private int[] tokenStarts = new int[32];
+    private int[] tokenEnds = new int[32];
 
-    private SimpleDateFormat format = null;
+    private final TimestampCodec timestampFormatUS = new TimestampCodec("MM/dd/yy HH:mm:ss");
+    private final TimestampCodec timestampFormatOld = new TimestampCodec("'Time: 'hh:mm:ss a");
+    private final TimestampCodec timestampFormatAIX = new TimestampCodec("HH:mm:ss");
+    private final TimestampCodec timestampFormatISO = new TimestampCodec(TimeHelper.TIMESTAMP_PATTERN_ISO);
+    // some versions of IOStat output Time: _and_ an ISO datetime
+    // use a separate format here rather than parsing out Time: manually
+    private final TimestampCodec timestampFormatTimeISO = new TimestampCodec(
+            '\'' + "Time: " + '\'' + TimeHelper.TIMESTAMP_PATTERN_ISO);
+    // always uses the default time zone
+    private final TimestampCodec dateFormatUS = new TimestampCodec("MM/dd/yyyy");
+
+    private TimestampCodec format = null;
 
     private boolean isAIX = false;
     // private boolean isExtendedDiskStats = false;
@@ -60,6 +74,8 @@ public final class IOStatParser {
     private DataRecord currentRecord = null;
 
     private Map<String, List<String>> typesByHeader = new java.util.HashMap<String, List<String>>();
+    // sub types for each header, in the same order as typesByHeader
+    private Map<String, DataType[]> dataTypesByHeader = new java.util.HashMap<String, DataType[]>();
 
     // private String[] disk_metrics;
 
@@ -76,22 +92,22 @@ public final class IOStatParser {
         String line = null;
 
         try {
-            in = new LineNumberReader(new java.io.FileReader(filename));
+            in = new CharLineReader(new java.io.FileReader(filename));
 
             parseHeader(timeZone);
             determineTimestampFormat(timeZone);
 
-            line = in.readLine();
+            line = readLine();
 
             if (isAIX) {
                 if (line.startsWith("tty")) {
                     parseAIXTTYAndCPUHeader(line);
 
-                    line = in.readLine();
+                    line = readLine();
 
                     if (line.startsWith("System")) {
                         data.setHostname(line.substring(("System" + ": ").length()));
-                        line = in.readLine();
+                        line = readLine();
                     }
                 }
             }
@@ -100,7 +116,7 @@ public final class IOStatParser {
                     parseLinuxCPUHeader(line);
                 }
 
-                line = in.readLine();
+                line = readLine();
             }
 
             // line should now be the header row of the first disk / device block
@@ -112,11 +128,11 @@ public final class IOStatParser {
                 if (isAIX) {
                     if (line.startsWith("System")) {
                         // skip repeated System rows
-                        line = in.readLine();
+                        line = readLine();
 
                         // blank line after 'System configuration'
                         if ("".equals(line)) {
-                            line = in.readLine();
+                            line = readLine();
                         }
 
                         continue;
@@ -125,17 +141,21 @@ public final class IOStatParser {
                 else {
                     if (line.startsWith("Time:") || ISO_PATTERN.reset(line).matches()) {
                         createCurrentRecord(line);
-                        line = in.readLine();
+                        line = readLine();
                         continue;
                     }
                 }
                 // AIX will create record during TTY parsing
 
-                String[] temp = DATA_SPLITTER.split(line);
-                String typeName = temp[0];
+                // line is still the reader's current line
+                tokenizer.reset(in);
+                tokenizer.next();
+
+                String typeName = tokenizer.getToken();
 
                 if ("FS".equals(typeName)) {
-                    typeName = temp[0] + ' ' + temp[1];
+                    tokenizer.next();
+                    typeName = typeName + ' ' + tokenizer.getToken();
                 }
 
                 if ("tty".equals(typeName)) {
@@ -147,7 +167,7 @@ public final class IOStatParser {
                 else if ("".equals(typeName)) {
                     if (line.equals("")) {
                         // if the whole line is empty, skip it
-                        line = in.readLine();
+                        line = readLine();
                         continue;
                     }
                     else { // otherwise assume leading spaces => AIX summary data
@@ -158,7 +178,7 @@ public final class IOStatParser {
                     parseData(typeName);
                 }
 
-                line = in.readLine(); // next header row
+                line = readLine(); // next header row
             }
 
             if (currentRecord != null) {
@@ -190,16 +210,73 @@ public final class IOStatParser {
                 currentRecord = null;
 
                 typesByHeader.clear();
+                dataTypesByHeader.clear();
             }
         }
     }
 
+    private String readLine() throws IOException {
+        return in.nextLine() ? in.getLine() : null;
+    }
+
+    private boolean isBlankLine() {
+        return in.getStart() == in.getEnd();
+    }
+
+    // split the reader's current line into tokenStarts and tokenEnds
+    // returns the number of tokens
+    private int tokenize() {
+        tokenizer.reset(in);
+
+        int count = 0;
+
+        while (tokenizer.next()) {
+            if (count == tokenStarts.length) {
+                tokenStarts = java.util.Arrays.copyOf(tokenStarts, count * 2);
+                tokenEnds = java.util.Arrays.copyOf(tokenEnds, count * 2);
+            }
+
+            tokenStarts[count] = tokenizer.getTokenStart();
+            tokenEnds[count] = tokenizer.getTokenEnd();
+            ++count;
+        }
+
+        return count;
+    }
+
+    private String getToken(int index) {
+        return new String(in.getBuffer(), tokenStarts[index], tokenEnds[index] - tokenStarts[index]);
+    }
+
+    private boolean tokenEquals(int index, String value) {
+        int start = tokenStarts[index];
+        int length = value.length();
+
+        if ((tokenEnds[index] - start) != length) {
+            return false;
+        }
+
+        char[] buffer = in.getBuffer();
+
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private double parseToken(int index) {
+        return NumberParser.parseDouble(in.getBuffer(), tokenStarts[index], tokenEnds[index]);
+    }
+
     private void parseHeader(TimeZone timeZone) throws IOException, ParseException {
-        String line = in.readLine(); // header line
+        String line = readLine(); // header line
 
         // handle AIX initial blank line and other possible bad formatting
         while ("".equals(line)) {
-            line = in.readLine();
+            line = readLine();
         }
 
         if (line.startsWith("System configuration: ")) { // AIX
@@ -227,22 +304,17 @@ public final class IOStatParser {
                 String arch = matcher.group(6);
                 String cpuCount = matcher.group(8);
 
-                SimpleDateFormat dateFormat = DATE_FORMAT_ISO;
-
                 if (date.indexOf('/') != -1) {
                     // handle 2 digit years; note possible year 2100 issue if this code is still in
                     // use!
-                    if (date.length() == (DATE_FORMAT_US.toPattern().length() - 2)) {
+                    if (date.length() == (dateFormatUS.toPattern().length() - 2)) {
                         date = date.substring(0, 6) + "20" + date.substring(6);
                     }
 
-                    dateFormat = DATE_FORMAT_US;
-                    dateOffset = TimeHelper.dayFromDatetime(dateFormat.parse(date).getTime());
+                    dateOffset = TimeHelper.dayFromDatetime(dateFormatUS.parse(date));
                 }
                 // else ISO includes date time, so offset can stay 0
 
-                dateFormat.setTimeZone(timeZone);
-
                 if (arch != null) {
                     data.setMetadata("ARCH", DataHelper.newString(arch));
                 }
@@ -259,40 +331,38 @@ public final class IOStatParser {
         // shift offset to timezone local, not UTC
         dateOffset += timeZone.getOffset(dateOffset);
 
-        in.readLine(); // blank line after header
+        readLine(); // blank line after header
     }
 
     private void determineTimestampFormat(TimeZone timeZone) throws IOException {
         if (isAIX) {
-            format = TIMESTAMP_FORMAT_AIX;
+            format = timestampFormatAIX;
             format.setTimeZone(timeZone);
         }
         else {
-            String line = in.readLine(); // first timestamp line
+            String line = readLine(); // first timestamp line
 
             if (line.startsWith("Time: ")) {
                 if (ISO_PATTERN.reset(line).matches()) {
-                    // some versions of IOStat output Time: _and_ an ISO datetime
-                    // create a new format here rather than parsing out Time: manually
-                    format = new SimpleDateFormat('\'' + "Time: " + '\'' + TIMESTAMP_FORMAT_ISO.toPattern());
+                    format = timestampFormatTimeISO;
                 }
                 else {
-                    format = TIMESTAMP_FORMAT_OLD;
+                    format = timestampFormatOld;
                     format.setTimeZone(timeZone);
                 }
             }
             else {
                 try {
-                    TIMESTAMP_FORMAT_ISO.parse(line);
+                    timestampFormatISO.parse(line);
                     // ISO format includes a timezone, ignore the one passed in
 
-                    format = TIMESTAMP_FORMAT_ISO;
+                    format = timestampFormatISO;
                 }
                 catch (ParseException pe) {
                     try {
-                        TIMESTAMP_FORMAT_US.parse(line);
+                        timestampFormatUS.parse(line);
 
-                        format = TIMESTAMP_FORMAT_US;
+                        format = timestampFormatUS;
                         format.setTimeZone(timeZone);
                     }
                     catch (ParseException pe2) {
@@ -317,8 +387,8 @@ public final class IOStatParser {
         DataType cpu = new DataType("IOStat CPU", "IOStat Average CPU", fields);
         data.addType(cpu);
 
-        in.readLine(); // summary CPU data
-        in.readLine(); // blank line after CPU data
+        readLine(); // summary CPU data
+        readLine(); // blank line after CPU data
     }
 
     // tty line in AIX contains terminal and CPU utilization data
@@ -360,8 +430,8 @@ public final class IOStatParser {
         // hack to get parseDataTypes to stop when tty is encountered
         typesByHeader.put("tty", java.util.Arrays.asList("CPU", "TTY"));
 
-        in.readLine(); // summary tty and CPU data
-        in.readLine(); // blank line after tty;
+        readLine(); // summary tty and CPU data
+        readLine(); // blank line after tty;
     }
 
     private String parseDataTypes(String line) throws IOException {
@@ -399,16 +469,16 @@ public final class IOStatParser {
                             fields[i - 1] = DataHelper.newString(temp[i]);
                         }
 
-                        line = in.readLine().trim(); // trim for leading spaces
+                        line = readLine().trim(); // trim for leading spaces
 
                         while (!"".equals(line)) {
                             type = DataHelper.newString(DATA_SPLITTER.split(line)[0]);
                             data.addType(new DataType("IOStat " + type, type, fields));
 
-                            line = in.readLine().trim();
+                            line = readLine().trim();
                         }
 
-                        line = in.readLine();
+                        line = readLine();
                         continue;
                     }
                     // extended disk stats is not supported
@@ -418,8 +488,8 @@ public final class IOStatParser {
                     else if ("System".equals(type)) {
                         // skip 'System configuration' lines; assume this ends type definitions
                         // skip next blank and return next header row
-                        in.readLine();
-                        return in.readLine();
+                        readLine();
+                        return readLine();
                     }
                     else if ("FS".equals(type)) {
                         type = temp[0] + ' ' + temp[1];
@@ -445,7 +515,7 @@ public final class IOStatParser {
                     }
                 }
 
-                line = in.readLine(); // first field row
+                line = readLine(); // first field row
 
                 List<String> fields = new java.util.ArrayList<String>();
 
@@ -454,7 +524,7 @@ public final class IOStatParser {
                     temp = DATA_SPLITTER.split(line);
                     fields.add(DataHelper.newString(temp[0]));
 
-                    line = in.readLine();
+                    line = readLine();
                 }
 
                 if (fields.size() == 0) {
@@ -477,7 +547,7 @@ public final class IOStatParser {
                     }
                 }
 
-                line = in.readLine(); // next header line;
+                line = readLine(); // next header line;
             }
         }
 
@@ -486,36 +556,39 @@ public final class IOStatParser {
     }
 
     private void parseLinuxCPU() throws IOException {
-        String[] temp = DATA_SPLITTER.split(in.readLine());
-        // DATA_SPLITTER adds a null first element to temp; ignore it
+        in.nextLine();
+        int count = tokenize();
+
+        // leading whitespace results in an empty first token; ignore it
         // also ignore %idle, the last column
-        double[] cpuData = new double[temp.length - 2];
+        double[] cpuData = new double[count - 2];
 
         for (int i = 0; i < cpuData.length; i++) {
-            cpuData[i] = Double.parseDouble(temp[i + 1]);
+            cpuData[i] = parseToken(i + 1);
         }
 
         currentRecord.addData(data.getType("IOStat CPU"), cpuData);
 
-        in.readLine(); // blank line after CPU data
+        in.nextLine(); // blank line after CPU data
     }
 
     // parse tty and CPU utilization into different data types
     // also create the current DataRecord and set the time here, if available
     private void parseAIXTTYAndCPU() throws IOException, ParseException {
         // tty header already read
-        String[] temp = DATA_SPLITTER.split(in.readLine());
+        in.nextLine();
+        int count = tokenize();
 
-        createCurrentRecord(temp[temp.length - 1]);
+        createCurrentRecord(getToken(count - 1));
 
-        // DATA_SPLITTER adds a null first element to temp; ignore it
+        // leading whitespace results in an empty first token; ignore it
         int n = 1;
 
         DataType tty = data.getType("IOStat TTY");
         double[] ttyData = new double[tty.getFieldCount()];
 
         for (int i = 0; i < ttyData.length; i++) {
-            ttyData[i] = Double.parseDouble(temp[n++]);
+            ttyData[i] = parseToken(n++);
         }
 
         currentRecord.addData(tty, ttyData);
@@ -524,31 +597,30 @@ public final class IOStatParser {
         double[] cpuData = new double[cpu.getFieldCount()];
 
         for (int i = 0; i < cpuData.length;) {
-            cpuData[i++] = Double.parseDouble(temp[n++]);
+            cpuData[i++] = parseToken(n++);
         }
 
         currentRecord.addData(cpu, cpuData);
 
-        in.readLine(); // blank line after tty and CPU data
+        in.nextLine(); // blank line after tty and CPU data
     }
 
     // handle AIX Physical / Logical data
     private void parseAIXSummaryData() throws IOException {
-        String line = in.readLine();
+        while (in.nextLine() && !isBlankLine()) {
+            tokenize();
 
-        while (!"".equals(line)) {
-            String[] temp = DATA_SPLITTER.split(line.trim());
+            // skip the empty token from any leading whitespace
+            int n = tokenStarts[0] == tokenEnds[0] ? 1 : 0;
 
-            DataType type = data.getType("IOStat " + temp[0]);
+            DataType type = data.getType("IOStat " + getToken(n++));
             double[] data = new double[type.getFieldCount()];
 
             for (int i = 0; i < data.length; i++) {
-                data[i] = Double.parseDouble(temp[i + 1]);
+                data[i] = parseToken(n++);
             }
 
             currentRecord.addData(type, data);
-
-            line = in.readLine();
         }
     }
 
@@ -556,81 +628,97 @@ public final class IOStatParser {
     // contrast this with parseDataTypes which parses all the DataTypes and sub-types before
     // stopping
     private void parseData(String type) throws IOException, ParseException {
-        List<String> subTypes = typesByHeader.get(type);
+        DataType[] dataTypes = getDataTypes(type);
 
-        if (subTypes == null) {
+        if (dataTypes == null) {
             // type has no fields, ignore
             // no attempt is made to skip any new fields adding during IOStat capture
             return;
         }
 
-        Map<DataType, double[]> dataToAdd = new java.util.HashMap<DataType, double[]>();
+        int subTypeCount = dataTypes.length;
 
         // create data arrays for all subtypes
-        for (int i = 0; i < subTypes.size(); i++) {
-            String subType = subTypes.get(i);
-            DataType dataType = data.getType(SubDataType.buildId("IOStat " + type, subType));
-            dataToAdd.put(dataType, new double[dataType.getFieldCount()]);
+        double[][] dataToAdd = new double[subTypeCount][];
+
+        for (int i = 0; i < subTypeCount; i++) {
+            dataToAdd[i] = new double[dataTypes[i].getFieldCount()];
         }
 
-        int subTypeCount = subTypes.size();
+        // rows are usually in the same order as the fields; track the row to avoid looking up each field by name
+        int row = 0;
 
-        String line = in.readLine();
-
-        while ((line != null) && !"".equals(line)) {
-            String[] temp = DATA_SPLITTER.split(line);
-            String field = temp[0];
+        while (in.nextLine() && !isBlankLine()) {
+            int count = tokenize();
 
             // ignore AIX time data for each disk
-            int dataLength = temp.length - (isAIX ? 2 : 1);
+            int dataLength = count - (isAIX ? 2 : 1);
 
             if (isAIX && (currentRecord == null)) {
                 // no tty data to get a timestamp from
                 // use the data record instead; assume time is the last column
-                createCurrentRecord(temp[temp.length - 1]);
+                createCurrentRecord(getToken(count - 1));
             }
 
             if (dataLength > subTypeCount) {
                 LOGGER.warn("'{}' at line {} has {} extra columns; they will be ignored",
-                        new Object[] { field, in.getLineNumber(), dataLength - subTypeCount });
+                        new Object[] { getToken(0), in.getLineNumber(), dataLength - subTypeCount });
                 dataLength = subTypeCount;
             }
             else if (dataLength < subTypeCount) {
                 LOGGER.warn("'{}' at line {} has too few columns; zero will be assumed for missing data", new Object[] {
-                        field, in.getLineNumber() });
+                        getToken(0), in.getLineNumber() });
             }
 
-            for (int i = 0; i < subTypes.size(); i++) {
-                String subType = subTypes.get(i);
-
-                DataType dataType = data.getType(SubDataType.buildId("IOStat " + type, subType));
-                double[] subTypeData = dataToAdd.get(dataType);
-
-                if (subTypeData == null) {
-                    subTypeData = new double[dataType.getFieldCount()];
-                    dataToAdd.put(dataType, subTypeData);
-                }
-
+            if (subTypeCount > 0) {
+                // all the subtypes have the same fields
                 // for each field (column in the file), look up the field index ...
                 // and add the current data to the type
-                int subTypeIdx = dataType.getFieldIndex(field);
-                String data = temp[i + 1];
+                DataType fields = dataTypes[0];
+                int fieldIdx = row;
 
-                if ("-".equals(data)) {
-                    subTypeData[subTypeIdx] = Double.NaN;
+                if ((row >= fields.getFieldCount()) || !tokenEquals(0, fields.getField(row))) {
+                    fieldIdx = fields.getFieldIndex(getToken(0));
                 }
-                else {
-                    subTypeData[subTypeIdx] = Double.parseDouble(data);
+
+                for (int i = 0; i < dataLength; i++) {
+                    if (tokenEquals(i + 1, "-")) {
+                        dataToAdd[i][fieldIdx] = Double.NaN;
+                    }
+                    else {
+                        dataToAdd[i][fieldIdx] = parseToken(i + 1);
+                    }
                 }
             }
 
-            line = in.readLine(); // read next data row, if any
+            ++row;
         }
 
-        for (DataType dataType : dataToAdd.keySet()) {
-            double[] toAdd = dataToAdd.get(dataType);
-            currentRecord.addData(dataType, toAdd);
+        for (int i = 0; i < subTypeCount; i++) {
+            currentRecord.addData(dataTypes[i], dataToAdd[i]);
+        }
+    }
+
+    private DataType[] getDataTypes(String type) {
+        DataType[] dataTypes = dataTypesByHeader.get(type);
+
+        if (dataTypes == null) {
+            List<String> subTypes = typesByHeader.get(type);
+
+            if (subTypes == null) {
+                return null;
+            }
+
+            dataTypes = new DataType[subTypes.size()];
+
+            for (int i = 0; i < dataTypes.length; i++) {
+                dataTypes[i] = data.getType(SubDataType.buildId("IOStat " + type, subTypes.get(i)));
+            }
+
+            dataTypesByHeader.put(type, dataTypes);
         }
+
+        return dataTypes;
     }
 
     private void createCurrentRecord(String timeToParse) throws ParseException {
@@ -639,7 +727,7 @@ public final class IOStatParser {
             currentRecord = null;
         }
 
-        long time = format.parse(timeToParse).getTime() + dateOffset;
+        long time = format.parse(timeToParse) + dateOffset;
         currentRecord = new DataRecord(time, timeToParse);
     }
 
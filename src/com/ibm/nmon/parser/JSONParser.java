@@ -10,25 +10,59 @@ import java.io.File;
 import java.io.IOException;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import com.ibm.nmon.data.BasicDataSet;
 import com.ibm.nmon.data.DataType;
 import com.ibm.nmon.data.DataRecord;
 import com.ibm.nmon.data.SubDataType;
 
+import com.ibm.nmon.util.TimestampCodec;
+
+/**
+ * <p>
+ * Parser for JSON formatted data. See <code>json_template.json</code> for the expected format.
+ * </p>
+ *
+ * <p>
+ * The file is read with Jackson's streaming API rather than being converted into a tree of Maps
+ * and Lists, so memory use does not depend on the size of the <code>data</code> array. Each
+ * element of the array is converted to a DataRecord as soon as it is read. This requires that
+ * <code>whenPattern</code> and <code>types</code> are defined <em>before</em> <code>data</code>. If
+ * they are not, the <code>data</code> array is buffered until the end of the file. A
+ * <code>timezone</code> defined after <code>data</code> is ignored.
+ * </p>
+ */
 public final class JSONParser {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(JSONParser.class);
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    // the state of each DataType in the current data element
+    private static final byte MISSING = 0;
+    private static final byte PRESENT = 1;
+    private static final byte MISSING_SUBTYPE = 2;
+    private static final byte NOT_AN_ARRAY = 3;
+    private static final byte NOT_AN_OBJECT = 4;
 
     private BasicDataSet data = null;
-    private SimpleDateFormat format = null;
+    private TimestampCodec format = null;
+
+    // values for each DataType in the current data element, indexed the same as data.getTypes()
+    private DataType[] types;
+    private double[][] values;
+    private byte[] states;
+
+    private final Map<String, Integer> typeIndexes = new java.util.HashMap<String, Integer>();
+    private final Map<String, Map<String, Integer>> subIndexes = new java.util.HashMap<String, Map<String, Integer>>();
+
+    private double[] buffer = new double[16];
 
     public BasicDataSet parse(File file) throws IOException, ParseException {
         return parse(file.getAbsolutePath());
@@ -37,29 +71,111 @@ public final class JSONParser {
     public BasicDataSet parse(String filename) throws IOException, JsonParseException {
         long start = System.nanoTime();
 
-        try {
-            Map<String, Object> root = MAPPER.readValue(new java.io.File(filename),
-                    new TypeReference<Map<String, Object>>() {});
+        JsonParser parser = FACTORY.createParser(new File(filename));
 
+        try {
             data = new BasicDataSet(filename);
 
-            Object temp = root.get("hostname");
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "JSON data must be an object");
+            }
+
+            String hostname = null;
+            String whenPattern = null;
+            Object timezone = null;
+            boolean typesDefined = false;
+            boolean dataDefined = false;
+            TokenBuffer bufferedData = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                if ("hostname".equals(name)) {
+                    hostname = parser.getValueAsString();
+                    // checked for null after parsing completes
+                    parser.skipChildren();
+                }
+                else if ("whenPattern".equals(name)) {
+                    whenPattern = parser.getValueAsString();
+                    parser.skipChildren();
+                }
+                else if ("timezone".equals(name)) {
+                    if (format != null) {
+                        LOGGER.warn("'timezone' defined after 'data'; it will be ignored");
+                        parser.skipChildren();
+                    }
+                    else {
+                        timezone = parseTimeZoneValue(parser);
+                    }
+                }
+                else if ("metadata".equals(name)) {
+                    parseMetadata(parser);
+                }
+                else if ("types".equals(name)) {
+                    typesDefined = token != JsonToken.VALUE_NULL;
+                    parseTypes(parser);
+                }
+                else if ("data".equals(name)) {
+                    if (token == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
 
-            if (temp == null) {
+                    dataDefined = true;
+
+                    if ((whenPattern != null) && typesDefined) {
+                        format = parseDateFormat(whenPattern, timezone);
+                        parseData(parser);
+                    }
+                    else {
+                        LOGGER.debug("'data' defined before 'whenPattern' or 'types'; it will be buffered in memory");
+
+                        bufferedData = new TokenBuffer(parser);
+                        bufferedData.copyCurrentStructure(parser);
+                    }
+                }
+                else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (hostname == null) {
                 throw new IOException("field 'hostname' not found");
             }
 
-            data.setHostname((String) temp);
+            data.setHostname(hostname);
 
-            format = parseDateFormat(root.get("whenPattern"), root.get("timezone"));
+            if (whenPattern == null) {
+                throw new IOException("field 'whenPattern' not found");
+            }
 
-            parseMetadata(root.get("metadata"));
-            parseTypes(root.get("types"));
-            parseData(root.get("data"));
+            if (!typesDefined) {
+                throw new IOException("'types' must be defined");
+            }
+
+            if (!dataDefined) {
+                throw new IOException("'data' must be defined");
+            }
+
+            if (bufferedData != null) {
+                format = parseDateFormat(whenPattern, timezone);
+
+                JsonParser replay = bufferedData.asParser();
+
+                try {
+                    replay.nextToken();
+                    parseData(replay);
+                }
+                finally {
+                    replay.close();
+                }
+            }
 
             return data;
         }
         finally {
+            parser.close();
+
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Parse complete for {} in {}ms", data.getSourceFile(),
                         (System.nanoTime() - start) / 1000000.0d);
@@ -67,15 +183,37 @@ public final class JSONParser {
 
             data = null;
             format = null;
+
+            types = null;
+            values = null;
+            states = null;
+
+            typeIndexes.clear();
+            subIndexes.clear();
         }
     }
 
-    private SimpleDateFormat parseDateFormat(Object whenPattern, Object timezone) throws IOException {
-        if (whenPattern == null) {
-            throw new IOException("field 'whenPattern' not found");
+    // returns a Number, a String or, for any other value, the JSON token so it is reported as invalid
+    private Object parseTimeZoneValue(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+
+        if ((token == JsonToken.VALUE_NUMBER_INT) || (token == JsonToken.VALUE_NUMBER_FLOAT)) {
+            return parser.getNumberValue();
+        }
+        else if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        else if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        else {
+            parser.skipChildren();
+            return token;
         }
+    }
 
-        format = new SimpleDateFormat((String) whenPattern);
+    private TimestampCodec parseDateFormat(String whenPattern, Object timezone) throws IOException {
+        format = new TimestampCodec(whenPattern);
 
         if (timezone != null) {
             if (timezone instanceof Number) {
@@ -96,7 +234,10 @@ public final class JSONParser {
                 // return format without a set timezone
             }
 
-            data.setMetadata("timezone", format.getTimeZone().getDisplayName());
+            // explicit metadata takes precedence, even if it was defined first
+            if (data.getMetadata("timezone") == null) {
+                data.setMetadata("timezone", format.getTimeZone().getDisplayName());
+            }
         }
         else {
             LOGGER.info("no 'timezone' value defined; defaulting to {}, ({})", format.getTimeZone().getID(), format
@@ -106,32 +247,64 @@ public final class JSONParser {
         return format;
     }
 
-    private void parseMetadata(Object rawMetadata) {
-        if (rawMetadata != null) {
-            @SuppressWarnings("unchecked")
-            Map<String, String> metadata = (Map<String, String>) rawMetadata;
+    private void parseMetadata(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
 
-            for (String name : metadata.keySet()) {
-                data.setMetadata(name, metadata.get(name));
-            }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+
+            data.setMetadata(name, parser.getValueAsString());
+            parser.skipChildren();
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void parseTypes(Object rawTypes) throws IOException {
-        if (rawTypes == null) {
-            throw new IOException("'types' must be defined");
+    private void parseTypes(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+
+        if (token == JsonToken.VALUE_NULL) {
+            return;
+        }
+        else if (token != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "'types' must be an array");
         }
 
-        List<Map<String, Object>> types = (List<Map<String, Object>>) rawTypes;
+        int count = 0;
 
-        if (types.size() == 0) {
-            throw new IOException("at least one 'type' must be defined");
-        }
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            ++count;
+
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "each 'type' must be an object");
+            }
+
+            String typeName = null;
+            String typeId = null;
+            List<String> fields = null;
+            List<String> subtypes = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+
+                if ("id".equals(name)) {
+                    typeId = parser.getValueAsString();
+                }
+                else if ("name".equals(name)) {
+                    typeName = parser.getValueAsString();
+                }
+                else if ("fields".equals(name)) {
+                    fields = parseStrings(parser);
+                }
+                else if ("subtypes".equals(name)) {
+                    subtypes = parseStrings(parser);
+                }
 
-        for (Map<String, Object> type : types) {
-            String typeName = (String) type.get("name");
-            String typeId = (String) type.get("id");
+                parser.skipChildren();
+            }
 
             if (typeId == null) {
                 LOGGER.warn("typeId must be defined for each type (typeName = '{}'); it will be ignored", typeName);
@@ -142,26 +315,14 @@ public final class JSONParser {
                 typeName = typeId;
             }
 
-            Object rawFields = type.get("fields");
-
-            if (rawFields == null) {
+            if (fields == null) {
                 LOGGER.warn("no fields defined for type '{}'; it will be ignored", typeId);
                 continue;
             }
 
-            List<String> fields = (List<String>) rawFields;
-
-            String[] fieldsArray = new String[fields.size()];
-
-            for (int i = 0; i < fieldsArray.length; i++) {
-                fieldsArray[i] = fields.get(i);
-            }
-
-            Object temp = type.get("subtypes");
-
-            if (temp != null) {
-                List<String> subtypes = (List<String>) temp;
+            String[] fieldsArray = fields.toArray(new String[fields.size()]);
 
+            if (subtypes != null) {
                 for (String subtype : subtypes) {
                     DataType dataType = new SubDataType(typeId, subtype, typeName, fieldsArray);
                     data.addType(dataType);
@@ -172,126 +333,234 @@ public final class JSONParser {
                 data.addType(dataType);
             }
         }
+
+        if (count == 0) {
+            throw new IOException("at least one 'type' must be defined");
+        }
     }
 
-    @SuppressWarnings("unchecked")
-    private void parseData(Object rawData) throws IOException {
-        if (rawData == null) {
-            throw new IOException("'data' must be defined");
+    // returns null if the current value is not an array
+    private List<String> parseStrings(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            return null;
         }
 
-        List<Map<String, Object>> dataToParse = (List<Map<String, Object>>) rawData;
+        List<String> strings = new java.util.ArrayList<String>();
 
-        if ((dataToParse.size() == 0)) {
-            throw new IOException("at least one 'data' element must be defined");
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            strings.add(parser.getValueAsString());
+            parser.skipChildren();
         }
 
-        for (Map<String, Object> datum : dataToParse) {
-            Object temp = datum.get("when");
+        return strings;
+    }
 
-            if (temp == null) {
-                LOGGER.warn("'when' not defined for data record; it will be ignored. Previous time was '{}'",
-                        data.getRecordCount() == 0 ? "<null>" : format.format(new java.util.Date(data.getEndTime())));
-                continue;
-            }
+    private void indexTypes() {
+        types = new DataType[data.getTypeCount()];
+        values = new double[types.length][];
+        states = new byte[types.length];
 
-            long time = 0;
-            String timestamp = (String) temp;
+        int i = 0;
 
-            try {
-                time = format.parse(timestamp).getTime();
-            }
-            catch (ParseException pe) {
-                LOGGER.warn("cannot parse 'when' value '{}'; the data record will be ignored", temp);
-                continue;
-            }
+        for (DataType type : data.getTypes()) {
+            types[i] = type;
+
+            if (type instanceof SubDataType) {
+                SubDataType subType = (SubDataType) type;
+                Map<String, Integer> subtypes = subIndexes.get(subType.getPrimaryId());
 
-            DataRecord record = new DataRecord(time, timestamp);
+                if (subtypes == null) {
+                    subtypes = new java.util.HashMap<String, Integer>();
+                    subIndexes.put(subType.getPrimaryId(), subtypes);
+                }
 
-            for (DataType type : data.getTypes()) {
-                parseTypeData(datum, type, record);
+                subtypes.put(subType.getSubId(), i);
+            }
+            else {
+                typeIndexes.put(type.getId(), i);
             }
 
-            data.addRecord(record);
+            ++i;
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void parseTypeData(Map<String, Object> datum, DataType type, DataRecord record) {
-        String typeId = type.getId();
-        boolean isSubType = false;
+    private void parseData(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
 
-        if (type instanceof SubDataType) {
-            typeId = ((SubDataType) type).getPrimaryId();
-            isSubType = true;
+        if (token != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "'data' must be an array");
         }
 
-        Object temp = datum.get(typeId);
+        indexTypes();
 
-        if (temp == null) {
-            LOGGER.warn("no data for type '{}' at time {}", typeId, format.format(new java.util.Date(record.getTime())));
-            return;
+        int count = 0;
+
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            ++count;
+
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "each 'data' element must be an object");
+            }
+
+            parseDatum(parser);
         }
 
-        if (isSubType) {
-            if (temp instanceof Map) {
-                Map<String, Object> map = (Map<String, Object>) temp;
+        if (count == 0) {
+            throw new IOException("at least one 'data' element must be defined");
+        }
+    }
+
+    private void parseDatum(JsonParser parser) throws IOException {
+        java.util.Arrays.fill(values, null);
+        java.util.Arrays.fill(states, MISSING);
+
+        String timestamp = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            if ("when".equals(name)) {
+                timestamp = parser.getValueAsString();
+                parser.skipChildren();
+                continue;
+            }
 
-                String subtypeId = ((SubDataType) type).getSubId();
-                temp = map.get(subtypeId);
+            Integer index = typeIndexes.get(name);
+            Map<String, Integer> subtypes = subIndexes.get(name);
 
-                if (temp == null) {
-                    LOGGER.warn("no data for subtype '{}' at time {}", subtypeId,
-                            format.format(new java.util.Date(record.getTime())));
-                    return;
+            if (token == JsonToken.START_ARRAY) {
+                if (index != null) {
+                    values[index] = parseValues(parser);
+                    states[index] = PRESENT;
                 }
                 else {
-                    List<Number> values = (List<Number>) temp;
+                    parser.skipChildren();
+                }
 
-                    double[] doubleValues = new double[values.size()];
+                markSubtypes(subtypes, NOT_AN_OBJECT);
+            }
+            else if (token == JsonToken.START_OBJECT) {
+                if (index != null) {
+                    states[index] = NOT_AN_ARRAY;
+                }
 
-                    for (int i = 0; i < doubleValues.length; i++) {
-                        Number value = values.get(i);
+                if (subtypes == null) {
+                    parser.skipChildren();
+                    continue;
+                }
 
-                        if (value == null) {
-                            doubleValues[i] = Double.NaN;
+                markSubtypes(subtypes, MISSING_SUBTYPE);
+
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    Integer subIndex = subtypes.get(parser.getCurrentName());
+                    token = parser.nextToken();
+
+                    if (subIndex != null) {
+                        if (token == JsonToken.START_ARRAY) {
+                            values[subIndex] = parseValues(parser);
+                            states[subIndex] = PRESENT;
                         }
                         else {
-                            doubleValues[i] = value.doubleValue();
+                            throw new JsonParseException(parser, "data for '" + types[subIndex].getId()
+                                    + "' must be an array");
                         }
                     }
-
-                    record.addData(type, doubleValues);
+                    else {
+                        parser.skipChildren();
+                    }
                 }
             }
-            else {
+            else if (token != JsonToken.VALUE_NULL) {
+                if (index != null) {
+                    states[index] = NOT_AN_ARRAY;
+                }
+
+                markSubtypes(subtypes, NOT_AN_OBJECT);
+            }
+        }
+
+        if (timestamp == null) {
+            LOGGER.warn("'when' not defined for data record; it will be ignored. Previous time was '{}'",
+                    data.getRecordCount() == 0 ? "<null>" : format.format(data.getEndTime()));
+            return;
+        }
+
+        long time = 0;
+
+        try {
+            time = format.parse(timestamp);
+        }
+        catch (ParseException pe) {
+            LOGGER.warn("cannot parse 'when' value '{}'; the data record will be ignored", timestamp);
+            return;
+        }
+
+        DataRecord record = new DataRecord(time, timestamp);
+
+        for (int i = 0; i < types.length; i++) {
+            DataType type = types[i];
+
+            switch (states[i]) {
+            case PRESENT: {
+                record.addData(type, values[i]);
+                break;
+            }
+            case MISSING: {
+                String typeId = (type instanceof SubDataType) ? ((SubDataType) type).getPrimaryId() : type.getId();
+                LOGGER.warn("no data for type '{}' at time {}", typeId, format.format(record.getTime()));
+                break;
+            }
+            case MISSING_SUBTYPE: {
+                LOGGER.warn("no data for subtype '{}' at time {}", ((SubDataType) type).getSubId(),
+                        format.format(record.getTime()));
+                break;
+            }
+            case NOT_AN_OBJECT: {
                 LOGGER.warn("unknown JSON object for type '{}' at time {}; it must be an object", type.getId(),
-                        format.format(new java.util.Date(record.getTime())));
+                        format.format(record.getTime()));
+                break;
+            }
+            case NOT_AN_ARRAY: {
+                LOGGER.warn("unknown JSON object for type '{}' at time {}; it must be an array", type.getId(),
+                        format.format(record.getTime()));
+                break;
+            }
             }
         }
-        else {
-            if (temp instanceof List) {
-                List<Number> values = (List<Number>) temp;
 
-                double[] doubleValues = new double[values.size()];
+        data.addRecord(record);
+    }
+
+    private void markSubtypes(Map<String, Integer> subtypes, byte state) {
+        if (subtypes != null) {
+            for (Integer index : subtypes.values()) {
+                states[index] = state;
+            }
+        }
+    }
 
-                for (int i = 0; i < doubleValues.length; i++) {
-                    Number value = values.get(i);
+    // reads numbers directly into a reusable buffer; null is converted to NaN
+    private double[] parseValues(JsonParser parser) throws IOException {
+        int count = 0;
+        JsonToken token = null;
 
-                    if (value == null) {
-                        doubleValues[i] = Double.NaN;
-                    }
-                    else {
-                        doubleValues[i] = value.doubleValue();
-                    }
-                }
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (count == buffer.length) {
+                buffer = java.util.Arrays.copyOf(buffer, count * 2);
+            }
 
-                record.addData(type, doubleValues);
+            if ((token == JsonToken.VALUE_NUMBER_INT) || (token == JsonToken.VALUE_NUMBER_FLOAT)) {
+                buffer[count++] = parser.getDoubleValue();
+            }
+            else if (token == JsonToken.VALUE_NULL) {
+                buffer[count++] = Double.NaN;
             }
             else {
-                LOGGER.warn("unknown JSON object for type '{}' at time {}; it must be an array", typeId,
-                        format.format(new java.util.Date(record.getTime())));
+                throw new JsonParseException(parser, "data values must be numbers or null");
             }
         }
+
+        return java.util.Arrays.copyOf(buffer, count);
     }
 }
@@ -8,7 +8,6 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.LineNumberReader;
 
-import java.text.SimpleDateFormat;
 import java.text.ParseException;
 
 import java.util.List;
@@ -21,6 +20,7 @@ import com.ibm.nmon.data.*;
 import com.ibm.nmon.data.Process;
 import com.ibm.nmon.data.transform.*;
 import com.ibm.nmon.util.DataHelper;
+import com.ibm.nmon.util.TimestampCodec;
 
 /**
  * A parser for NMON files. The result of a successfully parsed file will be a populated {@link NMONDataSet} object.
@@ -28,8 +28,6 @@ import com.ibm.nmon.util.DataHelper;
 public final class NMONParser {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(NMONParser.class);
 
-    private static final SimpleDateFormat NMON_FORMAT = new SimpleDateFormat("HH:mm:ss dd-MMM-yyyy",
-            java.util.Locale.US);
     private static final Pattern DATA_SPLITTER = Pattern.compile(",");
 
     private LineNumberReader in = null;
@@ -45,12 +43,17 @@ public final class NMONParser {
     private boolean isAIX = false;
     private boolean scaleProcessesByCPU = true;
 
+    private final TimestampCodec nmonFormat = new TimestampCodec("HH:mm:ss dd-MMM-yyyy", java.util.Locale.US);
+
     private final Map<Integer, Process> processes = new java.util.HashMap<Integer, Process>();
     private final Map<String, StringBuilder> systemInfo = new java.util.HashMap<String, StringBuilder>();
 
     private final List<DataTransform> transforms = new java.util.ArrayList<DataTransform>();
     private final List<DataPostProcessor> processors = new java.util.ArrayList<DataPostProcessor>();
 
+    // how to decode the data lines for each type id; built when the first line for a type is parsed
+    private final Map<String, DecodePlan> decodePlans = new java.util.HashMap<String, DecodePlan>();
+
     public NMONParser() {
         processors.add(new NetworkTotalPostProcessor("NET"));
         processors.add(new NetworkTotalPostProcessor("SEA"));
@@ -77,7 +80,7 @@ public final class NMONParser {
         try {
             data = new NMONDataSet(datasetName);
 
-            NMON_FORMAT.setTimeZone(timeZone);
+            nmonFormat.setTimeZone(timeZone);
 
             data.setMetadata("parsed_gmt_offset",
                     Double.toString(timeZone.getOffset(System.currentTimeMillis()) / 3600000.0d));
@@ -141,6 +144,7 @@ public final class NMONParser {
             processes.clear();
             systemInfo.clear();
             transforms.clear();
+            decodePlans.clear();
         }
     }
 
@@ -300,8 +304,6 @@ public final class NMONParser {
             }
 
             if (timestamp.startsWith("T")) {
-                DataType type = data.getType(values[0]);
-
                 if (timestamp.equals(currentRecord.getTimestamp())) {
                     if (isUarg) {
                         parseUARG(values);
@@ -311,7 +313,9 @@ public final class NMONParser {
                         parseTopData(values);
                     }
                     else {
-                        if (type == null) {
+                        DecodePlan plan = getDecodePlan(values[0]);
+
+                        if (plan == null) {
                             if ("VM".equals(values[0])) {
                                 // fix for issue #7
                                 // NMON outputs the VM data type at T0001
@@ -321,7 +325,7 @@ public final class NMONParser {
                                 newValues[0] = values[0];
                                 System.arraycopy(values, 2, newValues, 1, values.length - 2);
 
-                                type = buildDataType(newValues);
+                                DataType type = buildDataType(newValues);
                                 data.addType(type);
                             }
                             else {
@@ -329,7 +333,7 @@ public final class NMONParser {
                             }
                         }
                         else {
-                            parseData(type, values);
+                            parseData(plan, values);
                         }
                     }
                 }
@@ -384,7 +388,7 @@ public final class NMONParser {
         }
         else {
             try {
-                time = NMON_FORMAT.parse(values[2] + ' ' + values[3]).getTime();
+                time = nmonFormat.parse(values[2] + ' ' + values[3]);
                 long previous = data.getEndTime();
 
                 if (time < previous) {
@@ -466,41 +470,42 @@ public final class NMONParser {
         }
     }
 
-    private void parseData(DataType type, String[] values) {
-        List<Integer> toSkip = TYPE_SKIP_INDEXES.get(type.getId());
+    private DecodePlan getDecodePlan(String typeId) {
+        DecodePlan plan = decodePlans.get(typeId);
 
-        if (toSkip == null) {
-            toSkip = java.util.Collections.emptyList();
+        if (plan == null) {
+            DataType type = data.getType(typeId);
+
+            if (type != null) {
+                plan = new DecodePlan(type);
+                decodePlans.put(typeId, plan);
+            }
         }
 
+        return plan;
+    }
+
+    private void parseData(DecodePlan plan, String[] values) {
+        DataType type = plan.type;
+        int[] toSkip = plan.toSkip;
+
         // + 2 => skip data type & timestamp
-        double[] recordData = new double[values.length - 2 - toSkip.size()];
+        double[] recordData = new double[values.length - 2 - toSkip.length];
 
         int i = 2;
         int n = 0;
+        int skipped = 0;
 
         // note try is outside the for loop since we want to skip the entire data record if any part
         // of is it bad
         try {
             for (; i < values.length; i++) {
-                if (toSkip.contains(i)) {
+                if ((skipped < toSkip.length) && (toSkip[skipped] == i)) {
+                    ++skipped;
                     continue;
                 }
 
-                String data = values[i];
-                // 'nan' only appears in file sizes for virtual files like
-                // rpc_pipefs; assume this is equivalent to 0
-                if ("".equals(data) || data.contains("nan")) {
-                    recordData[n] = 0;
-                }
-                else if ("INF".equals(data)) {
-                    recordData[n] = Double.POSITIVE_INFINITY;
-                }
-                else {
-                    recordData[n] = Double.parseDouble(data);
-                }
-
-                ++n;
+                recordData[n++] = parseValue(values[i]);
             }
         }
         catch (NumberFormatException nfe) {
@@ -508,16 +513,13 @@ public final class NMONParser {
                     new Object[] { currentRecord.getTimestamp(), values[i], in.getLineNumber(), (i + 1) });
         }
 
-        for (DataTransform transform : transforms) {
-            if (transform.isValidFor(type.getId(), null)) {
-                try {
-                    recordData = transform.transform(type, recordData);
-                }
-                catch (Exception e) {
-                    LOGGER.warn(currentRecord.getTimestamp() + ": could not complete transform "
-                            + transform.getClass().getSimpleName() + " at line " + in.getLineNumber(), e);
-                }
-                break;
+        if (plan.transform != null) {
+            try {
+                recordData = plan.transform.transform(type, recordData);
+            }
+            catch (Exception e) {
+                LOGGER.warn(currentRecord.getTimestamp() + ": could not complete transform "
+                        + plan.transformName + " at line " + in.getLineNumber(), e);
             }
         }
 
@@ -541,6 +543,29 @@ public final class NMONParser {
         }
     }
 
+    private static double parseValue(String value) {
+        if (value.length() == 0) {
+            return 0;
+        }
+
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException nfe) {
+            // 'nan' only appears in file sizes for virtual files like
+            // rpc_pipefs; assume this is equivalent to 0
+            if (value.contains("nan")) {
+                return 0;
+            }
+            else if ("INF".equals(value)) {
+                return Double.POSITIVE_INFINITY;
+            }
+            else {
+                throw nfe;
+            }
+        }
+    }
+
     private String[] parseTopFields(String[] values) {
         // assume TOP record is like TOP,pid,TXXX,...,command,...
         // so remove TOP, pid, TXXX, and command
@@ -698,10 +723,10 @@ public final class NMONParser {
             return;
         }
 
-        if ("".equals(process.getCommandLine())) {
+        if (process.isCommandLineEmpty()) {
             process.setCommandLine(commandLine);
         }
-        else if (!process.getCommandLine().equals(commandLine)) {
+        else if (!process.commandLineEquals(commandLine)) {
             // process ids can be reused; getTopData() covers processes with different names
             // handle the case where the id is reused, process is the same name but the command line
             // is different
@@ -844,4 +869,62 @@ public final class NMONParser {
 
         TYPE_SKIP_INDEXES = java.util.Collections.unmodifiableMap(tempIndexes);
     }
+
+    /**
+     * Everything needed to decode the data lines for a single DataType, resolved once so parsing each line does not
+     * need any lookups.
+     */
+    private final class DecodePlan {
+        final DataType type;
+
+        // sorted indexes of the values in each line that are not data
+        final int[] toSkip;
+
+        // null if the type is not transformed
+        final DataTransform transform;
+        final String transformName;
+
+        DecodePlan(DataType type) {
+            this.type = type;
+
+            List<Integer> skipIndexes = TYPE_SKIP_INDEXES.get(type.getId());
+
+            if (skipIndexes == null) {
+                toSkip = new int[0];
+            }
+            else {
+                toSkip = new int[skipIndexes.size()];
+
+                for (int i = 0; i < toSkip.length; i++) {
+                    toSkip[i] = skipIndexes.get(i);
+                }
+
+                java.util.Arrays.sort(toSkip);
+            }
+
+            DataTransform toUse = null;
+
+            for (DataTransform transform : transforms) {
+                if (transform.isValidFor(type.getId(), null)) {
+                    toUse = transform;
+                    break;
+                }
+            }
+
+            transformName = toUse == null ? null : toUse.getClass().getSimpleName();
+
+            if (toUse instanceof BindableDataTransform) {
+                try {
+                    toUse = ((BindableDataTransform) toUse).bind(type);
+                }
+                catch (IllegalArgumentException iae) {
+                    // missing fields; use the unbound transform which will log an error for each line
+                    LOGGER.debug("cannot bind {} to DataType {}: {}",
+                            new Object[] { transformName, type.getId(), iae.getMessage() });
+                }
+            }
+
+            transform = toUse;
+        }
+    }
 }
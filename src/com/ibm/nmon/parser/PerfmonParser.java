@@ -5,8 +5,6 @@ import org.slf4j.Logger;
 import java.io.IOException;
 import java.io.File;
 import java.io.FileReader;
-import java.io.LineNumberReader;
-import java.text.SimpleDateFormat;
 import java.text.ParseException;
 import java.util.List;
 import java.util.Map;
@@ -23,15 +21,15 @@ import com.ibm.nmon.data.Process;
 import com.ibm.nmon.data.transform.WindowsBytesTransform;
 import com.ibm.nmon.data.transform.WindowsNetworkPostProcessor;
 import com.ibm.nmon.data.transform.WindowsProcessPostProcessor;
+import com.ibm.nmon.parser.util.CharLineReader;
+import com.ibm.nmon.parser.util.CharTokenizer;
 import com.ibm.nmon.util.DataHelper;
+import com.ibm.nmon.util.TimestampCodec;
 
 public final class PerfmonParser {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(PerfmonParser.class);
 
-    private static final SimpleDateFormat TIMESTAMP_FORMAT = new SimpleDateFormat("MM/dd/yyyy HH:mm:ss");
 
-    // Issue #26 \D to prevent splitting on something like \SRVXYZ\Processor Information(2,10)\% DPC Time see in Win2012
-    private static final Pattern DATA_SPLITTER = Pattern.compile("\"?,\\D\"?");
     private static final Pattern SUBCATEGORY_SPLITTER = Pattern.compile(":");
     // "\\hostname\category (optional subcategory)\metric"
     // note storing a matcher vs a pattern is _NOT_ thread safe
@@ -39,17 +37,31 @@ public final class PerfmonParser {
     // \\SYSTEM\Paging File(\??\D:\pagefile.sys)\% Usage
     private static final Matcher METRIC_MATCHER = Pattern.compile("\\\\\\\\(.*?)\\\\(.*)\\\\(.*)\"?").matcher("");
 
-    private LineNumberReader in = null;
+    private CharLineReader in = null;
+
+    // rows can have thousands of columns; tokenize in place rather than splitting into Strings
+    // quoted values are handled so commas in something like
+    // \SRVXYZ\Processor Information(2,10)\% DPC Time (Issue #26) do not split the column
+    private final CharTokenizer tokenizer = new CharTokenizer(',');
+    // time zone is set from the file header
+    private final TimestampCodec timestampFormat = new TimestampCodec("MM/dd/yyyy HH:mm:ss");
 
     private PerfmonDataSet data = null;
 
     private final WindowsBytesTransform bytesTransform = new WindowsBytesTransform();
 
-    // builders for each column
-    private DataTypeBuilder[] buildersByColumn;
+    // builders in the order they were first seen in the header
+    private final List<DataTypeBuilder> builders = new java.util.ArrayList<DataTypeBuilder>();
     // builders by type id
     private Map<String, DataTypeBuilder> buildersById = new java.util.HashMap<String, DataTypeBuilder>();
 
+    // for each column, the index of its builder in builders and the index of its field in that
+    // builder's data; -1 for columns that are skipped
+    private int[] columnTypes;
+    private int[] columnFields;
+    // for each column, the builder that uses the column as its process id; otherwise null
+    private DataTypeBuilder[] processIdColumns;
+
     public PerfmonDataSet parse(File file, boolean scaleProcessesByCPU) throws IOException, ParseException {
         return parse(file.getAbsolutePath(), scaleProcessesByCPU);
     }
@@ -61,14 +73,16 @@ public final class PerfmonParser {
         data.setMetadata("OS", "Perfmon");
 
         try {
-            in = new LineNumberReader(new FileReader(filename));
+            in = new CharLineReader(new FileReader(filename));
 
-            String line = in.readLine();
+            if (!in.nextLine()) {
+                throw new IOException("file '" + filename + "' is empty");
+            }
 
-            parseHeader(DATA_SPLITTER.split(line));
+            parseHeader(tokenizeHeader());
 
-            while ((line = in.readLine()) != null) {
-                parseData(DATA_SPLITTER.split(line));
+            while (in.nextLine()) {
+                parseData();
             }
 
             long postProcessStart = System.nanoTime();
@@ -108,38 +122,62 @@ public final class PerfmonParser {
 
         }
         finally {
-            in.close();
+            if (in != null) {
+                in.close();
+                in = null;
+            }
 
             data = null;
 
-            // columnTypes.clear();
+            builders.clear();
             buildersById.clear();
-            // processes.clear();
-            buildersByColumn = null;
+
+            columnTypes = null;
+            columnFields = null;
+            processIdColumns = null;
 
             bytesTransform.reset();
         }
     }
 
-    private void parseHeader(String[] header) {
-        buildersByColumn = new DataTypeBuilder[header.length];
+    private String[] tokenizeHeader() {
+        List<String> header = new java.util.ArrayList<String>();
 
-        // remove trailing " or ,
-        String lastData = header[header.length - 1];
+        resetTokenizer();
 
-        if (lastData.endsWith("\"")) {
-            header[header.length - 1] = lastData.substring(0, lastData.length() - 1);
+        while (tokenizer.next()) {
+            header.add(tokenizer.getToken());
         }
-        else if (lastData.endsWith(",")) {
-            header[header.length - 1] = lastData.substring(0, lastData.length() - 2);
+
+        return header.toArray(new String[header.size()]);
+    }
+
+    private void resetTokenizer() {
+        char[] buffer = in.getBuffer();
+        int end = in.getEnd();
+
+        // remove trailing ,
+        if ((end > in.getStart()) && (buffer[end - 1] == ',')) {
+            --end;
         }
 
+        tokenizer.reset(buffer, in.getStart(), end);
+    }
+
+    private void parseHeader(String[] header) {
+        columnTypes = new int[header.length];
+        columnFields = new int[header.length];
+        processIdColumns = new DataTypeBuilder[header.length];
+
+        java.util.Arrays.fill(columnTypes, -1);
+        java.util.Arrays.fill(columnFields, -1);
+
         // parse out the timezone in a format like (PDH-CSV 4.0) (GMT Daylight Time)(-60)
         int idx = header[0].lastIndexOf('(');
 
         if (idx == -1) {
             LOGGER.warn("version header '{0}' is not in the right format, the time zone will default to UTC", header[0]);
-            TIMESTAMP_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
+            timestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
         }
         else {
             String temp = header[0].substring(idx + 1, header[0].length() - 1);
@@ -148,18 +186,16 @@ public final class PerfmonParser {
                 // timezone format in negative minutes from UTC
                 double offset = Integer.parseInt(temp) / -60.0d;
 
-                TIMESTAMP_FORMAT.setTimeZone(new java.util.SimpleTimeZone((int) (offset * 3600000), temp));
+                timestampFormat.setTimeZone(new java.util.SimpleTimeZone((int) (offset * 3600000), temp));
             }
             catch (NumberFormatException nfe) {
                 LOGGER.warn("version header '{0}' is not in the right format, the time zone will default to UTC",
                         header[0]);
-                TIMESTAMP_FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
+                timestampFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
             }
         }
 
-        // timestamp does not belong to a category
-        // columnTypes.add(null);
-        buildersByColumn[0] = null;
+        // timestamp does not belong to a category, so columnTypes[0] is always -1
 
         // read the first column to get the hostname
         METRIC_MATCHER.reset(header[1]);
@@ -177,7 +213,6 @@ public final class PerfmonParser {
 
             if (!METRIC_MATCHER.matches()) {
                 LOGGER.warn("'{}' is not a valid header column", header[i]);
-                buildersByColumn[i] = null;
                 continue;
             }
 
@@ -195,8 +230,6 @@ public final class PerfmonParser {
 
                 if (endIdx == -1) {
                     LOGGER.warn("no end parentheses found in header column '{}'", toParse);
-                    // columnTypes.add(null);
-                    buildersByColumn[i] = null;
                     continue;
                 }
                 else {
@@ -214,102 +247,137 @@ public final class PerfmonParser {
             DataTypeBuilder builder = buildersById.get(uniqueId);
 
             if (builder == null) {
-                builder = new DataTypeBuilder(uniqueId, id, subId);
+                builder = new DataTypeBuilder(builders.size(), uniqueId, id, subId);
                 buildersById.put(uniqueId, builder);
+                builders.add(builder);
             }
 
             if (data.getTypeIdPrefix().equals(id)) { // Process
                 // skip Total and Idle processes
                 if ("Idle".equals(subId) || "Total".equals(subId)) {
-                    buildersByColumn[i] = null;
+                    continue;
                 }
                 // skip ID Process field but use is as the process id
                 else if ("ID Process".equals(field)) {
-                    buildersByColumn[i] = null;
-                    builder.setProcessIdColumn(i);
+                    processIdColumns[i] = builder;
                 }
                 else {
-                    buildersByColumn[i] = builder;
-                    builder.addField(field);
+                    columnTypes[i] = builder.index;
+                    columnFields[i] = builder.addField(field);
                 }
             }
             else {
-                buildersByColumn[i] = builder;
-                builder.addField(field);
+                columnTypes[i] = builder.index;
+                columnFields[i] = builder.addField(field);
             }
         }
     }
 
-    private void parseData(String[] rawData) {
-        if (rawData.length != buildersByColumn.length) {
-            LOGGER.warn("invalid number of data columns at line {}, this data will be skipped", in.getLineNumber());
-            return;
+    private void parseData() {
+        resetTokenizer();
+
+        // timestamp
+        tokenizer.next();
+        String timestamp = tokenizer.getToken();
+
+        // parse values directly into the arrays that will be stored in the DataRecord
+        double[][] values = new double[builders.size()][];
+
+        for (int i = 0; i < values.length; i++) {
+            int size = builders.get(i).fields.size();
+
+            if (size > 0) {
+                values[i] = new double[size];
+            }
         }
 
-        // remove trailing " or ,
-        String lastData = rawData[rawData.length - 1];
+        int[] columnTypes = this.columnTypes;
+        int[] columnFields = this.columnFields;
+        int columnCount = columnTypes.length;
+        int column = 1;
+
+        // process ids are only applied once the row is accepted
+        double[] processIds = null;
+        boolean numeric = true;
+
+        for (; tokenizer.next(); column++) {
+            if ((column >= columnCount) || !numeric) {
+                // too many columns or a row that will be skipped; keep counting for the error message
+                continue;
+            }
+
+            try {
+                int typeIdx = columnTypes[column];
+
+                if (typeIdx != -1) {
+                    values[typeIdx][columnFields[column]] = parseDouble();
+                }
+                else if ((processIdColumns[column] != null) && (processIdColumns[column].type == null)) {
+                    // only needed to create the Process
+                    if (processIds == null) {
+                        processIds = new double[columnCount];
+                    }
 
-        if (lastData.endsWith("\"")) {
-            rawData[rawData.length - 1] = lastData.substring(0, lastData.length() - 1);
+                    processIds[column] = parseDouble();
+                }
+            }
+            catch (NumberFormatException nfe) {
+                // check column count and timestamp before reporting invalid data, e.g. for repeated header rows
+                numeric = false;
+            }
         }
-        else if (lastData.endsWith(",")) {
-            rawData[rawData.length - 1] = lastData.substring(0, lastData.length() - 2);
+
+        if (column != columnCount) {
+            LOGGER.warn("invalid number of data columns at line {}, this data will be skipped", in.getLineNumber());
+            return;
         }
 
-        // remove leading " on timestamp
-        String timestamp = DataHelper.newString(rawData[0].substring(1));
         long time = 0;
 
         try {
-            time = TIMESTAMP_FORMAT.parse(timestamp).getTime();
+            time = timestampFormat.parse(timestamp);
         }
         catch (ParseException pe) {
             LOGGER.warn("invalid timestamp format at line {}, this data will be skipped", in.getLineNumber());
             return;
         }
 
-        Map<String, DataHolder> dataByType = new java.util.HashMap<String, DataHolder>();
-
-        for (int i = 1; i < rawData.length; i++) {
-            DataTypeBuilder builder = buildersByColumn[i];
-
-            if (builder == null) {
-                continue;
-            }
-            else {
-                DataHolder holder = dataByType.get(builder.unique);
+        if (!numeric) {
+            LOGGER.warn("invalid numeric data at line {}, this data will be skipped", in.getLineNumber());
+            return;
+        }
 
-                if (holder == null) {
-                    holder = new DataHolder(builder.fields.size());
+        if (processIds != null) {
+            for (int i = 1; i < columnCount; i++) {
+                DataTypeBuilder builder = processIdColumns[i];
 
-                    dataByType.put(builder.unique, holder);
+                if ((builder != null) && (builder.type == null)) {
+                    builder.processId = processIds[i];
                 }
-
-                holder.add(parseDouble(rawData[i]));
             }
         }
 
         DataRecord record = new DataRecord(time, timestamp);
 
-        for (String unique : dataByType.keySet()) {
-            DataTypeBuilder builder = buildersById.get(unique);
-            DataHolder holder = dataByType.get(unique);
-
-            DataType type = builder.build(time, rawData);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                continue;
+            }
 
-            double[] values = holder.data;
+            DataTypeBuilder builder = builders.get(i);
+            DataType type = builder.build(time);
 
-            if (bytesTransform.isValidFor(builder.id, builder.subId)) {
-                if (type.hasField("% Used Space")) {
-                    int idx = type.getFieldIndex("% Used Space");
+            if (builder.transformBytes) {
+                if (builder.usedSpaceIndex != -1) {
+                    int idx = builder.usedSpaceIndex;
 
-                    values[idx] = 100 - values[idx];
+                    values[i][idx] = 100 - values[i][idx];
                 }
 
-                values = bytesTransform.transform(type, values);
+                values[i] = bytesTransform.transform(type, values[i]);
             }
 
-            record.addData(type, values);
+            record.addData(type, values[i]);
         }
 
         data.addRecord(record);
@@ -344,13 +412,13 @@ public final class PerfmonParser {
         }
     }
 
-    private double parseDouble(String value) {
+    private double parseDouble() {
         // assume start with space, whole string is space (i.e. empty)
-        if (value.charAt(0) == ' ') {
+        if ((tokenizer.getTokenLength() == 0) || (tokenizer.getBuffer()[tokenizer.getTokenStart()] == ' ')) {
             return Double.NaN;
         }
         else {
-            return Double.parseDouble(value);
+            return tokenizer.parseDouble();
         }
     }
 
@@ -375,33 +443,43 @@ public final class PerfmonParser {
     // needed due to Perfmon interleaving Process data columns
     // Processes also need to be created with a start time and pid are unknown until data is parsed
     private final class DataTypeBuilder {
+        // index in the builders list
+        private final int index;
+
         // id + subId, used for hashCode and equals
         private final String unique;
 
         private final String id;
         private final String subId;
 
-        // possible column mapping for ID Process column
-        private int processIdColumn = -1;
+        // value of the ID Process column, if any, from the first row of data
+        private double processId = 0;
 
         private final List<String> fields = new java.util.ArrayList<String>();
 
+        // check the transform once rather than for every row
+        private final boolean transformBytes;
+        private int usedSpaceIndex = -1;
+
         private DataType type;
 
-        DataTypeBuilder(String unique, String id, String subId) {
+        DataTypeBuilder(int index, String unique, String id, String subId) {
+            this.index = index;
             this.unique = unique;
 
             this.id = id;
             this.subId = subId;
+
+            this.transformBytes = bytesTransform.isValidFor(id, subId);
         }
 
-        void addField(String field) {
+        /**
+         * @return the index of the added field
+         */
+        int addField(String field) {
             // assume no duplicates will happen
             fields.add(field);
-        }
-
-        void setProcessIdColumn(int processIdColumn) {
-            this.processIdColumn = processIdColumn;
+            return fields.size() - 1;
         }
 
         @Override
@@ -414,7 +492,7 @@ public final class PerfmonParser {
             return unique.equals(o);
         }
 
-        DataType build(long startTime, String[] rawData) {
+        DataType build(long startTime) {
             if (type != null) {
                 return type;
             }
@@ -423,7 +501,7 @@ public final class PerfmonParser {
             fields.toArray(fieldsArray);
 
             if (data.getTypeIdPrefix().equals(id)) { // Process
-                int pid = (int) (processIdColumn != -1 ? parseDouble(rawData[processIdColumn]) : 0);
+                int pid = Double.isNaN(processId) ? 0 : (int) processId;
                 String processName = subId; // store processes with full name
 
                 // parse out pid, if available via
@@ -488,22 +566,12 @@ public final class PerfmonParser {
                 }
             }
 
+            if (transformBytes && type.hasField("% Used Space")) {
+                usedSpaceIndex = type.getFieldIndex("% Used Space");
+            }
+
             data.addType(type);
             return type;
         }
     }
-
-    // simple holder for field data as it is being read
-    private final class DataHolder {
-        private int nextIdx = 0;
-        private final double[] data;
-
-        DataHolder(int size) {
-            data = new double[size];
-        }
-
-        void add(double d) {
-            data[nextIdx++] = d;
-        }
-    }
 }
@@ -9,23 +9,34 @@ import java.io.IOException;
 
 import java.io.File;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
 
-import java.io.StringReader;
-import java.io.StringWriter;
+import java.nio.charset.Charset;
 
 import java.util.TimeZone;
 
 import com.ibm.nmon.data.NMONDataSet;
 
 /**
- * A parser for <code>topas -a</code> output. This serves as a bridge between Topas and NMON. This class takes the
- * output and converts it to a string that can be parsed by {@link NMONParser}.
+ * <p>
+ * A parser for <code>topas -a</code> output. This serves as a bridge between Topas and NMON. This class reorders the
+ * output into the order expected by {@link NMONParser} and passes it to that parser.
+ * </p>
+ *
+ * <p>
+ * Topas groups all the data for each type together rather than grouping all the data for each timestamp. Rather than
+ * reading the whole file into memory to reorder it, this class reads the file twice. The first pass saves the header
+ * and timestamp records and where the data for each type begins. The second pass reads the next line for each type at
+ * each timestamp, so only a small buffer per type is held in memory regardless of the file size.
+ * </p>
  */
 public final class TopasOutParser {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(TopasOutParser.class);
 
+    // same encoding as FileReader
+    private static final Charset CHARSET = Charset.defaultCharset();
+
     private final NMONParser nmonParser;
 
     public TopasOutParser(NMONParser nmonParser) {
@@ -35,58 +46,62 @@ public final class TopasOutParser {
     // topas -a outputs sorted data; unsort it by looking for the header records and outputting them first
     // once the ZZZZ records are parsed output them then all the corresponding data records for that timestamp
     public NMONDataSet parse(String filename, TimeZone timeZone, boolean scaleProcessesByCPU) throws IOException {
-        File file = new File(filename);
-
-        BufferedReader in = null;
+        long start = System.nanoTime();
 
-        StringWriter writer = null;
+        RandomAccessFile file = null;
 
         try {
-            in = new BufferedReader(new FileReader(file));
-            writer = new StringWriter((int) file.length());
-
-            // LinkedHashMap so insertion order is maintained; removes need to reparse headers later
-            Map<String, List<String>> headersToLines = new java.util.LinkedHashMap<String, List<String>>(32);
+            file = new RandomAccessFile(new File(filename), "r");
 
+            List<String> aaa = new java.util.ArrayList<String>(16);
             List<String> headers = new java.util.ArrayList<String>(32);
             List<String> timestamps = new java.util.ArrayList<String>(128);
 
+            // LinkedHashMap so insertion order is maintained
+            // store a cursor starting at the first data line for each header rather than the data itself
+            Map<String, LineCursor> headersToLines = new java.util.LinkedHashMap<String, LineCursor>(32);
+
+            LineCursor lines = new LineCursor(file, null);
+            lines.startAt(0);
             String line = null;
 
-            while ((line = in.readLine()) != null) {
+            while ((line = lines.readLine()) != null) {
                 int idx = line.indexOf(",");
 
+                if (idx == -1) {
+                    continue;
+                }
+
                 String header = line.substring(0, idx);
 
                 if ("AAA".equals(header)) {
-                    // put all the AAA records at the top by writing them out now
-                    writer.write(line);
-                    writer.write('\n');
+                    // put all the AAA records at the top
+                    aaa.add(line);
                 }
                 else if ("ZZZZ".equals(header)) {
                     timestamps.add(line);
                 }
                 else {
-                    // save all the data by header name
-                    List<String> lines = headersToLines.get(header);
+                    LineCursor cursor = headersToLines.get(header);
 
-                    if (lines == null) {
+                    if (cursor == null) {
                         LOGGER.trace("found {} " + "header", header);
-                        lines = new java.util.ArrayList<String>(218);
-                        headersToLines.put(header, lines);
+                        cursor = new LineCursor(file, header + ",T");
+                        headersToLines.put(header, cursor);
                     }
 
-                    if (line.charAt(idx + 1) == 'T') {
-                        lines.add(line);
+                    if ((idx < line.length() - 1) && (line.charAt(idx + 1) == 'T')) {
+                        // data is read in the second pass
+                        cursor.startAt(lines.getLineStart());
+                        continue;
                     }
-                    else {
-                        if ("LPAR".equals(header)) {
-                            // fix capitalization of LPAR data to match NMON
-                            line = "LPAR,LPAR Stats,PhysicalCPU,virtualCPUs,logicalCPUs,poolCPUs,entitled,weight,PoolIdle,usedAllCPU%,usedPoolCPU%,SharedCPU";
-                        }
 
-                        headers.add(line);
+                    if ("LPAR".equals(header)) {
+                        // fix capitalization of LPAR data to match NMON
+                        line = "LPAR,LPAR Stats,PhysicalCPU,virtualCPUs,logicalCPUs,poolCPUs,entitled,weight,PoolIdle,usedAllCPU%,usedPoolCPU%,SharedCPU";
                     }
+
+                    headers.add(line);
                 }
             }
 
@@ -94,34 +109,212 @@ public final class TopasOutParser {
             LOGGER.debug("found {} " + "ZZZZ timestamps", timestamps.size());
             LOGGER.debug("found {} " + "data types", headersToLines.size());
 
-            for (String header : headers) {
-                writer.write(header);
-                writer.write('\n');
+            NMONDataSet data = nmonParser.parse(filename,
+                    new TopasReader(aaa, headers, timestamps, headersToLines.values()), timeZone, scaleProcessesByCPU);
+
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("reordered and parsed {} in {}ms", filename, (System.nanoTime() - start) / 1000000.0d);
+            }
+
+            return data;
+        }
+        finally {
+            if (file != null) {
+                file.close();
             }
-            
-            // output each timestamp, then all the data for that time
-            // assume all arrays are the same size, i.e. there is data at each timestamp for all values
-            for (int i = 0; i < timestamps.size(); i++) {
-                writer.write(timestamps.get(i));
-                writer.write('\n');
-
-                for (List<String> lines : headersToLines.values()) {
-                    writer.write(lines.get(i));
-                    writer.write('\n');
+        }
+    }
+
+    /**
+     * Outputs the AAA records, then the headers, then each timestamp followed by the next line for each data type.
+     */
+    private static final class TopasReader extends Reader {
+        private final java.util.Iterator<String> aaa;
+        private final java.util.Iterator<String> headers;
+        private final java.util.Iterator<String> timestamps;
+        private final java.util.Collection<LineCursor> dataLines;
+
+        private final StringBuilder buffer = new StringBuilder(8192);
+        private int position = 0;
+
+        TopasReader(List<String> aaa, List<String> headers, List<String> timestamps,
+                java.util.Collection<LineCursor> dataLines) {
+            this.aaa = aaa.iterator();
+            this.headers = headers.iterator();
+            this.timestamps = timestamps.iterator();
+            this.dataLines = dataLines;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+
+            if (position == buffer.length()) {
+                buffer.setLength(0);
+                position = 0;
+
+                fill();
+
+                if (buffer.length() == 0) {
+                    return -1;
                 }
             }
 
-            return nmonParser.parse(filename, new StringReader(writer.toString()), timeZone, scaleProcessesByCPU);
+            int toRead = Math.min(len, buffer.length() - position);
+            buffer.getChars(position, position + toRead, cbuf, off);
+            position += toRead;
+
+            return toRead;
         }
-        finally {
-            if (in != null) {
-                in.close();
+
+        private void fill() throws IOException {
+            if (aaa.hasNext()) {
+                while (aaa.hasNext()) {
+                    buffer.append(aaa.next()).append('\n');
+                }
             }
+            else if (headers.hasNext()) {
+                while (headers.hasNext()) {
+                    buffer.append(headers.next()).append('\n');
+                }
+            }
+            else if (timestamps.hasNext()) {
+                buffer.append(timestamps.next()).append('\n');
+
+                // assume there is data at each timestamp for all values
+                for (LineCursor lines : dataLines) {
+                    String line = lines.readLine();
 
-            if (writer != null) {
-                writer.close();
+                    if (line != null) {
+                        buffer.append(line).append('\n');
+                    }
+                }
             }
         }
 
+        @Override
+        public void close() {}
+    }
+
+    /**
+     * Reads lines from a shared RandomAccessFile using its own buffer and file position. If a prefix is given, lines
+     * that do not start with it are skipped.
+     */
+    private static final class LineCursor {
+        private final RandomAccessFile file;
+        private final byte[] prefix;
+
+        private byte[] buffer;
+        private long bufferStart;
+        private int bufferLength = 0;
+        private int bufferPosition = 0;
+
+        private long lineStart;
+
+        private byte[] line = new byte[256];
+
+        LineCursor(RandomAccessFile file, String prefix) {
+            this.file = file;
+            this.prefix = prefix == null ? null : prefix.getBytes(CHARSET);
+        }
+
+        // cursors that are never started have no lines
+        void startAt(long position) {
+            if (buffer == null) {
+                buffer = new byte[8192];
+                bufferStart = position;
+            }
+        }
+
+        long getLineStart() {
+            return lineStart;
+        }
+
+        String readLine() throws IOException {
+            if (buffer == null) {
+                return null;
+            }
+
+            while (true) {
+                lineStart = bufferStart + bufferPosition;
+
+                int length = readLineBytes();
+
+                if (length == -1) {
+                    return null;
+                }
+
+                if (startsWithPrefix(length)) {
+                    return new String(line, 0, length, CHARSET);
+                }
+            }
+        }
+
+        private boolean startsWithPrefix(int length) {
+            if (prefix == null) {
+                return true;
+            }
+
+            if (length < prefix.length) {
+                return false;
+            }
+
+            for (int i = 0; i < prefix.length; i++) {
+                if (line[i] != prefix[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        // line terminators are \n, \r or \r\n, like BufferedReader
+        private int readLineBytes() throws IOException {
+            int length = 0;
+            boolean found = false;
+
+            while (true) {
+                if (bufferPosition == bufferLength) {
+                    if (!fillBuffer()) {
+                        return found ? length : -1;
+                    }
+                }
+
+                byte b = buffer[bufferPosition++];
+                found = true;
+
+                if (b == '\n') {
+                    return length;
+                }
+                else if (b == '\r') {
+                    if ((bufferPosition < bufferLength) || fillBuffer()) {
+                        if (buffer[bufferPosition] == '\n') {
+                            ++bufferPosition;
+                        }
+                    }
+
+                    return length;
+                }
+                else {
+                    if (length == line.length) {
+                        line = java.util.Arrays.copyOf(line, length * 2);
+                    }
+
+                    line[length++] = b;
+                }
+            }
+        }
+
+        private boolean fillBuffer() throws IOException {
+            bufferStart += bufferLength;
+            bufferPosition = 0;
+
+            file.seek(bufferStart);
+            bufferLength = Math.max(0, file.read(buffer));
+
+            return bufferLength > 0;
+        }
     }
 }
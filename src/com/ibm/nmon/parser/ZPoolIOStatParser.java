@@ -9,11 +9,6 @@ import java.io.IOException;
 
 import java.io.File;
 
-import java.io.LineNumberReader;
-
-import java.util.regex.Pattern;
-
-import java.text.SimpleDateFormat;
 import java.text.ParseException;
 
 import com.ibm.nmon.data.BasicDataSet;
@@ -21,7 +16,12 @@ import com.ibm.nmon.data.DataRecord;
 import com.ibm.nmon.data.DataType;
 import com.ibm.nmon.data.SubDataType;
 
+import com.ibm.nmon.parser.util.CharLineReader;
+import com.ibm.nmon.parser.util.CharTokenizer;
+import com.ibm.nmon.parser.util.NumberParser;
+
 import com.ibm.nmon.util.DataHelper;
+import com.ibm.nmon.util.TimestampCodec;
 
 /**
  * Parser for zpool's iostat command. Will parse the data from <code>zpool iostat SAN_ZPOOL -vTd</code>.
@@ -29,15 +29,16 @@ import com.ibm.nmon.util.DataHelper;
 public final class ZPoolIOStatParser {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(ZPoolIOStatParser.class);
 
-    private static final SimpleDateFormat TIMESTAMP_FORMAT = new SimpleDateFormat("EEE MMM dd HH:mm:ss z yyyy");
-
-    private static final Pattern DATA_SPLITTER = Pattern.compile("\\s+");
-
     private static final int EXPECTED_DATA_TYPES = 6;
 
     public static final String DEFAULT_HOSTNAME = "zpool";
 
-    private LineNumberReader in = null;
+    private final TimestampCodec timestampFormat = new TimestampCodec("EEE MMM dd HH:mm:ss z yyyy");
+
+    private CharLineReader in = null;
+
+    // allocation free parsing of data lines
+    private final CharTokenizer tokenizer = new CharTokenizer(CharTokenizer.Mode.WHITESPACE);
 
     private BasicDataSet data = null;
 
@@ -60,13 +61,12 @@ public final class ZPoolIOStatParser {
         List<String> diskNames = new java.util.ArrayList<String>(8);
         Map<String, Integer> nameCounts = new java.util.HashMap<String, Integer>(8);
 
-        String line = null;
-
         try {
-            in = new LineNumberReader(new java.io.FileReader(filename));
+            in = new CharLineReader(new java.io.FileReader(filename));
 
-            while ((line = in.readLine()) != null) {
-                long time = TIMESTAMP_FORMAT.parse(line).getTime();
+            while (in.nextLine()) {
+                String line = in.getLine();
+                long time = timestampFormat.parse(line);
 
                 DataRecord record = new DataRecord(time, line);
 
@@ -78,22 +78,25 @@ public final class ZPoolIOStatParser {
 
                 // used to hold all the values for a data record so they can be transposed from disk (row) / metric
                 // (column) to metric (data type) / disk (field)
-                List<List<Double>> values = new java.util.ArrayList<List<Double>>(EXPECTED_DATA_TYPES);
-
-                for (int i = 0; i < EXPECTED_DATA_TYPES; i++) {
-                    values.add(new java.util.ArrayList<Double>(8));
-                }
+                double[][] values = new double[EXPECTED_DATA_TYPES][types.isEmpty() ? 8
+                        : types.get(0).getFieldCount()];
+                int rows = 0;
 
-                while ((line = in.readLine()) != null) {
-                    if (line.startsWith("-")) {
+                while (in.nextLine()) {
+                    if ((in.getEnd() > in.getStart()) && (in.getBuffer()[in.getStart()] == '-')) {
                         break;
                     }
 
-                    line = line.trim();
-                    String[] data = DATA_SPLITTER.split(line);
+                    tokenizer.reset(in);
+                    tokenizer.next();
+
+                    // skip the empty token from any leading whitespace
+                    if (tokenizer.getTokenLength() == 0) {
+                        tokenizer.next();
+                    }
 
                     if (types.isEmpty()) { // first record; parse out disk names and use those as fields
-                        String disk = data[0].trim();
+                        String disk = tokenizer.getToken();
 
                         int n = 1;
 
@@ -107,13 +110,18 @@ public final class ZPoolIOStatParser {
                         nameCounts.put(disk, n);
                     }
 
+                    if (rows == values[0].length) {
+                        for (int i = 0; i < EXPECTED_DATA_TYPES; i++) {
+                            values[i] = java.util.Arrays.copyOf(values[i], rows * 2);
+                        }
+                    }
+
                     // transpose values so each data type will have the data for all disks
-                    values.get(0).add(parseValue(data[1], 1));
-                    values.get(1).add(parseValue(data[2], 2));
-                    values.get(2).add(parseValue(data[3], 3));
-                    values.get(3).add(parseValue(data[4], 4));
-                    values.get(4).add(parseValue(data[5], 5));
-                    values.get(5).add(parseValue(data[6], 6));
+                    for (int column = 1; column <= EXPECTED_DATA_TYPES; column++) {
+                        values[column - 1][rows] = tokenizer.next() ? parseValue(column) : Double.NaN;
+                    }
+
+                    ++rows;
                 }
 
                 // first record complete => all disk names are available to create the types
@@ -145,11 +153,10 @@ public final class ZPoolIOStatParser {
 
                 // record complete, add the transposed values to each type
                 for (int i = 0; i < types.size(); i++) {
-                    List<Double> data = values.get(i);
-                    double[] temp = new double[data.size()];
+                    double[] temp = values[i];
 
-                    for (int j = 0; j < data.size(); j++) {
-                        temp[j] = data.get(j);
+                    if (temp.length != rows) {
+                        temp = java.util.Arrays.copyOf(temp, rows);
                     }
 
                     record.addData(types.get(i), temp);
@@ -188,67 +195,27 @@ public final class ZPoolIOStatParser {
     }
 
     private void discardLine() throws IOException {
-        String line = in.readLine();
-
-        if (line == null) {
+        if (!in.nextLine()) {
             LOGGER.warn("unexpected end of file at line {}; data may be incomplete");
         }
     }
 
-    private double parseValue(String value, int column) {
-        if ("-".equals(value)) {
+    // parse the tokenizer's current token
+    private double parseValue(int column) {
+        if (tokenizer.tokenEquals("-")) {
             return Double.NaN;
         }
 
         // operations in thousands, everything else in MB
-        int multiplier = 1024;
+        // a unit suffix (K, M, G, etc) on the value gives the power of 1024 / 1000 it represents
+        NumberParser.Units units = NumberParser.Units.BINARY;
 
         if ((column == 3) || (column == 4)) {
-            multiplier = 1000;
-        }
-
-        // if the last char is not a number, get the power of 1024 / 1000 it represents
-        char last = value.charAt(value.length() - 1);
-        int power = 0;
-
-        switch (last) {
-        case 'K':
-            power = 1;
-            value = value.substring(0, value.length() - 1);
-            break;
-        case 'M':
-            power = 2;
-            value = value.substring(0, value.length() - 1);
-            break;
-        case 'G':
-            power = 3;
-            value = value.substring(0, value.length() - 1);
-            break;
-        case 'T':
-            power = 4;
-            value = value.substring(0, value.length() - 1);
-            break;
-        case 'P':
-            power = 5;
-            value = value.substring(0, value.length() - 1);
-            break;
-        case 'E':
-            power = 6;
-            value = value.substring(0, value.length() - 1);
-            break;
-        case 'Z':
-            power = 7;
-            value = value.substring(0, value.length() - 1);
-            break;
-        case 'Y':
-            power = 8;
-            value = value.substring(0, value.length() - 1);
-            break;
-        // default, do nothing
+            units = NumberParser.Units.DECIMAL;
         }
 
         try {
-            double toReturn = Double.parseDouble(value) * Math.pow(multiplier, power);
+            double toReturn = tokenizer.parseDouble(units);
 
             // capacity in GB
             if ((column == 1) || (column == 2)) {
@@ -262,7 +229,8 @@ public final class ZPoolIOStatParser {
             return toReturn;
         }
         catch (NumberFormatException nfe) {
-            LOGGER.warn("invalid numeric data '{}' at line {}, column {}", value, in.getLineNumber(), column);
+            LOGGER.warn("invalid numeric data '{}' at line {}, column {}", tokenizer.getToken(), in.getLineNumber(),
+                    column);
 
             return Double.NaN;
         }
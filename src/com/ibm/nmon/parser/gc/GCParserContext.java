@@ -11,7 +11,7 @@ import com.ibm.nmon.data.DataRecord;
 import com.ibm.nmon.data.DataType;
 import com.ibm.nmon.data.SubDataType;
 
-import com.ibm.nmon.parser.util.XMLParserHelper;
+import com.ibm.nmon.parser.util.XMLAttributes;
 
 /**
  * Data holder for an in-progress GC parse session. Also contains various utility functions for
@@ -26,7 +26,11 @@ public final class GCParserContext {
     private final TimeZone timeZone;
 
     private int lineNumber;
-    private Map<String, String> attributes;
+    // attributes for the current element; only valid during startElement()
+    private XMLAttributes attributes;
+
+    // cache types by id so SubDataType ids do not have to be rebuilt for every value
+    private final Map<String, DataType> types = new java.util.HashMap<String, DataType>();
 
     private boolean isGencon;
 
@@ -44,6 +48,7 @@ public final class GCParserContext {
     public void reset() {
         currentRecord = null;
         attributes = null;
+        types.clear();
         lineNumber = 0;
         isGencon = false;
         compactionCount = 0;
@@ -94,9 +99,7 @@ public final class GCParserContext {
     }
 
     public void setValue(String typeId, String field, String attribute) {
-        String value = attributes.get(attribute);
-
-        if (value == null) {
+        if (!attributes.contains(attribute)) {
             logMissingAttribute(attribute);
             return;
         }
@@ -109,9 +112,7 @@ public final class GCParserContext {
     }
 
     public void setValueDiv1000(String typeId, String field, String name) {
-        String value = attributes.get(name);
-
-        if (value == null) {
+        if (!attributes.contains(name)) {
             logMissingAttribute(name);
             return;
         }
@@ -119,8 +120,8 @@ public final class GCParserContext {
         currentRecord.setValue(getDataType(typeId), field, parseDouble(name) / 1000);
     }
 
-    public void parseAttributes(String unparsedAttributes) {
-        this.attributes = XMLParserHelper.parseAttributes(unparsedAttributes);
+    void setAttributes(XMLAttributes attributes) {
+        this.attributes = attributes;
     }
 
     public String getAttribute(String name) {
@@ -128,9 +129,7 @@ public final class GCParserContext {
     }
 
     public double parseDouble(String name) {
-        String value = attributes.get(name);
-
-        if (value == null) {
+        if (!attributes.contains(name)) {
             logMissingAttribute(name);
             return Double.NaN;
         }
@@ -138,11 +137,11 @@ public final class GCParserContext {
         double toReturn;
 
         try {
-            toReturn = Double.parseDouble(value);
+            toReturn = attributes.getDouble(name);
         }
         catch (NumberFormatException nfe) {
             logger.warn("attribute '{}' with value '{}', defined at line {}, is not a number", new Object[] { name,
-                    value, getLineNumber(), });
+                    attributes.get(name), getLineNumber(), });
 
             toReturn = Double.NaN;
         }
@@ -164,10 +163,17 @@ public final class GCParserContext {
     }
 
     public DataType getDataType(String typeId) {
+        DataType cached = types.get(typeId);
+
+        if (cached != null) {
+            return cached;
+        }
+
         String jvmName = data.getMetadata("jvm_name");
         SubDataType type = (SubDataType) data.getType(SubDataType.buildId(typeId, jvmName));
 
         if (type != null) {
+            types.put(typeId, type);
             return type;
         }
         else if ("GCMEM".equals(typeId)) {
@@ -203,6 +209,7 @@ public final class GCParserContext {
         }
 
         data.addType(type);
+        types.put(typeId, type);
 
         return type;
     }
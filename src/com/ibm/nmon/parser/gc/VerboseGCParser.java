@@ -9,6 +9,7 @@ import com.ibm.nmon.data.DataSet;
 import com.ibm.nmon.data.BasicDataSet;
 
 import com.ibm.nmon.parser.BasicXMLParser;
+import com.ibm.nmon.parser.util.XMLAttributes;
 
 import com.ibm.nmon.parser.gc.state.GCState;
 import com.ibm.nmon.parser.gc.state.Start;
@@ -75,12 +76,15 @@ public class VerboseGCParser extends BasicXMLParser {
         currentState.reset();
     }
 
-    public void startElement(String element, String unparsedAttributes) {
+    @Override
+    protected void startElement(String element, XMLAttributes attributes) {
         context.setLineNumber(getLineNumber());
-        currentState = currentState.startElement(context, element, unparsedAttributes);
+        context.setAttributes(attributes);
+        currentState = currentState.startElement(context, element);
     }
 
-    public void endElement(String element) {
+    @Override
+    protected void endElement(String element) {
         context.setLineNumber(getLineNumber());
         currentState = currentState.endElement(context, element);
     }
@@ -19,7 +19,7 @@ final class ConcurrentGCCycle extends Java6GCCycle {
     }
 
     @Override
-    protected GCState onStartCycle(GCParserContext context, String elementName, String unparsedAttributes) {
+    protected GCState onStartCycle(GCParserContext context, String elementName) {
         ++depth;
 
         // only process 'collection' events, otherwise skip
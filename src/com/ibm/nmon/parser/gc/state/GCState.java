@@ -3,7 +3,7 @@ package com.ibm.nmon.parser.gc.state;
 import com.ibm.nmon.parser.gc.GCParserContext;
 
 public interface GCState {
-    public GCState startElement(GCParserContext context, String elementName, String unparsedAttributes);
+    public GCState startElement(GCParserContext context, String elementName);
 
     public GCState endElement(GCParserContext context, String elementName);
 
@@ -14,7 +14,7 @@ class GCStateWithParent implements GCState {
         this.parent = parent;
     }
 
-    public GCState startElement(GCParserContext context, String elementName, String unparsedAttributes) {
+    public GCState startElement(GCParserContext context, String elementName) {
         return this;
     }
 
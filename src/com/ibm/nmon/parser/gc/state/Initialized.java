@@ -7,11 +7,9 @@ final class Initialized extends GCStateWithParent {
         super("initialized", parent);
     }
 
-    public GCState startElement(GCParserContext context, String elementName, String unparsedAttributes) {
+    public GCState startElement(GCParserContext context, String elementName) {
         if ("attribute".equals(elementName)) {
             // save attributes directly as metadata
-            context.parseAttributes(unparsedAttributes);
-
             String name = context.getAttribute("name");
             String value = context.getAttribute("value");
 
@@ -31,8 +29,6 @@ final class Initialized extends GCStateWithParent {
         }
         else if ("vmarg".equals(elementName)) {
             // parse vmargs and save the values to a single string
-            context.parseAttributes(unparsedAttributes);
-
             String name = context.getAttribute("name");
 
             if (name == null) {
@@ -14,9 +14,7 @@ final class Java6Collection extends GCStateWithParent {
     private boolean tenuredCountComplete;
 
     @Override
-    public GCState startElement(GCParserContext context, String elementName, String unparsedAttributes) {
-        context.parseAttributes(unparsedAttributes);
-
+    public GCState startElement(GCParserContext context, String elementName) {
         if ("gc".equals(elementName)) {
             this.type = context.getAttribute("type");
             tenuredCountComplete = false;
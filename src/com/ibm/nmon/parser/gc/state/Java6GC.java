@@ -18,9 +18,9 @@ final class Java6GC implements GCState {
     private final Java6GCCycle tenuredAF = new Java6GCCycle("af", "af_tenured") {};
     private final Java6GCCycle systemGC = new Java6GCCycle("sys", "gc_system") {
         @Override
-        protected GCState onStartCycle(GCParserContext context, String elementName, String unparsedAttributes) {
+        protected GCState onStartCycle(GCParserContext context, String elementName) {
             // call super first so context.currentRecord actually exists
-            GCState toReturn = super.onStartCycle(context, elementName, unparsedAttributes);
+            GCState toReturn = super.onStartCycle(context, elementName);
             //
             context.setValue("GCCOUNT", "system_count", "id");
             return toReturn;
@@ -29,26 +29,24 @@ final class Java6GC implements GCState {
 
     private final Java6GCCycle concurrentGC = new ConcurrentGCCycle();
 
-    public GCState startElement(GCParserContext context, String elementName, String unparsedAttributes) {
+    public GCState startElement(GCParserContext context, String elementName) {
         if ("initialized".equals(elementName)) {
             return initialized;
         }
         else {
             // note that the return statements here _call_ startElement() on the next state
             // this is done because the various GC cycles need the current attributes
-            context.parseAttributes(unparsedAttributes);
-
             if ("sys".equals(elementName)) {
-                return systemGC.startElement(context, elementName, unparsedAttributes);
+                return systemGC.startElement(context, elementName);
             }
             else if ("af".equals(elementName)) {
                 String afType = context.getAttribute("type");
 
                 if ("nursery".equals(afType)) {
-                    return nurseryAF.startElement(context, elementName, unparsedAttributes);
+                    return nurseryAF.startElement(context, elementName);
                 }
                 else if ("tenured".equals(afType)) {
-                    return tenuredAF.startElement(context, elementName, unparsedAttributes);
+                    return tenuredAF.startElement(context, elementName);
                 }
                 else {
                     context.logInvalidValue("type", afType);
@@ -57,7 +55,7 @@ final class Java6GC implements GCState {
 
             }
             else if ("con".equals(elementName)) {
-                return concurrentGC.startElement(context, elementName, unparsedAttributes);
+                return concurrentGC.startElement(context, elementName);
             }
             else {
                 context.logUnrecognizedElement(elementName);
@@ -1,17 +1,17 @@
 package com.ibm.nmon.parser.gc.state;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.TimeZone;
 
 import com.ibm.nmon.data.DataRecord;
 import com.ibm.nmon.parser.gc.GCParserContext;
+import com.ibm.nmon.util.TimestampCodec;
 
 /**
  * Base class for Java 6 style verbose GC cycles.
  */
 abstract class Java6GCCycle extends JavaGCCycle {
-    private final SimpleDateFormat datetime = new SimpleDateFormat("MMM dd HH:mm:ss yyyy", java.util.Locale.US);
+    private final TimestampCodec datetime = new TimestampCodec("MMM dd HH:mm:ss yyyy", java.util.Locale.US);
 
     // the XML element name for the GC cycle
     protected final String transitionElement;
@@ -37,18 +37,16 @@ abstract class Java6GCCycle extends JavaGCCycle {
     }
 
     @Override
-    public final GCState startElement(GCParserContext context, String elementName, String unparsedAttributes) {
+    public final GCState startElement(GCParserContext context, String elementName) {
         if (transitionElement.equals(elementName)) {
-            // Java6GC will have already called context.parseAttributes()
-            return onStartCycle(context, elementName, unparsedAttributes);
+            // Java6GC will have already checked the attributes for this element
+            return onStartCycle(context, elementName);
         }
         else if ("gc".equals(elementName)) {
             beforeGC = false;
-            return collection.startElement(context, elementName, unparsedAttributes);
+            return collection.startElement(context, elementName);
         }
         else if ("time".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             if (beforeGC) {
                 double exclusive = context.parseDouble("exclusiveaccessms");
 
@@ -66,21 +64,17 @@ abstract class Java6GCCycle extends JavaGCCycle {
             }
         }
         else if ("nursery".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             calculateSizes(context, elementName, "freebytes", "totalbytes");
         }
         else if ("tenured".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             calculateSizes(context, elementName, "freebytes", "totalbytes");
         }
         else if ("refs_cleared".equals(elementName) || "refs".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             context.setValue("GCSTAT", "soft", "soft");
             context.setValue("GCSTAT", "weak", "weak");
             context.setValue("GCSTAT", "phantom", "phantom");
         }
         else if ("minimum".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             context.setValue("GCMEM", "requested", "requested_bytes");
         }
 
@@ -113,7 +107,7 @@ abstract class Java6GCCycle extends JavaGCCycle {
         this.accumulatedTime = 0;
     }
 
-    protected GCState onStartCycle(GCParserContext context, String elementName, String unparsedAttributes) {
+    protected GCState onStartCycle(GCParserContext context, String elementName) {
         calculateTime(context);
         return this;
     }
@@ -175,7 +169,7 @@ abstract class Java6GCCycle extends JavaGCCycle {
         long toReturn;
 
         try {
-            toReturn = datetime.parse(value).getTime();
+            toReturn = datetime.parse(value);
         }
         catch (ParseException pe) {
             context.logInvalidValue("timestamp", value);
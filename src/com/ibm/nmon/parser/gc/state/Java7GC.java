@@ -1,13 +1,13 @@
 package com.ibm.nmon.parser.gc.state;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 
 import java.util.TimeZone;
 
 import com.ibm.nmon.data.DataRecord;
 
 import com.ibm.nmon.parser.gc.GCParserContext;
+import com.ibm.nmon.util.TimestampCodec;
 
 /**
  * The initial state for a Java 7-style garbage collection parser.
@@ -15,7 +15,7 @@ import com.ibm.nmon.parser.gc.GCParserContext;
 final class Java7GC implements GCState {
     static final Java7GC INSTANCE = new Java7GC();
 
-    private final SimpleDateFormat datetime = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", java.util.Locale.US);
+    private final TimestampCodec datetime = new TimestampCodec("yyyy-MM-dd'T'HH:mm:ss.SSS", java.util.Locale.US);
 
     private final Initialized initialized = new Initialized(this);
 
@@ -28,34 +28,26 @@ final class Java7GC implements GCState {
     private int systemCount;
 
     @Override
-    public GCState startElement(GCParserContext context, String elementName, String unparsedAttributes) {
+    public GCState startElement(GCParserContext context, String elementName) {
         if ("initialized".equals(elementName)) {
             return initialized;
         }
         else if ("exclusive-start".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             timeSince = context.parseDouble("intervalms") / 1000;
 
             context.setCurrentRecord(new DataRecord(parseTimestamp(context), String.format("%08x",
                     context.getData().getRecordCount()).toString()));
         }
         else if ("sys-start".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             context.setValue("GCSINCE", "gc_system", timeSince);
             context.setValue("GCCOUNT", "system_count", ++systemCount);
         }
         else if ("af-start".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             afInterval = context.parseDouble("intervalms") / 1000;
 
             context.setValue("GCMEM", "requested", "totalBytesRequested");
         }
         else if ("cycle-start".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             String type = context.getAttribute("type");
 
             if (type.startsWith("global")) { // global or 'global garbage collect'
@@ -82,11 +74,9 @@ final class Java7GC implements GCState {
             return Java7GCCycle.INSTANCE;
         }
         else if ("response-info".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             context.setValue("GCTIME", "exclusive_ms", "timems");
         }
         else if ("exclusive-end".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             context.setValue("GCTIME", "total_ms", "durationms");
         }
 
@@ -144,7 +134,7 @@ final class Java7GC implements GCState {
         long toReturn;
 
         try {
-            toReturn = datetime.parse(value).getTime();
+            toReturn = datetime.parse(value);
         }
         catch (ParseException pe) {
             context.logInvalidValue("timestamp", value);
@@ -8,10 +8,8 @@ final class Java7GCCycle extends JavaGCCycle {
     private int compactionCount;
 
     @Override
-    public GCState startElement(GCParserContext context, String elementName, String unparsedAttributes) {
+    public GCState startElement(GCParserContext context, String elementName) {
         if ("mem".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             String type = context.getAttribute("type");
 
             if ("nursery".equals(type)) {
@@ -25,12 +23,9 @@ final class Java7GCCycle extends JavaGCCycle {
             }
         }
         else if ("scavenger-info".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             context.setValue("GCSTAT", "tiltratio", "tiltratio");
         }
         else if ("memory-copied".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             String type = context.getAttribute("type");
 
             if ("nursery".equals(type) || "eden".equals(type)) {
@@ -43,29 +38,21 @@ final class Java7GCCycle extends JavaGCCycle {
             }
         }
         else if ("finalization".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             context.setValue("GCSTAT", "finalizers", "enqueued");
         }
         else if ("references".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             context.setValue("GCSTAT", context.getAttribute("type"), "cleared");
         }
         else if ("compact-info".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             context.setValue("GCCOUNT", "compaction_count", ++compactionCount);
 
             context.setValue("GCMEM", "moved", "movecount");
             context.setValue("GCMEM", "moved_bytes", "movebytes");
         }
         else if ("concurrent-collection-start".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
-
             context.setValueDiv1000("GCSINCE", "con_mark", "intervalms");
         }
         else if ("gc-op".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             String type = context.getAttribute("type");
 
             if ("mark".equals(type)) {
@@ -80,12 +67,9 @@ final class Java7GCCycle extends JavaGCCycle {
         }
         else if ("remembered-set".equals(elementName)) {
             // TODO handle remembered-set
-            // context.parseAttributes(unparsedAttributes);
-
             // calculateSizes(context, "tenured", "freebytes", "totalbytes");
         }
         else if ("gc-end".equals(elementName)) {
-            context.parseAttributes(unparsedAttributes);
             String type = context.getAttribute("type");
 
             if ("global".equals(type)) {
@@ -1,7 +1,6 @@
 package com.ibm.nmon.parser.gc.state;
 
 import com.ibm.nmon.parser.gc.GCParserContext;
-import com.ibm.nmon.parser.util.XMLParserHelper;
 
 /**
  * The initial GCState that looks for <code>&lt;verbosegc&gt;</code> elements. Transitions to the
@@ -11,9 +10,9 @@ public final class Start implements GCState {
     public static final Start INSTANCE = new Start();
 
     @Override
-    public GCState startElement(GCParserContext context, String elementName, String unparsedAttributes) {
+    public GCState startElement(GCParserContext context, String elementName) {
         if ("verbosegc".equals(elementName)) {
-            if (XMLParserHelper.parseAttributes(unparsedAttributes).get("xmlns") != null) {
+            if (context.getAttribute("xmlns") != null) {
                 Java7GC.INSTANCE.setTimeZone(context.getTimeZone());
                 return Java7GC.INSTANCE;
             }
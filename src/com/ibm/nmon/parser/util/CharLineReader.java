@@ -0,0 +1,171 @@
+package com.ibm.nmon.parser.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * <p>
+ * Reads lines from a Reader into a reusable <code>char[]</code> buffer. Unlike
+ * {@link java.io.BufferedReader#readLine()}, no String is created for each line. Instead, callers
+ * access the current line directly via {@link #getBuffer()}, {@link #getStart()} and
+ * {@link #getEnd()}.
+ * </p>
+ *
+ * <p>
+ * Lines are terminated by <code>\n</code>, <code>\r</code> or <code>\r\n</code>. The buffer grows
+ * as needed to hold lines longer than the initial buffer size. The contents of the buffer are only
+ * valid until the next call to {@link #nextLine()}.
+ * </p>
+ */
+public final class CharLineReader implements java.io.Closeable {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+
+    private char[] buffer;
+    // next char to read
+    private int position;
+    // end of valid data in the buffer
+    private int limit;
+
+    // the current line
+    private int start;
+    private int end;
+
+    // last line ended with \r; skip a following \n
+    private boolean skipLF;
+
+    private int lineNumber;
+
+    public CharLineReader(Reader in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CharLineReader(Reader in, int bufferSize) {
+        this.in = in;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Advance to the next line.
+     *
+     * @return <code>false</code> if there are no more lines
+     */
+    public boolean nextLine() throws IOException {
+        int i = position;
+
+        while (true) {
+            if (skipLF && (i < limit)) {
+                if (buffer[i] == '\n') {
+                    position = ++i;
+                }
+
+                skipLF = false;
+            }
+
+            if (!skipLF) {
+                char[] buffer = this.buffer;
+                int limit = this.limit;
+
+                for (; i < limit; i++) {
+                    char c = buffer[i];
+
+                    if ((c == '\n') || (c == '\r')) {
+                        start = position;
+                        end = i;
+                        position = i + 1;
+                        skipLF = c == '\r';
+                        ++lineNumber;
+
+                        return true;
+                    }
+                }
+            }
+
+            int shift = position;
+
+            if (!fill()) {
+                skipLF = false;
+
+                if (position < limit) {
+                    // last line has no terminator
+                    start = position;
+                    end = limit;
+                    position = limit;
+                    ++lineNumber;
+
+                    return true;
+                }
+                else {
+                    start = end = position;
+                    return false;
+                }
+            }
+
+            i -= shift;
+        }
+    }
+
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the index in the buffer of the first character of the current line
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * @return the index in the buffer after the last character of the current line; line
+     *         terminators are not included
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the current line as a String
+     */
+    public String getLine() {
+        return new String(buffer, start, end - start);
+    }
+
+    /**
+     * @return the number of the current line, starting at 1
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean fill() throws IOException {
+        // discard all the data that has already been returned
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            start -= position;
+            end -= position;
+            position = 0;
+        }
+
+        if (limit == buffer.length) {
+            buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = in.read(buffer, limit, buffer.length - limit);
+
+        if (read == -1) {
+            return false;
+        }
+        else {
+            limit += read;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.ibm.nmon.parser.util;
+
+/**
+ * <p>
+ * Splits a line held in a <code>char[]</code> buffer into tokens without creating Strings. The
+ * current token is available as a range in the buffer via {@link #getTokenStart()} and
+ * {@link #getTokenEnd()} and can be converted directly to a number with {@link #parseDouble()}.
+ * </p>
+ *
+ * <p>
+ * By default, tokens are separated by a single delimiter character. Tokens that start with a double
+ * quote extend to the next double quote, so delimiters inside quotes do not split the token. The
+ * quotes themselves are not included in the token. Quotes cannot be escaped.
+ * </p>
+ *
+ * <p>
+ * Alternatively, tokens can be separated by runs of whitespace; see {@link Mode}. In this case,
+ * quotes are not treated specially.
+ * </p>
+ *
+ * <p>
+ * Instances are reusable and not thread safe.
+ * </p>
+ */
+public final class CharTokenizer {
+    /**
+     * Whitespace delimiter modes. These split lines the same way as {@link String#split(String)}:
+     * a line that starts with whitespace has an empty first token and trailing whitespace does not
+     * result in a final empty token.
+     */
+    public enum Mode {
+        /**
+         * Tokens are separated by one or more whitespace characters, i.e. <code>\s+</code>.
+         */
+        WHITESPACE,
+        /**
+         * Like {@link #WHITESPACE}, but a colon immediately before the whitespace is also part of
+         * the delimiter, i.e. <code>:?\s+</code>. This handles headers like
+         * <code>Device:</code>.
+         */
+        COLON_WHITESPACE
+    }
+
+    private final char delimiter;
+    // null => split on delimiter
+    private final Mode mode;
+
+    private char[] buffer;
+    private int position;
+    private int end;
+
+    private int tokenStart;
+    private int tokenEnd;
+
+    public CharTokenizer(char delimiter) {
+        this.delimiter = delimiter;
+        this.mode = null;
+    }
+
+    public CharTokenizer(Mode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode" + " cannot be null");
+        }
+
+        this.delimiter = ' ';
+        this.mode = mode;
+    }
+
+    /**
+     * Tokenize the characters in <code>buffer</code> from <code>start</code> (inclusive) to
+     * <code>end</code> (exclusive).
+     */
+    public void reset(char[] buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+
+        tokenStart = tokenEnd = start;
+    }
+
+    /**
+     * Tokenize the current line of the given reader.
+     */
+    public void reset(CharLineReader reader) {
+        reset(reader.getBuffer(), reader.getStart(), reader.getEnd());
+    }
+
+    /**
+     * Advance to the next token. Note that an empty line contains a single empty token and that a
+     * trailing delimiter results in a final empty token.
+     *
+     * @return <code>false</code> if there are no more tokens
+     */
+    public boolean next() {
+        int i = position;
+
+        if (i > end) {
+            return false;
+        }
+
+        char[] buffer = this.buffer;
+
+        if (mode != null) {
+            return nextWhitespace(i, buffer);
+        }
+
+        if ((i < end) && (buffer[i] == '"')) {
+            tokenStart = ++i;
+
+            while ((i < end) && (buffer[i] != '"')) {
+                ++i;
+            }
+
+            tokenEnd = i;
+
+            // skip anything between the closing quote and the delimiter
+            while ((i < end) && (buffer[i] != delimiter)) {
+                ++i;
+            }
+        }
+        else {
+            tokenStart = i;
+
+            while ((i < end) && (buffer[i] != delimiter)) {
+                ++i;
+            }
+
+            tokenEnd = i;
+        }
+
+        // skip the delimiter; if at the end, position > end signals no more tokens
+        position = i + 1;
+
+        return true;
+    }
+
+    private boolean nextWhitespace(int i, char[] buffer) {
+        boolean colon = mode == Mode.COLON_WHITESPACE;
+
+        tokenStart = i;
+
+        while (i < end) {
+            char c = buffer[i];
+
+            if (c <= ' ') {
+                break;
+            }
+            else if (colon && (c == ':') && ((i + 1) < end) && (buffer[i + 1] <= ' ')) {
+                break;
+            }
+
+            ++i;
+        }
+
+        tokenEnd = i;
+
+        if ((i < end) && (buffer[i] == ':')) {
+            ++i;
+        }
+
+        while ((i < end) && (buffer[i] <= ' ')) {
+            ++i;
+        }
+
+        // no final empty token after trailing whitespace
+        position = i == end ? end + 1 : i;
+
+        return true;
+    }
+
+    /**
+     * Skip the given number of tokens.
+     *
+     * @return <code>false</code> if there were not enough tokens
+     */
+    public boolean skip(int count) {
+        for (int i = 0; i < count; i++) {
+            if (!next()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public char[] getBuffer() {
+        return buffer;
+    }
+
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    public int getTokenEnd() {
+        return tokenEnd;
+    }
+
+    public int getTokenLength() {
+        return tokenEnd - tokenStart;
+    }
+
+    /**
+     * @return <code>true</code> if the current token is empty or only contains whitespace
+     */
+    public boolean isBlank() {
+        for (int i = tokenStart; i < tokenEnd; i++) {
+            if (buffer[i] > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the current token is exactly equal to the given String
+     */
+    public boolean tokenEquals(String value) {
+        int length = value.length();
+
+        if ((tokenEnd - tokenStart) != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (buffer[tokenStart + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the current token contains the given String
+     */
+    public boolean tokenContains(String value) {
+        int length = value.length();
+        int last = tokenEnd - length;
+
+        outer: for (int i = tokenStart; i <= last; i++) {
+            for (int j = 0; j < length; j++) {
+                if (buffer[i + j] != value.charAt(j)) {
+                    continue outer;
+                }
+            }
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @throws NumberFormatException if the current token is not a number
+     */
+    public double parseDouble() {
+        return NumberParser.parseDouble(buffer, tokenStart, tokenEnd);
+    }
+
+    /**
+     * Parse the current token as a number with an optional unit suffix.
+     *
+     * @throws NumberFormatException if the current token is not a number
+     * @see NumberParser#parseDouble(char[], int, int, NumberParser.Units)
+     */
+    public double parseDouble(NumberParser.Units units) {
+        return NumberParser.parseDouble(buffer, tokenStart, tokenEnd, units);
+    }
+
+    /**
+     * @throws NumberFormatException if the current token is not an integer
+     */
+    public long parseLong() {
+        return NumberParser.parseLong(buffer, tokenStart, tokenEnd);
+    }
+
+    /**
+     * @return the current token as a String
+     */
+    public String getToken() {
+        return new String(buffer, tokenStart, tokenEnd - tokenStart);
+    }
+}
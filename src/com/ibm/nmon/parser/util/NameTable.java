@@ -0,0 +1,120 @@
+package com.ibm.nmon.parser.util;
+
+/**
+ * <p>
+ * Interns character sequences taken directly from a <code>char[]</code> buffer. Looking up a name
+ * that has already been seen returns the previously created String without allocating anything.
+ * </p>
+ *
+ * <p>
+ * Parsers use this to map element names, attribute names and small attribute values to a single
+ * String instance. Since the returned Strings are identical, callers can compare them with
+ * <code>equals()</code> and hit the identity fast path.
+ * </p>
+ *
+ * <p>
+ * The table stops growing after {@link #MAX_SIZE} entries so that unbounded input, for example
+ * unique attribute values, does not grow the table forever. Lookups for names that are not in the
+ * table after that point allocate a new String every time. This class is not thread safe.
+ * </p>
+ */
+public final class NameTable {
+    public static final int MAX_SIZE = 4096;
+
+    private String[] table = new String[256];
+    private int size;
+
+    /**
+     * Add the given names to this table so that they are always available, even if the table
+     * becomes full.
+     */
+    public void add(String... names) {
+        for (String name : names) {
+            char[] chars = name.toCharArray();
+            get(chars, 0, chars.length, name);
+        }
+    }
+
+    /**
+     * @return a String equal to the characters in <code>buffer</code> from <code>start</code>
+     *         (inclusive) to <code>end</code> (exclusive).
+     */
+    public String get(char[] buffer, int start, int end) {
+        return get(buffer, start, end, null);
+    }
+
+    private String get(char[] buffer, int start, int end, String toAdd) {
+        int hash = 0;
+
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+
+        int mask = table.length - 1;
+        int idx = mix(hash) & mask;
+
+        String existing = table[idx];
+
+        while (existing != null) {
+            if ((existing.hashCode() == hash) && matches(existing, buffer, start, end)) {
+                return existing;
+            }
+
+            idx = (idx + 1) & mask;
+            existing = table[idx];
+        }
+
+        String name = toAdd == null ? new String(buffer, start, end - start) : toAdd;
+
+        if ((toAdd != null) || (size < MAX_SIZE)) {
+            table[idx] = name;
+
+            // keep the load factor at or below 0.5
+            if (++size * 2 > table.length) {
+                rehash();
+            }
+        }
+
+        return name;
+    }
+
+    private void rehash() {
+        String[] old = table;
+        table = new String[old.length * 2];
+
+        int mask = table.length - 1;
+
+        for (String name : old) {
+            if (name != null) {
+                int idx = mix(name.hashCode()) & mask;
+
+                while (table[idx] != null) {
+                    idx = (idx + 1) & mask;
+                }
+
+                table[idx] = name;
+            }
+        }
+    }
+
+    private static boolean matches(String name, char[] buffer, int start, int end) {
+        int length = end - start;
+
+        if (name.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != buffer[start + i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int mix(int hash) {
+        // spread the high bits down since the table uses a power of 2 mask
+        return hash ^ (hash >>> 16);
+    }
+}
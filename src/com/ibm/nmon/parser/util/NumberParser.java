@@ -0,0 +1,272 @@
+package com.ibm.nmon.parser.util;
+
+/**
+ * <p>
+ * Parses numbers directly from a <code>char[]</code> buffer without creating intermediate
+ * Strings.
+ * </p>
+ *
+ * <p>
+ * Simple decimal values, i.e. those with at most 15 significant digits and a small exponent, are
+ * converted exactly since both the digits and the power of ten can be represented exactly as
+ * <code>double</code>s. Anything else, including <code>NaN</code> and <code>Infinity</code>, falls
+ * back to {@link Double#parseDouble(String)} so the results are always identical to the JDK's.
+ * </p>
+ */
+public final class NumberParser {
+    /**
+     * The multipliers used for unit suffixes, e.g. <code>K</code> is 1000 for decimal units and
+     * 1024 for binary units.
+     */
+    public enum Units {
+        DECIMAL(1000), BINARY(1024);
+
+        // indexed by the power of the suffix; see SUFFIX_POWERS
+        private final double[] multipliers = new double[9];
+
+        private Units(int base) {
+            for (int i = 0; i < multipliers.length; i++) {
+                // Math.pow for the same results as calculating each value directly
+                multipliers[i] = Math.pow(base, i);
+            }
+        }
+    }
+
+    // K => 1, M => 2, etc; 0 for characters that are not unit suffixes
+    private static final byte[] SUFFIX_POWERS = new byte[128];
+
+    static {
+        String suffixes = "KMGTPEZY";
+
+        for (int i = 0; i < suffixes.length(); i++) {
+            SUFFIX_POWERS[suffixes.charAt(i)] = (byte) (i + 1);
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    /**
+     * Parse the characters in <code>buffer</code> from <code>start</code> (inclusive) to
+     * <code>end</code> (exclusive) as a <code>double</code>. Leading and trailing whitespace is
+     * ignored.
+     *
+     * @throws NumberFormatException if the characters are not a valid number
+     */
+    public static double parseDouble(char[] buffer, int start, int end) {
+        while ((start < end) && (buffer[start] <= ' ')) {
+            ++start;
+        }
+
+        while ((end > start) && (buffer[end - 1] <= ' ')) {
+            --end;
+        }
+
+        if (start == end) {
+            throw new NumberFormatException("empty String");
+        }
+
+        int i = start;
+        boolean negative = false;
+
+        char c = buffer[i];
+
+        if (c == '-') {
+            negative = true;
+            ++i;
+        }
+        else if (c == '+') {
+            ++i;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+
+        for (; i < end; i++) {
+            c = buffer[i];
+
+            if ((c >= '0') && (c <= '9')) {
+                anyDigits = true;
+
+                if ((mantissa != 0) || (c != '0')) {
+                    if (++digits > MAX_EXACT_DIGITS) {
+                        return slowParse(buffer, start, end);
+                    }
+
+                    mantissa = mantissa * 10 + (c - '0');
+                }
+            }
+            else {
+                break;
+            }
+        }
+
+        if ((i < end) && (buffer[i] == '.')) {
+            ++i;
+
+            for (; i < end; i++) {
+                c = buffer[i];
+
+                if ((c >= '0') && (c <= '9')) {
+                    anyDigits = true;
+                    --exponent;
+
+                    if ((mantissa != 0) || (c != '0')) {
+                        if (++digits > MAX_EXACT_DIGITS) {
+                            return slowParse(buffer, start, end);
+                        }
+
+                        mantissa = mantissa * 10 + (c - '0');
+                    }
+                }
+                else {
+                    break;
+                }
+            }
+        }
+
+        if (!anyDigits) {
+            return slowParse(buffer, start, end);
+        }
+
+        if ((i < end) && ((buffer[i] == 'e') || (buffer[i] == 'E'))) {
+            ++i;
+
+            boolean negativeExponent = false;
+
+            if ((i < end) && ((buffer[i] == '-') || (buffer[i] == '+'))) {
+                negativeExponent = buffer[i] == '-';
+                ++i;
+            }
+
+            if (i == end) {
+                return slowParse(buffer, start, end);
+            }
+
+            int explicit = 0;
+
+            for (; i < end; i++) {
+                c = buffer[i];
+
+                if ((c >= '0') && (c <= '9') && (explicit < 1000)) {
+                    explicit = explicit * 10 + (c - '0');
+                }
+                else {
+                    return slowParse(buffer, start, end);
+                }
+            }
+
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+
+        if (i != end) {
+            // trailing characters like 'd' or 'f'; let the JDK decide
+            return slowParse(buffer, start, end);
+        }
+
+        double value;
+
+        if (mantissa == 0) {
+            value = 0;
+        }
+        else if (exponent == 0) {
+            value = mantissa;
+        }
+        else if ((exponent > 0) && (exponent < POWERS_OF_TEN.length)) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        }
+        else if ((exponent < 0) && (-exponent < POWERS_OF_TEN.length)) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        }
+        else {
+            return slowParse(buffer, start, end);
+        }
+
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse the characters in <code>buffer</code> from <code>start</code> (inclusive) to
+     * <code>end</code> (exclusive) as a <code>double</code> with an optional unit suffix:
+     * <code>K</code>, <code>M</code>, <code>G</code>, <code>T</code>, <code>P</code>,
+     * <code>E</code>, <code>Z</code> or <code>Y</code>. The value is multiplied by the suffix's
+     * power of 1000 or 1024, depending on <code>units</code>. Suffixes are case sensitive.
+     *
+     * @throws NumberFormatException if the characters are not a valid number
+     */
+    public static double parseDouble(char[] buffer, int start, int end, Units units) {
+        while ((end > start) && (buffer[end - 1] <= ' ')) {
+            --end;
+        }
+
+        if (end > start) {
+            char last = buffer[end - 1];
+
+            if (last < SUFFIX_POWERS.length) {
+                int power = SUFFIX_POWERS[last];
+
+                if (power != 0) {
+                    return parseDouble(buffer, start, end - 1) * units.multipliers[power];
+                }
+            }
+        }
+
+        return parseDouble(buffer, start, end);
+    }
+
+    /**
+     * Parse the characters in <code>buffer</code> from <code>start</code> (inclusive) to
+     * <code>end</code> (exclusive) as a decimal <code>long</code>. Leading and trailing whitespace
+     * is ignored.
+     *
+     * @throws NumberFormatException if the characters are not a valid integer
+     */
+    public static long parseLong(char[] buffer, int start, int end) {
+        while ((start < end) && (buffer[start] <= ' ')) {
+            ++start;
+        }
+
+        while ((end > start) && (buffer[end - 1] <= ' ')) {
+            --end;
+        }
+
+        int i = start;
+        boolean negative = false;
+
+        if ((i < end) && ((buffer[i] == '-') || (buffer[i] == '+'))) {
+            negative = buffer[i] == '-';
+            ++i;
+        }
+
+        // 18 digits always fit in a long
+        if ((i == end) || ((end - i) > 18)) {
+            return Long.parseLong(new String(buffer, start, end - start));
+        }
+
+        long value = 0;
+
+        for (; i < end; i++) {
+            char c = buffer[i];
+
+            if ((c >= '0') && (c <= '9')) {
+                value = value * 10 + (c - '0');
+            }
+            else {
+                throw new NumberFormatException("For input string: \"" + new String(buffer, start, end - start)
+                        + '"');
+            }
+        }
+
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(char[] buffer, int start, int end) {
+        return Double.parseDouble(new String(buffer, start, end - start));
+    }
+
+    private NumberParser() {}
+}
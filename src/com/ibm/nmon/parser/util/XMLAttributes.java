@@ -0,0 +1,147 @@
+package com.ibm.nmon.parser.util;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * A view of the unparsed attributes of a single XML element. The attributes are not copied out of
+ * the parser's buffer. Instead, each lookup scans the attribute text directly. Since elements
+ * rarely have more than a handful of attributes, this is faster than building a Map for every
+ * element.
+ * </p>
+ *
+ * <p>
+ * Instances are reused by the parser and are <em>only valid</em> for the duration of the
+ * <code>startElement()</code> call they are passed to. Callers that need to keep attributes must
+ * copy them with {@link #toMap()} or {@link #get(String)}.
+ * </p>
+ */
+public final class XMLAttributes {
+    private final NameTable values;
+
+    private char[] buffer;
+    private int start;
+    private int end;
+
+    // scratch positions set by find()
+    private int valueStart;
+    private int valueEnd;
+
+    public XMLAttributes(NameTable values) {
+        this.values = values;
+    }
+
+    public void reset(char[] buffer, int start, int end) {
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    public boolean contains(String name) {
+        return find(name);
+    }
+
+    /**
+     * @return the value of the given attribute or <code>null</code> if it is not defined
+     */
+    public String get(String name) {
+        if (find(name)) {
+            return values.get(buffer, valueStart, valueEnd);
+        }
+        else {
+            return null;
+        }
+    }
+
+    /**
+     * @return the value of the given attribute as a number or <code>NaN</code> if it is not defined
+     * @throws NumberFormatException if the attribute is defined but is not a number
+     */
+    public double getDouble(String name) {
+        if (find(name)) {
+            return NumberParser.parseDouble(buffer, valueStart, valueEnd);
+        }
+        else {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Copy all the attributes into a new Map.
+     */
+    public Map<String, String> toMap() {
+        return XMLParserHelper.parseAttributes(toString());
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, start, end - start);
+    }
+
+    private boolean find(String name) {
+        int length = name.length();
+        int i = start;
+
+        while (i < end) {
+            // skip whitespace before the name
+            while ((i < end) && (buffer[i] <= ' ')) {
+                ++i;
+            }
+
+            int nameStart = i;
+
+            while ((i < end) && (buffer[i] != '=') && (buffer[i] > ' ')) {
+                ++i;
+            }
+
+            int nameEnd = i;
+
+            // find the opening quote
+            while ((i < end) && (buffer[i] != '"') && (buffer[i] != '\'')) {
+                ++i;
+            }
+
+            if (i == end) {
+                return false;
+            }
+
+            char quote = buffer[i++];
+            int vStart = i;
+
+            while ((i < end) && (buffer[i] != quote)) {
+                ++i;
+            }
+
+            int vEnd = i++;
+
+            if ((nameEnd - nameStart) == length) {
+                boolean matches = true;
+
+                for (int j = 0; j < length; j++) {
+                    if (buffer[nameStart + j] != name.charAt(j)) {
+                        matches = false;
+                        break;
+                    }
+                }
+
+                if (matches) {
+                    valueStart = vStart;
+                    valueEnd = vEnd;
+
+                    // match the trimming done by XMLParserHelper
+                    while ((valueStart < valueEnd) && (buffer[valueStart] <= ' ')) {
+                        ++valueStart;
+                    }
+
+                    while ((valueEnd > valueStart) && (buffer[valueEnd - 1] <= ' ')) {
+                        --valueEnd;
+                    }
+
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -2,8 +2,10 @@ package com.ibm.nmon.report;
 
 import java.io.IOException;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.slf4j.Logger;
 
@@ -46,26 +48,21 @@ public final class ReportCache {
 
     private final ChartDefinitionParser parser = new ChartDefinitionParser();
 
-    private Map<String, List<BaseChartDefinition>> reports = new java.util.HashMap<String, List<BaseChartDefinition>>();
+    // default report keys to the bundled XML for each report; removed once the report is parsed
+    private final Map<String, String> unparsed = new java.util.HashMap<String, String>();
+
+    // all access is synchronized since charts are built outside of the Swing thread
+    private final Map<String, List<BaseChartDefinition>> reports = new java.util.HashMap<String,
+            List<BaseChartDefinition>>();
 
     public ReportCache() {
-        try {
-            reports.put(
-                    DEFAULT_SUMMARY_CHARTS_KEY,
-                    parser.parseCharts(getClass().getResourceAsStream(
-                            "/com/ibm/nmon/report/summary_single_interval.xml")));
-            reports.put(DEFAULT_INTERVAL_CHARTS_KEY, parser.parseCharts(getClass().getResourceAsStream(
-                    "/com/ibm/nmon/report/summary_all_intervals.xml")));
-            reports.put(DEFAULT_DATASET_CHARTS_KEY,
-                    parser.parseCharts(getClass().getResourceAsStream("/com/ibm/nmon/report/dataset_report.xml")));
-            reports.put(DEFAULT_IOSTAT_CHARTS_KEY,
-                    parser.parseCharts(getClass().getResourceAsStream("/com/ibm/nmon/report/iostat_report.xml")));
-            reports.put(DEFAULT_IOSTAT_DISKDATA_CHARTS_KEY, parser.parseCharts(getClass().getResourceAsStream(
-                    "/com/ibm/nmon/report/iostat_diskdata_report.xml")));
-        }
-        catch (IOException e) {
-            LOGGER.error("cannot parse default report definition xmls", e);
-        }
+        // the default reports are only parsed when first requested
+        // most uses, especially at startup, only need one or two of them
+        unparsed.put(DEFAULT_SUMMARY_CHARTS_KEY, "/com/ibm/nmon/report/summary_single_interval.xml");
+        unparsed.put(DEFAULT_INTERVAL_CHARTS_KEY, "/com/ibm/nmon/report/summary_all_intervals.xml");
+        unparsed.put(DEFAULT_DATASET_CHARTS_KEY, "/com/ibm/nmon/report/dataset_report.xml");
+        unparsed.put(DEFAULT_IOSTAT_CHARTS_KEY, "/com/ibm/nmon/report/iostat_report.xml");
+        unparsed.put(DEFAULT_IOSTAT_DISKDATA_CHARTS_KEY, "/com/ibm/nmon/report/iostat_diskdata_report.xml");
     }
 
     /**
@@ -73,23 +70,36 @@ public final class ReportCache {
      * 
      * @param file a valid XML file for processing by {@link ChartDefinitionParser}
      */
-    public void addReport(String key, String file) throws IOException {
+    public synchronized void addReport(String key, String file) throws IOException {
         if (DEFAULT_SUMMARY_CHARTS_KEY.equals(key) || DEFAULT_INTERVAL_CHARTS_KEY.equals(key)
                 || DEFAULT_DATASET_CHARTS_KEY.equals(key)) {
             throw new IllegalArgumentException("cannot redefine default charts for key " + key);
         }
 
         reports.put(key, parser.parseCharts(file));
+        // a redefined iostat report replaces the default, which no longer needs to be parsed
+        unparsed.remove(key);
+
         LOGGER.debug("caching chart definitions from '{}' to key '{}'", file, key);
     }
 
+    /**
+     * @return the keys of all the reports in this cache, including the default reports
+     */
+    public synchronized java.util.Set<String> getReportKeys() {
+        Set<String> keys = new java.util.HashSet<String>(reports.keySet());
+        keys.addAll(unparsed.keySet());
+
+        return java.util.Collections.unmodifiableSet(keys);
+    }
+
     /**
      * Get the report for the given key.
      * 
      * @return a list of chart definitions; this list will be empty if the key is not found
      */
     public List<BaseChartDefinition> getReport(String key) {
-        List<BaseChartDefinition> toReturn = reports.get(key);
+        List<BaseChartDefinition> toReturn = getCharts(key);
 
         if (toReturn == null) {
             toReturn = java.util.Collections.emptyList();
@@ -107,7 +117,7 @@ public final class ReportCache {
      * @see DataDefinition#matchesHost(DataSet)
      */
     public List<BaseChartDefinition> getReport(String key, Iterable<? extends DataSet> dataSets) {
-        List<BaseChartDefinition> report = reports.get(key);
+        List<BaseChartDefinition> report = getCharts(key);
 
         if (report == null) {
             return java.util.Collections.emptyList();
@@ -143,147 +153,342 @@ public final class ReportCache {
      * </p>
      * <p>
      * This function uses all charts in the given report so it is possible for this function to create a large number of
-     * charts, especially if multiple DataTypes and/or fields are matched.
+     * charts, especially if multiple DataTypes and/or fields are matched. Use
+     * {@link #iterateChartsAcrossTypes(String, DataSet, boolean)} to avoid creating all the charts at once.
      * </p>
      * 
      * @param filterByData should the initial reports list be filtered by the given data? See
      *        {@link #getReport(String, Iterable)}.
      */
     public List<BaseChartDefinition> multiplexChartsAcrossTypes(String key, DataSet data, boolean filterByData) {
-        List<BaseChartDefinition> chartDefinitions = null;
+        return toList(iterateChartsAcrossTypes(key, data, filterByData));
+    }
+
+    /**
+     * Multiplex charts across types, like {@link #multiplexChartsAcrossTypes(String, DataSet, boolean)}, but only
+     * create each chart definition when it is requested from the returned Iterable's iterator. Callers that render and
+     * discard each chart in turn only need to hold a single multiplexed definition at a time.
+     */
+    public Iterable<BaseChartDefinition> iterateChartsAcrossTypes(String key, final DataSet data,
+            boolean filterByData) {
+        final List<BaseChartDefinition> chartDefinitions = getChartsToMultiplex(key, data, filterByData);
+
+        LOGGER.debug("multiplexing charts {} for dataset {} across types", chartDefinitions, data.getHostname());
+
+        return new Iterable<BaseChartDefinition>() {
+            @Override
+            public Iterator<BaseChartDefinition> iterator() {
+                return new TypeMultiplexer(chartDefinitions, data);
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Get the a custom report for the given key and data. Rather than creating a single chart with a line/bar for each
+     * field, this function creates a chart for <em>each</em> field that matches the given definition.
+     * </p>
+     * <p>
+     * This function uses all charts in the given report so it is possible for this function to create a large number of
+     * charts, especially if multiple DataTypes and/or fields are matched. Use
+     * {@link #iterateChartsAcrossFields(String, DataSet, boolean)} to avoid creating all the charts at once.
+     * </p>
+     * 
+     * @param filterByData should the initial reports list be filtered by the given data? See
+     *        {@link #getReport(String, Iterable)}.
+     */
+    public List<BaseChartDefinition> multiplexChartsAcrossFields(String key, DataSet data, boolean filterByData) {
+        return toList(iterateChartsAcrossFields(key, data, filterByData));
+    }
+
+    /**
+     * Multiplex charts across fields, like {@link #multiplexChartsAcrossFields(String, DataSet, boolean)}, but only
+     * create each chart definition when it is requested from the returned Iterable's iterator. Fields with the same name
+     * in different types are added to the same chart, so the fields for all the charts with the same short name are
+     * matched before any of those charts are returned.
+     */
+    public Iterable<BaseChartDefinition> iterateChartsAcrossFields(String key, final DataSet data,
+            boolean filterByData) {
+        final List<BaseChartDefinition> chartDefinitions = getChartsToMultiplex(key, data, filterByData);
+
+        LOGGER.debug("multiplexing charts {} for dataset {} across fields", chartDefinitions, data.getHostname());
+
+        return new Iterable<BaseChartDefinition>() {
+            @Override
+            public Iterator<BaseChartDefinition> iterator() {
+                return new FieldMultiplexer(chartDefinitions, data);
+            }
+        };
+    }
+
+    // parse default reports on first use; null if the key is not defined
+    private synchronized List<BaseChartDefinition> getCharts(String key) {
+        List<BaseChartDefinition> charts = reports.get(key);
+
+        if (charts == null) {
+            String resource = unparsed.remove(key);
+
+            if (resource != null) {
+                long start = System.nanoTime();
+
+                try {
+                    charts = parser.parseCharts(getClass().getResourceAsStream(resource));
+                }
+                catch (IOException e) {
+                    LOGGER.error("cannot parse default report definition xml " + resource, e);
+                    charts = java.util.Collections.emptyList();
+                }
+
+                reports.put(key, charts);
+
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("parsed default report '{}' in {}ms", key, (System.nanoTime() - start) / 1000000.0d);
+                }
+            }
+        }
+
+        return charts;
+    }
 
+    private List<BaseChartDefinition> getChartsToMultiplex(String key, DataSet data, boolean filterByData) {
         if (filterByData) {
-            chartDefinitions = getReport(key, java.util.Collections.singletonList(data));
+            return getReport(key, java.util.Collections.singletonList(data));
         }
         else {
-            chartDefinitions = getReport(key);
+            return getReport(key);
         }
+    }
 
-        LOGGER.debug("multiplexing charts {} for dataset {} across types", chartDefinitions, data.getHostname());
+    private static List<BaseChartDefinition> toList(Iterable<BaseChartDefinition> charts) {
+        List<BaseChartDefinition> toReturn = new java.util.ArrayList<BaseChartDefinition>();
 
-        List<BaseChartDefinition> multiplexedChartDefinitions = new java.util.ArrayList<BaseChartDefinition>(
-                10 * chartDefinitions.size());
+        for (BaseChartDefinition chart : charts) {
+            toReturn.add(chart);
+        }
 
-        for (BaseChartDefinition chartDefinition : chartDefinitions) {
-            for (DataDefinition dataDefinition : chartDefinition.getData()) {
-                if (dataDefinition.matchesHost(data)) {
-                    for (DataType type : dataDefinition.getMatchingTypes(data)) {
-                        BaseChartDefinition newChartDefinition = copyChart(chartDefinition);
+        return toReturn;
+    }
 
-                        // short name used as filename and/or tabname, so make sure it is unique
-                        newChartDefinition.setShortName(chartDefinition.getShortName() + "_"
-                                + dataDefinition.renameType(type));
+    private static BaseChartDefinition copyChart(BaseChartDefinition copy, String shortName, NamingMode subtitleMode) {
+        BaseChartDefinition newChartDefinition = copyChart(copy);
 
-                        newChartDefinition.setTitle(chartDefinition.getTitle());
-                        newChartDefinition.setSubtitleNamingMode(NamingMode.TYPE);
+        // short name used as filename and/or tabname, so make sure it is unique
+        newChartDefinition.setShortName(shortName);
+        newChartDefinition.setTitle(copy.getTitle());
+        newChartDefinition.setSubtitleNamingMode(subtitleMode);
+
+        return newChartDefinition;
+    }
 
-                        DataDefinition newData = null;
+    /**
+     * Walks the chart definitions, data definitions and matching types in order, creating a chart for each type.
+     */
+    private static final class TypeMultiplexer implements Iterator<BaseChartDefinition> {
+        private final List<BaseChartDefinition> chartDefinitions;
+        private final DataSet data;
 
-                        if (dataDefinition instanceof DefaultDataDefinition) {
-                            DefaultDataDefinition old = (DefaultDataDefinition) dataDefinition;
+        private int chartIndex = 0;
+        private Iterator<DataDefinition> dataDefinitions;
+        private DataDefinition dataDefinition;
+        private Iterator<DataType> types = java.util.Collections.<DataType> emptyList().iterator();
 
-                            newData = old.withNewTypes(new ExactTypeMatcher(type.toString()));
-                        }
-                        else {
-                            newData = new ExactDataDefinition(data, type, dataDefinition.getMatchingFields(type),
-                                    dataDefinition.getStatistic(), dataDefinition.usesSecondaryYAxis());
-                        }
+        private BaseChartDefinition next;
 
-                        newChartDefinition.addData(newData);
+        TypeMultiplexer(List<BaseChartDefinition> chartDefinitions, DataSet data) {
+            this.chartDefinitions = chartDefinitions;
+            this.data = data;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while ((next == null) && (chartIndex < chartDefinitions.size())) {
+                BaseChartDefinition chartDefinition = chartDefinitions.get(chartIndex);
+
+                if (dataDefinitions == null) {
+                    dataDefinitions = chartDefinition.getData().iterator();
+                }
+
+                if (types.hasNext()) {
+                    DataType type = types.next();
 
-                        multiplexedChartDefinitions.add(newChartDefinition);
+                    String name = chartDefinition.getShortName() + "_" + dataDefinition.renameType(type);
+
+                    next = copyChart(chartDefinition, name, NamingMode.TYPE);
+
+                    if (dataDefinition instanceof DefaultDataDefinition) {
+                        DefaultDataDefinition old = (DefaultDataDefinition) dataDefinition;
+
+                        next.addData(old.withNewTypes(new ExactTypeMatcher(type.toString())));
+                    }
+                    else {
+                        next.addData(new ExactDataDefinition(data, type, dataDefinition.getMatchingFields(type),
+                                dataDefinition.getStatistic(), dataDefinition.usesSecondaryYAxis()));
                     }
                 }
+                else if (dataDefinitions.hasNext()) {
+                    dataDefinition = dataDefinitions.next();
+
+                    if (dataDefinition.matchesHost(data)) {
+                        types = dataDefinition.getMatchingTypes(data).iterator();
+                    }
+                }
+                else {
+                    ++chartIndex;
+                    dataDefinitions = null;
+                }
             }
+
+            return next != null;
         }
 
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("multiplexed charts {} for dataset {} across types to {}", new Object[] { chartDefinitions,
-                    data.getHostname(), multiplexedChartDefinitions });
+        @Override
+        public BaseChartDefinition next() {
+            if (!hasNext()) {
+                throw new java.util.NoSuchElementException();
+            }
+
+            BaseChartDefinition toReturn = next;
+            next = null;
+
+            return toReturn;
         }
 
-        return multiplexedChartDefinitions;
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
-     * <p>
-     * Get the a custom report for the given key and data. Rather than creating a single chart with a line/bar for each
-     * field, this function creates a chart for <em>each</em> field that matches the given definition.
-     * </p>
-     * <p>
-     * This function uses all charts in the given report so it is possible for this function to create a large number of
-     * charts, especially if multiple DataTypes and/or fields are matched.
-     * </p>
-     * 
-     * @param filterByData should the initial reports list be filtered by the given data? See
-     *        {@link #getReport(String, Iterable)}.
+     * Groups the chart definitions by short name. For each group, the matching fields are found and then a chart is
+     * created for each distinct field name as it is requested. Only the field names and the type and data definition
+     * that matched them are held for the current group.
      */
-    public List<BaseChartDefinition> multiplexChartsAcrossFields(String key, DataSet data, boolean filterByData) {
-        List<BaseChartDefinition> chartDefinitions = null;
+    private static final class FieldMultiplexer implements Iterator<BaseChartDefinition> {
+        private final List<BaseChartDefinition> chartDefinitions;
+        private final DataSet data;
 
-        if (filterByData) {
-            chartDefinitions = getReport(key, java.util.Collections.singletonList(data));
-        }
-        else {
-            chartDefinitions = getReport(key);
+        private final Set<String> shortNames = new java.util.HashSet<String>();
+        private final Set<String> names = new java.util.HashSet<String>();
+
+        private int chartIndex = 0;
+
+        // multiplexed chart name -> the matches to add to that chart, for the current group
+        private Iterator<Map.Entry<String, List<FieldMatch>>> matches = java.util.Collections
+                .<String, List<FieldMatch>> emptyMap().entrySet().iterator();
+
+        FieldMultiplexer(List<BaseChartDefinition> chartDefinitions, DataSet data) {
+            this.chartDefinitions = chartDefinitions;
+            this.data = data;
         }
 
-        LOGGER.debug("multiplexing charts {} for dataset {} across fields", chartDefinitions, data.getHostname());
+        @Override
+        public boolean hasNext() {
+            while (!matches.hasNext() && (chartIndex < chartDefinitions.size())) {
+                String shortName = chartDefinitions.get(chartIndex++).getShortName();
+
+                if (!shortNames.add(shortName)) {
+                    // already multiplexed with the first chart of the same name
+                    continue;
+                }
 
-        Map<String, BaseChartDefinition> multiplexedChartDefinitions = new java.util.HashMap<String, BaseChartDefinition>(
-                chartDefinitions.size() * 10);
+                Map<String, List<FieldMatch>> group = new java.util.LinkedHashMap<String, List<FieldMatch>>();
+
+                for (int i = chartIndex - 1; i < chartDefinitions.size(); i++) {
+                    BaseChartDefinition chartDefinition = chartDefinitions.get(i);
+
+                    if (chartDefinition.getShortName().equals(shortName)) {
+                        match(chartDefinition, group);
+                    }
+                }
 
-        for (BaseChartDefinition chartDefinition : chartDefinitions) {
+                matches = group.entrySet().iterator();
+            }
+
+            return matches.hasNext();
+        }
+
+        private void match(BaseChartDefinition chartDefinition, Map<String, List<FieldMatch>> group) {
             for (DataDefinition dataDefinition : chartDefinition.getData()) {
                 if (dataDefinition.matchesHost(data)) {
                     for (DataType type : dataDefinition.getMatchingTypes(data)) {
                         for (String field : dataDefinition.getMatchingFields(type)) {
-                            // short name used as filename and/or tabname, so make sure it
-                            // is unique
                             String name = chartDefinition.getShortName() + "_" + dataDefinition.renameField(field);
 
-                            BaseChartDefinition newChartDefinition = multiplexedChartDefinitions.get(name);
+                            if (names.contains(name)) {
+                                continue;
+                            }
+
+                            List<FieldMatch> fieldMatches = group.get(name);
+
+                            if (fieldMatches == null) {
+                                fieldMatches = new java.util.ArrayList<FieldMatch>(2);
+                                group.put(name, fieldMatches);
+                            }
 
-                            if (newChartDefinition == null) {
-                                newChartDefinition = copyChart(chartDefinition);
+                            fieldMatches.add(new FieldMatch(chartDefinition, dataDefinition, type, field));
+                        }
+                    }
+                }
+            }
+        }
 
-                                newChartDefinition.setShortName(name);
+        @Override
+        public BaseChartDefinition next() {
+            if (!hasNext()) {
+                throw new java.util.NoSuchElementException();
+            }
 
-                                newChartDefinition.setTitle(chartDefinition.getTitle());
-                                newChartDefinition.setSubtitleNamingMode(NamingMode.FIELD);
+            Map.Entry<String, List<FieldMatch>> entry = matches.next();
+            // release the matches once the chart is created
+            matches.remove();
 
-                                multiplexedChartDefinitions.put(name, newChartDefinition);
-                            }
+            String name = entry.getKey();
+            names.add(name);
 
-                            DataDefinition newData = null;
+            BaseChartDefinition toReturn = null;
 
-                            if (dataDefinition instanceof DefaultDataDefinition) {
-                                DefaultDataDefinition old = (DefaultDataDefinition) dataDefinition;
+            for (FieldMatch match : entry.getValue()) {
+                if (toReturn == null) {
+                    toReturn = copyChart(match.chartDefinition, name, NamingMode.FIELD);
+                }
 
-                                newData = old.withNewFields(new ExactFieldMatcher(field));
-                            }
-                            else {
-                                newData = new ExactDataDefinition(data, type,
-                                        java.util.Collections.singletonList(field), dataDefinition.getStatistic(),
-                                        dataDefinition.usesSecondaryYAxis());
-                            }
+                if (match.dataDefinition instanceof DefaultDataDefinition) {
+                    DefaultDataDefinition old = (DefaultDataDefinition) match.dataDefinition;
 
-                            newChartDefinition.addData(newData);
-                        }
-                    }
+                    toReturn.addData(old.withNewFields(new ExactFieldMatcher(match.field)));
+                }
+                else {
+                    toReturn.addData(new ExactDataDefinition(data, match.type,
+                            java.util.Collections.singletonList(match.field), match.dataDefinition.getStatistic(),
+                            match.dataDefinition.usesSecondaryYAxis()));
                 }
             }
+
+            return toReturn;
         }
 
-        if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("multiplexed charts {} for dataset {} across fields to {}", new Object[] { chartDefinitions,
-                    data.getHostname(), multiplexedChartDefinitions });
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
         }
+    }
 
-        return new java.util.ArrayList<BaseChartDefinition>(multiplexedChartDefinitions.values());
+    private static final class FieldMatch {
+        private final BaseChartDefinition chartDefinition;
+        private final DataDefinition dataDefinition;
+        private final DataType type;
+        private final String field;
+
+        FieldMatch(BaseChartDefinition chartDefinition, DataDefinition dataDefinition, DataType type, String field) {
+            this.chartDefinition = chartDefinition;
+            this.dataDefinition = dataDefinition;
+            this.type = type;
+            this.field = field;
+        }
     }
 
-    private BaseChartDefinition copyChart(BaseChartDefinition copy) {
+    private static BaseChartDefinition copyChart(BaseChartDefinition copy) {
         if (copy.getClass().equals(LineChartDefinition.class)) {
             return new LineChartDefinition((LineChartDefinition) copy, false);
         }
@@ -6,7 +6,6 @@ import java.io.IOException;
 import java.io.Writer;
 
 import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
 
 import com.ibm.nmon.data.DataRecord;
 import com.ibm.nmon.data.DataType;
@@ -15,6 +14,9 @@ import com.ibm.nmon.data.DataSet;
 import com.ibm.nmon.data.ProcessDataSet;
 import com.ibm.nmon.data.Process;
 
+import com.ibm.nmon.data.resample.ResampledData;
+import com.ibm.nmon.data.resample.TimeGrid;
+
 import com.ibm.nmon.gui.chart.data.DataTupleCategoryDataset;
 import com.ibm.nmon.gui.chart.data.DataTupleDataset;
 import com.ibm.nmon.gui.chart.data.DataTupleXYDataset;
@@ -25,16 +27,24 @@ import com.ibm.nmon.interval.Interval;
  * Helper class for writing CSV data to a Writer.
  */
 public final class CSVWriter {
-    private static final SimpleDateFormat DATETIME = new SimpleDateFormat("yyyy-MM-dd,HH:mm:ss");
-    private static final DecimalFormat FORMAT = new DecimalFormat("0.000");
-
-    static {
-        // get and set required because DecimalFormat clones the symbols
-        java.text.DecimalFormatSymbols symbols = FORMAT.getDecimalFormatSymbols();
-        symbols.setNaN(""); // missing data => no output
-        symbols.setDecimalSeparator('.'); // force to avoid locale issues with , as separator
-        FORMAT.setDecimalFormatSymbols(symbols);
-    }
+    // formats are per thread so multiple exports can run concurrently
+    private static final ThreadLocal<TimestampCodec> DATETIME = TimestampCodec.perThread("yyyy-MM-dd,HH:mm:ss",
+            java.util.Locale.getDefault());
+
+    private static final ThreadLocal<DecimalFormat> FORMAT = new ThreadLocal<DecimalFormat>() {
+        @Override
+        protected DecimalFormat initialValue() {
+            DecimalFormat format = new DecimalFormat("0.000");
+
+            // get and set required because DecimalFormat clones the symbols
+            java.text.DecimalFormatSymbols symbols = format.getDecimalFormatSymbols();
+            symbols.setNaN(""); // missing data => no output
+            symbols.setDecimalSeparator('.'); // force to avoid locale issues with , as separator
+            format.setDecimalFormatSymbols(symbols);
+
+            return format;
+        }
+    };
 
     public static final void write(DataSet data, Interval interval, Writer writer) throws IOException {
         StringBuilder builder = new StringBuilder(1024);
@@ -56,13 +66,13 @@ public final class CSVWriter {
         builder.setLength(0);
 
         for (DataRecord record : data.getRecords(interval)) {
-            builder.append(DATETIME.format(new java.util.Date(record.getTime())));
+            builder.append(DATETIME.get().format(record.getTime()));
             builder.append(',');
 
             for (DataType type : data.getTypes()) {
                 if (record.hasData(type)) {
                     for (String field : type.getFields()) {
-                        builder.append(FORMAT.format(record.getData(type, field)));
+                        builder.append(FORMAT.get().format(record.getData(type, field)));
                         builder.append(',');
                     }
                 }
@@ -103,16 +113,16 @@ public final class CSVWriter {
         writer.write('\n');
 
         for (DataRecord record : data.getRecords(interval)) {
-            writer.write(DATETIME.format(new java.util.Date(record.getTime())));
+            writer.write(DATETIME.get().format(record.getTime()));
             writer.write(',');
 
             if (record.hasData(type)) {
                 for (int i = 0; i < fields.size() - 1; i++) {
-                    writer.write(FORMAT.format(record.getData(type, fields.get(i))));
+                    writer.write(FORMAT.get().format(record.getData(type, fields.get(i))));
                     writer.write(',');
                 }
 
-                writer.write(FORMAT.format(record.getData(type, fields.get(fields.size() - 1))));
+                writer.write(FORMAT.get().format(record.getData(type, fields.get(fields.size() - 1))));
             }
             else {
                 for (int i = 0; i < fields.size(); i++) {
@@ -124,6 +134,93 @@ public final class CSVWriter {
         }
     }
 
+    public static final void write(ResampledData data, Writer writer) throws IOException {
+        write(java.util.Collections.singletonList(data), false, writer);
+    }
+
+    /**
+     * Write multiple data sets side by side, one row per bucket. Each column is prefixed with the data set's hostname.
+     * All the data must be resampled onto the same grid.
+     */
+    public static final void write(List<ResampledData> data, Writer writer) throws IOException {
+        write(data, true, writer);
+    }
+
+    private static void write(List<ResampledData> data, boolean prefixHostname, Writer writer) throws IOException {
+        if (data.isEmpty()) {
+            return;
+        }
+
+        TimeGrid grid = data.get(0).getGrid();
+
+        for (ResampledData resampled : data) {
+            if (!grid.equals(resampled.getGrid())) {
+                throw new IllegalArgumentException("all data must be resampled onto the same grid");
+            }
+        }
+
+        StringBuilder builder = new StringBuilder(1024);
+
+        builder.append("Date,Time,");
+
+        // flatten to columns so each row is a simple array lookup
+        List<double[]> columns = new java.util.ArrayList<double[]>();
+
+        for (ResampledData resampled : data) {
+            for (DataType type : resampled.getTypes()) {
+                double[][] values = resampled.getValues(type);
+
+                for (int i = 0; i < type.getFieldCount(); i++) {
+                    if (prefixHostname) {
+                        escape(resampled.getDataSet().getHostname(), builder);
+                        builder.append(' ');
+                    }
+
+                    escape(type.toString(), builder);
+                    builder.append(' ');
+                    escape(type.getField(i), builder);
+                    builder.append(',');
+
+                    columns.add(values[i]);
+                }
+            }
+        }
+
+        builder.setCharAt(builder.length() - 1, '\n');
+
+        writer.write(builder.toString());
+        builder.setLength(0);
+
+        for (int i = 0; i < grid.size(); i++) {
+            boolean hasData = false;
+
+            for (ResampledData resampled : data) {
+                if (resampled.hasData(i)) {
+                    hasData = true;
+                    break;
+                }
+            }
+
+            // only output buckets with data
+            if (!hasData) {
+                continue;
+            }
+
+            builder.append(DATETIME.get().format(grid.getTime(i)));
+            builder.append(',');
+
+            for (double[] column : columns) {
+                builder.append(FORMAT.get().format(column[i]));
+                builder.append(',');
+            }
+
+            builder.setCharAt(builder.length() - 1, '\n');
+
+            writer.write(builder.toString());
+            builder.setLength(0);
+        }
+    }
+
     public static void writeProcesses(DataSet data, Writer writer) throws IOException {
         if (data instanceof ProcessDataSet) {
             ProcessDataSet processData = (ProcessDataSet) data;
@@ -135,9 +232,9 @@ public final class CSVWriter {
                 writer.write(',');
                 escape(process.getName(), writer);
                 writer.write(',');
-                writer.write(DATETIME.format(process.getStartTime()));
+                writer.write(DATETIME.get().format(process.getStartTime()));
                 writer.write(',');
-                writer.write(DATETIME.format(process.getEndTime()));
+                writer.write(DATETIME.get().format(process.getEndTime()));
                 writer.write(',');
                 writer.write('"');
                 escape(process.getCommandLine(), writer);
@@ -170,17 +267,17 @@ public final class CSVWriter {
         writer.write('\n');
 
         for (int i = 0; i < data.getItemCount(); i++) {
-            writer.write(DATETIME.format(data.getTimePeriod(i).getEnd()));
+            writer.write(DATETIME.get().format(data.getTimePeriod(i).getEnd().getTime()));
             writer.write(',');
 
             for (int j = 0; j < seriesCount - 1; j++) {
                 Number n = data.getY(j, i);
 
                 if (n == null) {
-                    writer.write(FORMAT.format(Double.NaN));
+                    writer.write(FORMAT.get().format(Double.NaN));
                 }
                 else {
-                    writer.write(FORMAT.format(n.doubleValue()));
+                    writer.write(FORMAT.get().format(n.doubleValue()));
                 }
 
                 writer.write(',');
@@ -189,10 +286,10 @@ public final class CSVWriter {
             Number n = data.getY(seriesCount - 1, i);
 
             if (n == null) {
-                writer.write(FORMAT.format(Double.NaN));
+                writer.write(FORMAT.get().format(Double.NaN));
             }
             else {
-                writer.write(FORMAT.format(n.doubleValue()));
+                writer.write(FORMAT.get().format(n.doubleValue()));
             }
 
             writer.write('\n');
@@ -224,10 +321,10 @@ public final class CSVWriter {
                 Object o = data.getValue(rowKey, data.getColumnKey(j));
 
                 if (o == null) {
-                    writer.write(FORMAT.format(Double.NaN));
+                    writer.write(FORMAT.get().format(Double.NaN));
                 }
                 else {
-                    writer.write(FORMAT.format(((Double) o).doubleValue()));
+                    writer.write(FORMAT.get().format(((Double) o).doubleValue()));
                 }
 
                 writer.write(',');
@@ -236,10 +333,10 @@ public final class CSVWriter {
             Object o = data.getValue(rowKey, data.getColumnKey(columnCount - 1));
 
             if (o == null) {
-                writer.write(FORMAT.format(Double.NaN));
+                writer.write(FORMAT.get().format(Double.NaN));
             }
             else {
-                writer.write(FORMAT.format(((Double) o).doubleValue()));
+                writer.write(FORMAT.get().format(((Double) o).doubleValue()));
             }
 
             writer.write('\n');
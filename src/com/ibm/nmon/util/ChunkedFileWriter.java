@@ -0,0 +1,253 @@
+package com.ibm.nmon.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>
+ * Writes a large text file that can be split into independent, ordered chunks. Each chunk is formatted and encoded on
+ * a worker thread into a reusable buffer. The buffers are then written, in chunk order, to the file's channel, so
+ * formatting proceeds in parallel while the file is written sequentially. Optionally, the output is compressed with
+ * gzip as it is written.
+ * </p>
+ *
+ * <p>
+ * Text is encoded with the platform's default charset, like {@link java.io.FileWriter}. Instances are not thread safe;
+ * only the {@link ChunkFormatter} is called on other threads.
+ * </p>
+ */
+public final class ChunkedFileWriter {
+    // maximum size of a reused buffer; larger buffers are discarded after being written
+    private static final int MAX_POOLED_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Formats a single chunk of a file.
+     */
+    public interface ChunkFormatter {
+        /**
+         * Append the text for the given chunk to the builder. Called concurrently for different chunks, so
+         * implementations must only read shared data.
+         */
+        public void format(int chunk, StringBuilder builder);
+    }
+
+    private final String filename;
+    private final WritableByteChannel channel;
+
+    private final int threads;
+
+    // buffers for encoded chunks, returned here after they are written
+    private final BlockingQueue<ByteBuffer> bufferPool;
+
+    private final ThreadLocal<StringBuilder> builders = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(64 * 1024);
+        }
+    };
+
+    private final ThreadLocal<CharsetEncoder> encoders = new ThreadLocal<CharsetEncoder>() {
+        @Override
+        protected CharsetEncoder initialValue() {
+            // same as the replacement behavior of OutputStreamWriter
+            return Charset.defaultCharset().newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+    };
+
+    public ChunkedFileWriter(String filename, boolean gzip) throws IOException {
+        this.filename = filename;
+
+        FileOutputStream out = new FileOutputStream(new File(filename));
+
+        if (gzip) {
+            channel = Channels.newChannel(new GZIPOutputStream(out, 64 * 1024));
+        }
+        else {
+            channel = out.getChannel();
+        }
+
+        threads = Runtime.getRuntime().availableProcessors();
+        bufferPool = new java.util.concurrent.LinkedBlockingQueue<ByteBuffer>();
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Encode and write the given text on the calling thread.
+     */
+    public void write(CharSequence text) throws IOException {
+        ByteBuffer buffer = encode(text, getBuffer(text.length()));
+        writeFully(buffer);
+        releaseBuffer(buffer);
+    }
+
+    /**
+     * Format the given number of chunks using worker threads and write them to the file in order, from 0 to
+     * <code>chunkCount - 1</code>.
+     */
+    public void writeChunks(int chunkCount, final ChunkFormatter formatter) throws IOException {
+        if (chunkCount <= 0) {
+            return;
+        }
+
+        if ((chunkCount == 1) || (threads == 1)) {
+            StringBuilder builder = builders.get();
+
+            for (int i = 0; i < chunkCount; i++) {
+                builder.setLength(0);
+                formatter.format(i, builder);
+                write(builder);
+            }
+
+            return;
+        }
+
+        ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, ChunkedFileWriter.class.getSimpleName() + " " + filename + " "
+                        + ++count);
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        // limit the chunks in memory; enough to keep all the threads busy while waiting on the current chunk
+        int maxPending = threads * 2;
+        java.util.LinkedList<Future<ByteBuffer>> pending = new java.util.LinkedList<Future<ByteBuffer>>();
+
+        try {
+            int next = 0;
+
+            while ((next < chunkCount) || !pending.isEmpty()) {
+                while ((next < chunkCount) && (pending.size() < maxPending)) {
+                    final int chunk = next++;
+
+                    pending.add(executor.submit(new java.util.concurrent.Callable<ByteBuffer>() {
+                        @Override
+                        public ByteBuffer call() throws Exception {
+                            StringBuilder builder = builders.get();
+                            builder.setLength(0);
+
+                            formatter.format(chunk, builder);
+
+                            return encode(builder, getBuffer(builder.length()));
+                        }
+                    }));
+                }
+
+                ByteBuffer buffer = pending.removeFirst().get();
+                writeFully(buffer);
+                releaseBuffer(buffer);
+            }
+        }
+        catch (InterruptedException ie) {
+            throw new IOException("interrupted writing to " + filename, ie);
+        }
+        catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            else {
+                throw new IOException("error formatting data for " + filename, cause);
+            }
+        }
+        finally {
+            for (Future<ByteBuffer> future : pending) {
+                future.cancel(true);
+            }
+
+            executor.shutdownNow();
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer getBuffer(int length) {
+        ByteBuffer buffer = bufferPool.poll();
+
+        if (buffer == null) {
+            // assume mostly single byte characters; encode() grows the buffer if needed
+            buffer = ByteBuffer.allocate(Math.max(length + (length >> 3), 1024));
+        }
+
+        return buffer;
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_SIZE) {
+            buffer.clear();
+            bufferPool.offer(buffer);
+        }
+    }
+
+    // returns the buffer, flipped and ready to write, which may not be the same buffer that was passed in
+    private ByteBuffer encode(CharSequence text, ByteBuffer buffer) throws IOException {
+        CharsetEncoder encoder = encoders.get();
+
+        while (true) {
+            CharBuffer chars = CharBuffer.wrap(text);
+
+            encoder.reset();
+            buffer.clear();
+
+            CoderResult result = encoder.encode(chars, buffer, true);
+
+            if (!result.isOverflow()) {
+                result = encoder.flush(buffer);
+            }
+
+            if (result.isOverflow()) {
+                buffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2,
+                        (int) (text.length() * encoder.maxBytesPerChar())));
+            }
+            else if (result.isError()) {
+                // should not happen since errors are replaced
+                result.throwException();
+            }
+            else {
+                buffer.flip();
+                return buffer;
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
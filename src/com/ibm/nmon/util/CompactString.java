@@ -0,0 +1,88 @@
+package com.ibm.nmon.util;
+
+/**
+ * <p>
+ * An immutable string stored as one byte per character. Only strings with all characters in the ISO-8859-1 range can
+ * be stored. This halves the memory used by long, rarely read strings like process command lines.
+ * </p>
+ *
+ * <p>
+ * <code>equals()</code> and <code>hashCode()</code> only compare to other CompactStrings so that instances can be
+ * {@link Interner interned}. Use <code>toString()</code> to compare to a String.
+ * </p>
+ */
+public final class CompactString implements CharSequence {
+    private final byte[] chars;
+    private final int hash;
+
+    private CompactString(byte[] chars) {
+        this.chars = chars;
+        this.hash = java.util.Arrays.hashCode(chars);
+    }
+
+    /**
+     * @return a CompactString holding the given value or <code>null</code> if the value contains characters that
+     *         cannot be stored in a single byte
+     */
+    public static CompactString valueOf(String value) {
+        byte[] chars = new byte[value.length()];
+
+        for (int i = 0; i < chars.length; i++) {
+            char c = value.charAt(i);
+
+            if (c > 0xFF) {
+                return null;
+            }
+
+            chars[i] = (byte) c;
+        }
+
+        return new CompactString(chars);
+    }
+
+    @Override
+    public int length() {
+        return chars.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (chars[index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        char[] decoded = new char[chars.length];
+
+        for (int i = 0; i < chars.length; i++) {
+            decoded[i] = (char) (chars[i] & 0xFF);
+        }
+
+        return new String(decoded);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        else if (obj instanceof CompactString) {
+            CompactString s = (CompactString) obj;
+
+            return (hash == s.hash) && java.util.Arrays.equals(chars, s.chars);
+        }
+        else {
+            return false;
+        }
+    }
+}
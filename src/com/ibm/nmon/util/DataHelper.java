@@ -22,6 +22,10 @@ public final class DataHelper {
          * 
          * @return a Map of process names to a list of Processes. The List will never be empty or <code>null</code>.
          */
+        return getProcessesByName(data.getProcesses(), sorted);
+    }
+
+    public static Map<String, List<Process>> getProcessesByName(Iterable<Process> toGroup, boolean sorted) {
         Map<String, List<Process>> processNameToProcesses = null;
 
         if (sorted) {
@@ -32,7 +36,7 @@ public final class DataHelper {
         }
 
         // collect all the process names and map them to a Process
-        for (Process process : data.getProcesses()) {
+        for (Process process : toGroup) {
             List<Process> processes = processNameToProcesses.get(process.getName());
 
             if (processes == null) {
@@ -194,8 +198,12 @@ public final class DataHelper {
 
     private static final boolean IS_IBM_JVM = System.getProperty("java.vm.vendor").startsWith("IBM");
 
+    // type ids, field names, hostnames, etc are repeated across every parsed file; share a single copy of each
+    private static final Interner<String> STRINGS = new Interner<String>();
+
     /**
-     * Create a new String. This method is used to save memory usage for Strings that are created via substring.
+     * Create a new String. This method is used to save memory usage for Strings that are created via substring. The
+     * returned String is {@link #intern(String) interned}.
      */
     public static String newString(String original) {
         // new String to avoid memory leaks when the element is stored
@@ -203,13 +211,21 @@ public final class DataHelper {
         // this is inefficient because the array is double copied, but that's better
         // than leaving the entire string in memory
         if (IS_IBM_JVM) {
-            return new String(original.trim().toCharArray()).intern();
+            return intern(new String(original.trim().toCharArray()));
         }
         else {
             // Oracle JVM's String implementation is always the correct size
-            return original.trim().intern();
+            return intern(original.trim());
         }
     }
 
+    /**
+     * Get the canonical instance of a String that is shared by all parsed data. Unlike <code>String.intern()</code>,
+     * Strings are only weakly held and will be garbage collected once all the data using them is removed.
+     */
+    public static String intern(String s) {
+        return STRINGS.intern(s);
+    }
+
     private DataHelper() {}
 }
@@ -0,0 +1,75 @@
+package com.ibm.nmon.util;
+
+import java.lang.ref.WeakReference;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * A pool of canonical, immutable values, similar to <code>String.intern()</code>. Equal values passed to
+ * {@link #intern(Object) intern()} return the same instance so that identical strings parsed from many files only
+ * use memory once.
+ * </p>
+ *
+ * <p>
+ * Unlike <code>String.intern()</code>, values are only weakly referenced. Once all the data that uses a value has been
+ * removed, the value can be garbage collected. The pool is split into segments so that parsers running concurrently
+ * do not all contend on a single lock.
+ * </p>
+ */
+public final class Interner<T> {
+    // must be a power of 2
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Map<T, WeakReference<T>>[] segments;
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public Interner() {
+        segments = new Map[SEGMENT_COUNT];
+
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new java.util.WeakHashMap<T, WeakReference<T>>();
+        }
+    }
+
+    /**
+     * @return the canonical instance equal to the given value; <code>null</code> if the value is <code>null</code>
+     */
+    public T intern(T value) {
+        if (value == null) {
+            return null;
+        }
+
+        int hash = value.hashCode();
+        Map<T, WeakReference<T>> segment = segments[(hash ^ (hash >>> 16)) & (SEGMENT_COUNT - 1)];
+
+        synchronized (segment) {
+            WeakReference<T> reference = segment.get(value);
+            T canonical = reference == null ? null : reference.get();
+
+            if (canonical == null) {
+                // the value is both key and referent so the entry is cleared once the value is unused
+                segment.put(value, new WeakReference<T>(value));
+                return value;
+            }
+            else {
+                return canonical;
+            }
+        }
+    }
+
+    /**
+     * @return the number of values currently in the pool, including any that are unused but not yet collected
+     */
+    public int size() {
+        int size = 0;
+
+        for (Map<T, WeakReference<T>> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+
+        return size;
+    }
+}
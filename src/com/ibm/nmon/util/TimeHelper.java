@@ -1,15 +1,17 @@
 package com.ibm.nmon.util;
 
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
 /**
  * Utility methods for working with times.
  */
 public final class TimeHelper {
-    // not thread safe!
-    public static final SimpleDateFormat TIMESTAMP_FORMAT_ISO = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX");
-    public static final SimpleDateFormat DATE_FORMAT_ISO = new SimpleDateFormat("yyyy-MM-dd");
+    public static final String TIMESTAMP_PATTERN_ISO = "yyyy-MM-dd'T'HH:mm:ssX";
+    public static final String DATE_PATTERN_ISO = "yyyy-MM-dd";
+
+    // use get() to obtain a codec for the current thread
+    public static final ThreadLocal<TimestampCodec> TIMESTAMP_FORMAT_ISO = TimestampCodec.perThread(
+            TIMESTAMP_PATTERN_ISO, java.util.Locale.getDefault());
 
     public static long dayFromDatetime(long datetime) {
         Calendar cal = new java.util.GregorianCalendar();
@@ -0,0 +1,477 @@
+package com.ibm.nmon.util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * <p>
+ * Parses and formats timestamps for a single {@link SimpleDateFormat} pattern, locale and time
+ * zone. Data files contain long runs of timestamps from the same day, so this class caches the
+ * start of the most recent day. When the date portion of a timestamp matches the cached day, only
+ * the <code>HH:mm:ss</code> time of day is decoded and the result is computed arithmetically.
+ * Formatting uses the same day cache and also returns the previous result when called repeatedly
+ * with the same second.
+ * </p>
+ *
+ * <p>
+ * The fast paths are only used for patterns that contain <code>HH:mm:ss</code> (optionally followed
+ * by <code>.SSS</code>) and no other time of day fields. Days that contain a daylight savings
+ * transition are never cached. In all other cases, this class delegates to a
+ * <code>SimpleDateFormat</code>, so results are always identical to that class.
+ * </p>
+ *
+ * <p>
+ * Instances are <em>not</em> thread safe. Each thread should use its own instance, either by
+ * keeping it in a local variable or an instance field of a thread confined object, or via
+ * {@link #perThread(String, Locale)}.
+ * </p>
+ */
+public final class TimestampCodec {
+    private static final long MILLIS_PER_DAY = 86400000;
+
+    // marks the position of the time of day when formatting; not a letter so it does not need quotes
+    private static final char TIME_MARKER = '\uFFFF';
+
+    private final String pattern;
+    private final Locale locale;
+
+    private final SimpleDateFormat format;
+
+    // position and length of HH:mm:ss[.SSS] in the pattern; -1 if the fast paths are not usable
+    private final int patternTimeStart;
+    private final int patternTimeLength;
+    private final boolean hasMillis;
+    // SimpleDateFormat ignores trailing text, so the text after the time does not matter
+    private final boolean timeIsLast;
+    // patterns with milliseconds cannot reuse the previous value for the same second
+    private final boolean cacheSeconds;
+
+    // used to find the day prefix and suffix when formatting
+    private final SimpleDateFormat markerFormat;
+    private final Calendar calendar;
+
+    // parse cache
+    private String cachedText;
+    private int cachedTimeStart;
+    private int cachedTimeEnd;
+    private long cachedParseDay;
+
+    // format caches
+    private long cachedFormatDay = Long.MIN_VALUE;
+    private String cachedPrefix;
+    private String cachedSuffix;
+
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedFormatted;
+
+    private final StringBuilder builder = new StringBuilder(32);
+
+    public TimestampCodec(String pattern) {
+        this(pattern, Locale.getDefault(), TimeZone.getDefault());
+    }
+
+    public TimestampCodec(String pattern, Locale locale) {
+        this(pattern, locale, TimeZone.getDefault());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the pattern is not valid for <code>SimpleDateFormat</code>
+     */
+    public TimestampCodec(String pattern, Locale locale, TimeZone timeZone) {
+        this.pattern = pattern;
+        this.locale = locale;
+
+        format = new SimpleDateFormat(pattern, locale);
+        format.setTimeZone(timeZone);
+
+        cacheSeconds = !hasUnquoted(pattern, 'S');
+
+        int timeStart = findTime(pattern);
+        boolean millis = false;
+
+        if (timeStart != -1) {
+            millis = pattern.startsWith(".SSS", timeStart + 8);
+
+            if (hasOtherTimeFields(pattern, timeStart, timeStart + (millis ? 12 : 8))) {
+                timeStart = -1;
+            }
+        }
+
+        if (timeStart == -1) {
+            patternTimeStart = -1;
+            patternTimeLength = 0;
+            hasMillis = false;
+            timeIsLast = false;
+
+            markerFormat = null;
+            calendar = null;
+        }
+        else {
+            patternTimeStart = timeStart;
+            patternTimeLength = millis ? 12 : 8;
+            hasMillis = millis;
+            timeIsLast = (timeStart + patternTimeLength) == pattern.length();
+
+            markerFormat = new SimpleDateFormat(pattern.substring(0, timeStart) + TIME_MARKER
+                    + pattern.substring(timeStart + patternTimeLength), locale);
+            markerFormat.setTimeZone(timeZone);
+
+            calendar = Calendar.getInstance(timeZone, locale);
+        }
+    }
+
+    public String toPattern() {
+        return pattern;
+    }
+
+    public Locale getLocale() {
+        return locale;
+    }
+
+    public TimeZone getTimeZone() {
+        return format.getTimeZone();
+    }
+
+    /**
+     * Change the time zone used for parsing and formatting. This also clears all cached values.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        format.setTimeZone(timeZone);
+
+        if (markerFormat != null) {
+            markerFormat.setTimeZone(timeZone);
+            calendar.setTimeZone(timeZone);
+        }
+
+        cachedText = null;
+        cachedFormatDay = Long.MIN_VALUE;
+        cachedSecond = Long.MIN_VALUE;
+    }
+
+    /**
+     * Parse the given text. Like {@link java.text.DateFormat#parse(String)}, text after the end of
+     * the timestamp is ignored.
+     *
+     * @return the time in milliseconds since the epoch
+     */
+    public long parse(String text) throws ParseException {
+        if (patternTimeStart == -1) {
+            return format.parse(text).getTime();
+        }
+
+        int timeStart = findTime(text);
+
+        if (timeStart == -1) {
+            return format.parse(text).getTime();
+        }
+
+        int timeEnd = timeStart + 8;
+        int millis = 0;
+
+        if (hasMillis) {
+            // SimpleDateFormat allows any number of digits for SSS; only handle exactly 3
+            if ((timeEnd + 4 > text.length()) || (text.charAt(timeEnd) != '.')
+                    || ((timeEnd + 4 < text.length()) && isDigit(text.charAt(timeEnd + 4)))) {
+                return format.parse(text).getTime();
+            }
+
+            millis = digits(text, timeEnd + 1, 3);
+
+            if (millis < 0) {
+                return format.parse(text).getTime();
+            }
+
+            timeEnd += 4;
+        }
+
+        int hours = digits(text, timeStart, 2);
+        int minutes = digits(text, timeStart + 3, 2);
+        int seconds = digits(text, timeStart + 6, 2);
+
+        if ((hours > 23) || (minutes > 59) || (seconds > 59)) {
+            return format.parse(text).getTime();
+        }
+
+        long timeOfDay = ((hours * 3600L + minutes * 60L + seconds) * 1000L) + millis;
+
+        if ((cachedText != null) && (timeStart == cachedTimeStart) && isSameDay(text, timeEnd)) {
+            return cachedParseDay + timeOfDay;
+        }
+
+        long time = format.parse(text).getTime();
+
+        cacheParsedDay(text, timeStart, timeEnd, time - timeOfDay);
+
+        return time;
+    }
+
+    /**
+     * Format the given time.
+     */
+    public String format(long time) {
+        long second = floorDiv(time, 1000);
+
+        if ((second == cachedSecond) && cacheSeconds) {
+            return cachedFormatted;
+        }
+
+        String formatted = null;
+
+        if (patternTimeStart == -1) {
+            formatted = format.format(new java.util.Date(time));
+        }
+        else {
+            if ((time < cachedFormatDay) || (time >= (cachedFormatDay + MILLIS_PER_DAY))) {
+                cacheFormatDay(time);
+            }
+
+            if (cachedPrefix == null) {
+                // day has a DST transition
+                formatted = format.format(new java.util.Date(time));
+            }
+            else {
+                long timeOfDay = time - cachedFormatDay;
+
+                builder.setLength(0);
+                builder.append(cachedPrefix);
+
+                appendDigits(builder, (int) (timeOfDay / 3600000), 2);
+                builder.append(':');
+                appendDigits(builder, (int) ((timeOfDay / 60000) % 60), 2);
+                builder.append(':');
+                appendDigits(builder, (int) ((timeOfDay / 1000) % 60), 2);
+
+                if (hasMillis) {
+                    builder.append('.');
+                    appendDigits(builder, (int) (timeOfDay % 1000), 3);
+                }
+
+                builder.append(cachedSuffix);
+
+                formatted = builder.toString();
+            }
+        }
+
+        cachedSecond = second;
+        cachedFormatted = formatted;
+
+        return formatted;
+    }
+
+    /**
+     * Create a ThreadLocal that lazily creates a codec for each thread. The codecs use the default
+     * time zone.
+     */
+    public static ThreadLocal<TimestampCodec> perThread(final String pattern, final Locale locale) {
+        // validate the pattern now rather than on first use
+        new SimpleDateFormat(pattern, locale);
+
+        return new ThreadLocal<TimestampCodec>() {
+            @Override
+            protected TimestampCodec initialValue() {
+                return new TimestampCodec(pattern, locale);
+            }
+        };
+    }
+
+    private boolean isSameDay(String text, int timeEnd) {
+        // compare the date text before the time
+        if (!text.regionMatches(0, cachedText, 0, cachedTimeStart)) {
+            return false;
+        }
+
+        if (timeIsLast) {
+            return true;
+        }
+        else {
+            int suffixLength = text.length() - timeEnd;
+
+            return (suffixLength == (cachedText.length() - cachedTimeEnd))
+                    && text.regionMatches(timeEnd, cachedText, cachedTimeEnd, suffixLength);
+        }
+    }
+
+    private void cacheParsedDay(String text, int timeStart, int timeEnd, long day) {
+        cachedText = null;
+
+        // verify the start and end of the day parse as expected; this ensures the time of day was
+        // found in the right place and that the day does not have a DST transition
+        try {
+            String prefix = text.substring(0, timeStart);
+            String suffix = text.substring(timeEnd);
+
+            if (format.parse(prefix + (hasMillis ? "00:00:00.000" : "00:00:00") + suffix).getTime() != day) {
+                return;
+            }
+
+            if (format.parse(prefix + (hasMillis ? "23:59:59.999" : "23:59:59") + suffix).getTime() != (day
+                    + MILLIS_PER_DAY - (hasMillis ? 1 : 1000))) {
+                return;
+            }
+        }
+        catch (ParseException pe) {
+            return;
+        }
+
+        cachedText = text;
+        cachedTimeStart = timeStart;
+        cachedTimeEnd = timeEnd;
+        cachedParseDay = day;
+    }
+
+    private void cacheFormatDay(long time) {
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+
+        long day = calendar.getTimeInMillis();
+        // false if midnight does not exist on this day
+        boolean midnight = calendar.get(Calendar.HOUR_OF_DAY) == 0;
+
+        calendar.add(Calendar.DATE, 1);
+
+        cachedFormatDay = day;
+
+        if (!midnight || ((calendar.getTimeInMillis() - day) != MILLIS_PER_DAY)) {
+            // DST transition; do not use the fast path for any time on this day
+            cachedPrefix = null;
+            cachedSuffix = null;
+
+            return;
+        }
+
+        String formatted = markerFormat.format(new java.util.Date(day));
+        int idx = formatted.indexOf(TIME_MARKER);
+
+        cachedPrefix = formatted.substring(0, idx);
+        cachedSuffix = formatted.substring(idx + 1);
+    }
+
+    // find HH:mm:ss, or any 2 digits, colon, 2 digits, colon, 2 digits sequence in text
+    private static int findTime(String text) {
+        int length = text.length() - 7;
+
+        for (int i = 0; i < length; i++) {
+            if ((text.charAt(i + 2) == ':') && (text.charAt(i + 5) == ':')) {
+                char c0 = text.charAt(i);
+
+                if (c0 == 'H') {
+                    if (text.startsWith("HH:mm:ss", i) && isUnquoted(text, i)) {
+                        return i;
+                    }
+                }
+                else if (isDigit(c0) && isDigit(text.charAt(i + 1)) && isDigit(text.charAt(i + 3))
+                        && isDigit(text.charAt(i + 4)) && isDigit(text.charAt(i + 6)) && isDigit(text.charAt(i + 7))) {
+                    return i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isUnquoted(String pattern, int index) {
+        int quotes = 0;
+
+        for (int i = 0; i < index; i++) {
+            if (pattern.charAt(i) == '\'') {
+                ++quotes;
+            }
+        }
+
+        return (quotes % 2) == 0;
+    }
+
+    private static boolean hasUnquoted(String pattern, char field) {
+        boolean quoted = false;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            else if (!quoted && (c == field)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean hasOtherTimeFields(String pattern, int timeStart, int timeEnd) {
+        boolean quoted = false;
+
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            else if (!quoted && ((i < timeStart) || (i >= timeEnd))) {
+                switch (c) {
+                case 'H':
+                case 'k':
+                case 'K':
+                case 'h':
+                case 'm':
+                case 's':
+                case 'S':
+                case 'a':
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isDigit(char c) {
+        return (c >= '0') && (c <= '9');
+    }
+
+    // returns -1 if any character is not a digit
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+
+            if (!isDigit(c)) {
+                return -1;
+            }
+
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    private static void appendDigits(StringBuilder builder, int value, int count) {
+        if ((count == 3) && (value < 100)) {
+            builder.append('0');
+        }
+
+        if (value < 10) {
+            builder.append('0');
+        }
+
+        builder.append(value);
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+
+        if (((x % y) != 0) && ((x < 0) != (y < 0))) {
+            --q;
+        }
+
+        return q;
+    }
+}